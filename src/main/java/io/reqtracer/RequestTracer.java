@@ -0,0 +1,469 @@
+package io.reqtracer;
+
+import io.reqtracer.core.Clock;
+import io.reqtracer.core.Span;
+import io.reqtracer.core.SystemClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceContext;
+import io.reqtracer.core.TraceId;
+import io.reqtracer.core.TraceIdGenerator;
+import io.reqtracer.jfr.FlightRecorderEvents;
+import io.reqtracer.listener.TraceListener;
+import io.reqtracer.storage.InMemoryTraceStore;
+import io.reqtracer.storage.TraceStore;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A tracer with its own store, clock, sampling and listeners, so that
+ * independent components don't share (or contend on) one store. Generated
+ * IDs come from one process-wide generator unless a tracer is given its own,
+ * so tracers never issue the same ID.
+ * {@link Tracer}'s static API delegates to a default instance.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * RequestTracer payments = new RequestTracer(new InMemoryTraceStore())
+ *         .setSampleRate(0.1);
+ * payments.start("req-123");
+ * payments.mark("CHARGE");
+ * payments.end();
+ * </pre>
+ * <p>
+ * Each instance tracks its own active trace per thread, so a thread can have
+ * one trace open in each tracer. Configuration is an immutable snapshot
+ * replaced on every setter and read once when a trace starts; the trace
+ * keeps that snapshot until it ends. Changes are therefore safely published
+ * to other threads, apply to traces started afterwards, and cost marks
+ * nothing.
+ * <p>
+ * Thread-safe.
+ */
+public final class RequestTracer {
+
+    private volatile Config config;
+    private final ThreadLocal<Active> active = ThreadLocal.withInitial(Active::new);
+    private final List<TraceListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a tracer with a fresh in-memory store and the system clock.
+     */
+    public RequestTracer() {
+        this(new InMemoryTraceStore());
+    }
+
+    /**
+     * Creates a tracer writing to the given store, with the system clock.
+     *
+     * @param store storage implementation
+     */
+    public RequestTracer(TraceStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        this.config = new Config(SystemClock.getInstance(), store, null, false, 1.0);
+    }
+
+    /**
+     * Configures the clock implementation.
+     * Primarily for testing with FixedClock.
+     *
+     * @param clock clock implementation
+     * @return this tracer
+     */
+    public synchronized RequestTracer setClock(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        Config c = config;
+        config = new Config(clock, c.store, c.idGenerator, c.flightRecorder, c.sampleRate);
+        return this;
+    }
+
+    /**
+     * Configures the trace storage implementation.
+     *
+     * @param store storage implementation
+     * @return this tracer
+     */
+    public synchronized RequestTracer setStore(TraceStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        Config c = config;
+        config = new Config(c.clock, store, c.idGenerator, c.flightRecorder, c.sampleRate);
+        return this;
+    }
+
+    /**
+     * Configures the generator used by {@link #start()}. By default every
+     * tracer shares {@link TraceIdGenerator#getDefault()}; a generator of its
+     * own must use a node no other generator writing to the same stores
+     * uses.
+     *
+     * @param generator ID generator, e.g. with an explicit node ID
+     * @return this tracer
+     */
+    public synchronized RequestTracer setIdGenerator(TraceIdGenerator generator) {
+        if (generator == null) {
+            throw new IllegalArgumentException("ID generator cannot be null");
+        }
+        Config c = config;
+        config = new Config(c.clock, c.store, generator, c.flightRecorder, c.sampleRate);
+        return this;
+    }
+
+    /**
+     * Enables JDK Flight Recorder events for trace start, each mark and
+     * trace end (see {@link FlightRecorderEvents}).
+     *
+     * @param enabled whether to emit JFR events
+     * @return this tracer
+     */
+    public synchronized RequestTracer setFlightRecorderEnabled(boolean enabled) {
+        Config c = config;
+        config = new Config(c.clock, c.store, c.idGenerator, enabled, c.sampleRate);
+        return this;
+    }
+
+    /**
+     * Sets the fraction of traces that are recorded. For a trace that is not
+     * sampled, marks and spans do nothing and nothing is stored, but the
+     * trace is still active, so the calls don't fail.
+     *
+     * @param rate between 0 (record nothing) and 1 (record everything, the
+     *             default)
+     * @return this tracer
+     */
+    public synchronized RequestTracer setSampleRate(double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + rate);
+        }
+        Config c = config;
+        config = new Config(c.clock, c.store, c.idGenerator, c.flightRecorder, rate);
+        return this;
+    }
+
+    /**
+     * Returns the configured trace store.
+     */
+    public TraceStore getStore() {
+        return config.store;
+    }
+
+    /**
+     * Returns the configured sample rate.
+     */
+    public double getSampleRate() {
+        return config.sampleRate;
+    }
+
+    /**
+     * Registers a listener notified of every completed trace.
+     * Listeners run on the request thread in {@link #end()}, after the
+     * trace is stored, and must not block.
+     *
+     * @param listener listener to add
+     */
+    public void addListener(TraceListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener listener to remove
+     */
+    public void removeListener(TraceListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the registered listeners, in registration order.
+     */
+    public List<TraceListener> getListeners() {
+        return Collections.unmodifiableList(listeners);
+    }
+
+    /**
+     * Starts a new trace for the current thread.
+     *
+     * @param traceId unique identifier for this request
+     */
+    public void start(String traceId) {
+        Config c = config;
+        activate(c, c.sample() ? new Trace(traceId, c.clock) : null, traceId, TraceId.NONE);
+    }
+
+    /**
+     * Starts a new trace for the current thread with a generated 64-bit ID.
+     * The ID is generated even if the trace is not sampled, so it can still
+     * be propagated.
+     *
+     * @return the generated trace ID
+     */
+    public long start() {
+        Config c = config;
+        long id = c.idGenerator().next();
+        activate(c, c.sample() ? new Trace(id, c.clock) : null, null, id);
+        return id;
+    }
+
+    /**
+     * Starts a trace for a call from another service, linked to the caller
+     * by the header it sent (see {@link #getPropagationHeader()}). The trace
+     * is sampled if and only if the caller's was, so a request is recorded
+     * on every service or none. A missing or malformed header starts an
+     * unlinked trace sampled at this tracer's rate.
+     *
+     * @param traceId      unique identifier for this request
+     * @param parentHeader value of the {@link TraceContext#HEADER} header,
+     *                     may be null
+     */
+    public void start(String traceId, String parentHeader) {
+        Config c = config;
+        TraceContext parent = TraceContext.parse(parentHeader).orElse(null);
+        Trace trace = sampled(c, parent) ? new Trace(traceId, c.clock) : null;
+        if (trace != null) {
+            trace.setParent(parent);
+        }
+        activate(c, trace, traceId, TraceId.NONE);
+    }
+
+    /**
+     * Starts a trace with a generated 64-bit ID for a call from another
+     * service, linked to the caller by the header it sent.
+     *
+     * @param parentHeader value of the {@link TraceContext#HEADER} header,
+     *                     may be null
+     * @return the generated trace ID
+     * @see #start(String, String)
+     */
+    public long startChild(String parentHeader) {
+        Config c = config;
+        TraceContext parent = TraceContext.parse(parentHeader).orElse(null);
+        long id = c.idGenerator().next();
+        Trace trace = sampled(c, parent) ? new Trace(id, c.clock) : null;
+        if (trace != null) {
+            trace.setParent(parent);
+        }
+        activate(c, trace, null, id);
+        return id;
+    }
+
+    /**
+     * Starts a trace with a generated 64-bit ID on behalf of a tenant, so a
+     * store with per-tenant quotas (see
+     * {@link io.reqtracer.storage.TenantQuotas}) accounts it to that tenant.
+     *
+     * @param tenant tenant the request is served for
+     * @return the generated trace ID
+     */
+    public long startForTenant(String tenant) {
+        if (tenant == null || tenant.isEmpty()) {
+            throw new IllegalArgumentException("Tenant cannot be empty");
+        }
+        long id = start();
+        Trace trace = active.get().trace;
+        if (trace != null) {
+            trace.setTenant(tenant);
+        }
+        return id;
+    }
+
+    private static boolean sampled(Config c, TraceContext parent) {
+        return parent != null ? parent.isSampled() : c.sample();
+    }
+
+    private void activate(Config c, Trace trace, String traceId, long id) {
+        Active current = active.get();
+        current.config = c;
+        current.trace = trace;
+        current.traceId = traceId;
+        current.id = id;
+        if (trace != null && c.flightRecorder) {
+            FlightRecorderEvents.traceStarted(trace);
+        }
+    }
+
+    /**
+     * Records an event in the current thread's trace.
+     *
+     * @param eventName event name (e.g., "AUTH_CHECK", "DB_QUERY")
+     * @throws IllegalStateException if no trace is active
+     */
+    public void mark(String eventName) {
+        Active current = requireActive();
+        Trace trace = current.trace;
+        if (trace != null) {
+            trace.mark(eventName);
+            if (current.config.flightRecorder) {
+                FlightRecorderEvents.marked(trace);
+            }
+        }
+    }
+
+    /**
+     * Records an event with metadata in the current thread's trace.
+     *
+     * @param eventName event name
+     * @param metadata  optional key-value metadata (subject to limits)
+     * @throws IllegalStateException if no trace is active
+     */
+    public void mark(String eventName, Map<String, String> metadata) {
+        Active current = requireActive();
+        Trace trace = current.trace;
+        if (trace != null) {
+            trace.mark(eventName, metadata);
+            if (current.config.flightRecorder) {
+                FlightRecorderEvents.marked(trace);
+            }
+        }
+    }
+
+    /**
+     * Opens a span in the current thread's trace, nested inside the
+     * innermost span still open. Close it with try-with-resources.
+     *
+     * @param name span name (e.g., "DB_QUERY")
+     * @return handle that ends the span when closed
+     * @throws IllegalStateException if no trace is active
+     */
+    public Span span(String name) {
+        Trace trace = requireActive().trace;
+        return trace != null ? trace.span(name) : Span.noop();
+    }
+
+    /**
+     * Returns the header value to send with an outgoing call, linking the
+     * callee's trace to the current trace and its innermost open span.
+     * Make the call inside a span so its time can be split between the
+     * callee and the network.
+     * <p>
+     * A trace that is not sampled still gets a header, flagged as not
+     * sampled, so the callee does not record its part of the request
+     * either.
+     *
+     * @return {@link TraceContext#HEADER} value
+     * @throws IllegalStateException if no trace is active
+     */
+    public String getPropagationHeader() {
+        Active current = requireActive();
+        if (current.trace != null) {
+            return current.trace.getContext().toHeader();
+        }
+        String traceId = current.traceId != null ? current.traceId : TraceId.toString(current.id);
+        return new TraceContext(traceId, TraceContext.NO_SPAN, false).toHeader();
+    }
+
+    /**
+     * Ends the current thread's trace, stores it and notifies listeners.
+     *
+     * @throws IllegalStateException if no trace is active
+     */
+    public void end() {
+        Active current = requireActive();
+        Config c = current.config;
+        Trace trace = current.trace;
+        if (trace == null) {
+            current.clear();
+            return;
+        }
+        trace.end();
+        c.store.store(trace);
+        current.clear();
+        if (c.flightRecorder) {
+            FlightRecorderEvents.traceEnded(trace);
+        }
+
+        for (TraceListener listener : listeners) {
+            try {
+                listener.onTraceCompleted(trace);
+            } catch (RuntimeException e) {
+                // A failing listener must not break the request or other listeners
+            }
+        }
+    }
+
+    /**
+     * Returns the current thread's active trace, if any.
+     *
+     * @return current trace, or null if no trace is active or it is not
+     *         sampled
+     */
+    public Trace getCurrentTrace() {
+        return active.get().trace;
+    }
+
+    /**
+     * Clears the current thread's trace without storing it.
+     * Useful for error handling and cleanup.
+     */
+    public void clear() {
+        active.get().clear();
+    }
+
+    private Active requireActive() {
+        Active current = active.get();
+        if (current.config == null) {
+            throw new IllegalStateException("No active trace. Call Tracer.start() first.");
+        }
+        return current;
+    }
+
+    /**
+     * Immutable configuration snapshot.
+     */
+    private static final class Config {
+        final Clock clock;
+        final TraceStore store;
+        final TraceIdGenerator idGenerator; // null for the shared default
+        final boolean flightRecorder;
+        final double sampleRate;
+
+        Config(Clock clock, TraceStore store, TraceIdGenerator idGenerator, boolean flightRecorder,
+                double sampleRate) {
+            this.clock = clock;
+            this.store = store;
+            this.idGenerator = idGenerator;
+            this.flightRecorder = flightRecorder;
+            this.sampleRate = sampleRate;
+        }
+
+        TraceIdGenerator idGenerator() {
+            return idGenerator != null ? idGenerator : TraceIdGenerator.getDefault();
+        }
+
+        boolean sample() {
+            return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        }
+    }
+
+    /**
+     * Per-thread state, reused across traces so starting one doesn't
+     * allocate a holder. {@code config} is the snapshot taken at start and
+     * is null when no trace is active; {@code trace} is null when the
+     * active trace is not sampled. The ID, {@code traceId} or else
+     * {@code id}, is kept for propagating an unsampled trace.
+     */
+    private static final class Active {
+        Config config;
+        Trace trace;
+        String traceId;
+        long id;
+
+        void clear() {
+            config = null;
+            trace = null;
+            traceId = null;
+        }
+    }
+}
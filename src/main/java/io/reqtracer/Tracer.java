@@ -1,11 +1,14 @@
 package io.reqtracer;
 
 import io.reqtracer.core.Clock;
-import io.reqtracer.core.SystemClock;
+import io.reqtracer.core.Span;
 import io.reqtracer.core.Trace;
-import io.reqtracer.storage.InMemoryTraceStore;
+import io.reqtracer.core.TraceIdGenerator;
+import io.reqtracer.jfr.FlightRecorderEvents;
+import io.reqtracer.listener.TraceListener;
 import io.reqtracer.storage.TraceStore;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,25 +17,36 @@ import java.util.Map;
  * Usage:
  * 
  * <pre>
- * Tracer.start("req-123");
+ * Tracer.start("req-123");      // or: long id = Tracer.start();
  * Tracer.mark("AUTH_CHECK");
  * Tracer.mark("DB_QUERY", Map.of("table", "users"));
+ * try (Span s = Tracer.span("RENDER")) {
+ *     ...
+ * }
  * Tracer.end();
  * </pre>
  * <p>
  * Uses ThreadLocal to manage trace context per thread.
  * Thread-safe for concurrent requests.
+ * <p>
+ * Every method delegates to a default {@link RequestTracer}. Components that
+ * want their own store, clock or sampling create their own instance.
  */
 public class Tracer {
 
-    private static Clock clock = SystemClock.getInstance();
-    private static TraceStore store = new InMemoryTraceStore();
-    private static final ThreadLocal<Trace> currentTrace = new ThreadLocal<>();
+    private static final RequestTracer DEFAULT = new RequestTracer();
 
     // Private constructor - static API only
     private Tracer() {
     }
 
+    /**
+     * Returns the instance the static API delegates to.
+     */
+    public static RequestTracer getDefault() {
+        return DEFAULT;
+    }
+
     /**
      * Configures the clock implementation.
      * Primarily for testing with FixedClock.
@@ -40,7 +54,7 @@ public class Tracer {
      * @param newClock clock implementation
      */
     public static void setClock(Clock newClock) {
-        clock = newClock;
+        DEFAULT.setClock(newClock);
     }
 
     /**
@@ -49,7 +63,38 @@ public class Tracer {
      * @param newStore storage implementation
      */
     public static void setStore(TraceStore newStore) {
-        store = newStore;
+        DEFAULT.setStore(newStore);
+    }
+
+    /**
+     * Configures the generator used by {@link #start()}.
+     * 
+     * @param generator ID generator, e.g. with an explicit node ID
+     */
+    public static void setIdGenerator(TraceIdGenerator generator) {
+        DEFAULT.setIdGenerator(generator);
+    }
+
+    /**
+     * Enables JDK Flight Recorder events for trace start, each mark and
+     * trace end (see {@link FlightRecorderEvents}). Events are only written
+     * while a recording has them enabled; otherwise the cost per call is a
+     * branch.
+     * 
+     * @param enabled whether to emit JFR events
+     */
+    public static void setFlightRecorderEnabled(boolean enabled) {
+        DEFAULT.setFlightRecorderEnabled(enabled);
+    }
+
+    /**
+     * Sets the fraction of traces that are recorded (see
+     * {@link RequestTracer#setSampleRate(double)}).
+     * 
+     * @param rate between 0 and 1
+     */
+    public static void setSampleRate(double rate) {
+        DEFAULT.setSampleRate(rate);
     }
 
     /**
@@ -57,7 +102,34 @@ public class Tracer {
      * Useful for CLI and tests to access traces.
      */
     public static TraceStore getStore() {
-        return store;
+        return DEFAULT.getStore();
+    }
+
+    /**
+     * Registers a listener notified of every completed trace.
+     * Listeners run on the request thread in {@link #end()}, after the
+     * trace is stored, and must not block.
+     * 
+     * @param listener listener to add
+     */
+    public static void addListener(TraceListener listener) {
+        DEFAULT.addListener(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     * 
+     * @param listener listener to remove
+     */
+    public static void removeListener(TraceListener listener) {
+        DEFAULT.removeListener(listener);
+    }
+
+    /**
+     * Returns the registered listeners, in registration order.
+     */
+    public static List<TraceListener> getListeners() {
+        return DEFAULT.getListeners();
     }
 
     /**
@@ -66,8 +138,53 @@ public class Tracer {
      * @param traceId unique identifier for this request
      */
     public static void start(String traceId) {
-        Trace trace = new Trace(traceId, clock);
-        currentTrace.set(trace);
+        DEFAULT.start(traceId);
+    }
+
+    /**
+     * Starts a new trace for the current thread with a generated 64-bit ID.
+     * The trace's String ID is the ID's rendering (see
+     * {@link io.reqtracer.core.TraceId}).
+     * 
+     * @return the generated trace ID
+     */
+    public static long start() {
+        return DEFAULT.start();
+    }
+
+    /**
+     * Starts a trace for a call from another service, linked to the caller
+     * by the {@link io.reqtracer.core.TraceContext#HEADER} header it sent,
+     * sampled if the caller's trace was. A missing or malformed header
+     * starts an unlinked trace.
+     *
+     * @param traceId      unique identifier for this request
+     * @param parentHeader header value, may be null
+     */
+    public static void start(String traceId, String parentHeader) {
+        DEFAULT.start(traceId, parentHeader);
+    }
+
+    /**
+     * Starts a trace with a generated 64-bit ID for a call from another
+     * service, linked to the caller by the header it sent.
+     *
+     * @param parentHeader header value, may be null
+     * @return the generated trace ID
+     */
+    public static long startChild(String parentHeader) {
+        return DEFAULT.startChild(parentHeader);
+    }
+
+    /**
+     * Starts a trace with a generated 64-bit ID on behalf of a tenant, for
+     * stores with per-tenant quotas.
+     *
+     * @param tenant tenant the request is served for
+     * @return the generated trace ID
+     */
+    public static long startForTenant(String tenant) {
+        return DEFAULT.startForTenant(tenant);
     }
 
     /**
@@ -77,11 +194,7 @@ public class Tracer {
      * @throws IllegalStateException if no trace is active
      */
     public static void mark(String eventName) {
-        Trace trace = currentTrace.get();
-        if (trace == null) {
-            throw new IllegalStateException("No active trace. Call Tracer.start() first.");
-        }
-        trace.mark(eventName);
+        DEFAULT.mark(eventName);
     }
 
     /**
@@ -92,26 +205,41 @@ public class Tracer {
      * @throws IllegalStateException if no trace is active
      */
     public static void mark(String eventName, Map<String, String> metadata) {
-        Trace trace = currentTrace.get();
-        if (trace == null) {
-            throw new IllegalStateException("No active trace. Call Tracer.start() first.");
-        }
-        trace.mark(eventName, metadata);
+        DEFAULT.mark(eventName, metadata);
+    }
+
+    /**
+     * Opens a span in the current thread's trace, nested inside the
+     * innermost span still open. Close it with try-with-resources.
+     *
+     * @param name span name (e.g., "DB_QUERY")
+     * @return handle that ends the span when closed
+     * @throws IllegalStateException if no trace is active
+     */
+    public static Span span(String name) {
+        return DEFAULT.span(name);
+    }
+
+    /**
+     * Returns the header value to send with an outgoing call so the callee's
+     * trace links back to the current trace and its innermost open span.
+     * A trace that is not sampled gets a header too, flagged so the callee
+     * does not record its part either.
+     *
+     * @return header value
+     * @throws IllegalStateException if no trace is active
+     */
+    public static String getPropagationHeader() {
+        return DEFAULT.getPropagationHeader();
     }
 
     /**
-     * Ends the current thread's trace and stores it.
+     * Ends the current thread's trace, stores it and notifies listeners.
      * 
      * @throws IllegalStateException if no trace is active
      */
     public static void end() {
-        Trace trace = currentTrace.get();
-        if (trace == null) {
-            throw new IllegalStateException("No active trace. Call Tracer.start() first.");
-        }
-        trace.end();
-        store.store(trace);
-        currentTrace.remove();
+        DEFAULT.end();
     }
 
     /**
@@ -120,7 +248,7 @@ public class Tracer {
      * @return current trace or null if no trace is active
      */
     public static Trace getCurrentTrace() {
-        return currentTrace.get();
+        return DEFAULT.getCurrentTrace();
     }
 
     /**
@@ -128,6 +256,6 @@ public class Tracer {
      * Useful for error handling and cleanup.
      */
     public static void clear() {
-        currentTrace.remove();
+        DEFAULT.clear();
     }
 }
@@ -0,0 +1,440 @@
+package io.reqtracer.cli;
+
+import io.reqtracer.export.Json;
+import io.reqtracer.listener.ExemplarSampler;
+import io.reqtracer.stats.HeavyHitters;
+import io.reqtracer.stats.LatencyComparison;
+import io.reqtracer.stats.LatencyHistogram;
+import io.reqtracer.stats.RollingMetrics;
+import io.reqtracer.stats.ShapeSummary;
+import io.reqtracer.stats.TraceStats;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Formats aggregate trace statistics.
+ * <p>
+ * Supports two modes:
+ * - Table: aligned columns for reading in a terminal
+ * - JSON: a single object for scripts and dashboards
+ */
+public class StatsFormatter {
+
+    private static final String SEPARATOR = "──────────────────────────────────────────────────────────────────────";
+    private static final String ROW_FORMAT = "%-20s %9s %9s %7s %7s %7s %7s%n";
+    private static final String COMPARISON_FORMAT = "%-20s %15s %8s %15s %8s %8s  %s%n";
+    private static final String HITTER_FORMAT = "%-30s %11s %7s %9s%n";
+    private static final String WINDOW_FORMAT = "%-8s %9s %9s %8s %7s %7s %7s%n";
+    private static final String EXEMPLAR_FORMAT = "%-16s %9s  %s%n";
+
+    /**
+     * Formats statistics as a table.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * TRACES: 1000
+     * ──────────────────────────────────────────────────────────────────────
+     * EVENT                    COUNT      MEAN     P50     P90     P99     MAX
+     * AUTH_CHECK                1000    12.3ms    12ms    15ms    21ms    40ms
+     * DB_QUERY                  1000   118.9ms   120ms   131ms   160ms   212ms
+     * ──────────────────────────────────────────────────────────────────────
+     * TOTAL                     1000   140.2ms   141ms   152ms   188ms   251ms
+     * </pre>
+     */
+    public static String formatTable(TraceStats stats) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("TRACES: ").append(stats.getTraceCount()).append("\n");
+        sb.append(SEPARATOR).append("\n");
+        sb.append(String.format(ROW_FORMAT, "EVENT", "COUNT", "MEAN", "P50", "P90", "P99", "MAX"));
+
+        if (stats.getEvents().isEmpty()) {
+            sb.append("(no events)\n");
+        } else {
+            for (Map.Entry<String, LatencyHistogram> entry : stats.getEvents().entrySet()) {
+                appendRow(sb, entry.getKey(), entry.getValue());
+            }
+        }
+
+        sb.append(SEPARATOR).append("\n");
+        appendRow(sb, "TOTAL", stats.getTotalDuration());
+
+        return sb.toString();
+    }
+
+    /**
+     * Formats statistics as a single JSON object.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * {"traceCount":1000,"totalDuration":{"count":1000,"mean":140.2,...},
+     *  "events":{"AUTH_CHECK":{"count":1000,"mean":12.3,"p50":12,"p90":15,"p99":21,"max":40}}}
+     * </pre>
+     */
+    public static String formatJson(TraceStats stats) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("{\"traceCount\":").append(stats.getTraceCount());
+        sb.append(",\"totalDuration\":");
+        appendJson(sb, stats.getTotalDuration());
+        sb.append(",\"events\":{");
+
+        boolean first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : stats.getEvents().entrySet()) {
+            if (!first) {
+                sb.append(",");
+            }
+            sb.append(Json.quote(entry.getKey())).append(":");
+            appendJson(sb, entry.getValue());
+            first = false;
+        }
+
+        sb.append("}}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Formats per-shape summaries as tables, most frequent shape first.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * SHAPE 3f2a9c0d11e4b7a2 (900 traces)
+     * REQUEST_RECEIVED → AUTH_CHECK → DB_QUERY → RESPONSE_SENT
+     * ──────────────────────────────────────────────────────────────────────
+     * EVENT                    COUNT      MEAN     P50     P90     P99     MAX
+     * AUTH_CHECK                 900    12.3ms    12ms    15ms    21ms    40ms
+     * ...
+     * ──────────────────────────────────────────────────────────────────────
+     * TOTAL                      900   140.2ms   141ms   152ms   188ms   251ms
+     * </pre>
+     */
+    public static String formatShapes(List<ShapeSummary> shapes) {
+        if (shapes.isEmpty()) {
+            return "(no traces)\n";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (ShapeSummary summary : shapes) {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append("SHAPE ").append(summary.getShape().getId())
+                    .append(" (").append(summary.getTraceCount()).append(" traces)\n");
+            sb.append(summary.getShape().size() == 0 ? "(no events)" : summary.getShape().toString()).append("\n");
+            sb.append(SEPARATOR).append("\n");
+            sb.append(String.format(ROW_FORMAT, "EVENT", "COUNT", "MEAN", "P50", "P90", "P99", "MAX"));
+            for (int i = 0; i < summary.getShape().size(); i++) {
+                appendRow(sb, summary.getShape().getName(i), summary.getEventDeltas().get(i));
+            }
+            sb.append(SEPARATOR).append("\n");
+            appendRow(sb, "TOTAL", summary.getTotalDuration());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats per-shape summaries as a JSON array.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * [{"shape":"3f2a9c0d11e4b7a2","traceCount":900,"events":["REQUEST_RECEIVED",...],
+     *   "totalDuration":{...},"eventDeltas":[{...},...]}]
+     * </pre>
+     */
+    public static String formatShapesJson(List<ShapeSummary> shapes) {
+        StringBuilder sb = new StringBuilder("[");
+
+        for (int s = 0; s < shapes.size(); s++) {
+            ShapeSummary summary = shapes.get(s);
+            if (s > 0) {
+                sb.append(",");
+            }
+            sb.append("{\"shape\":").append(Json.quote(summary.getShape().getId()));
+            sb.append(",\"traceCount\":").append(summary.getTraceCount());
+            sb.append(",\"events\":[");
+            for (int i = 0; i < summary.getShape().size(); i++) {
+                if (i > 0) {
+                    sb.append(",");
+                }
+                sb.append(Json.quote(summary.getShape().getName(i)));
+            }
+            sb.append("],\"totalDuration\":");
+            appendJson(sb, summary.getTotalDuration());
+            sb.append(",\"eventDeltas\":[");
+            for (int i = 0; i < summary.getEventDeltas().size(); i++) {
+                if (i > 0) {
+                    sb.append(",");
+                }
+                appendJson(sb, summary.getEventDeltas().get(i));
+            }
+            sb.append("]}");
+        }
+
+        sb.append("]\n");
+        return sb.toString();
+    }
+
+    /**
+     * Formats a baseline-vs-candidate comparison as a table. Percentile
+     * columns show "baseline → candidate" and the relative change.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * COMPARISON: threshold 10.0%, alpha 0.05
+     * ──────────────────────────────────────────────────────────────────────
+     * EVENT                        P50 A→B   CHANGE         P99 A→B   CHANGE  P-VALUE  STATUS
+     * AUTH_CHECK                 12 → 12ms    +0.0%       21 → 22ms    +4.8%   0.4120  UNCHANGED
+     * DB_QUERY                 120 → 190ms   +58.3%     160 → 305ms   +90.6%   0.0000  REGRESSION
+     * ──────────────────────────────────────────────────────────────────────
+     * TOTAL                    141 → 212ms   +50.4%     188 → 340ms   +80.9%   0.0000  REGRESSION
+     * </pre>
+     */
+    public static String formatComparison(LatencyComparison comparison) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format(Locale.ROOT, "COMPARISON: threshold %.1f%%, alpha %.2f%n",
+                comparison.getThresholdPercent(), comparison.getAlpha()));
+        sb.append(SEPARATOR).append("\n");
+        sb.append(String.format(COMPARISON_FORMAT, "EVENT", "P50 A→B", "CHANGE", "P99 A→B", "CHANGE", "P-VALUE",
+                "STATUS"));
+
+        if (comparison.getEvents().isEmpty()) {
+            sb.append("(no events)\n");
+        } else {
+            for (LatencyComparison.EventComparison event : comparison.getEvents()) {
+                appendComparisonRow(sb, event);
+            }
+        }
+
+        sb.append(SEPARATOR).append("\n");
+        appendComparisonRow(sb, comparison.getTotal());
+
+        return sb.toString();
+    }
+
+    /**
+     * Formats a baseline-vs-candidate comparison as a single JSON object.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * {"thresholdPercent":10.0,"alpha":0.05,"regressions":true,
+     *  "total":{"status":"REGRESSION","pValue":0.000001,"baseline":{...},"candidate":{...}},
+     *  "events":{"DB_QUERY":{"status":"REGRESSION",...}}}
+     * </pre>
+     */
+    public static String formatComparisonJson(LatencyComparison comparison) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("{\"thresholdPercent\":").append(comparison.getThresholdPercent());
+        sb.append(",\"alpha\":").append(comparison.getAlpha());
+        sb.append(",\"regressions\":").append(comparison.hasRegressions());
+        sb.append(",\"total\":");
+        appendComparisonJson(sb, comparison.getTotal());
+        sb.append(",\"events\":{");
+
+        boolean first = true;
+        for (LatencyComparison.EventComparison event : comparison.getEvents()) {
+            if (!first) {
+                sb.append(",");
+            }
+            sb.append(Json.quote(event.getName())).append(":");
+            appendComparisonJson(sb, event);
+            first = false;
+        }
+
+        sb.append("}}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Formats rolling metrics as a dashboard: request rate, errors and total
+     * duration for each window, then per-event percentiles over the last
+     * minute.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * TOP: 2024-01-15T10:00:00Z
+     * ──────────────────────────────────────────────────────────────────────
+     * WINDOW    REQUESTS      RATE   ERRORS     P50     P99     MAX
+     * 1m            6000   100.0/s       12   141ms   188ms   251ms
+     * 5m           29410    98.0/s       40   141ms   190ms   320ms
+     * 15m          86020    95.6/s      131   142ms   196ms   412ms
+     * ──────────────────────────────────────────────────────────────────────
+     * EVENT (1m)               COUNT      MEAN     P50     P90     P99     MAX
+     * AUTH_CHECK                6000    12.3ms    12ms    15ms    21ms    40ms
+     * DB_QUERY                  6000   118.9ms   120ms   131ms   160ms   212ms
+     * </pre>
+     */
+    public static String formatTop(RollingMetrics metrics) {
+        StringBuilder sb = new StringBuilder();
+        RollingMetrics.Snapshot[] snapshots = new RollingMetrics.Snapshot[RollingMetrics.Window.values().length];
+        for (RollingMetrics.Window window : RollingMetrics.Window.values()) {
+            snapshots[window.ordinal()] = metrics.snapshot(window);
+        }
+
+        sb.append("TOP: ").append(Instant.ofEpochMilli(snapshots[0].getTime())).append("\n");
+        sb.append(SEPARATOR).append("\n");
+        sb.append(String.format(WINDOW_FORMAT, "WINDOW", "REQUESTS", "RATE", "ERRORS", "P50", "P99", "MAX"));
+        for (RollingMetrics.Snapshot snapshot : snapshots) {
+            RollingMetrics.Distribution total = snapshot.getTotalDuration();
+            sb.append(String.format(WINDOW_FORMAT,
+                    snapshot.getWindow().getLabel(),
+                    snapshot.getRequests(),
+                    String.format(Locale.ROOT, "%.1f/s", snapshot.getRequestsPerSecond()),
+                    snapshot.getErrors(),
+                    total.getPercentile(50) + "ms",
+                    total.getPercentile(99) + "ms",
+                    total.getMax() + "ms"));
+        }
+
+        sb.append(SEPARATOR).append("\n");
+        RollingMetrics.Snapshot last = snapshots[0];
+        sb.append(String.format(ROW_FORMAT, "EVENT (" + last.getWindow().getLabel() + ")", "COUNT", "MEAN", "P50", "P90",
+                "P99", "MAX"));
+        if (last.getEvents().isEmpty()) {
+            sb.append("(no events)\n");
+        }
+        for (Map.Entry<String, RollingMetrics.Distribution> entry : last.getEvents().entrySet()) {
+            RollingMetrics.Distribution events = entry.getValue();
+            sb.append(String.format(ROW_FORMAT,
+                    entry.getKey(),
+                    events.getCount(),
+                    String.format(Locale.ROOT, "%.1fms", events.getMean()),
+                    events.getPercentile(50) + "ms",
+                    events.getPercentile(90) + "ms",
+                    events.getPercentile(99) + "ms",
+                    events.getMax() + "ms"));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats the metadata values with the most time in an event. ERROR is
+     * how much a total may be overestimated.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * TOP table BY DB_QUERY TIME
+     * ──────────────────────────────────────────────────────────────────────
+     * VALUE                                TOTAL   SHARE     ERROR
+     * orders                             48210ms   61.2%       0ms
+     * users                              20113ms   25.5%       0ms
+     * </pre>
+     */
+    public static String formatHeavyHitters(String eventName, String metadataKey,
+            List<HeavyHitters.HeavyHitter> hitters) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("TOP ").append(metadataKey).append(" BY ").append(eventName).append(" TIME\n");
+        sb.append(SEPARATOR).append("\n");
+        sb.append(String.format(HITTER_FORMAT, "VALUE", "TOTAL", "SHARE", "ERROR"));
+        if (hitters.isEmpty()) {
+            sb.append("(no values)\n");
+        }
+        for (HeavyHitters.HeavyHitter hitter : hitters) {
+            sb.append(String.format(HITTER_FORMAT,
+                    hitter.getValue(),
+                    hitter.getTotal() + "ms",
+                    String.format(Locale.ROOT, "%.1f%%", hitter.getShare()),
+                    hitter.getError() + "ms"));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats an event's latency bands with the trace IDs sampled in each.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * EXEMPLARS: DB_QUERY
+     * ──────────────────────────────────────────────────────────────────────
+     * BAND                  SEEN  EXEMPLARS
+     * 8-15ms                9120  00f067aa0ba902b7 (12ms), 00f067aa0ba902c1 (9ms)
+     * 512-1023ms              14  00f067aa0ba90311 (730ms)
+     * </pre>
+     */
+    public static String formatExemplars(String eventName, List<ExemplarSampler.Band> bands) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("EXEMPLARS: ").append(eventName).append("\n");
+        sb.append(SEPARATOR).append("\n");
+        sb.append(String.format(EXEMPLAR_FORMAT, "BAND", "SEEN", "EXEMPLARS"));
+        if (bands.isEmpty()) {
+            sb.append("(no exemplars)\n");
+        }
+        for (ExemplarSampler.Band band : bands) {
+            StringBuilder exemplars = new StringBuilder();
+            for (ExemplarSampler.Exemplar exemplar : band.getExemplars()) {
+                if (exemplars.length() > 0) {
+                    exemplars.append(", ");
+                }
+                exemplars.append(exemplar.getTraceId()).append(" (").append(exemplar.getValue()).append("ms)");
+            }
+            sb.append(String.format(EXEMPLAR_FORMAT,
+                    ExemplarSampler.bandLabel(band.getIndex()), band.getCount(), exemplars));
+        }
+        return sb.toString();
+    }
+
+    private static void appendComparisonRow(StringBuilder sb, LatencyComparison.EventComparison event) {
+        sb.append(String.format(COMPARISON_FORMAT,
+                event.getName(),
+                event.getBaseline().getPercentile(50) + " → " + event.getCandidate().getPercentile(50) + "ms",
+                formatChange(event.getChangePercent(50)),
+                event.getBaseline().getPercentile(99) + " → " + event.getCandidate().getPercentile(99) + "ms",
+                formatChange(event.getChangePercent(99)),
+                Double.isNaN(event.getPValue()) ? "-" : String.format(Locale.ROOT, "%.4f", event.getPValue()),
+                event.getStatus()));
+    }
+
+    private static void appendComparisonJson(StringBuilder sb, LatencyComparison.EventComparison event) {
+        sb.append("{\"status\":").append(Json.quote(event.getStatus().name()));
+        sb.append(",\"pValue\":").append(Double.isNaN(event.getPValue()) ? "null"
+                : String.format(Locale.ROOT, "%.6f", event.getPValue()));
+        sb.append(",\"baseline\":");
+        appendJson(sb, event.getBaseline());
+        sb.append(",\"candidate\":");
+        appendJson(sb, event.getCandidate());
+        sb.append("}");
+    }
+
+    private static String formatChange(double percent) {
+        if (Double.isNaN(percent)) {
+            return "-";
+        }
+        return String.format(Locale.ROOT, "%+.1f%%", percent);
+    }
+
+    private static void appendRow(StringBuilder sb, String name, LatencyHistogram histogram) {
+        sb.append(String.format(ROW_FORMAT,
+                name,
+                histogram.getCount(),
+                String.format(Locale.ROOT, "%.1fms", histogram.getMean()),
+                histogram.getPercentile(50) + "ms",
+                histogram.getPercentile(90) + "ms",
+                histogram.getPercentile(99) + "ms",
+                histogram.getMax() + "ms"));
+    }
+
+    private static void appendJson(StringBuilder sb, LatencyHistogram histogram) {
+        sb.append("{\"count\":").append(histogram.getCount());
+        sb.append(",\"mean\":").append(String.format(Locale.ROOT, "%.3f", histogram.getMean()));
+        sb.append(",\"p50\":").append(histogram.getPercentile(50));
+        sb.append(",\"p90\":").append(histogram.getPercentile(90));
+        sb.append(",\"p99\":").append(histogram.getPercentile(99));
+        sb.append(",\"max\":").append(histogram.getMax());
+        sb.append("}");
+    }
+}
@@ -2,8 +2,14 @@ package io.reqtracer.cli;
 
 import io.reqtracer.core.Trace;
 import io.reqtracer.core.TraceEvent;
+import io.reqtracer.core.TraceSpan;
+import io.reqtracer.stats.StitchedTrace;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Formats trace timelines for human-readable output.
@@ -11,11 +17,21 @@ import java.util.List;
  * Supports two modes:
  * - Normal: Multi-line format with event details and metadata
  * - Compact: Single-line arrow-separated format
+ * <p>
+ * Two traces can also be diffed side by side with {@link #formatDiff}, and
+ * a trace's spans drawn as a waterfall with {@link #formatWaterfall}, or a
+ * request's traces from several services with {@link #formatStitched}.
  */
 public class TimelineFormatter {
 
     private static final String SEPARATOR = "─────────────────────────";
     private static final String ARROW = " → ";
+    private static final String DIFF_SEPARATOR = "──────────────────────────────────────────────────";
+    private static final String DIFF_FORMAT = "%-20s %9s %9s %9s%n";
+    private static final String WATERFALL_FORMAT = "%-24s %7s  %-30s %7s %7s%n";
+    private static final int WATERFALL_WIDTH = 30;
+    private static final String STITCHED_FORMAT = "%-24s %7s  %-30s %7s %7s %7s  %s%n";
+    private static final String SERVICE_FORMAT = "%-24s %9s %7s%n";
 
     /**
      * Formats trace in normal multi-line mode.
@@ -112,4 +128,210 @@ public class TimelineFormatter {
         sb.append("\n");
         return sb.toString();
     }
+
+    /**
+     * Formats two traces side by side, aligning events by name. The k-th
+     * occurrence of a name in one trace is matched with the k-th occurrence
+     * in the other; events present in only one trace show "-" on the other
+     * side.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * DIFF: req-123 vs req-456
+     * ──────────────────────────────────────────────────
+     * EVENT                        A         B      DIFF
+     * REQUEST_RECEIVED           0ms       0ms       0ms
+     * AUTH_CHECK                12ms      14ms      +2ms
+     * DB_QUERY                 120ms     310ms    +190ms
+     * CACHE_MISS                   -       4ms         -
+     * ──────────────────────────────────────────────────
+     * TOTAL                    143ms     336ms    +193ms
+     * </pre>
+     */
+    public static String formatDiff(Trace a, Trace b) {
+        if (a == null || b == null) {
+            return "No trace found";
+        }
+
+        List<TraceEvent> left = a.getEvents();
+        List<TraceEvent> right = b.getEvents();
+        TraceEvent[] matched = new TraceEvent[left.size()];
+        boolean[] used = new boolean[right.size()];
+
+        // Pair the k-th occurrence of each name on both sides
+        Map<String, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < right.size(); i++) {
+            positions.computeIfAbsent(right.get(i).getName(), n -> new ArrayList<>()).add(i);
+        }
+        Map<String, Integer> seen = new HashMap<>();
+        for (int i = 0; i < left.size(); i++) {
+            String name = left.get(i).getName();
+            int occurrence = seen.merge(name, 1, Integer::sum) - 1;
+            List<Integer> candidates = positions.get(name);
+            if (candidates != null && occurrence < candidates.size()) {
+                int j = candidates.get(occurrence);
+                matched[i] = right.get(j);
+                used[j] = true;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("DIFF: ").append(a.getTraceId()).append(" vs ").append(b.getTraceId()).append("\n");
+        sb.append(DIFF_SEPARATOR).append("\n");
+        sb.append(String.format(DIFF_FORMAT, "EVENT", "A", "B", "DIFF"));
+
+        if (left.isEmpty() && right.isEmpty()) {
+            sb.append("(no events)\n");
+        }
+        for (int i = 0; i < left.size(); i++) {
+            TraceEvent event = left.get(i);
+            appendDiffRow(sb, event.getName(), event.getDelta(), matched[i] == null ? null : matched[i].getDelta());
+        }
+        for (int j = 0; j < right.size(); j++) {
+            if (!used[j]) {
+                sb.append(String.format(DIFF_FORMAT, right.get(j).getName(), "-",
+                        right.get(j).getDelta() + "ms", "-"));
+            }
+        }
+
+        sb.append(DIFF_SEPARATOR).append("\n");
+        appendDiffRow(sb, "TOTAL", a.getTotalDuration(), b.getTotalDuration());
+
+        return sb.toString();
+    }
+
+    /**
+     * Formats a trace's spans as an indented waterfall. Each row shows when
+     * the span started relative to the trace, a bar scaled to the trace
+     * duration, and its total and self time (total minus nested spans).
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * SPANS: req-123
+     * ──────────────────────────────────────────────────
+     * SPAN                       START  WATERFALL                        TOTAL    SELF
+     * HANDLE                      +0ms  ██████████████████████████████   143ms    15ms
+     *   AUTH_CHECK                +2ms  ██                                 8ms     8ms
+     *   DB_QUERY                 +12ms     ████████████████████████      120ms   120ms
+     * ──────────────────────────────────────────────────
+     * TOTAL: 143ms
+     * </pre>
+     */
+    public static String formatWaterfall(Trace trace) {
+        if (trace == null) {
+            return "No trace found";
+        }
+
+        List<TraceSpan> spans = trace.getSpans();
+        long range = trace.getTotalDuration();
+        if (!trace.isEnded()) {
+            for (TraceSpan span : spans) {
+                range = Math.max(range, (span.isEnded() ? span.getEndTime() : span.getStartTime())
+                        - trace.getStartTime());
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("SPANS: ").append(trace.getTraceId()).append("\n");
+        sb.append(DIFF_SEPARATOR).append("\n");
+
+        if (spans.isEmpty()) {
+            sb.append("(no spans)\n");
+        } else {
+            sb.append(String.format(WATERFALL_FORMAT, "SPAN", "START", "WATERFALL", "TOTAL", "SELF"));
+            for (TraceSpan span : spans) {
+                appendWaterfallRow(sb, span, 0, trace.getStartTime(), Math.max(1, range));
+            }
+        }
+
+        sb.append(DIFF_SEPARATOR).append("\n");
+        sb.append("TOTAL: ").append(trace.getTotalDuration()).append("ms\n");
+
+        return sb.toString();
+    }
+
+    /**
+     * Formats a request stitched across services as a waterfall of each
+     * service's trace on the root trace's clock, followed by where the
+     * end-to-end time went. NET is the time of the call into a trace not
+     * spent in it.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * STITCHED: req-123 (3 traces, 3 services)
+     * ──────────────────────────────────────────────────
+     * SERVICE                    START  WATERFALL                        TOTAL    SELF     NET  TRACE
+     * gateway                     +0ms  ██████████████████████████████   150ms    20ms     0ms  req-123
+     *   orders                   +12ms    ████████████████████████       120ms    70ms    10ms  ord-9
+     *     payments               +50ms           ████████                 40ms    40ms    10ms  pay-4
+     * ──────────────────────────────────────────────────
+     * gateway                       20ms   13.3%
+     * orders                        70ms   46.7%
+     * payments                      40ms   26.7%
+     * network                       20ms   13.3%
+     * ──────────────────────────────────────────────────
+     * TOTAL: 150ms
+     * </pre>
+     */
+    public static String formatStitched(StitchedTrace stitched) {
+        StringBuilder sb = new StringBuilder();
+        long origin = stitched.getRoot().getStartTime();
+        long range = Math.max(1, stitched.getDuration());
+
+        sb.append("STITCHED: ").append(stitched.getRoot().getTrace().getTraceId())
+                .append(" (").append(stitched.getSegments().size()).append(" traces, ")
+                .append(stitched.getServiceCount()).append(" services)\n");
+        sb.append(DIFF_SEPARATOR).append("\n");
+        sb.append(String.format(STITCHED_FORMAT, "SERVICE", "START", "WATERFALL", "TOTAL", "SELF", "NET", "TRACE"));
+        for (StitchedTrace.Segment segment : stitched.getSegments()) {
+            long offset = segment.getStartTime() - origin;
+            int from = (int) Math.min(WATERFALL_WIDTH - 1, Math.max(0, offset * WATERFALL_WIDTH / range));
+            int length = (int) Math.max(1,
+                    Math.min(WATERFALL_WIDTH - from, segment.getDuration() * WATERFALL_WIDTH / range));
+            sb.append(String.format(STITCHED_FORMAT, "  ".repeat(segment.getDepth()) + segment.getService(),
+                    (offset >= 0 ? "+" : "") + offset + "ms", " ".repeat(from) + "█".repeat(length),
+                    segment.getDuration() + "ms", segment.getSelfTime() + "ms", segment.getNetworkTime() + "ms",
+                    segment.getTrace().getTraceId()));
+        }
+
+        sb.append(DIFF_SEPARATOR).append("\n");
+        for (Map.Entry<String, Long> entry : stitched.getServiceTimes().entrySet()) {
+            appendServiceRow(sb, entry.getKey(), entry.getValue(), range);
+        }
+        appendServiceRow(sb, "network", stitched.getNetworkTime(), range);
+        sb.append(DIFF_SEPARATOR).append("\n");
+        sb.append("TOTAL: ").append(stitched.getDuration()).append("ms\n");
+
+        return sb.toString();
+    }
+
+    private static void appendServiceRow(StringBuilder sb, String name, long time, long total) {
+        sb.append(String.format(SERVICE_FORMAT, name, time + "ms",
+                String.format(Locale.ROOT, "%.1f%%", time * 100.0 / total)));
+    }
+
+    private static void appendWaterfallRow(StringBuilder sb, TraceSpan span, int depth, long origin, long range) {
+        long offset = span.getStartTime() - origin;
+        int from = (int) Math.min(WATERFALL_WIDTH - 1, Math.max(0, offset * WATERFALL_WIDTH / range));
+        int length = (int) Math.max(1, Math.min(WATERFALL_WIDTH - from, span.getDuration() * WATERFALL_WIDTH / range));
+        String bar = " ".repeat(from) + "█".repeat(length);
+
+        sb.append(String.format(WATERFALL_FORMAT, "  ".repeat(depth) + span.getName(), "+" + offset + "ms", bar,
+                span.isEnded() ? span.getDuration() + "ms" : "open", span.getSelfTime() + "ms"));
+        for (TraceSpan child : span.getChildren()) {
+            appendWaterfallRow(sb, child, depth + 1, origin, range);
+        }
+    }
+
+    private static void appendDiffRow(StringBuilder sb, String name, long left, Long right) {
+        if (right == null) {
+            sb.append(String.format(DIFF_FORMAT, name, left + "ms", "-", "-"));
+            return;
+        }
+        long diff = right - left;
+        sb.append(String.format(DIFF_FORMAT, name, left + "ms", right + "ms", (diff > 0 ? "+" : "") + diff + "ms"));
+    }
 }
@@ -1,10 +1,48 @@
 package io.reqtracer.cli;
 
 import io.reqtracer.Tracer;
+import io.reqtracer.core.Clock;
+import io.reqtracer.core.FixedClock;
 import io.reqtracer.core.Trace;
+import io.reqtracer.export.ChromeTraceExporter;
+import io.reqtracer.export.FlameGraph;
+import io.reqtracer.export.PerfettoTraceExporter;
+import io.reqtracer.export.TraceExporter;
+import io.reqtracer.listener.ExemplarSampler;
+import io.reqtracer.listener.OutlierDetector;
+import io.reqtracer.listener.TraceListener;
+import io.reqtracer.stats.HeavyHitters;
+import io.reqtracer.stats.LatencyComparison;
+import io.reqtracer.stats.RollingMetrics;
+import io.reqtracer.stats.ShapeStats;
+import io.reqtracer.stats.ShapeSummary;
+import io.reqtracer.stats.StitchedTrace;
+import io.reqtracer.stats.TraceStitcher;
+import io.reqtracer.stats.TraceFilter;
+import io.reqtracer.stats.TraceStats;
+import io.reqtracer.storage.ColumnarTraceArchive;
+import io.reqtracer.storage.InMemoryTraceStore;
+import io.reqtracer.storage.TraceFile;
 import io.reqtracer.storage.TraceStore;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Command-line interface for trace inspection.
@@ -14,7 +52,26 @@ import java.util.Optional;
  * <pre>
  * java -jar req-tracer.jar inspect &lt;traceId&gt;
  * java -jar req-tracer.jar inspect &lt;traceId&gt; --compact
+ * java -jar req-tracer.jar inspect &lt;traceId&gt; --waterfall
+ * java -jar req-tracer.jar export &lt;file&gt; [--format chrome|perfetto] [--from &lt;time&gt;] [--to &lt;time&gt;]
+ * java -jar req-tracer.jar stats [--format table|json] [--by-shape]
+ * java -jar req-tracer.jar stats --archive &lt;file&gt; [--from &lt;time&gt;] [--to &lt;time&gt;]
+ * java -jar req-tracer.jar flame [--format folded|svg] [--output &lt;file&gt;]
+ * java -jar req-tracer.jar compare &lt;traceIdA&gt; &lt;traceIdB&gt;
+ * java -jar req-tracer.jar compare --baseline &lt;file&gt; --candidate &lt;file&gt; [--threshold N] [--alpha A]
+ * java -jar req-tracer.jar compare --baseline-window &lt;from&gt;..&lt;to&gt; --candidate-window &lt;from&gt;..&lt;to&gt;
+ * java -jar req-tracer.jar archive &lt;file&gt; [--block-size N]
+ * java -jar req-tracer.jar search &lt;clause&gt;... [--limit N]
+ * java -jar req-tracer.jar outliers [--rescan] [--factor F]
+ * java -jar req-tracer.jar top [--interval S] [--iterations N]
+ * java -jar req-tracer.jar stitch [&lt;service&gt;=]&lt;file&gt;... [--trace &lt;traceId&gt;]
+ * java -jar req-tracer.jar hot &lt;event&gt; &lt;key&gt; [--top N] [--window M]
+ * java -jar req-tracer.jar exemplars [&lt;event&gt;] [--band &lt;ms&gt;]
  * </pre>
+ * <p>
+ * Every command reads from the configured {@link Tracer} store by default, or
+ * from a trace file written by {@link TraceFile} when given
+ * {@code --file <path>}.
  */
 public class TraceInspector {
 
@@ -28,6 +85,28 @@ public class TraceInspector {
 
         if ("inspect".equals(command)) {
             handleInspect(args);
+        } else if ("export".equals(command)) {
+            handleExport(args);
+        } else if ("stats".equals(command)) {
+            handleStats(args);
+        } else if ("flame".equals(command)) {
+            handleFlame(args);
+        } else if ("compare".equals(command)) {
+            handleCompare(args);
+        } else if ("archive".equals(command)) {
+            handleArchive(args);
+        } else if ("search".equals(command)) {
+            handleSearch(args);
+        } else if ("outliers".equals(command)) {
+            handleOutliers(args);
+        } else if ("top".equals(command)) {
+            handleTop(args);
+        } else if ("stitch".equals(command)) {
+            handleStitch(args);
+        } else if ("hot".equals(command)) {
+            handleHot(args);
+        } else if ("exemplars".equals(command)) {
+            handleExemplars(args);
         } else {
             System.err.println("Unknown command: " + command);
             printUsage();
@@ -38,14 +117,15 @@ public class TraceInspector {
     private static void handleInspect(String[] args) {
         if (args.length < 2) {
             System.err.println("Error: trace ID required");
-            System.err.println("Usage: trace inspect <traceId> [--compact]");
+            System.err.println("Usage: trace inspect <traceId> [--compact|--waterfall]");
             System.exit(1);
         }
 
         String traceId = args[1];
-        boolean compact = args.length > 2 && "--compact".equals(args[2]);
+        boolean compact = hasFlag(args, "--compact");
+        boolean waterfall = hasFlag(args, "--waterfall");
 
-        TraceStore store = Tracer.getStore();
+        TraceStore store = openStore(args);
         Optional<Trace> traceOpt = store.get(traceId);
 
         if (traceOpt.isEmpty()) {
@@ -54,14 +134,715 @@ public class TraceInspector {
         }
 
         Trace trace = traceOpt.get();
-        String output = compact ? TimelineFormatter.formatCompact(trace) : TimelineFormatter.formatNormal(trace);
+        String output = waterfall ? TimelineFormatter.formatWaterfall(trace)
+                : compact ? TimelineFormatter.formatCompact(trace)
+                : TimelineFormatter.formatNormal(trace);
 
         System.out.print(output);
     }
 
+    private static void handleExport(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Error: output file required");
+            System.err.println("Usage: trace export <file> [--format chrome|perfetto] [--from <time>] [--to <time>]");
+            System.exit(1);
+        }
+
+        String file = args[1];
+        String format = optionValue(args, "--format", "chrome");
+        long from = parseTime(optionValue(args, "--from", null), Long.MIN_VALUE);
+        long to = parseTime(optionValue(args, "--to", null), Long.MAX_VALUE);
+
+        TraceStore store = openStore(args);
+
+        try (OutputStream out = Files.newOutputStream(Paths.get(file));
+                TraceExporter exporter = createExporter(format, out)) {
+            int count = exporter.writeAll(store, from, to);
+            System.out.println("Exported " + count + " traces to " + file);
+        } catch (IOException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void handleStats(String[] args) {
+        String format = optionValue(args, "--format", "table");
+        if (!"table".equals(format) && !"json".equals(format)) {
+            System.err.println("Unknown stats format: " + format);
+            System.exit(1);
+        }
+
+        boolean json = "json".equals(format);
+        boolean byShape = hasFlag(args, "--by-shape");
+
+        String archive = optionValue(args, "--archive", null);
+        String file = optionValue(args, "--file", null);
+        if (archive != null) {
+            if (byShape) {
+                System.err.println("--by-shape is not supported with --archive");
+                System.exit(1);
+            }
+            long from = parseTime(optionValue(args, "--from", null), Long.MIN_VALUE);
+            long to = parseTime(optionValue(args, "--to", null), Long.MAX_VALUE);
+            try (ColumnarTraceArchive columns = ColumnarTraceArchive.open(Paths.get(archive))) {
+                System.out.print(formatStats(TraceStats.compute(columns, from, to), json));
+            } catch (IOException e) {
+                System.err.println("Cannot read trace archive: " + e.getMessage());
+                System.exit(1);
+            }
+        } else if (file != null) {
+            // Stream the file rather than loading it, so large dumps fit in memory
+            try (Stream<Trace> traces = TraceFile.stream(Paths.get(file))) {
+                System.out.print(byShape ? formatShapes(ShapeStats.compute(traces), json)
+                        : formatStats(TraceStats.compute(traces), json));
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Cannot read trace file: " + e.getMessage());
+                System.exit(1);
+            }
+        } else {
+            TraceStore store = Tracer.getStore();
+            System.out.print(byShape ? formatShapes(ShapeStats.compute(store), json)
+                    : formatStats(TraceStats.compute(store), json));
+        }
+    }
+
+    private static void handleFlame(String[] args) {
+        String format = optionValue(args, "--format", "folded");
+        if (!"folded".equals(format) && !"svg".equals(format)) {
+            System.err.println("Unknown flame format: " + format);
+            System.exit(1);
+        }
+        int width;
+        try {
+            width = Integer.parseInt(optionValue(args, "--width", "1200"));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (width <= 0) {
+            System.err.println("--width must be positive");
+            System.exit(1);
+        }
+        String output = optionValue(args, "--output", null);
+
+        FlameGraph graph;
+        String file = optionValue(args, "--file", null);
+        if (file != null) {
+            try (Stream<Trace> traces = TraceFile.stream(Paths.get(file))) {
+                graph = FlameGraph.build(traces);
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Cannot read trace file: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+        } else {
+            graph = FlameGraph.build(Tracer.getStore());
+        }
+
+        try {
+            if (output == null) {
+                // Flushed by the graph; System.out stays open
+                writeFlame(graph, format, width, new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+                return;
+            }
+            try (Writer out = Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)) {
+                writeFlame(graph, format, width, out);
+            }
+            System.out.println(("svg".equals(format) ? "Drew " : "Folded ") + graph.getTraceCount()
+                    + " traces into " + output);
+        } catch (IOException e) {
+            System.err.println("Flame graph failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void writeFlame(FlameGraph graph, String format, int width, Writer out) throws IOException {
+        if ("svg".equals(format)) {
+            graph.writeSvg(out, width);
+        } else {
+            graph.writeFolded(out);
+        }
+    }
+
+    private static void handleArchive(String[] args) {
+        if (args.length < 2 || args[1].startsWith("--")) {
+            System.err.println("Error: output file required");
+            System.err.println("Usage: trace archive <file> [--block-size N]");
+            System.exit(1);
+        }
+
+        String file = args[1];
+        int blockSize;
+        try {
+            blockSize = Integer.parseInt(optionValue(args, "--block-size",
+                    String.valueOf(ColumnarTraceArchive.DEFAULT_BLOCK_SIZE)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            System.err.println("Usage: trace archive <file> [--block-size N]");
+            System.exit(1);
+            return;
+        }
+        TraceStore store = openStore(args);
+
+        try {
+            int count = ColumnarTraceArchive.write(Paths.get(file), store, blockSize);
+            System.out.println("Archived " + count + " traces to " + file);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Archive failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints matching traces in compact form as they are found. Clauses are
+     * the arguments before the first option; see {@link TraceFilter}.
+     */
+    private static void handleSearch(String[] args) {
+        StringBuilder expression = new StringBuilder();
+        for (int i = 1; i < args.length && !args[i].startsWith("--"); i++) {
+            expression.append(args[i]).append(' ');
+        }
+
+        TraceFilter filter;
+        try {
+            filter = TraceFilter.compile(expression.toString());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid filter: " + e.getMessage());
+            System.err.println("Usage: trace search <clause>... [--limit N]");
+            System.exit(1);
+            return;
+        }
+        long limit;
+        try {
+            limit = Long.parseLong(optionValue(args, "--limit", "100"));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            System.err.println("Usage: trace search <clause>... [--limit N]");
+            System.exit(1);
+            return;
+        }
+        if (limit < 0) {
+            System.err.println("--limit cannot be negative");
+            System.err.println("Usage: trace search <clause>... [--limit N]");
+            System.exit(1);
+        }
+
+        long matches;
+        String file = optionValue(args, "--file", null);
+        if (file != null) {
+            try (Stream<Trace> traces = TraceFile.stream(Paths.get(file))) {
+                matches = filter.search(traces, limit, t -> System.out.print(TimelineFormatter.formatCompact(t)));
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Cannot read trace file: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+        } else {
+            matches = filter.search(Tracer.getStore(), limit,
+                    t -> System.out.print(TimelineFormatter.formatCompact(t)));
+        }
+        System.err.println(matches + (matches == limit ? "+" : "") + " matching traces");
+    }
+
+    /**
+     * Lists traces pinned as outliers. A store without pins, such as one
+     * loaded from a trace file, is scanned in start order with a fresh
+     * {@link OutlierDetector}, as does {@code --rescan}. The scan pins into a
+     * scratch store, so it leaves no pins in the store being listed.
+     */
+    private static void handleOutliers(String[] args) {
+        String factor = optionValue(args, "--factor", String.valueOf(OutlierDetector.DEFAULT_FACTOR));
+        TraceStore store = openStore(args);
+        List<String> pinned = new ArrayList<>(store.listPinnedTraceIds());
+
+        if (pinned.isEmpty() || hasFlag(args, "--rescan")) {
+            // Flag into a scratch store: listing must not leave pins behind
+            InMemoryTraceStore scratch = new InMemoryTraceStore();
+            OutlierDetector detector;
+            try {
+                detector = new OutlierDetector(scratch, Double.parseDouble(factor), Integer.MAX_VALUE);
+            } catch (IllegalArgumentException e) { // includes NumberFormatException
+                System.err.println("Invalid factor: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            store.listTraceIds().stream()
+                    .map(store::get)
+                    .flatMap(Optional::stream)
+                    .sorted(Comparator.comparingLong(Trace::getStartTime))
+                    .forEach(trace -> {
+                        long flagged = detector.getOutlierCount();
+                        scratch.store(trace);
+                        detector.onTraceCompleted(trace);
+                        if (detector.getOutlierCount() == flagged) {
+                            scratch.remove(trace.getTraceId()); // only outliers need to stay pinnable
+                        }
+                    });
+            for (OutlierDetector.Outlier outlier : detector.getOutliers()) {
+                System.out.println(outlier);
+            }
+            System.err.println(detector.getOutlierCount() + " outliers in " + detector.getTraceCount() + " traces");
+            return;
+        }
+
+        for (String traceId : pinned) {
+            store.get(traceId).ifPresent(t -> System.out.print(TimelineFormatter.formatCompact(t)));
+        }
+        System.err.println(pinned.size() + " pinned outliers");
+    }
+
+    /**
+     * Shows 1m/5m/15m rolling metrics from the {@link RollingMetrics}
+     * registered with the {@link Tracer}, redrawn every {@code --interval}
+     * seconds until interrupted or {@code --iterations} frames. A trace file
+     * is replayed into fresh metrics ending at its last trace and drawn once,
+     * since it does not change.
+     */
+    private static void handleTop(String[] args) {
+        double seconds;
+        long iterations;
+        try {
+            seconds = Double.parseDouble(optionValue(args, "--interval", "2"));
+            iterations = Long.parseLong(optionValue(args, "--iterations", String.valueOf(Long.MAX_VALUE)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            System.err.println("Usage: trace top [--interval S] [--iterations N]");
+            System.exit(1);
+            return;
+        }
+        long interval = (long) (seconds * 1000); // NaN becomes 0
+        if (interval <= 0 || iterations <= 0) {
+            System.err.println(iterations <= 0 ? "--iterations must be positive"
+                    : "--interval must be at least 0.001 seconds");
+            System.err.println("Usage: trace top [--interval S] [--iterations N]");
+            System.exit(1);
+            return;
+        }
+
+        String file = optionValue(args, "--file", null);
+        if (file != null) {
+            RollingMetrics metrics = replayFile(file, clock -> new RollingMetrics(clock, RollingMetrics.DEFAULT_ERROR));
+            System.out.print(StatsFormatter.formatTop(metrics));
+            return;
+        }
+
+        RollingMetrics metrics = registered(RollingMetrics.class);
+        for (long i = 0; i < iterations; i++) {
+            if (iterations > 1) {
+                System.out.print("\033[H\033[2J");
+            }
+            System.out.print(StatsFormatter.formatTop(metrics));
+            System.out.flush();
+            if (i + 1 == iterations) {
+                return;
+            }
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ranks the values of a metadata key by their total time in an event,
+     * from the {@link HeavyHitters} registered with the {@link Tracer} over
+     * its own window. A trace file is replayed into a fresh tracker over the
+     * last {@code --window} minutes before its last trace.
+     */
+    private static void handleHot(String[] args) {
+        if (args.length < 3 || args[1].startsWith("--") || args[2].startsWith("--")) {
+            System.err.println("Error: event name and metadata key required");
+            System.err.println("Usage: trace hot <event> <key> [--top N] [--window M]");
+            System.exit(1);
+        }
+        int top;
+        long minutes;
+        try {
+            top = Integer.parseInt(optionValue(args, "--top", "10"));
+            minutes = Long.parseLong(optionValue(args, "--window", "5"));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (top <= 0 || minutes <= 0) {
+            System.err.println("--top and --window must be positive");
+            System.exit(1);
+        }
+
+        String file = optionValue(args, "--file", null);
+        HeavyHitters hitters = file != null
+                ? replayFile(file, clock -> new HeavyHitters(clock, Duration.ofMinutes(minutes),
+                        HeavyHitters.DEFAULT_CAPACITY))
+                : registered(HeavyHitters.class);
+        System.out.print(StatsFormatter.formatHeavyHitters(args[1], args[2], hitters.top(args[1], args[2], top)));
+    }
+
+    /**
+     * Lists an event's latency bands with a few sampled traces each, or with
+     * {@code --band} shows the sampled traces of the band containing that
+     * many milliseconds. Reads the reservoirs of the {@link ExemplarSampler}
+     * registered with the {@link Tracer}, so the traces shown are the ones it
+     * pinned; a trace file is replayed into a fresh sampler. The event
+     * defaults to total trace duration.
+     */
+    private static void handleExemplars(String[] args) {
+        String eventName = args.length > 1 && !args[1].startsWith("--") ? args[1] : ExemplarSampler.TOTAL;
+        String band = optionValue(args, "--band", null);
+        long millis = 0;
+        if (band != null) {
+            try {
+                millis = Long.parseLong(band);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid band: " + band);
+                System.exit(1);
+            }
+        }
+
+        String file = optionValue(args, "--file", null);
+        // Replay against an empty store: listing must not leave pins behind
+        ExemplarSampler sampler = file != null
+                ? replayFile(file, clock -> new ExemplarSampler(new InMemoryTraceStore()))
+                : registered(ExemplarSampler.class);
+
+        if (band == null) {
+            System.out.print(StatsFormatter.formatExemplars(eventName, sampler.getBands(eventName)));
+            return;
+        }
+        TraceStore store = openStore(args);
+        List<ExemplarSampler.Exemplar> exemplars = sampler.getExemplars(eventName, millis);
+        for (ExemplarSampler.Exemplar exemplar : exemplars) {
+            store.get(exemplar.getTraceId()).ifPresent(t -> System.out.print(TimelineFormatter.formatNormal(t)));
+        }
+        System.err.println(exemplars.size() + " exemplars of " + eventName + " in "
+                + ExemplarSampler.bandLabel(ExemplarSampler.band(millis)));
+    }
+
+    /**
+     * Stitches trace files from several nodes into end-to-end requests. Each
+     * file is named by its service ({@code orders=orders.rtf}) or by its file
+     * name. Prints the request containing {@code --trace}, or every request
+     * that crossed more than one trace.
+     */
+    private static void handleStitch(String[] args) {
+        TraceStitcher stitcher = new TraceStitcher();
+        int nodes = 0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                i++; // skip the option's value
+                continue;
+            }
+            int equals = args[i].indexOf('=');
+            String file = equals < 0 ? args[i] : args[i].substring(equals + 1);
+            String service = equals < 0 ? Paths.get(file).getFileName().toString().replaceFirst("\\.[^.]*$", "")
+                    : args[i].substring(0, equals);
+            try {
+                stitcher.add(service, TraceFile.load(Paths.get(file)));
+            } catch (IOException e) {
+                System.err.println("Cannot read trace file: " + e.getMessage());
+                System.exit(1);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: " + e.getMessage());
+                System.exit(1);
+            }
+            nodes++;
+        }
+        if (nodes == 0) {
+            System.err.println("Error: at least one trace file required");
+            System.err.println("Usage: trace stitch [<service>=]<file>... [--trace <traceId>]");
+            System.exit(1);
+        }
+
+        String traceId = optionValue(args, "--trace", null);
+        if (traceId != null) {
+            Optional<StitchedTrace> stitched = stitcher.stitch(traceId);
+            if (stitched.isEmpty()) {
+                System.err.println("Trace not found: " + traceId);
+                System.exit(1);
+            }
+            System.out.print(TimelineFormatter.formatStitched(stitched.get()));
+            return;
+        }
+
+        int count = 0;
+        for (StitchedTrace stitched : stitcher.stitch()) {
+            if (stitched.getSegments().size() > 1) {
+                if (count++ > 0) {
+                    System.out.println();
+                }
+                System.out.print(TimelineFormatter.formatStitched(stitched));
+            }
+        }
+        System.err.println(count + " requests stitched across " + nodes + " nodes");
+    }
+
+    /**
+     * Diffs two traces, or compares two trace populations and exits with
+     * status 2 if a regression is flagged, so the command can gate a build.
+     */
+    private static void handleCompare(String[] args) {
+        if (args.length >= 3 && !args[1].startsWith("--") && !args[2].startsWith("--")) {
+            TraceStore store = openStore(args);
+            Optional<Trace> a = store.get(args[1]);
+            Optional<Trace> b = store.get(args[2]);
+            if (a.isEmpty() || b.isEmpty()) {
+                System.err.println("Trace not found: " + (a.isEmpty() ? args[1] : args[2]));
+                System.exit(1);
+            }
+            System.out.print(TimelineFormatter.formatDiff(a.get(), b.get()));
+            return;
+        }
+
+        String format = optionValue(args, "--format", "table");
+        if (!"table".equals(format) && !"json".equals(format)) {
+            System.err.println("Unknown compare format: " + format);
+            System.exit(1);
+        }
+        double threshold;
+        double alpha;
+        try {
+            threshold = Double.parseDouble(optionValue(args, "--threshold",
+                    String.valueOf(LatencyComparison.DEFAULT_THRESHOLD_PERCENT)));
+            alpha = Double.parseDouble(optionValue(args, "--alpha",
+                    String.valueOf(LatencyComparison.DEFAULT_ALPHA)));
+        } catch (NumberFormatException e) {
+            // Exit status 2 means a regression, so bad input must not look like one
+            System.err.println("Invalid number: " + e.getMessage());
+            System.err.println("Usage: trace compare --baseline <file> --candidate <file> [--threshold N] [--alpha A]");
+            System.exit(1);
+            return;
+        }
+
+        TraceStats baseline;
+        TraceStats candidate;
+        String baselineFile = optionValue(args, "--baseline", null);
+        String candidateFile = optionValue(args, "--candidate", null);
+        String baselineWindow = optionValue(args, "--baseline-window", null);
+        String candidateWindow = optionValue(args, "--candidate-window", null);
+        if (baselineFile != null && candidateFile != null) {
+            baseline = statsOfFile(baselineFile, Long.MIN_VALUE, Long.MAX_VALUE);
+            candidate = statsOfFile(candidateFile, Long.MIN_VALUE, Long.MAX_VALUE);
+        } else if (baselineWindow != null && candidateWindow != null) {
+            long[] before = parseWindow(baselineWindow);
+            long[] after = parseWindow(candidateWindow);
+            String file = optionValue(args, "--file", null);
+            if (file != null) {
+                baseline = statsOfFile(file, before[0], before[1]);
+                candidate = statsOfFile(file, after[0], after[1]);
+            } else {
+                TraceStore store = Tracer.getStore();
+                baseline = TraceStats.compute(inWindow(store, before));
+                candidate = TraceStats.compute(inWindow(store, after));
+            }
+        } else {
+            System.err.println("Error: two trace IDs, --baseline/--candidate or --baseline-window/--candidate-window"
+                    + " required");
+            System.err.println("Usage: trace compare --baseline <file> --candidate <file> [--threshold N]");
+            System.exit(1);
+            return;
+        }
+
+        LatencyComparison comparison;
+        try {
+            comparison = LatencyComparison.compare(baseline, candidate, threshold, alpha);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        System.out.print("json".equals(format) ? StatsFormatter.formatComparisonJson(comparison)
+                : StatsFormatter.formatComparison(comparison));
+        if (comparison.hasRegressions()) {
+            System.exit(2);
+        }
+    }
+
+    private static TraceStats statsOfFile(String file, long from, long to) {
+        try (Stream<Trace> traces = TraceFile.stream(Paths.get(file))) {
+            return TraceStats.compute(traces.filter(t -> t.getStartTime() >= from && t.getStartTime() <= to));
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Cannot read trace file: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static Stream<Trace> inWindow(TraceStore store, long[] window) {
+        return store.listTraceIds().stream()
+                .map(store::get)
+                .flatMap(Optional::stream)
+                .filter(t -> t.getStartTime() >= window[0] && t.getStartTime() <= window[1]);
+    }
+
+    /**
+     * Parses a {@code <from>..<to>} time window; either bound may be empty.
+     */
+    private static long[] parseWindow(String value) {
+        int separator = value.indexOf("..");
+        if (separator < 0) {
+            System.err.println("Invalid time window (expected <from>..<to>): " + value);
+            System.exit(1);
+        }
+        String from = value.substring(0, separator);
+        String to = value.substring(separator + 2);
+        return new long[] {
+                parseTime(from.isEmpty() ? null : from, Long.MIN_VALUE),
+                parseTime(to.isEmpty() ? null : to, Long.MAX_VALUE) };
+    }
+
+    private static String formatStats(TraceStats stats, boolean json) {
+        return json ? StatsFormatter.formatJson(stats) : StatsFormatter.formatTable(stats);
+    }
+
+    private static String formatShapes(List<ShapeSummary> shapes, boolean json) {
+        return json ? StatsFormatter.formatShapesJson(shapes) : StatsFormatter.formatShapes(shapes);
+    }
+
+    private static TraceExporter createExporter(String format, OutputStream out) throws IOException {
+        if ("chrome".equals(format)) {
+            return new ChromeTraceExporter(out);
+        }
+        if ("perfetto".equals(format)) {
+            return new PerfettoTraceExporter(out);
+        }
+        System.err.println("Unknown export format: " + format);
+        System.exit(1);
+        return null;
+    }
+
+    /**
+     * Returns the store named by {@code --file}, or the configured
+     * {@link Tracer} store if no file is given.
+     */
+    private static TraceStore openStore(String[] args) {
+        String file = optionValue(args, "--file", null);
+        if (file == null) {
+            return Tracer.getStore();
+        }
+        try {
+            return TraceFile.load(Paths.get(file));
+        } catch (IOException e) {
+            System.err.println("Cannot read trace file: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the first listener of the given type registered with the
+     * {@link Tracer}, exiting if there is none.
+     */
+    private static <T extends TraceListener> T registered(Class<T> type) {
+        for (TraceListener listener : Tracer.getListeners()) {
+            if (type.isInstance(listener)) {
+                return type.cast(listener);
+            }
+        }
+        System.err.println("No " + type.getSimpleName() + " registered with the tracer;"
+                + " add one with Tracer.addListener, or read a trace file with --file");
+        System.exit(1);
+        return null;
+    }
+
+    /**
+     * Feeds a trace file to a new listener in end order, on a clock that
+     * follows the replay, as if the listener had been registered while the
+     * traces were recorded. Windows therefore end at the file's last trace.
+     */
+    private static <T extends TraceListener> T replayFile(String file, Function<Clock, T> factory) {
+        FixedClock clock = new FixedClock(0);
+        T listener = factory.apply(clock);
+        try (Stream<Trace> traces = TraceFile.stream(Paths.get(file))) {
+            traces.sorted(Comparator.comparingLong(TraceInspector::completedAt)).forEachOrdered(trace -> {
+                clock.setTime(completedAt(trace));
+                listener.onTraceCompleted(trace);
+            });
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Cannot read trace file: " + e.getMessage());
+            System.exit(1);
+        }
+        return listener;
+    }
+
+    private static long completedAt(Trace trace) {
+        return trace.isEnded() ? trace.getEndTime() : trace.getStartTime();
+    }
+
+    private static boolean hasFlag(String[] args, String flag) {
+        return Arrays.asList(args).contains(flag);
+    }
+
+    /**
+     * Returns the value following the given option flag, or the default if
+     * the flag is absent.
+     */
+    private static String optionValue(String[] args, String option, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Parses a time bound given as epoch milliseconds or an ISO-8601 instant
+     * (e.g. 2024-01-15T10:00:00Z).
+     */
+    private static long parseTime(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            try {
+                return Instant.parse(value).toEpochMilli();
+            } catch (DateTimeParseException e2) {
+                System.err.println("Invalid time: " + value);
+                System.exit(1);
+                return defaultValue;
+            }
+        }
+    }
+
     private static void printUsage() {
         System.err.println("Usage:");
         System.err.println("  trace inspect <traceId>           - Display trace timeline");
         System.err.println("  trace inspect <traceId> --compact - Display compact timeline");
+        System.err.println("  trace inspect <traceId> --waterfall - Display span waterfall");
+        System.err.println("  trace export <file> [--format chrome|perfetto] [--from <time>] [--to <time>]");
+        System.err.println("                                    - Export traces for chrome://tracing or Perfetto");
+        System.err.println("  trace stats [--format table|json] - Per-event latency percentiles");
+        System.err.println("  trace stats --by-shape            - Latency percentiles per event sequence");
+        System.err.println("  trace stats --archive <file> [--from <time>] [--to <time>]");
+        System.err.println("                                    - Percentiles from a columnar archive");
+        System.err.println("  trace flame [--format folded|svg] [--output <file>]");
+        System.err.println("                                    - Flame graph of time by shape and event");
+        System.err.println("  trace compare <traceIdA> <traceIdB> - Diff two traces side by side");
+        System.err.println("  trace compare --baseline <file> --candidate <file>");
+        System.err.println("  trace compare --baseline-window <from>..<to> --candidate-window <from>..<to>");
+        System.err.println("                [--threshold N] [--alpha A] [--format table|json]");
+        System.err.println("                                    - Flag latency regressions (exit status 2)");
+        System.err.println("  trace archive <file> [--block-size N]");
+        System.err.println("                                    - Write a columnar archive for analytical scans");
+        System.err.println("  trace search <clause>... [--limit N]");
+        System.err.println("                                    - Find traces, e.g. event:DB_QUERY>100 user=john");
+        System.err.println("  trace outliers [--rescan] [--factor F]");
+        System.err.println("                                    - Traces flagged as abnormally slow");
+        System.err.println("  trace top [--interval S] [--iterations N]");
+        System.err.println("                                    - Live 1m/5m/15m request rate, errors and percentiles");
+        System.err.println("  trace stitch [<service>=]<file>... [--trace <traceId>]");
+        System.err.println("                                    - Join trace dumps from several nodes per request");
+        System.err.println("  trace hot <event> <key> [--top N] [--window M]");
+        System.err.println("                                    - Values with the most event time, e.g. hot DB_QUERY table");
+        System.err.println("  trace exemplars [<event>] [--band <ms>]");
+        System.err.println("                                    - Sample traces per latency band; --band shows them");
+        System.err.println();
+        System.err.println("Options:");
+        System.err.println("  --file <path>                     - Read traces from a trace file");
     }
 }
@@ -0,0 +1,47 @@
+package io.reqtracer.core;
+
+/**
+ * Handle of an open span, closed with try-with-resources:
+ *
+ * <pre>
+ * try (Span s = Tracer.span("DB_QUERY")) {
+ *     ...
+ * }
+ * </pre>
+ * <p>
+ * Closing a span also closes any spans still open inside it. Handles are
+ * reused per nesting depth so that opening and closing spans does not
+ * allocate; a handle must not be used after it is closed.
+ */
+public final class Span implements AutoCloseable {
+
+    private static final Span NOOP = new Span(null, 0);
+
+    private final SpanRecorder recorder; // null for the no-op handle
+    private final int depth;
+
+    Span(SpanRecorder recorder, int depth) {
+        this.recorder = recorder;
+        this.depth = depth;
+    }
+
+    /**
+     * Returns a handle whose close does nothing, for traces that are not
+     * recorded.
+     */
+    public static Span noop() {
+        return NOOP;
+    }
+
+    /**
+     * Ends this span at the current time.
+     */
+    @Override
+    public void close() {
+        // The no-op handle is shared by every unsampled trace, so it must not
+        // touch a recorder and its lock
+        if (recorder != null) {
+            recorder.close(depth);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.reqtracer.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Records the spans of one trace in parallel primitive arrays.
+ * <p>
+ * Opening a span writes one slot and pushes its index on a stack of open
+ * spans; closing pops. Arrays grow by doubling and {@link Span} handles are
+ * cached per depth, so after warm-up neither operation allocates. The
+ * {@link TraceSpan} tree is only built when read.
+ */
+final class SpanRecorder {
+
+    private static final long OPEN = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final Clock clock;
+    private String[] names = new String[INITIAL_CAPACITY];
+    private long[] starts = new long[INITIAL_CAPACITY];
+    private long[] ends = new long[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int count;
+
+    private int[] open = new int[INITIAL_CAPACITY]; // indices of open spans, outermost first
+    private int depth;
+    private Span[] handles = new Span[INITIAL_CAPACITY];
+
+    SpanRecorder(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Rebuilds a recorder from a span tree, e.g. when restoring a trace. All
+     * spans are treated as closed for recording purposes.
+     */
+    static SpanRecorder of(List<TraceSpan> roots, Clock clock) {
+        SpanRecorder recorder = new SpanRecorder(clock);
+        for (TraceSpan root : roots) {
+            recorder.add(root, -1);
+        }
+        return recorder;
+    }
+
+    synchronized Span open(String name) {
+        Objects.requireNonNull(name, "Span name cannot be null");
+        int index = append(name, clock.nowMillis(), OPEN, depth == 0 ? -1 : open[depth - 1]);
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+            handles = Arrays.copyOf(handles, depth * 2);
+        }
+        open[depth] = index;
+        Span handle = handles[depth];
+        if (handle == null) {
+            handle = new Span(this, depth);
+            handles[depth] = handle;
+        }
+        depth++;
+        return handle;
+    }
+
+    /**
+     * Closes the span at the given depth and any spans open inside it. Does
+     * nothing if it is already closed.
+     */
+    synchronized void close(int spanDepth) {
+        if (spanDepth >= depth) {
+            return;
+        }
+        long now = clock.nowMillis();
+        while (depth > spanDepth) {
+            ends[open[--depth]] = now;
+        }
+    }
+
+    /**
+     * Closes every open span at the given time.
+     */
+    synchronized void closeAll(long time) {
+        while (depth > 0) {
+            ends[open[--depth]] = time;
+        }
+    }
+
+    /**
+     * Returns the index, in start order, of the innermost open span, or -1
+     * if none is open.
+     */
+    synchronized int innermostOpen() {
+        return depth == 0 ? -1 : open[depth - 1];
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Builds the span tree: root spans in start order, each with its
+     * children.
+     */
+    synchronized List<TraceSpan> toTree() {
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        // Children always come after their parent, so build back to front
+        List<List<TraceSpan>> children = new ArrayList<>(Collections.nCopies(count, null));
+        List<TraceSpan> roots = new ArrayList<>();
+        for (int i = count - 1; i >= 0; i--) {
+            List<TraceSpan> kids = children.get(i);
+            if (kids != null) {
+                Collections.reverse(kids);
+            }
+            TraceSpan span = new TraceSpan(names[i], starts[i], ends[i] == OPEN ? null : ends[i], kids);
+            int parent = parents[i];
+            if (parent < 0) {
+                roots.add(span);
+            } else {
+                if (children.get(parent) == null) {
+                    children.set(parent, new ArrayList<>());
+                }
+                children.get(parent).add(span);
+            }
+        }
+        Collections.reverse(roots);
+        return Collections.unmodifiableList(roots);
+    }
+
+    private void add(TraceSpan span, int parent) {
+        int index = append(span.getName(), span.getStartTime(),
+                span.isEnded() ? span.getEndTime() : OPEN, parent);
+        for (TraceSpan child : span.getChildren()) {
+            add(child, index);
+        }
+    }
+
+    private int append(String name, long start, long end, int parent) {
+        if (count == names.length) {
+            int capacity = count * 2;
+            names = Arrays.copyOf(names, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+        }
+        names[count] = name;
+        starts[count] = start;
+        ends[count] = end;
+        parents[count] = parent;
+        return count++;
+    }
+}
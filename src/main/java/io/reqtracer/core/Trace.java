@@ -16,22 +16,139 @@ import java.util.Objects;
  * - Each event's delta represents time since the PREVIOUS event
  * - Total duration = trace end time − trace start time
  * <p>
+ * The thread that created the trace is captured so exporters can lay out
+ * concurrent requests per thread.
+ * <p>
+ * A trace has a String ID and, when the ID was generated or is the canonical
+ * rendering of one, a primitive numeric ID (see {@link TraceId}).
+ * <p>
+ * Besides events, a trace can hold nested spans opened with
+ * {@link #span(String)}; they are stored only when used.
+ * <p>
+ * A trace started for a call from another service records where it was
+ * called from as its parent {@link TraceContext}; {@link #getContext()} gives
+ * the context to send with an outgoing call.
+ * <p>
+ * A trace may name the tenant it was recorded for, which stores with
+ * per-tenant quotas account it against.
+ * <p>
  * Thread-safe for recording events (uses synchronized list access).
  */
 public class Trace {
 
-    private final String traceId;
+    private final long id;
+    private String traceId; // rendered lazily for numeric IDs
     private final long startTime;
     private Long endTime;
     private final List<TraceEvent> events;
     private final Clock clock;
+    private final long threadId;
+    private final String threadName;
+    private volatile SpanRecorder spans; // created on first span
+    private volatile TraceContext parent;
+    private volatile String tenant;
 
     public Trace(String traceId, Clock clock) {
-        this.traceId = Objects.requireNonNull(traceId, "Trace ID cannot be null");
+        this(TraceId.parse(Objects.requireNonNull(traceId, "Trace ID cannot be null")), traceId, clock);
+    }
+
+    /**
+     * Creates a trace with a numeric ID; its String ID is the rendering.
+     *
+     * @param id    numeric trace ID, not {@link TraceId#NONE}
+     * @param clock time source
+     */
+    public Trace(long id, Clock clock) {
+        this(requireId(id), null, clock);
+    }
+
+    private Trace(long id, String traceId, Clock clock) {
+        this.id = id;
+        this.traceId = traceId;
         this.clock = Objects.requireNonNull(clock, "Clock cannot be null");
         this.startTime = clock.nowMillis();
         this.events = Collections.synchronizedList(new ArrayList<>());
         this.endTime = null;
+
+        Thread thread = Thread.currentThread();
+        this.threadId = thread.getId();
+        this.threadName = thread.getName();
+    }
+
+    private Trace(long id, String traceId, long startTime, Long endTime, long threadId, String threadName,
+            List<TraceEvent> events, List<TraceSpan> spans) {
+        this.id = id;
+        this.traceId = traceId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.threadId = threadId;
+        this.threadName = Objects.requireNonNull(threadName, "Thread name cannot be null");
+        this.events = Collections.synchronizedList(new ArrayList<>(events));
+        this.clock = new FixedClock(endTime != null ? endTime : startTime);
+        this.spans = spans == null || spans.isEmpty() ? null : SpanRecorder.of(spans, clock);
+    }
+
+    /**
+     * Recreates a previously recorded trace, e.g. when loading from a file.
+     * 
+     * @param traceId    trace identifier
+     * @param startTime  original start time in milliseconds
+     * @param endTime    original end time, or null if the trace never ended
+     * @param threadId   ID of the thread that started the trace
+     * @param threadName name of the thread that started the trace
+     * @param events     recorded events in order
+     * @return restored trace
+     */
+    public static Trace restore(String traceId, long startTime, Long endTime, long threadId, String threadName,
+            List<TraceEvent> events) {
+        return restore(traceId, startTime, endTime, threadId, threadName, events, null);
+    }
+
+    /**
+     * Recreates a previously recorded trace together with its spans.
+     *
+     * @param spans root spans in start order, or null if none
+     * @see #restore(String, long, Long, long, String, List)
+     */
+    public static Trace restore(String traceId, long startTime, Long endTime, long threadId, String threadName,
+            List<TraceEvent> events, List<TraceSpan> spans) {
+        return new Trace(TraceId.parse(Objects.requireNonNull(traceId, "Trace ID cannot be null")), traceId,
+                startTime, endTime, threadId, threadName, events, spans);
+    }
+
+    /**
+     * Recreates a previously recorded trace with a numeric ID.
+     *
+     * @param id         numeric trace ID, not {@link TraceId#NONE}
+     * @param startTime  original start time in milliseconds
+     * @param endTime    original end time, or null if the trace never ended
+     * @param threadId   ID of the thread that started the trace
+     * @param threadName name of the thread that started the trace
+     * @param events     recorded events in order
+     * @return restored trace
+     */
+    public static Trace restore(long id, long startTime, Long endTime, long threadId, String threadName,
+            List<TraceEvent> events) {
+        return restore(id, startTime, endTime, threadId, threadName, events, null);
+    }
+
+    /**
+     * Recreates a previously recorded trace with a numeric ID together with
+     * its spans.
+     *
+     * @param spans root spans in start order, or null if none
+     * @see #restore(long, long, Long, long, String, List)
+     */
+    public static Trace restore(long id, long startTime, Long endTime, long threadId, String threadName,
+            List<TraceEvent> events, List<TraceSpan> spans) {
+        return new Trace(requireId(id), null, startTime, endTime, threadId, threadName, events, spans);
+    }
+
+    private static long requireId(long id) {
+        if (id == TraceId.NONE) {
+            throw new IllegalArgumentException("Trace ID cannot be TraceId.NONE");
+        }
+        return id;
     }
 
     /**
@@ -61,11 +178,43 @@ public class Trace {
     }
 
     /**
-     * Ends the trace and captures end time.
+     * Opens a span nested inside the innermost span still open, to be closed
+     * with try-with-resources:
+     *
+     * <pre>
+     * try (Span s = trace.span("DB_QUERY")) {
+     *     ...
+     * }
+     * </pre>
+     *
+     * @param name span name
+     * @return handle that ends the span when closed
+     */
+    public Span span(String name) {
+        SpanRecorder recorder = spans;
+        if (recorder == null) {
+            synchronized (this) {
+                recorder = spans;
+                if (recorder == null) {
+                    recorder = new SpanRecorder(clock);
+                    spans = recorder;
+                }
+            }
+        }
+        return recorder.open(name);
+    }
+
+    /**
+     * Ends the trace and captures end time. Spans still open end at the same
+     * time.
      */
     public void end() {
         if (endTime == null) {
             endTime = clock.nowMillis();
+            SpanRecorder recorder = spans;
+            if (recorder != null) {
+                recorder.closeAll(endTime);
+            }
         }
     }
 
@@ -83,7 +232,21 @@ public class Trace {
     }
 
     public String getTraceId() {
-        return traceId;
+        String rendered = traceId;
+        if (rendered == null) {
+            // Benign race: every thread renders the same immutable string
+            rendered = TraceId.toString(id);
+            traceId = rendered;
+        }
+        return rendered;
+    }
+
+    /**
+     * Returns the numeric trace ID, or {@link TraceId#NONE} if the String ID
+     * is not the rendering of one.
+     */
+    public long getId() {
+        return id;
     }
 
     public long getStartTime() {
@@ -94,6 +257,20 @@ public class Trace {
         return endTime;
     }
 
+    /**
+     * Returns the ID of the thread that started this trace.
+     */
+    public long getThreadId() {
+        return threadId;
+    }
+
+    /**
+     * Returns the name of the thread that started this trace.
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
     public boolean isEnded() {
         return endTime != null;
     }
@@ -109,9 +286,84 @@ public class Trace {
         return events.size();
     }
 
+    /**
+     * Returns the most recent event without copying the event list.
+     *
+     * @return last event, or null if none was recorded
+     */
+    public TraceEvent getLastEvent() {
+        synchronized (events) {
+            return events.isEmpty() ? null : events.get(events.size() - 1);
+        }
+    }
+
+    /**
+     * Returns the root spans in start order, each with its nested spans.
+     *
+     * @return span tree, empty if no span was opened
+     */
+    public List<TraceSpan> getSpans() {
+        SpanRecorder recorder = spans;
+        return recorder == null ? Collections.emptyList() : recorder.toTree();
+    }
+
+    /**
+     * Returns true if at least one span was opened.
+     */
+    public boolean hasSpans() {
+        return spans != null;
+    }
+
+    /**
+     * Returns the context to propagate with an outgoing call made now: this
+     * trace and its innermost open span.
+     */
+    public TraceContext getContext() {
+        SpanRecorder recorder = spans;
+        return new TraceContext(getTraceId(), recorder == null ? TraceContext.NO_SPAN : recorder.innermostOpen());
+    }
+
+    /**
+     * Returns the context of the call that started this trace.
+     *
+     * @return parent context, or null if this trace is not a remote call's
+     */
+    public TraceContext getParent() {
+        return parent;
+    }
+
+    /**
+     * Links this trace to the call that started it. Set when the trace
+     * starts or is restored.
+     *
+     * @param parent parent context, or null to unlink
+     */
+    public void setParent(TraceContext parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Returns the tenant this trace was recorded for.
+     *
+     * @return tenant, or null if none was given
+     */
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * Sets the tenant this trace was recorded for. Set when the trace starts
+     * or is restored.
+     *
+     * @param tenant tenant, or null for none
+     */
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
+
     @Override
     public String toString() {
         return String.format("Trace{id='%s', events=%d, duration=%dms}",
-                traceId, events.size(), getTotalDuration());
+                getTraceId(), events.size(), getTotalDuration());
     }
 }
@@ -0,0 +1,165 @@
+package io.reqtracer.core;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Where a trace was called from: the trace ID of the caller, the span it
+ * was in when it made the call, and whether the caller is recording its
+ * trace.
+ * <p>
+ * Passed between services as a header, {@code <traceId>:<spanIndex>:<sampled>},
+ * where the span index is the position of the span among all of the caller's
+ * spans in start order, or -1 if the call was made outside any span, and
+ * the sampled flag is 1 or 0. Callees follow the caller's sampling decision,
+ * so a request is recorded on every service or none:
+ *
+ * <pre>
+ * X-Trace-Parent: 00f067aa0ba902b7:2:1
+ * </pre>
+ * <p>
+ * A header without the flag, {@code <traceId>:<spanIndex>}, is read as
+ * sampled.
+ * <p>
+ * Immutable.
+ */
+public final class TraceContext {
+
+    /** Conventional name of the HTTP header carrying the context. */
+    public static final String HEADER = "X-Trace-Parent";
+
+    /** Span index of a call made outside any span. */
+    public static final int NO_SPAN = -1;
+
+    private final String traceId;
+    private final int spanIndex;
+    private final boolean sampled;
+
+    /**
+     * Creates the context of a sampled caller.
+     *
+     * @param traceId   ID of the calling trace
+     * @param spanIndex index of the calling span in start order, or
+     *                  {@link #NO_SPAN}
+     */
+    public TraceContext(String traceId, int spanIndex) {
+        this(traceId, spanIndex, true);
+    }
+
+    /**
+     * @param traceId   ID of the calling trace
+     * @param spanIndex index of the calling span in start order, or
+     *                  {@link #NO_SPAN}
+     * @param sampled   whether the caller records its trace
+     */
+    public TraceContext(String traceId, int spanIndex, boolean sampled) {
+        Objects.requireNonNull(traceId, "Trace ID cannot be null");
+        if (!isValidId(traceId)) {
+            throw new IllegalArgumentException("Trace ID cannot be empty or contain whitespace: " + traceId);
+        }
+        if (spanIndex < NO_SPAN) {
+            throw new IllegalArgumentException("Invalid span index: " + spanIndex);
+        }
+        this.traceId = traceId;
+        this.spanIndex = spanIndex;
+        this.sampled = sampled;
+    }
+
+    /**
+     * Parses a header value written by {@link #toHeader()}.
+     *
+     * @param header header value, may be null
+     * @return the context, or empty if the header is absent or malformed
+     */
+    public static Optional<TraceContext> parse(String header) {
+        if (header == null) {
+            return Optional.empty();
+        }
+        String value = header.trim();
+        boolean sampled = true;
+        int colon = value.lastIndexOf(':');
+        if (colon > 0 && colon == value.length() - 2 && value.lastIndexOf(':', colon - 1) > 0) {
+            char flag = value.charAt(colon + 1);
+            if (flag == '0' || flag == '1') {
+                sampled = flag == '1';
+                value = value.substring(0, colon);
+                colon = value.lastIndexOf(':');
+            }
+        }
+        if (colon <= 0 || colon == value.length() - 1) {
+            return Optional.empty();
+        }
+        String traceId = value.substring(0, colon);
+        int spanIndex;
+        try {
+            spanIndex = Integer.parseInt(value.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        if (spanIndex < NO_SPAN || !isValidId(traceId)) {
+            return Optional.empty();
+        }
+        return Optional.of(new TraceContext(traceId, spanIndex, sampled));
+    }
+
+    private static boolean isValidId(String traceId) {
+        if (traceId.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < traceId.length(); i++) {
+            if (traceId.charAt(i) <= ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * Returns the index of the calling span in start order, or
+     * {@link #NO_SPAN}.
+     */
+    public int getSpanIndex() {
+        return spanIndex;
+    }
+
+    /**
+     * Returns whether the caller records its trace, and so whether the
+     * callee should.
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Returns the header value.
+     */
+    public String toHeader() {
+        return traceId + ":" + spanIndex + (sampled ? ":1" : ":0");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TraceContext)) {
+            return false;
+        }
+        TraceContext other = (TraceContext) o;
+        return spanIndex == other.spanIndex && sampled == other.sampled && traceId.equals(other.traceId);
+    }
+
+    @Override
+    public int hashCode() {
+        return (traceId.hashCode() * 31 + spanIndex) * 2 + (sampled ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return toHeader();
+    }
+}
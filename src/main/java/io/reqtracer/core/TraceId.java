@@ -0,0 +1,62 @@
+package io.reqtracer.core;
+
+/**
+ * String rendering of primitive 64-bit trace IDs.
+ * <p>
+ * A numeric ID renders as exactly 16 lowercase hex digits, and only that
+ * canonical form parses back, so every String ID either maps to one numeric
+ * ID or to none. IDs chosen by callers ("req-123") keep working as plain
+ * strings; they simply have no numeric form.
+ */
+public final class TraceId {
+
+    /** Marks the absence of a numeric ID. Never generated. */
+    public static final long NONE = 0;
+
+    private static final int LENGTH = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private TraceId() {
+    }
+
+    /**
+     * Renders a numeric ID.
+     *
+     * @param id numeric trace ID
+     * @return 16 lowercase hex digits
+     */
+    public static String toString(long id) {
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = HEX[(int) (id & 0xF)];
+            id >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Parses the canonical rendering of a numeric ID.
+     *
+     * @param traceId string trace ID
+     * @return numeric ID, or {@link #NONE} if the string is not a rendering
+     */
+    public static long parse(String traceId) {
+        if (traceId == null || traceId.length() != LENGTH) {
+            return NONE;
+        }
+        long id = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = traceId.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else {
+                return NONE;
+            }
+            id = (id << 4) | digit;
+        }
+        return id;
+    }
+}
@@ -0,0 +1,152 @@
+package io.reqtracer.core;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free generator of unique 64-bit trace IDs.
+ * <p>
+ * Layout, most significant bit first:
+ *
+ * <pre>
+ * 0 | 42 bits epoch millis | 10 bits node | 11 bits counter
+ * </pre>
+ * <p>
+ * IDs are positive, never {@link TraceId#NONE}, and increase over time on
+ * each node. Up to 2048 IDs per millisecond are issued per node; beyond that
+ * the generator borrows from the next millisecond instead of waiting, and if
+ * the clock steps backwards it keeps counting from the last millisecond it
+ * used, so IDs never repeat. A single CAS per ID; no locks.
+ */
+public class TraceIdGenerator {
+
+    public static final int MAX_NODE_ID = (1 << 10) - 1;
+
+    /** System property holding this process's node ID. */
+    public static final String NODE_PROPERTY = "reqtracer.node";
+
+    private static final int COUNTER_BITS = 11;
+    private static final int NODE_BITS = 10;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    private static volatile TraceIdGenerator defaultInstance;
+
+    private final long node;
+    private final Clock clock;
+
+    /** Last issued (millis << COUNTER_BITS | counter). */
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * Creates a generator for the given node using the system clock.
+     *
+     * @param nodeId node identifier in [0, {@value #MAX_NODE_ID}]
+     */
+    public TraceIdGenerator(int nodeId) {
+        this(nodeId, SystemClock.getInstance());
+    }
+
+    /**
+     * Creates a generator for the given node.
+     *
+     * @param nodeId node identifier in [0, {@value #MAX_NODE_ID}]
+     * @param clock  time source
+     */
+    public TraceIdGenerator(int nodeId, Clock clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID);
+        }
+        this.node = nodeId;
+        this.clock = Objects.requireNonNull(clock, "Clock cannot be null");
+    }
+
+    /**
+     * Returns the process-wide generator, created on first use for
+     * {@link #defaultNodeId()}. Every tracer shares it unless given its own,
+     * so two tracers in one JVM never issue the same ID.
+     *
+     * @throws IllegalArgumentException if the {@code reqtracer.node} property
+     *                                  is not a node ID
+     */
+    public static TraceIdGenerator getDefault() {
+        TraceIdGenerator generator = defaultInstance;
+        if (generator == null) {
+            synchronized (TraceIdGenerator.class) {
+                generator = defaultInstance;
+                if (generator == null) {
+                    generator = new TraceIdGenerator(defaultNodeId());
+                    defaultInstance = generator;
+                }
+            }
+        }
+        return generator;
+    }
+
+    /**
+     * Returns the node ID from the {@code reqtracer.node} system property, or
+     * a random one. Process IDs are not used: in containers every JVM tends
+     * to be PID 1, so they would give every service the same node.
+     *
+     * @throws IllegalArgumentException if the property is not a node ID
+     */
+    public static int defaultNodeId() {
+        String configured = System.getProperty(NODE_PROPERTY);
+        if (configured == null) {
+            return ThreadLocalRandom.current().nextInt(MAX_NODE_ID + 1);
+        }
+        int nodeId;
+        try {
+            nodeId = Integer.parseInt(configured.trim());
+        } catch (NumberFormatException e) {
+            nodeId = -1;
+        }
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException(
+                    "-D" + NODE_PROPERTY + " must be between 0 and " + MAX_NODE_ID + ": " + configured);
+        }
+        return nodeId;
+    }
+
+    /**
+     * Issues the next ID.
+     *
+     * @return unique positive ID
+     */
+    public long next() {
+        long now = Math.max(0, clock.nowMillis());
+        while (true) {
+            long last = state.get();
+            long lastMillis = last >>> COUNTER_BITS;
+            long next;
+            if (now > lastMillis) {
+                next = now << COUNTER_BITS;
+            } else {
+                // Same millisecond, or the clock stepped back: keep counting
+                next = last + 1;
+            }
+            if (state.compareAndSet(last, next)) {
+                long id = ((next >>> COUNTER_BITS) << (NODE_BITS + COUNTER_BITS))
+                        | (node << COUNTER_BITS)
+                        | (next & COUNTER_MASK);
+                if (id != TraceId.NONE) {
+                    return id;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the millisecond timestamp embedded in an ID.
+     */
+    public static long timestampOf(long id) {
+        return id >>> (NODE_BITS + COUNTER_BITS);
+    }
+
+    /**
+     * Returns the node embedded in an ID.
+     */
+    public static int nodeOf(long id) {
+        return (int) ((id >>> COUNTER_BITS) & MAX_NODE_ID);
+    }
+}
@@ -0,0 +1,116 @@
+package io.reqtracer.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ordered sequence of event names in a trace, independent of timing.
+ * <p>
+ * Most traces of a route share one shape (e.g. REQUEST_RECEIVED → AUTH_CHECK
+ * → DB_QUERY → RESPONSE_SENT), so stores can keep one shape instance and
+ * reference it from every trace. Each shape carries a 64-bit fingerprint
+ * (FNV-1a over the names) that is stable across processes, suitable for
+ * grouping and for display.
+ */
+public final class TraceShape {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String[] names;
+    private final long fingerprint;
+
+    private TraceShape(String[] names, long fingerprint) {
+        this.names = names;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the shape of a trace's events.
+     */
+    public static TraceShape of(List<TraceEvent> events) {
+        String[] names = new String[events.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = events.get(i).getName();
+        }
+        return new TraceShape(names, fingerprint(events));
+    }
+
+    /**
+     * Computes the fingerprint of a trace's event-name sequence without
+     * allocating a shape.
+     */
+    public static long fingerprint(List<TraceEvent> events) {
+        long hash = FNV_OFFSET;
+        for (TraceEvent event : events) {
+            String name = event.getName();
+            for (int i = 0; i < name.length(); i++) {
+                hash = (hash ^ name.charAt(i)) * FNV_PRIME;
+            }
+            // Separator so ["AB"] and ["A", "B"] differ
+            hash = (hash ^ 0xFFFF) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns true if the events have exactly this shape's names, in order.
+     */
+    public boolean matches(List<TraceEvent> events) {
+        if (events.size() != names.length) {
+            return false;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (!names[i].equals(events.get(i).getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the fingerprint as a fixed-width hex string.
+     */
+    public String getId() {
+        return String.format("%016x", fingerprint);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TraceShape)) {
+            return false;
+        }
+        TraceShape other = (TraceShape) o;
+        return fingerprint == other.fingerprint && Arrays.equals(names, other.names);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fingerprint);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" → ", names);
+    }
+}
@@ -0,0 +1,92 @@
+package io.reqtracer.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A recorded span: a named interval of a trace with its nested child spans.
+ * <p>
+ * Unlike an event's delta, which attributes time to whatever was marked
+ * next, a span has an exact start and end, so its time splits into
+ * <em>self time</em> (spent in the span itself) and <em>child time</em>
+ * (spent in spans opened inside it).
+ * <p>
+ * Immutable.
+ */
+public final class TraceSpan {
+
+    private final String name;
+    private final long startTime;
+    private final Long endTime;
+    private final List<TraceSpan> children;
+
+    /**
+     * @param name      span name
+     * @param startTime start in epoch milliseconds
+     * @param endTime   end in epoch milliseconds, or null if still open
+     * @param children  nested spans in start order
+     */
+    public TraceSpan(String name, long startTime, Long endTime, List<TraceSpan> children) {
+        this.name = Objects.requireNonNull(name, "Span name cannot be null");
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.children = children == null || children.isEmpty()
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(children);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public Long getEndTime() {
+        return endTime;
+    }
+
+    public boolean isEnded() {
+        return endTime != null;
+    }
+
+    /**
+     * Returns the nested spans in start order.
+     */
+    public List<TraceSpan> getChildren() {
+        return children;
+    }
+
+    /**
+     * Returns end − start in milliseconds, or 0 if the span is still open.
+     */
+    public long getDuration() {
+        return endTime == null ? 0 : endTime - startTime;
+    }
+
+    /**
+     * Returns the time spent in child spans.
+     */
+    public long getChildTime() {
+        long total = 0;
+        for (TraceSpan child : children) {
+            total += child.getDuration();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the time spent in this span outside any child span.
+     */
+    public long getSelfTime() {
+        return Math.max(0, getDuration() - getChildTime());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TraceSpan{name='%s', duration=%dms, self=%dms, children=%d}",
+                name, getDuration(), getSelfTime(), children.size());
+    }
+}
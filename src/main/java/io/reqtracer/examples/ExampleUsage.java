@@ -1,20 +1,38 @@
 package io.reqtracer.examples;
 
 import io.reqtracer.Tracer;
+import io.reqtracer.storage.TraceFile;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Map;
 
 /**
  * Example usage demonstrating typical HTTP request lifecycle tracing.
+ * <p>
+ * Pass a file path to save the recorded trace for the CLI:
+ * 
+ * <pre>
+ * java -cp req-tracer.jar io.reqtracer.examples.ExampleUsage traces.rtf
+ * java -jar req-tracer.jar inspect req-123 --file traces.rtf
+ * </pre>
  */
 public class ExampleUsage {
 
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) throws InterruptedException, IOException {
         // Simulate HTTP request handling
         simulateRequest("req-123");
 
         System.out.println("\nTrace stored successfully!");
-        System.out.println("To inspect: java -jar req-tracer.jar inspect req-123");
+
+        if (args.length > 0) {
+            Path file = Paths.get(args[0]);
+            TraceFile.write(file, Tracer.getStore());
+            System.out.println("To inspect: java -jar req-tracer.jar inspect req-123 --file " + file);
+        } else {
+            System.out.println("To inspect: java -jar req-tracer.jar inspect req-123");
+        }
     }
 
     private static void simulateRequest(String requestId) throws InterruptedException {
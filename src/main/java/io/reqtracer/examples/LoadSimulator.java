@@ -0,0 +1,515 @@
+package io.reqtracer.examples;
+
+import io.reqtracer.RequestTracer;
+import io.reqtracer.Tracer;
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.stats.LatencyHistogram;
+import io.reqtracer.storage.InMemoryTraceStore;
+import io.reqtracer.storage.TraceFile;
+import io.reqtracer.storage.TraceStore;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Drives synthetic requests through {@link Tracer} at a fixed arrival rate
+ * and reports what tracing costs under load.
+ * <p>
+ * A dispatcher thread releases one request every {@code 1/rate} seconds,
+ * whether or not earlier requests have finished. Latency is measured from
+ * the time a request was <em>scheduled</em> to start, not from when a worker
+ * picked it up, so a stalled worker pool shows up as latency instead of
+ * silently lowering the load (coordinated omission). The uncorrected figure
+ * is reported too for comparison.
+ * <p>
+ * Each request walks a {@link RequestShape}: work, then a mark, for each
+ * step. Time spent inside {@code Tracer} calls is measured separately as the
+ * tracer overhead. Shapes can be built by hand or replayed from recorded
+ * traces, in which case each step's work is the recorded delta.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * java -cp req-tracer.jar io.reqtracer.examples.LoadSimulator [--rate 50000] [--duration 10]
+ *     [--threads 200 | --virtual] [--work park|spin|none] [--replay traces.rtf] [--speed 1.0]
+ * </pre>
+ * <p>
+ * Virtual threads need JDK 21; on older JDKs {@code --virtual} falls back
+ * to platform threads with a warning.
+ */
+public class LoadSimulator {
+
+    /**
+     * How a request spends the time between its marks.
+     */
+    public enum Work {
+        /** Park the thread, like waiting on I/O. */
+        PARK,
+        /** Busy-spin, like CPU-bound work. */
+        SPIN,
+        /** No work; only the tracer calls run. */
+        NONE
+    }
+
+    private static final int STRIPES = 32;
+
+    private final List<RequestShape> shapes;
+    private double ratePerSecond = 1_000;
+    private Duration duration = Duration.ofSeconds(10);
+    private int threads = 200;
+    private boolean virtualThreads;
+    private Work work = Work.PARK;
+    private TraceStore store = new InMemoryTraceStore();
+
+    /**
+     * Creates a simulator that cycles through the given request shapes.
+     *
+     * @param shapes shapes to run, in round-robin order
+     */
+    public LoadSimulator(List<RequestShape> shapes) {
+        if (shapes == null || shapes.isEmpty()) {
+            throw new IllegalArgumentException("At least one request shape is required");
+        }
+        this.shapes = List.copyOf(shapes);
+    }
+
+    public LoadSimulator withRate(double requestsPerSecond) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        this.ratePerSecond = requestsPerSecond;
+        return this;
+    }
+
+    public LoadSimulator withDuration(Duration runFor) {
+        if (runFor == null || runFor.isNegative() || runFor.isZero()) {
+            throw new IllegalArgumentException("Duration must be positive");
+        }
+        this.duration = runFor;
+        return this;
+    }
+
+    /**
+     * Runs requests on a fixed pool of platform threads.
+     */
+    public LoadSimulator withThreads(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.threads = count;
+        this.virtualThreads = false;
+        return this;
+    }
+
+    /**
+     * Runs each request on its own virtual thread (JDK 21+).
+     */
+    public LoadSimulator withVirtualThreads() {
+        this.virtualThreads = true;
+        return this;
+    }
+
+    public LoadSimulator withWork(Work mode) {
+        this.work = mode;
+        return this;
+    }
+
+    /**
+     * Sets the store traces are written to; a fresh in-memory store by
+     * default.
+     */
+    public LoadSimulator withStore(TraceStore target) {
+        this.store = target;
+        return this;
+    }
+
+    /**
+     * Runs the load and returns the measurements. Requests are traced by a
+     * dedicated {@link RequestTracer} writing to the configured store, so the
+     * default {@link Tracer} is left untouched.
+     */
+    public Result run() throws InterruptedException {
+        RequestTracer tracer = new RequestTracer(store);
+        long heapBefore = usedHeapAfterGc();
+
+        Recorder recorder = new Recorder();
+        ExecutorService executor = createExecutor();
+        boolean usedVirtual = executor != null;
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        long end = start + duration.toNanos();
+        long scheduled = 0;
+        try {
+            // Computed from the count rather than summing a truncated interval,
+            // so a rate that doesn't divide a second evenly doesn't drift
+            for (long intended = start; intended < end;
+                    intended = start + (long) (scheduled * 1e9 / ratePerSecond)) {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                RequestShape shape = shapes.get((int) (scheduled % shapes.size()));
+                long scheduledAt = intended;
+                executor.execute(() -> runRequest(tracer, shape, scheduledAt, recorder));
+                scheduled++;
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.HOURS);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long heapAfter = usedHeapAfterGc();
+        return new Result(scheduled, elapsed, usedVirtual, recorder, Math.max(0, heapAfter - heapBefore));
+    }
+
+    private void runRequest(RequestTracer tracer, RequestShape shape, long scheduledAt, Recorder recorder) {
+        long startedAt = System.nanoTime();
+        long allocatedBefore = currentThreadAllocatedBytes();
+        long overhead = 0;
+
+        long t = System.nanoTime();
+        tracer.start();
+        overhead += System.nanoTime() - t;
+        for (int i = 0; i < shape.events.length; i++) {
+            doWork(shape.workNanos[i]);
+            t = System.nanoTime();
+            tracer.mark(shape.events[i], shape.metadata.get(i));
+            overhead += System.nanoTime() - t;
+        }
+        t = System.nanoTime();
+        tracer.end();
+        long finishedAt = System.nanoTime();
+        overhead += finishedAt - t;
+
+        long allocatedAfter = currentThreadAllocatedBytes();
+        recorder.record(finishedAt - scheduledAt, finishedAt - startedAt, overhead,
+                allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1);
+    }
+
+    private void doWork(long nanos) {
+        if (nanos <= 0 || work == Work.NONE) {
+            return;
+        }
+        if (work == Work.PARK) {
+            LockSupport.parkNanos(nanos);
+            return;
+        }
+        long until = System.nanoTime() + nanos;
+        while (System.nanoTime() < until) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns a virtual-thread executor looked up reflectively, so this
+     * compiles and runs on JDK 17, or null to use platform threads.
+     */
+    private ExecutorService createExecutor() {
+        if (!virtualThreads) {
+            return null;
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads need JDK 21+; using " + threads + " platform threads");
+            return null;
+        }
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Sequence of events a simulated request records, with the work done
+     * before each one.
+     */
+    public static final class RequestShape {
+        private final String[] events;
+        private final long[] workNanos;
+        private final List<Map<String, String>> metadata;
+
+        private RequestShape(List<String> events, List<Long> workNanos, List<Map<String, String>> metadata) {
+            this.events = events.toArray(new String[0]);
+            this.workNanos = workNanos.stream().mapToLong(Long::longValue).toArray();
+            this.metadata = List.copyOf(metadata);
+        }
+
+        /**
+         * Builds a shape from alternating event names and work durations in
+         * microseconds, e.g. {@code of("REQUEST_RECEIVED", 0, "DB_QUERY", 800)}.
+         */
+        public static RequestShape of(Object... eventsAndMicros) {
+            if (eventsAndMicros.length == 0 || eventsAndMicros.length % 2 != 0) {
+                throw new IllegalArgumentException("Expected event name and microseconds pairs");
+            }
+            List<String> events = new ArrayList<>();
+            List<Long> work = new ArrayList<>();
+            List<Map<String, String>> metadata = new ArrayList<>();
+            for (int i = 0; i < eventsAndMicros.length; i += 2) {
+                events.add((String) eventsAndMicros[i]);
+                work.add(TimeUnit.MICROSECONDS.toNanos(((Number) eventsAndMicros[i + 1]).longValue()));
+                metadata.add(Collections.emptyMap());
+            }
+            return new RequestShape(events, work, metadata);
+        }
+
+        /**
+         * Replays a recorded trace: same events and metadata, with each
+         * event's recorded delta as the work before it.
+         *
+         * @param trace recorded trace
+         * @param speed replay speed; 2.0 halves every delta
+         */
+        public static RequestShape replay(Trace trace, double speed) {
+            if (speed <= 0) {
+                throw new IllegalArgumentException("Speed must be positive");
+            }
+            List<TraceEvent> recorded = trace.getEvents();
+            List<String> events = new ArrayList<>(recorded.size());
+            List<Long> work = new ArrayList<>(recorded.size());
+            List<Map<String, String>> metadata = new ArrayList<>(recorded.size());
+            for (TraceEvent event : recorded) {
+                events.add(event.getName());
+                work.add((long) (TimeUnit.MILLISECONDS.toNanos(event.getDelta()) / speed));
+                metadata.add(event.getMetadata());
+            }
+            return new RequestShape(events, work, metadata);
+        }
+
+        public int getEventCount() {
+            return events.length;
+        }
+
+        /**
+         * Returns the work done before the given step, in nanoseconds.
+         */
+        long getWorkNanos(int step) {
+            return workNanos[step];
+        }
+    }
+
+    /**
+     * Measurements of one run. Latencies are in microseconds, tracer
+     * overhead in nanoseconds.
+     */
+    public static final class Result {
+        private final long requests;
+        private final long elapsedNanos;
+        private final boolean virtualThreads;
+        private final LatencyHistogram latency;
+        private final LatencyHistogram uncorrectedLatency;
+        private final LatencyHistogram overhead;
+        private final long allocatedBytes;
+        private final long allocationSamples;
+        private final long storeBytes;
+
+        private Result(long requests, long elapsedNanos, boolean virtualThreads, Recorder recorder,
+                long storeBytes) {
+            this.requests = requests;
+            this.elapsedNanos = elapsedNanos;
+            this.virtualThreads = virtualThreads;
+            this.latency = recorder.merged(0);
+            this.uncorrectedLatency = recorder.merged(1);
+            this.overhead = recorder.merged(2);
+            this.allocatedBytes = recorder.allocatedBytes.sum();
+            this.allocationSamples = recorder.allocationSamples.sum();
+            this.storeBytes = storeBytes;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public double getThroughput() {
+            return requests * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Latency from scheduled start to completion, in microseconds.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Latency from actual start to completion, in microseconds; hides
+         * queueing delay.
+         */
+        public LatencyHistogram getUncorrectedLatency() {
+            return uncorrectedLatency;
+        }
+
+        /**
+         * Time spent inside Tracer calls per request, in nanoseconds.
+         */
+        public LatencyHistogram getTracerOverhead() {
+            return overhead;
+        }
+
+        /**
+         * Bytes allocated per request, or -1 if the JVM does not count
+         * allocations on the worker threads.
+         */
+        public double getAllocatedBytesPerRequest() {
+            return allocationSamples == 0 ? -1 : (double) allocatedBytes / allocationSamples;
+        }
+
+        /**
+         * Heap retained after the run, measured after GC; dominated by the
+         * stored traces.
+         */
+        public long getStoreBytes() {
+            return storeBytes;
+        }
+
+        public boolean usedVirtualThreads() {
+            return virtualThreads;
+        }
+
+        /**
+         * Formats the measurements as a plain-text report.
+         */
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Requests:         %d on %s threads%n", requests,
+                    virtualThreads ? "virtual" : "platform"));
+            sb.append(String.format("Throughput:       %.0f req/s%n", getThroughput()));
+            appendPercentiles(sb, "Latency (us):", latency);
+            appendPercentiles(sb, "  uncorrected:", uncorrectedLatency);
+            appendPercentiles(sb, "Tracer (ns):", overhead);
+            double perRequest = getAllocatedBytesPerRequest();
+            if (perRequest >= 0) {
+                sb.append(String.format("Allocation:       %.0f B/req, %.1f MB/s%n", perRequest,
+                        perRequest * getThroughput() / 1e6));
+            } else {
+                sb.append("Allocation:       n/a\n");
+            }
+            sb.append(String.format("Store memory:     %.1f MB (%.0f B/trace)%n", storeBytes / 1e6,
+                    requests == 0 ? 0.0 : (double) storeBytes / requests));
+            return sb.toString();
+        }
+
+        private static void appendPercentiles(StringBuilder sb, String label, LatencyHistogram h) {
+            sb.append(String.format("%-17s p50=%d p90=%d p99=%d p99.9=%d max=%d%n", label,
+                    h.getPercentile(50), h.getPercentile(90), h.getPercentile(99), h.getPercentile(99.9),
+                    h.getMax()));
+        }
+    }
+
+    /**
+     * Striped histograms: workers record into the stripe of their thread
+     * so contention stays low even with thousands of virtual threads.
+     */
+    private static final class Recorder {
+        private final LatencyHistogram[][] stripes = new LatencyHistogram[STRIPES][3];
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder allocationSamples = new LongAdder();
+
+        Recorder() {
+            for (LatencyHistogram[] stripe : stripes) {
+                for (int i = 0; i < stripe.length; i++) {
+                    stripe[i] = new LatencyHistogram();
+                }
+            }
+        }
+
+        void record(long latencyNanos, long uncorrectedNanos, long overheadNanos, long allocated) {
+            LatencyHistogram[] stripe = stripes[(int) (Thread.currentThread().getId() % STRIPES)];
+            synchronized (stripe) {
+                stripe[0].record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+                stripe[1].record(TimeUnit.NANOSECONDS.toMicros(uncorrectedNanos));
+                stripe[2].record(overheadNanos);
+            }
+            if (allocated >= 0) {
+                allocatedBytes.add(allocated);
+                allocationSamples.increment();
+            }
+        }
+
+        LatencyHistogram merged(int index) {
+            LatencyHistogram result = new LatencyHistogram();
+            for (LatencyHistogram[] stripe : stripes) {
+                synchronized (stripe) {
+                    result.merge(stripe[index]);
+                }
+            }
+            return result;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        double rate = Double.parseDouble(optionValue(args, "--rate", "50000"));
+        long seconds = Long.parseLong(optionValue(args, "--duration", "10"));
+        int threads = Integer.parseInt(optionValue(args, "--threads", "200"));
+        Work work = Work.valueOf(optionValue(args, "--work", "park").toUpperCase());
+        String replay = optionValue(args, "--replay", null);
+        double speed = Double.parseDouble(optionValue(args, "--speed", "1.0"));
+
+        List<RequestShape> shapes;
+        if (replay != null) {
+            try (Stream<Trace> traces = TraceFile.stream(Paths.get(replay))) {
+                shapes = traces.limit(10_000)
+                        .filter(t -> t.getEventCount() > 0)
+                        .map(t -> RequestShape.replay(t, speed))
+                        .collect(Collectors.toList());
+            }
+            System.out.println("Replaying " + shapes.size() + " recorded timing profiles");
+        } else {
+            shapes = List.of(
+                    RequestShape.of("REQUEST_RECEIVED", 0, "AUTH_CHECK", 50, "DB_QUERY", 400, "RESPONSE_SENT", 20),
+                    RequestShape.of("REQUEST_RECEIVED", 0, "AUTH_CHECK", 50, "CACHE_HIT", 10, "RESPONSE_SENT", 20));
+        }
+
+        LoadSimulator simulator = new LoadSimulator(shapes)
+                .withRate(rate)
+                .withDuration(Duration.ofSeconds(seconds))
+                .withThreads(threads)
+                .withWork(work);
+        if (List.of(args).contains("--virtual")) {
+            simulator.withVirtualThreads();
+        }
+
+        System.out.printf("Running %.0f req/s for %ds...%n", rate, seconds);
+        System.out.print(simulator.run().format());
+    }
+
+    private static String optionValue(String[] args, String option, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,94 @@
+package io.reqtracer.examples;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.storage.InMemoryTraceStore;
+import io.reqtracer.storage.SnapshotTraceStore;
+import io.reqtracer.storage.TraceFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares warm-restart time from a snapshot against fully decoding a trace
+ * file.
+ * <p>
+ * Usage (trace count defaults to 1,000,000):
+ * 
+ * <pre>
+ * java -Xmx4g -cp req-tracer.jar io.reqtracer.examples.SnapshotStartupBenchmark [traceCount]
+ * </pre>
+ */
+public class SnapshotStartupBenchmark {
+
+    private static final int LOOKUPS = 10_000;
+
+    public static void main(String[] args) throws IOException {
+        int traceCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dir = Files.createTempDirectory("trace-snapshot-bench");
+        Path snapshot = dir.resolve("traces.snapshot");
+        Path file = dir.resolve("traces.rtf");
+
+        try {
+            System.out.println("Generating " + traceCount + " traces...");
+            InMemoryTraceStore source = generate(traceCount);
+
+            long start = System.nanoTime();
+            SnapshotTraceStore.write(snapshot, source);
+            report("Write snapshot", start);
+            TraceFile.write(file, source);
+            System.out.printf("Snapshot size: %.1f MB%n", Files.size(snapshot) / 1e6);
+            source = null;
+
+            start = System.nanoTime();
+            InMemoryTraceStore loaded = TraceFile.load(file);
+            report("Full decode (TraceFile.load)", start);
+            loaded = null;
+
+            start = System.nanoTime();
+            SnapshotTraceStore store = SnapshotTraceStore.open(snapshot);
+            report("Snapshot open", start);
+
+            Random random = new Random(42);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                if (store.get("req-" + random.nextInt(traceCount)).isEmpty()) {
+                    throw new IllegalStateException("Missing trace");
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-32s %8.2f us/op (%d random gets)%n", "Snapshot get", elapsed / 1e3 / LOOKUPS,
+                    LOOKUPS);
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static InMemoryTraceStore generate(int traceCount) {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        Random random = new Random(1);
+        for (int i = 0; i < traceCount; i++) {
+            FixedClock clock = new FixedClock(1_700_000_000_000L + i);
+            Trace trace = new Trace("req-" + i, clock);
+            trace.mark("REQUEST_RECEIVED");
+            clock.advance(random.nextInt(20));
+            trace.mark("AUTH_CHECK", Map.of("method", "JWT"));
+            clock.advance(random.nextInt(200));
+            trace.mark("DB_QUERY", Map.of("table", "users"));
+            clock.advance(random.nextInt(10));
+            trace.mark("RESPONSE_SENT", Map.of("status", "200"));
+            trace.end();
+            store.store(trace);
+        }
+        return store;
+    }
+
+    private static void report(String label, long startNanos) {
+        System.out.printf("%-32s %8d ms%n", label, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+}
@@ -0,0 +1,131 @@
+package io.reqtracer.export;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Exports traces in the Chrome Trace Event JSON format.
+ * <p>
+ * The output opens in chrome://tracing and in the Perfetto UI. Each trace
+ * becomes a complete ("X") slice on the track of the thread that started it,
+ * and each event becomes a nested slice that ends at the event's timestamp and
+ * spans its delta, matching how {@link io.reqtracer.cli.TimelineFormatter}
+ * attributes time. Zero-delta events are emitted as instant events.
+ * <p>
+ * Example output:
+ *
+ * <pre>
+ * {"displayTimeUnit":"ms","traceEvents":[
+ * {"name":"thread_name","ph":"M","pid":1,"tid":1,"args":{"name":"main"}},
+ * {"name":"req-123","cat":"request","ph":"X","pid":1,"tid":1,"ts":1000000,"dur":140000},
+ * {"name":"AUTH_CHECK","cat":"event","ph":"X","pid":1,"tid":1,"ts":1000000,"dur":12000,"args":{"user":"john"}}
+ * ]}
+ * </pre>
+ * <p>
+ * Events are written as they arrive; only the set of thread IDs already
+ * announced is retained.
+ */
+public class ChromeTraceExporter implements TraceExporter {
+
+    private static final int PID = 1;
+    private static final long MICROS_PER_MILLI = 1000;
+
+    private final Writer out;
+    private final Set<Long> announcedThreads = new HashSet<>();
+    private boolean first = true;
+
+    public ChromeTraceExporter(OutputStream out) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+    }
+
+    @Override
+    public void write(Trace trace) throws IOException {
+        long tid = trace.getThreadId();
+
+        if (announcedThreads.add(tid)) {
+            beginEvent();
+            out.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":" + PID + ",\"tid\":" + tid
+                    + ",\"args\":{\"name\":");
+            writeString(trace.getThreadName());
+            out.write("}}");
+        }
+
+        List<TraceEvent> events = trace.getEvents();
+
+        // Request slice
+        beginEvent();
+        out.write("{\"name\":");
+        writeString(trace.getTraceId());
+        out.write(",\"cat\":\"request\",\"ph\":\"X\",\"pid\":" + PID + ",\"tid\":" + tid);
+        out.write(",\"ts\":" + trace.getStartTime() * MICROS_PER_MILLI);
+        out.write(",\"dur\":" + requestDuration(trace, events) * MICROS_PER_MILLI + "}");
+
+        // Event slices
+        for (TraceEvent event : events) {
+            beginEvent();
+            out.write("{\"name\":");
+            writeString(event.getName());
+            if (event.getDelta() > 0) {
+                out.write(",\"cat\":\"event\",\"ph\":\"X\",\"pid\":" + PID + ",\"tid\":" + tid);
+                out.write(",\"ts\":" + (event.getTimestamp() - event.getDelta()) * MICROS_PER_MILLI);
+                out.write(",\"dur\":" + event.getDelta() * MICROS_PER_MILLI);
+            } else {
+                out.write(",\"cat\":\"event\",\"ph\":\"i\",\"s\":\"t\",\"pid\":" + PID + ",\"tid\":" + tid);
+                out.write(",\"ts\":" + event.getTimestamp() * MICROS_PER_MILLI);
+            }
+            if (event.hasMetadata()) {
+                out.write(",\"args\":{");
+                boolean firstArg = true;
+                for (Map.Entry<String, String> entry : event.getMetadata().entrySet()) {
+                    if (!firstArg) {
+                        out.write(',');
+                    }
+                    writeString(entry.getKey());
+                    out.write(':');
+                    writeString(entry.getValue());
+                    firstArg = false;
+                }
+                out.write('}');
+            }
+            out.write('}');
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.write("\n]}\n");
+        out.close();
+    }
+
+    /**
+     * Duration of the request slice: total duration once ended, otherwise up
+     * to the last recorded event.
+     */
+    static long requestDuration(Trace trace, List<TraceEvent> events) {
+        if (trace.isEnded()) {
+            return trace.getTotalDuration();
+        }
+        return events.isEmpty() ? 0 : events.get(events.size() - 1).getElapsedSinceStart();
+    }
+
+    private void beginEvent() throws IOException {
+        out.write(first ? "\n" : ",\n");
+        first = false;
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write(Json.quote(value));
+    }
+}
@@ -0,0 +1,237 @@
+package io.reqtracer.export;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.core.TraceShape;
+import io.reqtracer.storage.TraceStore;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Folds a population of traces into a flame graph of where time goes.
+ * <p>
+ * Each trace contributes its event deltas under a two-level stack: the
+ * trace's shape, then the event name. The result can be written in the
+ * collapsed-stack ("folded") format read by flamegraph.pl, speedscope and
+ * similar tools:
+ *
+ * <pre>
+ * REQUEST_RECEIVED → AUTH_CHECK → DB_QUERY;AUTH_CHECK 12000
+ * REQUEST_RECEIVED → AUTH_CHECK → DB_QUERY;DB_QUERY 120000
+ * </pre>
+ *
+ * or rendered directly as a self-contained SVG.
+ * <p>
+ * Memory is proportional to the number of distinct shapes, not the number of
+ * traces, so arbitrarily large stores can be folded by streaming. Beyond
+ * {@value #MAX_SHAPES} shapes, further shapes are folded into a single
+ * "(other shapes)" stack. Not thread-safe.
+ */
+public class FlameGraph {
+
+    static final int MAX_SHAPES = 10_000;
+    static final String OTHER_SHAPES = "(other shapes)";
+
+    private static final int FRAME_HEIGHT = 18;
+    private static final int TITLE_HEIGHT = 30;
+    private static final double CHAR_WIDTH = 7.0;
+
+    /** Summed deltas per event name, keyed by shape frame, in first-seen order. */
+    private final Map<String, Map<String, Long>> stacks = new LinkedHashMap<>();
+    private final Map<String, Long> traceCounts = new HashMap<>();
+    private long traceCount;
+
+    /**
+     * Folds every trace in a store, fetching one at a time.
+     *
+     * @param store source store
+     * @return folded flame graph
+     */
+    public static FlameGraph build(TraceStore store) {
+        FlameGraph graph = new FlameGraph();
+        for (String traceId : store.listTraceIds()) {
+            Optional<Trace> trace = store.get(traceId);
+            trace.ifPresent(graph::add);
+        }
+        return graph;
+    }
+
+    /**
+     * Folds a stream of traces.
+     *
+     * @param traces source traces
+     * @return folded flame graph
+     */
+    public static FlameGraph build(Stream<Trace> traces) {
+        FlameGraph graph = new FlameGraph();
+        traces.sequential().forEach(graph::add);
+        return graph;
+    }
+
+    /**
+     * Adds one trace's event deltas.
+     *
+     * @param trace trace to fold in
+     */
+    public void add(Trace trace) {
+        List<TraceEvent> events = trace.getEvents();
+        String shape = frameName(TraceShape.of(events));
+        if (!stacks.containsKey(shape) && stacks.size() >= MAX_SHAPES) {
+            shape = OTHER_SHAPES;
+        }
+        Map<String, Long> frames = stacks.computeIfAbsent(shape, s -> new LinkedHashMap<>());
+        for (TraceEvent event : events) {
+            frames.merge(event.getName(), event.getDelta(), Long::sum);
+        }
+        traceCounts.merge(shape, 1L, Long::sum);
+        traceCount++;
+    }
+
+    public long getTraceCount() {
+        return traceCount;
+    }
+
+    /**
+     * Writes collapsed-stack lines, one per (shape, event name), with the
+     * summed delta in milliseconds. Stacks with zero total time are omitted.
+     *
+     * @param out destination
+     * @throws IOException if writing fails
+     */
+    public void writeFolded(Writer out) throws IOException {
+        for (Map.Entry<String, Map<String, Long>> shape : stacks.entrySet()) {
+            String root = shape.getKey();
+            for (Map.Entry<String, Long> frame : shape.getValue().entrySet()) {
+                if (frame.getValue() > 0) {
+                    out.write(root + ";" + frameName(frame.getKey()) + " " + frame.getValue() + "\n");
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Renders a self-contained SVG flame graph. Hovering a frame shows its
+     * name and time.
+     *
+     * @param out   destination
+     * @param width image width in pixels, positive
+     * @throws IOException if writing fails
+     */
+    public void writeSvg(Writer out, int width) throws IOException {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Width must be positive: " + width);
+        }
+        List<Map.Entry<String, Map<String, Long>>> shapes = new ArrayList<>(stacks.entrySet());
+        shapes.sort((a, b) -> Long.compare(sum(b.getValue()), sum(a.getValue())));
+        long total = 0;
+        for (Map.Entry<String, Map<String, Long>> shape : shapes) {
+            total += sum(shape.getValue());
+        }
+
+        int height = TITLE_HEIGHT + 3 * FRAME_HEIGHT + 10;
+        out.write("<?xml version=\"1.0\" standalone=\"no\"?>\n");
+        out.write(String.format(Locale.ROOT,
+                "<svg version=\"1.1\" width=\"%d\" height=\"%d\" xmlns=\"http://www.w3.org/2000/svg\">%n",
+                width, height));
+        out.write("<style>text{font-family:monospace;font-size:12px}rect{stroke:white;stroke-width:0.5}</style>\n");
+        out.write(String.format(Locale.ROOT,
+                "<rect x=\"0\" y=\"0\" width=\"%d\" height=\"%d\" fill=\"#f8f8f8\"/>%n", width, height));
+        out.write(String.format(Locale.ROOT,
+                "<text x=\"%d\" y=\"20\" text-anchor=\"middle\" style=\"font-size:16px\">%s</text>%n",
+                width / 2, xml("Request time by shape and event (" + traceCount + " traces)")));
+
+        if (total == 0) {
+            out.write("</svg>\n");
+            out.flush();
+            return;
+        }
+
+        // Bottom row is the root; shapes above it; events on top
+        int rootY = height - 10 - FRAME_HEIGHT;
+        double scale = (double) width / total;
+        writeFrame(out, "all", total, total, 0, width, rootY);
+
+        double x = 0;
+        for (Map.Entry<String, Map<String, Long>> shape : shapes) {
+            long shapeTotal = sum(shape.getValue());
+            if (shapeTotal == 0) {
+                continue;
+            }
+            String label = shape.getKey() + " (" + traceCounts.get(shape.getKey()) + " traces)";
+            writeFrame(out, label, shapeTotal, total, x, shapeTotal * scale, rootY - FRAME_HEIGHT);
+
+            double eventX = x;
+            for (Map.Entry<String, Long> frame : shape.getValue().entrySet()) {
+                if (frame.getValue() == 0) {
+                    continue;
+                }
+                double frameWidth = frame.getValue() * scale;
+                writeFrame(out, frameName(frame.getKey()), frame.getValue(), total, eventX, frameWidth,
+                        rootY - 2 * FRAME_HEIGHT);
+                eventX += frameWidth;
+            }
+            x += shapeTotal * scale;
+        }
+
+        out.write("</svg>\n");
+        out.flush();
+    }
+
+    private void writeFrame(Writer out, String name, long millis, long total, double x, double width, int y)
+            throws IOException {
+        String tooltip = String.format(Locale.ROOT, "%s (%d ms, %.2f%%)", name, millis, 100.0 * millis / total);
+        out.write("<g><title>" + xml(tooltip) + "</title>");
+        out.write(String.format(Locale.ROOT,
+                "<rect x=\"%.1f\" y=\"%d\" width=\"%.1f\" height=\"%d\" fill=\"%s\"/>",
+                x, y, width, FRAME_HEIGHT, color(name)));
+
+        int fits = (int) ((width - 6) / CHAR_WIDTH);
+        if (fits >= 3) {
+            String text = name.length() <= fits ? name : name.substring(0, fits - 2) + "..";
+            out.write(String.format(Locale.ROOT, "<text x=\"%.1f\" y=\"%d\">%s</text>",
+                    x + 3, y + FRAME_HEIGHT - 5, xml(text)));
+        }
+        out.write("</g>\n");
+    }
+
+    private static long sum(Map<String, Long> frames) {
+        long sum = 0;
+        for (long value : frames.values()) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Folded format reserves ';' as the frame separator and a trailing space
+     * before the count.
+     */
+    private static String frameName(Object frame) {
+        return frame.toString().replace(';', ':').replace('\n', ' ');
+    }
+
+    /**
+     * Warm palette like flamegraph.pl, stable per frame name.
+     */
+    private static String color(String name) {
+        int hash = name.hashCode();
+        int r = 205 + Math.floorMod(hash, 50);
+        int g = 80 + Math.floorMod(hash >> 8, 150);
+        int b = Math.floorMod(hash >> 16, 55);
+        return "rgb(" + r + "," + g + "," + b + ")";
+    }
+
+    private static String xml(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
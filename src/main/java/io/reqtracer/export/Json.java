@@ -0,0 +1,48 @@
+package io.reqtracer.export;
+
+/**
+ * JSON string helpers shared by the exporters and CLI formatters.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Returns the value as a quoted, escaped JSON string literal.
+     *
+     * @param value string to quote
+     * @return JSON string literal
+     */
+    public static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
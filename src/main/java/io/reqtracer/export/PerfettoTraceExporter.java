@@ -0,0 +1,137 @@
+package io.reqtracer.export;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Exports traces in the Perfetto protobuf trace format.
+ * <p>
+ * The output is a stream of {@code TracePacket} messages that the Perfetto UI
+ * (ui.perfetto.dev) opens directly. Each thread that started a trace gets a
+ * track; each trace is a slice on that track and each event is a nested slice
+ * spanning its delta, the same layout as {@link ChromeTraceExporter}.
+ * <p>
+ * Packets are encoded into a reusable buffer and written one at a time, so
+ * memory stays bounded.
+ */
+public class PerfettoTraceExporter implements TraceExporter {
+
+    // Trace
+    private static final int TRACE_PACKET = 1;
+
+    // TracePacket
+    private static final int PACKET_TIMESTAMP = 8;
+    private static final int PACKET_SEQUENCE_ID = 10;
+    private static final int PACKET_TRACK_EVENT = 11;
+    private static final int PACKET_TRACK_DESCRIPTOR = 60;
+
+    // TrackDescriptor
+    private static final int DESCRIPTOR_UUID = 1;
+    private static final int DESCRIPTOR_NAME = 2;
+
+    // TrackEvent
+    private static final int EVENT_DEBUG_ANNOTATIONS = 4;
+    private static final int EVENT_TYPE = 9;
+    private static final int EVENT_TRACK_UUID = 11;
+    private static final int EVENT_NAME = 23;
+
+    // DebugAnnotation
+    private static final int ANNOTATION_STRING_VALUE = 6;
+    private static final int ANNOTATION_NAME = 10;
+
+    // TrackEvent.Type
+    private static final int TYPE_SLICE_BEGIN = 1;
+    private static final int TYPE_SLICE_END = 2;
+    private static final int TYPE_INSTANT = 3;
+
+    private static final int SEQUENCE_ID = 1;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final OutputStream out;
+    private final Set<Long> announcedThreads = new HashSet<>();
+
+    private final ProtoWriter packet = new ProtoWriter();
+    private final ProtoWriter body = new ProtoWriter();
+    private final ProtoWriter annotation = new ProtoWriter();
+
+    public PerfettoTraceExporter(OutputStream out) {
+        this.out = new BufferedOutputStream(out);
+    }
+
+    @Override
+    public void write(Trace trace) throws IOException {
+        long trackUuid = trackUuid(trace.getThreadId());
+
+        if (announcedThreads.add(trace.getThreadId())) {
+            body.reset();
+            body.varint(DESCRIPTOR_UUID, trackUuid);
+            body.string(DESCRIPTOR_NAME, trace.getThreadName());
+
+            packet.reset();
+            packet.varint(PACKET_SEQUENCE_ID, SEQUENCE_ID);
+            packet.message(PACKET_TRACK_DESCRIPTOR, body);
+            packet.writeAsField(TRACE_PACKET, out);
+        }
+
+        List<TraceEvent> events = trace.getEvents();
+        long start = trace.getStartTime();
+        long end = start + ChromeTraceExporter.requestDuration(trace, events);
+
+        writeEvent(start, TYPE_SLICE_BEGIN, trackUuid, trace.getTraceId(), null);
+        for (TraceEvent event : events) {
+            long delta = event.getDelta();
+            if (delta > 0) {
+                writeEvent(event.getTimestamp() - delta, TYPE_SLICE_BEGIN, trackUuid, event.getName(),
+                        event.getMetadata());
+                writeEvent(event.getTimestamp(), TYPE_SLICE_END, trackUuid, null, null);
+            } else {
+                writeEvent(event.getTimestamp(), TYPE_INSTANT, trackUuid, event.getName(), event.getMetadata());
+            }
+        }
+        writeEvent(end, TYPE_SLICE_END, trackUuid, null, null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeEvent(long timeMillis, int type, long trackUuid, String name, Map<String, String> metadata)
+            throws IOException {
+        body.reset();
+        body.varint(EVENT_TYPE, type);
+        body.varint(EVENT_TRACK_UUID, trackUuid);
+        if (name != null) {
+            body.string(EVENT_NAME, name);
+        }
+        if (metadata != null) {
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                annotation.reset();
+                annotation.string(ANNOTATION_NAME, entry.getKey());
+                annotation.string(ANNOTATION_STRING_VALUE, entry.getValue());
+                body.message(EVENT_DEBUG_ANNOTATIONS, annotation);
+            }
+        }
+
+        packet.reset();
+        packet.varint(PACKET_TIMESTAMP, timeMillis * NANOS_PER_MILLI);
+        packet.varint(PACKET_SEQUENCE_ID, SEQUENCE_ID);
+        packet.message(PACKET_TRACK_EVENT, body);
+        packet.writeAsField(TRACE_PACKET, out);
+    }
+
+    /**
+     * Track UUIDs must be non-zero; thread IDs may legitimately be zero.
+     */
+    private static long trackUuid(long threadId) {
+        return threadId + 1;
+    }
+}
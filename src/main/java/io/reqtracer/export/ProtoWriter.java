@@ -0,0 +1,90 @@
+package io.reqtracer.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal protobuf wire-format encoder.
+ * <p>
+ * Supports only what the Perfetto exporter needs: varint fields, string
+ * fields and nested messages. Buffers are reusable via {@link #reset()} so
+ * encoding a packet does not allocate once the buffer has grown to size.
+ */
+class ProtoWriter {
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+
+    private byte[] buf = new byte[256];
+    private int size;
+
+    void reset() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void varint(int field, long value) {
+        tag(field, WIRE_VARINT);
+        rawVarint(value);
+    }
+
+    void string(int field, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        tag(field, WIRE_LENGTH_DELIMITED);
+        rawVarint(bytes.length);
+        rawBytes(bytes, 0, bytes.length);
+    }
+
+    void message(int field, ProtoWriter nested) {
+        tag(field, WIRE_LENGTH_DELIMITED);
+        rawVarint(nested.size);
+        rawBytes(nested.buf, 0, nested.size);
+    }
+
+    /**
+     * Writes this buffer to the stream as a length-delimited field.
+     */
+    void writeAsField(int field, OutputStream out) throws IOException {
+        writeVarint(out, ((long) field << 3) | WIRE_LENGTH_DELIMITED);
+        writeVarint(out, size);
+        out.write(buf, 0, size);
+    }
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private void tag(int field, int wireType) {
+        rawVarint(((long) field << 3) | wireType);
+    }
+
+    private void rawVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[size++] = (byte) value;
+    }
+
+    private void rawBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buf, size, length);
+        size += length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.reqtracer.export;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.storage.TraceStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Streaming sink that writes traces to an external format.
+ * <p>
+ * Implementations write each trace as soon as it is passed in and never
+ * buffer the whole document, so memory stays bounded regardless of how many
+ * traces are exported. {@link #close()} writes any trailer and closes the
+ * underlying stream.
+ */
+public interface TraceExporter extends Closeable {
+
+    /**
+     * Writes a single trace.
+     *
+     * @param trace trace to export
+     * @throws IOException if the underlying stream fails
+     */
+    void write(Trace trace) throws IOException;
+
+    /**
+     * Writes every trace in the store whose start time falls in
+     * [fromMillis, toMillis).
+     * <p>
+     * Traces are fetched one at a time by ID, so only a single trace is held
+     * by the exporter at any moment.
+     *
+     * @param store      source store
+     * @param fromMillis inclusive lower bound on trace start time
+     * @param toMillis   exclusive upper bound on trace start time
+     * @return number of traces written
+     * @throws IOException if the underlying stream fails
+     */
+    default int writeAll(TraceStore store, long fromMillis, long toMillis) throws IOException {
+        int count = 0;
+        for (String traceId : store.listTraceIds()) {
+            Optional<Trace> trace = store.get(traceId);
+            if (trace.isEmpty()) {
+                continue; // removed concurrently
+            }
+            long start = trace.get().getStartTime();
+            if (start >= fromMillis && start < toMillis) {
+                write(trace.get());
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,89 @@
+package io.reqtracer.jfr;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+
+import java.util.Map;
+
+/**
+ * Emits trace lifecycle events to JDK Flight Recorder, so CPU samples, GC
+ * pauses and lock contention in a recording line up with request phases.
+ * <p>
+ * Three event types are defined, all in the "Request Tracer" category:
+ * {@code io.reqtracer.TraceStart}, {@code io.reqtracer.Mark} (name, delta,
+ * elapsed time and metadata) and {@code io.reqtracer.TraceEnd} (total
+ * duration). They are committed on the request thread, so each one carries
+ * that thread.
+ * <p>
+ * Every method first asks the event whether it should be committed. When no
+ * recording has the event enabled, that check is constant-folded by the JIT
+ * and the unused event object is eliminated, so nothing is allocated or
+ * formatted.
+ */
+public final class FlightRecorderEvents {
+
+    private FlightRecorderEvents() {
+    }
+
+    /**
+     * Emits a TraceStart event for a trace that just started.
+     */
+    public static void traceStarted(Trace trace) {
+        TraceStartEvent event = new TraceStartEvent();
+        if (event.shouldCommit()) {
+            event.traceId = trace.getTraceId();
+            event.commit();
+        }
+    }
+
+    /**
+     * Emits a Mark event for the most recent event of a trace.
+     */
+    public static void marked(Trace trace) {
+        TraceMarkEvent event = new TraceMarkEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        TraceEvent last = trace.getLastEvent();
+        if (last == null) {
+            return;
+        }
+        event.traceId = trace.getTraceId();
+        event.name = last.getName();
+        event.delta = last.getDelta();
+        event.elapsed = last.getElapsedSinceStart();
+        event.metadata = last.hasMetadata() ? formatMetadata(last.getMetadata()) : null;
+        event.commit();
+    }
+
+    /**
+     * Emits a TraceEnd event for a trace that just ended.
+     */
+    public static void traceEnded(Trace trace) {
+        TraceEndEvent event = new TraceEndEvent();
+        if (event.shouldCommit()) {
+            event.traceId = trace.getTraceId();
+            event.traceDuration = trace.getTotalDuration();
+            event.eventCount = trace.getEventCount();
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns true if any running recording has trace events enabled.
+     */
+    public static boolean isRecording() {
+        return new TraceMarkEvent().isEnabled();
+    }
+
+    private static String formatMetadata(Map<String, String> metadata) {
+        StringBuilder sb = new StringBuilder();
+        metadata.forEach((key, value) -> {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(key).append('=').append(value);
+        });
+        return sb.toString();
+    }
+}
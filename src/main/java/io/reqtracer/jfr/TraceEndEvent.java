@@ -0,0 +1,30 @@
+package io.reqtracer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event committed when a trace ends, carrying its total duration.
+ */
+@Name("io.reqtracer.TraceEnd")
+@Label("Trace End")
+@Category("Request Tracer")
+@Description("A request trace ended on this thread")
+@StackTrace(false)
+final class TraceEndEvent extends Event {
+
+    @Label("Trace ID")
+    String traceId;
+
+    @Label("Trace Duration")
+    @Timespan(Timespan.MILLISECONDS)
+    long traceDuration;
+
+    @Label("Event Count")
+    int eventCount;
+}
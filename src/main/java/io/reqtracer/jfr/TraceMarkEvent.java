@@ -0,0 +1,40 @@
+package io.reqtracer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event committed for each {@code mark}, with the same name, delta and
+ * metadata as the recorded trace event.
+ */
+@Name("io.reqtracer.Mark")
+@Label("Trace Mark")
+@Category("Request Tracer")
+@Description("An event recorded in a request trace")
+@StackTrace(false)
+final class TraceMarkEvent extends Event {
+
+    @Label("Trace ID")
+    String traceId;
+
+    @Label("Event Name")
+    String name;
+
+    @Label("Delta")
+    @Description("Time since the previous event of the trace")
+    @Timespan(Timespan.MILLISECONDS)
+    long delta;
+
+    @Label("Elapsed")
+    @Description("Time since the trace started")
+    @Timespan(Timespan.MILLISECONDS)
+    long elapsed;
+
+    @Label("Metadata")
+    String metadata;
+}
@@ -0,0 +1,22 @@
+package io.reqtracer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event committed when a trace starts.
+ */
+@Name("io.reqtracer.TraceStart")
+@Label("Trace Start")
+@Category("Request Tracer")
+@Description("A request trace started on this thread")
+@StackTrace(false)
+final class TraceStartEvent extends Event {
+
+    @Label("Trace ID")
+    String traceId;
+}
@@ -0,0 +1,303 @@
+package io.reqtracer.listener;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.storage.TraceStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps a few example traces for every event name and latency band, so a
+ * bad percentile can be explained by a concrete trace without keeping every
+ * trace.
+ * <p>
+ * Register it as a listener on the tracer whose store it pins into:
+ *
+ * <pre>
+ * Tracer.addListener(new ExemplarSampler(Tracer.getStore()));
+ * </pre>
+ * <p>
+ * Bands are powers of two: 1ms, 2-3ms, 4-7ms, 8-15ms and so on. As each
+ * trace ends, every event's delta, and the total duration under
+ * {@link #TOTAL}, is offered to the reservoir of its band, which keeps a
+ * uniform random sample of everything offered to it (reservoir sampling).
+ * Sampled traces are pinned in the store and released when replaced, so
+ * retention keeps exactly the exemplars. Memory is bounded by
+ * {@value #MAX_EVENT_NAMES} event names, {@value #BANDS} bands and
+ * {@code perBand} exemplars each; each reservoir is updated under its own
+ * lock.
+ */
+public class ExemplarSampler implements TraceListener {
+
+    public static final int DEFAULT_PER_BAND = 3;
+
+    /** Name under which total trace duration is sampled. */
+    public static final String TOTAL = OutlierDetector.TOTAL;
+
+    static final int BANDS = 32;
+    static final int MAX_EVENT_NAMES = 100;
+
+    private final TraceStore store;
+    private final int perBand;
+    private final ConcurrentHashMap<String, AtomicReferenceArray<Reservoir>> reservoirs = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a sampler keeping {@value #DEFAULT_PER_BAND} exemplars per band.
+     *
+     * @param store store the completed traces are in
+     */
+    public ExemplarSampler(TraceStore store) {
+        this(store, DEFAULT_PER_BAND);
+    }
+
+    /**
+     * @param store   store the completed traces are in
+     * @param perBand exemplars kept per event name and band
+     */
+    public ExemplarSampler(TraceStore store, int perBand) {
+        if (perBand <= 0) {
+            throw new IllegalArgumentException("Exemplars per band must be positive");
+        }
+        this.store = Objects.requireNonNull(store, "Store cannot be null");
+        this.perBand = perBand;
+    }
+
+    @Override
+    public void onTraceCompleted(Trace trace) {
+        for (TraceEvent event : trace.getEvents()) {
+            offer(trace, event.getName(), event.getDelta());
+        }
+        if (trace.isEnded()) {
+            offer(trace, TOTAL, trace.getTotalDuration());
+        }
+    }
+
+    private void offer(Trace trace, String name, long value) {
+        AtomicReferenceArray<Reservoir> bands = reservoirs.get(name);
+        if (bands == null) {
+            if (reservoirs.size() >= MAX_EVENT_NAMES) {
+                return;
+            }
+            bands = reservoirs.computeIfAbsent(name, n -> new AtomicReferenceArray<>(BANDS));
+        }
+        int band = band(value);
+        Reservoir reservoir = bands.get(band);
+        if (reservoir == null) {
+            bands.compareAndSet(band, null, new Reservoir(perBand));
+            reservoir = bands.get(band);
+        }
+
+        reservoir.offer(new Exemplar(trace.getTraceId(), trace.getStartTime(), name, value), store);
+    }
+
+    /**
+     * Returns the band a value falls in: 0 for 0ms, otherwise the number of
+     * bits in the value, so band b covers 2^(b-1) to 2^b - 1 milliseconds.
+     */
+    public static int band(long millis) {
+        return millis <= 0 ? 0 : Math.min(BANDS - 1, 64 - Long.numberOfLeadingZeros(millis));
+    }
+
+    /**
+     * Returns the smallest value in a band, in milliseconds.
+     */
+    public static long bandLowerBound(int band) {
+        return band == 0 ? 0 : 1L << (band - 1);
+    }
+
+    /**
+     * Returns the largest value in a band, in milliseconds.
+     */
+    public static long bandUpperBound(int band) {
+        return band == 0 ? 0 : band == BANDS - 1 ? Long.MAX_VALUE : (1L << band) - 1;
+    }
+
+    /**
+     * Returns a band as text, e.g. "64-127ms".
+     */
+    public static String bandLabel(int band) {
+        long lower = bandLowerBound(band);
+        long upper = bandUpperBound(band);
+        return lower == upper ? lower + "ms" : upper == Long.MAX_VALUE ? lower + "ms+" : lower + "-" + upper + "ms";
+    }
+
+    /**
+     * Returns the event names with exemplars, {@link #TOTAL} included.
+     */
+    public Set<String> getEventNames() {
+        return new TreeSet<>(reservoirs.keySet());
+    }
+
+    /**
+     * Returns the bands of an event that saw any value, fastest first.
+     */
+    public List<Band> getBands(String eventName) {
+        AtomicReferenceArray<Reservoir> bands = reservoirs.get(eventName);
+        if (bands == null) {
+            return Collections.emptyList();
+        }
+        List<Band> result = new ArrayList<>();
+        for (int b = 0; b < BANDS; b++) {
+            Reservoir reservoir = bands.get(b);
+            if (reservoir != null) {
+                result.add(reservoir.snapshot(b));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the exemplars of the band a value falls in.
+     *
+     * @param eventName event name, or {@link #TOTAL}
+     * @param millis    any value in the band
+     * @return exemplars in the order they were sampled, empty if none
+     */
+    public List<Exemplar> getExemplars(String eventName, long millis) {
+        int band = band(millis);
+        for (Band b : getBands(eventName)) {
+            if (b.getIndex() == band) {
+                return b.getExemplars();
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Algorithm R over a fixed number of slots. Each slot holds one pin on its
+     * trace; pins are counted, so a trace in two slots stays pinned until
+     * both let it go.
+     */
+    private static final class Reservoir {
+        private final Exemplar[] slots;
+        private final boolean[] pinned;
+        private long seen;
+
+        Reservoir(int size) {
+            this.slots = new Exemplar[size];
+            this.pinned = new boolean[size];
+        }
+
+        synchronized void offer(Exemplar exemplar, TraceStore store) {
+            seen++;
+            long slot = seen <= slots.length ? seen - 1 : ThreadLocalRandom.current().nextLong(seen);
+            if (slot >= slots.length) {
+                return;
+            }
+            int index = (int) slot;
+            if (pinned[index]) {
+                store.unpin(slots[index].traceId);
+            }
+            slots[index] = exemplar;
+            // A trace the store no longer has cannot be pinned, and must not
+            // be unpinned later
+            pinned[index] = store.pin(exemplar.traceId);
+        }
+
+        synchronized Band snapshot(int index) {
+            List<Exemplar> exemplars = new ArrayList<>(slots.length);
+            for (Exemplar exemplar : slots) {
+                if (exemplar != null) {
+                    exemplars.add(exemplar);
+                }
+            }
+            return new Band(index, seen, exemplars);
+        }
+    }
+
+    /**
+     * One latency band of one event: how many values fell in it and the
+     * exemplars kept. Immutable.
+     */
+    public static final class Band {
+        private final int index;
+        private final long count;
+        private final List<Exemplar> exemplars;
+
+        Band(int index, long count, List<Exemplar> exemplars) {
+            this.index = index;
+            this.count = count;
+            this.exemplars = Collections.unmodifiableList(exemplars);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getLowerBound() {
+            return bandLowerBound(index);
+        }
+
+        public long getUpperBound() {
+            return bandUpperBound(index);
+        }
+
+        /**
+         * Returns how many values fell in this band.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public List<Exemplar> getExemplars() {
+            return exemplars;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d seen, %d exemplars", bandLabel(index), count, exemplars.size());
+        }
+    }
+
+    /**
+     * A sampled trace and the value that placed it in its band. Immutable.
+     */
+    public static final class Exemplar {
+        private final String traceId;
+        private final long startTime;
+        private final String eventName;
+        private final long value;
+
+        Exemplar(String traceId, long startTime, String eventName, long value) {
+            this.traceId = traceId;
+            this.startTime = startTime;
+            this.eventName = eventName;
+            this.value = value;
+        }
+
+        public String getTraceId() {
+            return traceId;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * Returns the event whose delta was sampled, or {@link #TOTAL}.
+         */
+        public String getEventName() {
+            return eventName;
+        }
+
+        /**
+         * Returns the sampled delta or duration in milliseconds.
+         */
+        public long getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %dms", traceId, eventName, value);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package io.reqtracer.listener;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.storage.TraceStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming detector of abnormally slow traces.
+ * <p>
+ * Register it as a listener on the tracer whose store it pins into:
+ *
+ * <pre>
+ * Tracer.addListener(new OutlierDetector(Tracer.getStore()));
+ * </pre>
+ * <p>
+ * For every event name, and for total duration, the detector keeps an
+ * exponentially weighted moving average (EWMA) of past values, updated as
+ * each trace ends. A trace is flagged when any event's delta, or its total
+ * duration, exceeds the baseline by the configured factor and by at least
+ * {@value #MIN_EXCESS_MILLIS}ms (so 0ms to 1ms jumps don't count). No baseline
+ * is trusted before {@value #WARMUP} samples. An outlier enters the average
+ * capped at that same threshold and at a tenth of the usual weight, so a
+ * burst of outliers barely moves the baseline while a lasting shift is still
+ * absorbed after a few hundred requests.
+ * <p>
+ * Flagged traces are pinned in the store, so retention keeps them, and
+ * listed by {@link #getOutliers()}; one the store no longer holds, say
+ * evicted already, is only counted. At most {@code maxPinned} stay pinned;
+ * beyond that the oldest is unpinned. Updates are lock-free CAS loops on
+ * per-name state; at most {@value #MAX_EVENT_NAMES} event names are tracked.
+ */
+public class OutlierDetector implements TraceListener {
+
+    public static final double DEFAULT_FACTOR = 3.0;
+    public static final int DEFAULT_MAX_PINNED = 1_000;
+
+    /** Name under which total trace duration is tracked. */
+    public static final String TOTAL = "TOTAL";
+
+    static final double SMOOTHING = 0.05;
+    static final double OUTLIER_WEIGHT = 0.1;
+    static final int WARMUP = 50;
+    static final long MIN_EXCESS_MILLIS = 5;
+    static final int MAX_EVENT_NAMES = 1_000;
+
+    private final TraceStore store;
+    private final double factor;
+    private final int maxPinned;
+    private final ConcurrentHashMap<String, Baseline> baselines = new ConcurrentHashMap<>();
+    private final Baseline total = new Baseline();
+    private final ConcurrentLinkedDeque<Outlier> outliers = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger pinnedCount = new AtomicInteger();
+    private final LongAdder tracesSeen = new LongAdder();
+    private final LongAdder outliersSeen = new LongAdder();
+
+    /**
+     * Creates a detector with the default factor and pin limit.
+     *
+     * @param store store the completed traces are in
+     */
+    public OutlierDetector(TraceStore store) {
+        this(store, DEFAULT_FACTOR, DEFAULT_MAX_PINNED);
+    }
+
+    /**
+     * @param store     store the completed traces are in
+     * @param factor    how many times the baseline a value must reach, above 1
+     * @param maxPinned how many flagged traces to keep pinned
+     */
+    public OutlierDetector(TraceStore store, double factor, int maxPinned) {
+        if (!(factor > 1)) {
+            throw new IllegalArgumentException("Factor must be greater than 1: " + factor);
+        }
+        if (maxPinned <= 0) {
+            throw new IllegalArgumentException("Pin limit must be positive");
+        }
+        this.store = Objects.requireNonNull(store, "Store cannot be null");
+        this.factor = factor;
+        this.maxPinned = maxPinned;
+    }
+
+    @Override
+    public void onTraceCompleted(Trace trace) {
+        tracesSeen.increment();
+        Outlier worst = null;
+
+        for (TraceEvent event : trace.getEvents()) {
+            Baseline baseline = baselineFor(event.getName());
+            if (baseline != null) {
+                worst = worse(worst, check(trace, event.getName(), event.getDelta(), baseline));
+            }
+        }
+        worst = worse(worst, check(trace, TOTAL, trace.getTotalDuration(), total));
+
+        if (worst != null) {
+            outliersSeen.increment();
+            // A trace the store no longer has cannot be pinned, and must not
+            // be unpinned later: the pin may belong to someone else by then
+            if (!store.pin(trace.getTraceId())) {
+                return;
+            }
+            outliers.addLast(worst);
+            if (pinnedCount.incrementAndGet() > maxPinned) {
+                Outlier oldest = outliers.pollFirst();
+                if (oldest != null) {
+                    pinnedCount.decrementAndGet();
+                    store.unpin(oldest.traceId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the currently pinned outliers, oldest first.
+     */
+    public List<Outlier> getOutliers() {
+        return new ArrayList<>(outliers);
+    }
+
+    /**
+     * Returns the current baseline for an event name, or {@link #TOTAL}.
+     *
+     * @return average in milliseconds, empty until warmed up
+     */
+    public OptionalDouble getBaseline(String eventName) {
+        Baseline baseline = TOTAL.equals(eventName) ? total : baselines.get(eventName);
+        double mean = baseline == null ? Double.NaN : baseline.trusted();
+        return Double.isNaN(mean) ? OptionalDouble.empty() : OptionalDouble.of(mean);
+    }
+
+    /**
+     * Returns how many traces were examined.
+     */
+    public long getTraceCount() {
+        return tracesSeen.sum();
+    }
+
+    /**
+     * Returns how many traces were flagged, including ones since unpinned.
+     */
+    public long getOutlierCount() {
+        return outliersSeen.sum();
+    }
+
+    private Baseline baselineFor(String name) {
+        Baseline baseline = baselines.get(name);
+        if (baseline == null && baselines.size() < MAX_EVENT_NAMES) {
+            baseline = baselines.computeIfAbsent(name, n -> new Baseline());
+        }
+        return baseline;
+    }
+
+    private Outlier check(Trace trace, String name, long value, Baseline baseline) {
+        double mean = baseline.update(value, this);
+        if (Double.isNaN(mean) || value <= threshold(mean)) {
+            return null;
+        }
+        return new Outlier(trace.getTraceId(), trace.getStartTime(), name, value, mean);
+    }
+
+    double threshold(double mean) {
+        return Math.max(factor * mean, mean + MIN_EXCESS_MILLIS);
+    }
+
+    private static Outlier worse(Outlier a, Outlier b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && b.getRatio() > a.getRatio() ? b : a;
+    }
+
+    /**
+     * EWMA of one series, as the bits of a double so it can be updated with
+     * CAS. Starts as a plain running mean (weight 1/n) until that weight
+     * drops to {@link #SMOOTHING}, which removes the start-up bias.
+     */
+    private static final class Baseline {
+        private final AtomicLong mean = new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+        private final AtomicLong count = new AtomicLong();
+
+        /**
+         * Folds in a value and returns the trusted mean from before it, or
+         * NaN while warming up.
+         */
+        double update(long value, OutlierDetector detector) {
+            long n = count.incrementAndGet();
+            double weight = Math.max(SMOOTHING, 1.0 / n);
+            while (true) {
+                long bits = mean.get();
+                double current = Double.longBitsToDouble(bits);
+                double next;
+                if (Double.isNaN(current)) {
+                    next = value;
+                } else {
+                    double threshold = detector.threshold(current);
+                    next = value <= threshold
+                            ? current + weight * (value - current)
+                            : current + weight * OUTLIER_WEIGHT * (threshold - current);
+                }
+                if (mean.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                    return n > WARMUP ? current : Double.NaN;
+                }
+            }
+        }
+
+        double trusted() {
+            return count.get() >= WARMUP ? Double.longBitsToDouble(mean.get()) : Double.NaN;
+        }
+    }
+
+    /**
+     * A flagged trace and the value that flagged it. Immutable.
+     */
+    public static final class Outlier {
+        private final String traceId;
+        private final long startTime;
+        private final String eventName;
+        private final long value;
+        private final double baseline;
+
+        Outlier(String traceId, long startTime, String eventName, long value, double baseline) {
+            this.traceId = traceId;
+            this.startTime = startTime;
+            this.eventName = eventName;
+            this.value = value;
+            this.baseline = baseline;
+        }
+
+        public String getTraceId() {
+            return traceId;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * Returns the event whose delta was abnormal, or {@link #TOTAL}.
+         */
+        public String getEventName() {
+            return eventName;
+        }
+
+        /**
+         * Returns the observed delta or duration in milliseconds.
+         */
+        public long getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the baseline in milliseconds at the time of flagging.
+         */
+        public double getBaseline() {
+            return baseline;
+        }
+
+        /**
+         * Returns value / baseline, with the baseline floored at 1ms.
+         */
+        public double getRatio() {
+            return value / Math.max(1.0, baseline);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %dms (baseline %.1fms, x%.1f)",
+                    traceId, eventName, value, baseline, getRatio());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.reqtracer.listener;
+
+/**
+ * Point-in-time counters for one {@link TracePublisher} subscriber.
+ */
+public class SubscriberStats {
+
+    private final String subscriber;
+    private final int lag;
+    private final long delivered;
+    private final long dropped;
+
+    SubscriberStats(String subscriber, int lag, long delivered, long dropped) {
+        this.subscriber = subscriber;
+        this.lag = lag;
+        this.delivered = delivered;
+        this.dropped = dropped;
+    }
+
+    /**
+     * Returns the subscriber's {@code toString()}.
+     */
+    public String getSubscriber() {
+        return subscriber;
+    }
+
+    /**
+     * Returns the number of traces buffered but not yet delivered.
+     */
+    public int getLag() {
+        return lag;
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Returns the number of traces discarded because the buffer was full.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SubscriberStats{subscriber='%s', lag=%d, delivered=%d, dropped=%d}",
+                subscriber, lag, delivered, dropped);
+    }
+}
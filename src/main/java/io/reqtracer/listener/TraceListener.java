@@ -0,0 +1,24 @@
+package io.reqtracer.listener;
+
+import io.reqtracer.core.Trace;
+
+/**
+ * Callback for completed traces.
+ * <p>
+ * Registered with {@link io.reqtracer.Tracer#addListener(TraceListener)} and
+ * invoked on the request thread by {@link io.reqtracer.Tracer#end()}, after
+ * the trace has been stored. Implementations must be fast and must not block;
+ * hand work off to another thread (see {@link TracePublisher}) for anything
+ * slow. Exceptions thrown by a listener are caught and do not affect the
+ * request or other listeners.
+ */
+@FunctionalInterface
+public interface TraceListener {
+
+    /**
+     * Called once for each ended trace.
+     *
+     * @param trace the completed trace
+     */
+    void onTraceCompleted(Trace trace);
+}
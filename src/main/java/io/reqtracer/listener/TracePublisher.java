@@ -0,0 +1,288 @@
+package io.reqtracer.listener;
+
+import io.reqtracer.core.Trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Flow.Publisher} of completed traces.
+ * <p>
+ * Register it as a listener and subscribe consumers to it:
+ *
+ * <pre>
+ * TracePublisher publisher = new TracePublisher();
+ * Tracer.addListener(publisher);
+ * publisher.subscribe(mySubscriber);
+ * </pre>
+ * <p>
+ * Each subscriber gets its own bounded buffer. Handing a trace to a
+ * subscriber is a lock-free enqueue on the request thread; delivery happens
+ * on the publisher's executor, only as fast as the subscriber requests. When
+ * a subscriber's buffer is full the request thread never waits: depending on
+ * the subscription's {@link OverflowPolicy} the trace is dropped for that
+ * subscriber, or the subscriber is disconnected with an error.
+ */
+public class TracePublisher implements Flow.Publisher<Trace>, TraceListener, AutoCloseable {
+
+    /**
+     * What to do when a subscriber's buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Discard the new trace for this subscriber and count it as dropped. */
+        DROP,
+        /** Cancel the subscription and signal {@code onError}. */
+        DISCONNECT
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    private final Executor executor;
+    private final List<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong totalDropped = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates a publisher that delivers on the common fork-join pool.
+     */
+    public TracePublisher() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a publisher that delivers on the given executor.
+     *
+     * @param executor executor running subscriber callbacks
+     */
+    public TracePublisher(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "Executor cannot be null");
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Trace> subscriber) {
+        subscribe(subscriber, DEFAULT_BUFFER_SIZE, OverflowPolicy.DROP);
+    }
+
+    /**
+     * Subscribes with an explicit buffer size and overflow policy.
+     *
+     * @param subscriber subscriber to add
+     * @param bufferSize maximum traces buffered for this subscriber
+     * @param policy     what to do when the buffer is full
+     */
+    public void subscribe(Flow.Subscriber<? super Trace> subscriber, int bufferSize, OverflowPolicy policy) {
+        Objects.requireNonNull(subscriber, "Subscriber cannot be null");
+        Objects.requireNonNull(policy, "Overflow policy cannot be null");
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+
+        BufferedSubscription subscription = new BufferedSubscription(subscriber, bufferSize, policy);
+        subscriber.onSubscribe(subscription);
+        // Add before checking: a close() that iterated without this
+        // subscription has set the flag by then. Completing twice is harmless.
+        subscriptions.add(subscription);
+        if (closed) {
+            subscription.complete();
+        }
+        if (subscription.terminated) {
+            subscriptions.remove(subscription); // cancelled in onSubscribe
+        }
+    }
+
+    /**
+     * Offers the trace to every subscriber without blocking.
+     */
+    @Override
+    public void onTraceCompleted(Trace trace) {
+        for (BufferedSubscription subscription : subscriptions) {
+            subscription.offer(trace);
+        }
+    }
+
+    /**
+     * Returns counters for each current subscriber.
+     */
+    public List<SubscriberStats> getSubscriberStats() {
+        List<SubscriberStats> stats = new ArrayList<>();
+        for (BufferedSubscription subscription : subscriptions) {
+            stats.add(subscription.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the number of traces dropped across all subscribers, including
+     * ones that have since gone away.
+     */
+    public long getTotalDropped() {
+        return totalDropped.get();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Completes every subscriber once its buffer has been delivered. Traces
+     * offered after closing are ignored.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (BufferedSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * Per-subscriber buffer and delivery loop. All subscriber signals are
+     * issued from {@link #drain()}, which the work-in-progress counter keeps
+     * to one thread at a time.
+     */
+    private final class BufferedSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Trace> subscriber;
+        private final int capacity;
+        private final OverflowPolicy policy;
+
+        private final ConcurrentLinkedQueue<Trace> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+
+        private volatile boolean terminated;
+        private volatile boolean completing;
+        private volatile Throwable error;
+
+        BufferedSubscription(Flow.Subscriber<? super Trace> subscriber, int capacity, OverflowPolicy policy) {
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+            this.policy = policy;
+        }
+
+        void offer(Trace trace) {
+            if (terminated || completing || error != null) {
+                return;
+            }
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+                totalDropped.incrementAndGet();
+                if (policy == OverflowPolicy.DISCONNECT) {
+                    error = new IllegalStateException(
+                            "Subscriber too slow: buffer of " + capacity + " traces is full");
+                    schedule();
+                }
+                return;
+            }
+            queue.offer(trace);
+            schedule();
+        }
+
+        void complete() {
+            completing = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " traces; must be positive");
+            } else {
+                demand.getAndUpdate(current -> {
+                    long next = current + n;
+                    return next < 0 ? Long.MAX_VALUE : next;
+                });
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            terminate();
+        }
+
+        SubscriberStats stats() {
+            return new SubscriberStats(subscriber.toString(), size.get(), delivered.get(), dropped.get());
+        }
+
+        private void terminate() {
+            terminated = true;
+            subscriptions.remove(this);
+            queue.clear();
+            size.set(0);
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    terminate();
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                if (terminated) {
+                    return;
+                }
+                Throwable failure = error;
+                if (failure != null) {
+                    terminate();
+                    subscriber.onError(failure);
+                    return;
+                }
+
+                long requested = demand.get();
+                long emitted = 0;
+                while (emitted != requested && !terminated) {
+                    Trace trace = queue.poll();
+                    if (trace == null) {
+                        break;
+                    }
+                    size.decrementAndGet();
+                    try {
+                        subscriber.onNext(trace);
+                    } catch (RuntimeException e) {
+                        // Subscriber violated the Flow contract (§2.13); drop it
+                        terminate();
+                        return;
+                    }
+                    emitted++;
+                }
+                if (emitted > 0) {
+                    delivered.addAndGet(emitted);
+                    if (requested != Long.MAX_VALUE) {
+                        demand.addAndGet(-emitted);
+                    }
+                }
+
+                if (completing && queue.isEmpty() && !terminated) {
+                    terminate();
+                    subscriber.onComplete();
+                    return;
+                }
+
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
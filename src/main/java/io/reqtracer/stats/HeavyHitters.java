@@ -0,0 +1,307 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.Clock;
+import io.reqtracer.core.SystemClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.listener.TraceListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds which metadata values account for most of an event's time, e.g. the
+ * {@code table} values behind most DB_QUERY time in the last five minutes.
+ * <p>
+ * Register it as a listener and query it from any thread:
+ *
+ * <pre>
+ * HeavyHitters hitters = new HeavyHitters();
+ * Tracer.addListener(hitters);
+ * ...
+ * hitters.top("DB_QUERY", "table", 10);
+ * </pre>
+ * <p>
+ * Every event's delta is added to a weighted Space-Saving summary for each
+ * of its metadata keys. A summary keeps at most {@code capacity} values; a
+ * value not yet tracked takes over the counter with the least time and
+ * inherits that time as its error. Totals are therefore upper bounds, off
+ * by at most the reported error, and any value with more than
+ * 1/{@code capacity} of the event's time is always tracked. Memory is fixed:
+ * summaries live in {@value #SLOTS} time slots covering the window, with at
+ * most {@value #MAX_SERIES} event/key pairs and {@value #MAX_SERIES} event
+ * totals per slot.
+ * <p>
+ * Slots rotate by compare-and-set, as in {@link RollingMetrics}; each summary
+ * is updated under its own lock, held for one map update (or, for an untracked
+ * value, a scan for the smallest of {@code capacity} counters).
+ */
+public class HeavyHitters implements TraceListener {
+
+    public static final Duration DEFAULT_WINDOW = Duration.ofMinutes(5);
+    public static final int DEFAULT_CAPACITY = 100;
+
+    static final int SLOTS = 10;
+    static final int MAX_SERIES = 256;
+
+    private final Clock clock;
+    private final int capacity;
+    private final TimeRing<Slot> slots;
+
+    /**
+     * Creates a tracker over the last five minutes on the system clock.
+     */
+    public HeavyHitters() {
+        this(SystemClock.getInstance(), DEFAULT_WINDOW, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param clock    time source the window ends at; should match the
+     *                 tracer's
+     * @param window   how far back queries look, at least {@value #SLOTS}
+     *                 milliseconds
+     * @param capacity values tracked per event and key; the larger, the
+     *                 smaller the error
+     */
+    public HeavyHitters(Clock clock, Duration window, int capacity) {
+        this.clock = Objects.requireNonNull(clock, "Clock cannot be null");
+        if (window == null || window.toMillis() < SLOTS) {
+            throw new IllegalArgumentException("Window must be at least " + SLOTS + "ms: " + window);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.slots = new TimeRing<>(SLOTS, window.toMillis() / SLOTS, Slot::new);
+    }
+
+    @Override
+    public void onTraceCompleted(Trace trace) {
+        long time = trace.isEnded() ? trace.getEndTime() : clock.nowMillis();
+        Slot slot = slots.bucket(time);
+        if (slot == null) {
+            return;
+        }
+        for (TraceEvent event : trace.getEvents()) {
+            long delta = event.getDelta();
+            if (delta <= 0) {
+                continue;
+            }
+            LongAdder total = slot.total(event.getName());
+            if (total != null) {
+                total.add(delta);
+            }
+            if (!event.hasMetadata()) {
+                continue;
+            }
+            for (Map.Entry<String, String> entry : event.getMetadata().entrySet()) {
+                Summary summary = slot.summary(event.getName(), entry.getKey(), capacity);
+                if (summary != null) {
+                    summary.add(entry.getValue(), delta);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the values of a metadata key with the most total time in an
+     * event over the window ending now.
+     *
+     * @param eventName   event whose deltas are summed (e.g. "DB_QUERY")
+     * @param metadataKey metadata key whose values are ranked (e.g. "table")
+     * @param k           how many values to return
+     * @return up to k values, most time first
+     */
+    public List<HeavyHitter> top(String eventName, String metadataKey, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        long newest = slots.keyOf(clock.nowMillis());
+        List<Summary> summaries = new ArrayList<>();
+        long eventTotal = 0;
+        for (Slot slot : slots.between(newest - SLOTS + 1, newest)) {
+            LongAdder total = slot.totals.get(eventName);
+            eventTotal += total == null ? 0 : total.sum();
+            Map<String, Summary> byKey = slot.series.get(eventName);
+            Summary summary = byKey == null ? null : byKey.get(metadataKey);
+            if (summary != null) {
+                summaries.add(summary);
+            }
+        }
+
+        // A value missing from a full summary may still have had up to its
+        // smallest counter there
+        Map<String, long[]> merged = new HashMap<>();
+        long[] floors = new long[summaries.size()];
+        List<Map<String, long[]>> snapshots = new ArrayList<>(summaries.size());
+        for (int s = 0; s < summaries.size(); s++) {
+            Map<String, long[]> snapshot = new HashMap<>();
+            floors[s] = summaries.get(s).snapshot(snapshot);
+            snapshots.add(snapshot);
+            snapshot.keySet().forEach(value -> merged.put(value, new long[2]));
+        }
+        for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+            long[] sum = entry.getValue();
+            for (int s = 0; s < snapshots.size(); s++) {
+                long[] counter = snapshots.get(s).get(entry.getKey());
+                sum[0] += counter != null ? counter[0] : floors[s];
+                sum[1] += counter != null ? counter[1] : floors[s];
+            }
+        }
+
+        long total = eventTotal;
+        return merged.entrySet().stream()
+                .map(e -> new HeavyHitter(e.getKey(), e.getValue()[0], e.getValue()[1], total))
+                .sorted(Comparator.comparingLong(HeavyHitter::getTotal).reversed()
+                        .thenComparing(HeavyHitter::getValue))
+                .limit(k)
+                .toList();
+    }
+
+    /**
+     * Summaries of one time slot.
+     */
+    static final class Slot extends TimeRing.Bucket {
+        final ConcurrentHashMap<String, LongAdder> totals = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, ConcurrentHashMap<String, Summary>> series = new ConcurrentHashMap<>();
+        final LongAdder seriesCount = new LongAdder();
+
+        Slot(long key) {
+            super(key);
+        }
+
+        /**
+         * Returns the event's total time, or null if the slot already
+         * totals {@value #MAX_SERIES} other events.
+         */
+        LongAdder total(String eventName) {
+            LongAdder total = totals.get(eventName);
+            if (total != null || totals.size() >= MAX_SERIES) {
+                return total;
+            }
+            return totals.computeIfAbsent(eventName, n -> new LongAdder());
+        }
+
+        Summary summary(String eventName, String metadataKey, int capacity) {
+            ConcurrentHashMap<String, Summary> byKey = series.get(eventName);
+            Summary summary = byKey == null ? null : byKey.get(metadataKey);
+            if (summary != null) {
+                return summary;
+            }
+            if (seriesCount.sum() >= MAX_SERIES) {
+                return null;
+            }
+            byKey = series.computeIfAbsent(eventName, n -> new ConcurrentHashMap<>());
+            return byKey.computeIfAbsent(metadataKey, k -> {
+                seriesCount.increment();
+                return new Summary(capacity);
+            });
+        }
+    }
+
+    /**
+     * Weighted Space-Saving summary: value → {total, error}.
+     */
+    static final class Summary {
+        private final int capacity;
+        private final HashMap<String, long[]> counters = new HashMap<>();
+
+        Summary(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void add(String value, long weight) {
+            long[] counter = counters.get(value);
+            if (counter != null) {
+                counter[0] += weight;
+                return;
+            }
+            if (counters.size() < capacity) {
+                counters.put(value, new long[] {weight, 0});
+                return;
+            }
+            String minValue = null;
+            long[] min = null;
+            for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+                if (min == null || entry.getValue()[0] < min[0]) {
+                    minValue = entry.getKey();
+                    min = entry.getValue();
+                }
+            }
+            counters.remove(minValue);
+            // Reuse the evicted counter: its total becomes the newcomer's error
+            min[1] = min[0];
+            min[0] += weight;
+            counters.put(value, min);
+        }
+
+        /**
+         * Copies the counters and returns the smallest total if the summary
+         * is full, else 0.
+         */
+        synchronized long snapshot(Map<String, long[]> target) {
+            long floor = Long.MAX_VALUE;
+            for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+                long[] counter = entry.getValue();
+                target.put(entry.getKey(), new long[] {counter[0], counter[1]});
+                floor = Math.min(floor, counter[0]);
+            }
+            return counters.size() < capacity ? 0 : floor;
+        }
+    }
+
+    /**
+     * One metadata value and its time in the event. Immutable.
+     */
+    public static final class HeavyHitter {
+        private final String value;
+        private final long total;
+        private final long error;
+        private final long eventTotal;
+
+        HeavyHitter(String value, long total, long error, long eventTotal) {
+            this.value = value;
+            this.total = total;
+            this.error = error;
+            this.eventTotal = eventTotal;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the estimated total time in milliseconds, never below the
+         * true total.
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Returns how much {@link #getTotal()} may overestimate by.
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * Returns the estimated share of the event's total time, 0-100.
+         */
+        public double getShare() {
+            return eventTotal == 0 ? 0 : Math.min(100, total * 100.0 / eventTotal);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %dms (±%dms, %.1f%%)", value, total, error, getShare());
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package io.reqtracer.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Baseline-vs-candidate comparison of two trace populations.
+ * <p>
+ * Events are aligned by name. For each event (and for total duration) the
+ * comparison reports percentile shifts and a two-sided Mann-Whitney U test
+ * of whether candidate latencies are drawn from a different distribution.
+ * The test runs directly on the histograms, ranking whole buckets with tie
+ * correction, so it costs the same for a thousand traces as for a billion.
+ * <p>
+ * An event is a {@link Status#REGRESSION} when its p50 or p99 grew by more
+ * than the threshold and the difference is significant at the given alpha;
+ * {@link Status#IMPROVEMENT} is the mirror image.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * LatencyComparison result = LatencyComparison.compare(
+ *         TraceStats.compute(baselineStore), TraceStats.compute(candidateStore),
+ *         10.0, 0.05);
+ * if (result.hasRegressions()) { ... }
+ * </pre>
+ */
+public class LatencyComparison {
+
+    public static final double DEFAULT_THRESHOLD_PERCENT = 10.0;
+    public static final double DEFAULT_ALPHA = 0.05;
+
+    /**
+     * Outcome for one event.
+     */
+    public enum Status {
+        REGRESSION,
+        IMPROVEMENT,
+        UNCHANGED,
+        /** Only in the candidate. */
+        ADDED,
+        /** Only in the baseline. */
+        REMOVED
+    }
+
+    /**
+     * Comparison of one event's delta distribution (or total duration).
+     */
+    public static class EventComparison {
+        private final String name;
+        private final LatencyHistogram baseline;
+        private final LatencyHistogram candidate;
+        private final double pValue;
+        private final Status status;
+
+        EventComparison(String name, LatencyHistogram baseline, LatencyHistogram candidate, double pValue,
+                Status status) {
+            this.name = name;
+            this.baseline = baseline;
+            this.candidate = candidate;
+            this.pValue = pValue;
+            this.status = status;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LatencyHistogram getBaseline() {
+            return baseline;
+        }
+
+        public LatencyHistogram getCandidate() {
+            return candidate;
+        }
+
+        /**
+         * Returns the relative change of a percentile in percent, or NaN when
+         * the baseline value is zero.
+         */
+        public double getChangePercent(double percentile) {
+            return changePercent(baseline.getPercentile(percentile), candidate.getPercentile(percentile));
+        }
+
+        /**
+         * Returns the two-sided Mann-Whitney p-value, or NaN if either side
+         * has no samples.
+         */
+        public double getPValue() {
+            return pValue;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+    }
+
+    private final List<EventComparison> events;
+    private final EventComparison total;
+    private final double thresholdPercent;
+    private final double alpha;
+
+    private LatencyComparison(List<EventComparison> events, EventComparison total, double thresholdPercent,
+            double alpha) {
+        this.events = Collections.unmodifiableList(events);
+        this.total = total;
+        this.thresholdPercent = thresholdPercent;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Compares two populations.
+     *
+     * @param baseline         statistics of the reference population
+     * @param candidate        statistics of the population under test
+     * @param thresholdPercent minimum p50/p99 change to flag, in percent
+     * @param alpha            significance level for the Mann-Whitney test
+     * @return per-event comparison, sorted by event name
+     */
+    public static LatencyComparison compare(TraceStats baseline, TraceStats candidate, double thresholdPercent,
+            double alpha) {
+        // Written so that NaN fails: every later comparison with it is false
+        if (!(thresholdPercent >= 0)) {
+            throw new IllegalArgumentException("Threshold must not be negative");
+        }
+        if (!(alpha > 0 && alpha < 1)) {
+            throw new IllegalArgumentException("Alpha must be between 0 and 1");
+        }
+
+        Map<String, LatencyHistogram> before = baseline.getEvents();
+        Map<String, LatencyHistogram> after = candidate.getEvents();
+        TreeSet<String> names = new TreeSet<>(before.keySet());
+        names.addAll(after.keySet());
+
+        List<EventComparison> events = new ArrayList<>();
+        for (String name : names) {
+            events.add(compareOne(name, before.get(name), after.get(name), thresholdPercent, alpha));
+        }
+        EventComparison total = compareOne("TOTAL", baseline.getTotalDuration(), candidate.getTotalDuration(),
+                thresholdPercent, alpha);
+
+        return new LatencyComparison(events, total, thresholdPercent, alpha);
+    }
+
+    public List<EventComparison> getEvents() {
+        return events;
+    }
+
+    /**
+     * Returns the comparison of total trace durations.
+     */
+    public EventComparison getTotal() {
+        return total;
+    }
+
+    public double getThresholdPercent() {
+        return thresholdPercent;
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * Returns true if any event or the total duration regressed.
+     */
+    public boolean hasRegressions() {
+        if (total.getStatus() == Status.REGRESSION) {
+            return true;
+        }
+        for (EventComparison event : events) {
+            if (event.getStatus() == Status.REGRESSION) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static EventComparison compareOne(String name, LatencyHistogram baseline, LatencyHistogram candidate,
+            double thresholdPercent, double alpha) {
+        LatencyHistogram before = baseline != null ? baseline : new LatencyHistogram();
+        LatencyHistogram after = candidate != null ? candidate : new LatencyHistogram();
+
+        if (before.getCount() == 0 && after.getCount() == 0) {
+            return new EventComparison(name, before, after, Double.NaN, Status.UNCHANGED);
+        }
+        if (before.getCount() == 0) {
+            return new EventComparison(name, before, after, Double.NaN, Status.ADDED);
+        }
+        if (after.getCount() == 0) {
+            return new EventComparison(name, before, after, Double.NaN, Status.REMOVED);
+        }
+
+        double pValue = mannWhitneyPValue(before, after);
+        double p50 = changeForThreshold(before.getPercentile(50), after.getPercentile(50));
+        double p99 = changeForThreshold(before.getPercentile(99), after.getPercentile(99));
+        boolean significant = pValue < alpha;
+
+        Status status = Status.UNCHANGED;
+        if (significant && (p50 > thresholdPercent || p99 > thresholdPercent)) {
+            status = Status.REGRESSION;
+        } else if (significant && (p50 < -thresholdPercent || p99 < -thresholdPercent)) {
+            status = Status.IMPROVEMENT;
+        }
+        return new EventComparison(name, before, after, pValue, status);
+    }
+
+    static double changePercent(long before, long after) {
+        if (before == 0) {
+            return after == 0 ? 0 : Double.NaN;
+        }
+        return 100.0 * (after - before) / before;
+    }
+
+    /**
+     * Like {@link #changePercent(long, long)}, but growth from zero counts
+     * as unbounded so it can still be flagged.
+     */
+    private static double changeForThreshold(long before, long after) {
+        if (before == 0) {
+            return after == 0 ? 0 : Double.POSITIVE_INFINITY;
+        }
+        return changePercent(before, after);
+    }
+
+    /**
+     * Two-sided Mann-Whitney U test using the normal approximation with tie
+     * correction. Values in the same histogram bucket are treated as ties.
+     */
+    static double mannWhitneyPValue(LatencyHistogram a, LatencyHistogram b) {
+        double n1 = a.getCount();
+        double n2 = b.getCount();
+        double n = n1 + n2;
+
+        double rankSumA = 0;
+        double tieTerm = 0;
+        double ranked = 0;
+        int buckets = Math.max(a.bucketCount(), b.bucketCount());
+        for (int i = 0; i < buckets; i++) {
+            double countA = a.countAt(i);
+            double countB = b.countAt(i);
+            double tied = countA + countB;
+            if (tied == 0) {
+                continue;
+            }
+            double midRank = ranked + (tied + 1) / 2;
+            rankSumA += countA * midRank;
+            tieTerm += tied * tied * tied - tied;
+            ranked += tied;
+        }
+
+        double u = rankSumA - n1 * (n1 + 1) / 2;
+        double mean = n1 * n2 / 2;
+        double variance = n1 * n2 / 12 * ((n + 1) - tieTerm / (n * (n - 1)));
+        if (variance <= 0) {
+            return 1.0; // all values tied
+        }
+        double z = (Math.abs(u - mean) - 0.5) / Math.sqrt(variance); // continuity correction
+        return Math.min(1.0, erfc(Math.max(0, z) / Math.sqrt(2)));
+    }
+
+    /**
+     * Complementary error function (Abramowitz and Stegun 7.1.26, error
+     * below 1.5e-7), for x >= 0.
+     */
+    private static double erfc(double x) {
+        double t = 1 / (1 + 0.3275911 * x);
+        double poly = t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027
+                + t * 1.061405429))));
+        return poly * Math.exp(-x * x);
+    }
+}
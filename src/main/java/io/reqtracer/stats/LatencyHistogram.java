@@ -0,0 +1,143 @@
+package io.reqtracer.stats;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable histogram of millisecond latencies.
+ * <p>
+ * Values below 256ms are counted exactly. Larger values fall into log-linear
+ * buckets (128 per power of two), so any reported percentile is within 1% of
+ * the true value. Count, sum, min and max are tracked exactly.
+ * <p>
+ * The bucket array grows only to the largest value recorded, so a histogram
+ * of typical request latencies stays a few kilobytes. Histograms built on
+ * separate threads can be combined with {@link #merge(LatencyHistogram)}.
+ * <p>
+ * Not thread-safe; use one instance per thread and merge.
+ */
+public class LatencyHistogram {
+
+    private static final int EXACT_LIMIT = 256;
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT_EXPONENT = 8; // log2(EXACT_LIMIT)
+
+    private long[] counts = new long[EXACT_LIMIT];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Records a single value. Negative values are clamped to zero.
+     *
+     * @param valueMillis latency in milliseconds
+     */
+    public void record(long valueMillis) {
+        long value = Math.max(0, valueMillis);
+        int index = bucketIndex(value);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+        }
+        counts[index]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all values recorded in another histogram to this one.
+     *
+     * @param other histogram to merge in
+     * @return this histogram
+     */
+    public LatencyHistogram merge(LatencyHistogram other) {
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Returns the value at the given percentile.
+     *
+     * @param percentile percentile in [0, 100]
+     * @return value in milliseconds, or 0 if empty
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * count);
+        rank = Math.max(1, Math.min(count, rank));
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, bucketUpperBound(i)));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * Number of buckets in use; buckets of two histograms with the same index
+     * cover the same value range.
+     */
+    int bucketCount() {
+        return counts.length;
+    }
+
+    long countAt(int index) {
+        return index < counts.length ? counts[index] : 0;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < EXACT_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return EXACT_LIMIT + (exponent - EXACT_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < EXACT_LIMIT) {
+            return index;
+        }
+        int exponent = (index - EXACT_LIMIT) / SUB_BUCKETS + EXACT_EXPONENT;
+        int subBucket = (index - EXACT_LIMIT) % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lower = (long) (SUB_BUCKETS + subBucket) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
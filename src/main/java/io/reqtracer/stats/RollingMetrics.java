@@ -0,0 +1,360 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.Clock;
+import io.reqtracer.core.SystemClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.listener.TraceListener;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Request rate, error count and latency percentiles over the last 1, 5 and
+ * 15 minutes, fed from completed traces.
+ * <p>
+ * Register it as a listener and read {@link #snapshot(Window)} (or print
+ * {@code StatsFormatter.formatTop}) from any thread:
+ *
+ * <pre>
+ * RollingMetrics metrics = new RollingMetrics();
+ * Tracer.addListener(metrics);
+ * </pre>
+ * <p>
+ * Traces are counted in two rings of time buckets by end time: 60 one-second
+ * buckets for the 1-minute window and 15 one-minute buckets for the 5- and
+ * 15-minute windows, which therefore move in whole minutes. Each bucket holds
+ * counters and a fixed-size log histogram per event name (4 bins per power
+ * of two, so percentiles are within about 12%), so memory is bounded by the
+ * ring sizes and {@value #MAX_EVENT_NAMES} event names regardless of load.
+ * <p>
+ * Recording is lock-free: counters are atomics, and the rings rotate by
+ * compare-and-set, so rotation never waits on readers or other recorders.
+ */
+public class RollingMetrics implements TraceListener {
+
+    /**
+     * A rolling window ending now.
+     */
+    public enum Window {
+        ONE_MINUTE("1m", 60),
+        FIVE_MINUTES("5m", 300),
+        FIFTEEN_MINUTES("15m", 900);
+
+        private final String label;
+        private final int seconds;
+
+        Window(String label, int seconds) {
+            this.label = label;
+            this.seconds = seconds;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public int getSeconds() {
+            return seconds;
+        }
+    }
+
+    static final int MAX_EVENT_NAMES = 100;
+    private static final int SECOND_SLOTS = 60;
+    private static final int MINUTE_SLOTS = 15;
+    private static final long SECOND = 1_000;
+    private static final long MINUTE = 60_000;
+
+    /**
+     * Default error test: any event with an "error" metadata key or a 5xx
+     * "status" value.
+     */
+    public static final Predicate<Trace> DEFAULT_ERROR = trace -> {
+        for (TraceEvent event : trace.getEvents()) {
+            if (event.hasMetadata()) {
+                Map<String, String> metadata = event.getMetadata();
+                String status = metadata.get("status");
+                if (metadata.containsKey("error")
+                        || (status != null && status.length() == 3 && status.charAt(0) == '5')) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    };
+
+    private final Clock clock;
+    private final Predicate<Trace> isError;
+    private final TimeRing<Slot> seconds = new TimeRing<>(SECOND_SLOTS, SECOND, Slot::new);
+    private final TimeRing<Slot> minutes = new TimeRing<>(MINUTE_SLOTS, MINUTE, Slot::new);
+
+    /**
+     * Creates metrics on the system clock with the default error test.
+     */
+    public RollingMetrics() {
+        this(SystemClock.getInstance(), DEFAULT_ERROR);
+    }
+
+    /**
+     * @param clock   time source windows end at; should match the tracer's
+     * @param isError which completed traces count as errors
+     */
+    public RollingMetrics(Clock clock, Predicate<Trace> isError) {
+        this.clock = Objects.requireNonNull(clock, "Clock cannot be null");
+        this.isError = Objects.requireNonNull(isError, "Error predicate cannot be null");
+    }
+
+    @Override
+    public void onTraceCompleted(Trace trace) {
+        long time = trace.isEnded() ? trace.getEndTime() : clock.nowMillis();
+        List<TraceEvent> events = trace.getEvents();
+        boolean error = isError.test(trace);
+
+        Slot second = seconds.bucket(time);
+        if (second != null) {
+            second.record(trace, events, error);
+        }
+        Slot minute = minutes.bucket(time);
+        if (minute != null) {
+            minute.record(trace, events, error);
+        }
+    }
+
+    /**
+     * Returns the metrics of a window ending now.
+     */
+    public Snapshot snapshot(Window window) {
+        long now = clock.nowMillis();
+        TimeRing<Slot> ring = window == Window.ONE_MINUTE ? seconds : minutes;
+        long unit = ring.getUnit();
+        long slots = window.getSeconds() * SECOND / unit;
+        long newest = ring.keyOf(now);
+        long oldest = newest - slots + 1;
+
+        long requests = 0;
+        long errors = 0;
+        Distribution total = new Distribution();
+        Map<String, Distribution> events = new TreeMap<>();
+        for (Slot slot : ring.between(oldest, newest)) {
+            requests += slot.requests.sum();
+            errors += slot.errors.sum();
+            total.add(slot.total);
+            slot.events.forEach((name, bins) -> events.computeIfAbsent(name, n -> new Distribution()).add(bins));
+        }
+        // The oldest bucket may have started before the window: rate over the
+        // time the buckets actually cover
+        long covered = Math.max(SECOND, now - oldest * unit);
+        return new Snapshot(window, now, covered, requests, errors, total, events);
+    }
+
+    /**
+     * One time bucket.
+     */
+    private static final class Slot extends TimeRing.Bucket {
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final Bins total = new Bins();
+        final ConcurrentHashMap<String, Bins> events = new ConcurrentHashMap<>();
+
+        Slot(long key) {
+            super(key);
+        }
+
+        void record(Trace trace, List<TraceEvent> traceEvents, boolean error) {
+            requests.increment();
+            if (error) {
+                errors.increment();
+            }
+            total.record(trace.getTotalDuration());
+            for (TraceEvent event : traceEvents) {
+                Bins bins = events.get(event.getName());
+                if (bins == null) {
+                    if (events.size() >= MAX_EVENT_NAMES) {
+                        continue;
+                    }
+                    bins = events.computeIfAbsent(event.getName(), n -> new Bins());
+                }
+                bins.record(event.getDelta());
+            }
+        }
+    }
+
+    /**
+     * Concurrent fixed-size log histogram. Values below 8ms have their own
+     * bin; above that each power of two is split into 4 bins, up to about two
+     * minutes.
+     */
+    static final class Bins {
+        static final int COUNT = 64;
+        private static final int EXACT = 8;
+
+        final AtomicLongArray counts = new AtomicLongArray(COUNT);
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            long v = Math.max(0, value);
+            counts.incrementAndGet(index(v));
+            sum.addAndGet(v);
+            if (v > max.get()) {
+                max.accumulateAndGet(v, Math::max);
+            }
+        }
+
+        static int index(long value) {
+            if (value < EXACT) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - 2)) & 3;
+            return Math.min(COUNT - 1, EXACT + (exponent - 3) * 4 + sub);
+        }
+
+        /**
+         * Returns the midpoint of a bin.
+         */
+        static long value(int index) {
+            if (index < EXACT) {
+                return index;
+            }
+            int exponent = 3 + (index - EXACT) / 4;
+            int sub = (index - EXACT) % 4;
+            long width = 1L << (exponent - 2);
+            return ((4L + sub) << (exponent - 2)) + width / 2;
+        }
+    }
+
+    /**
+     * A merged latency distribution of one window.
+     */
+    public static final class Distribution {
+        private final long[] counts = new long[Bins.COUNT];
+        private long count;
+        private long sum;
+        private long max;
+
+        Distribution() {
+        }
+
+        void add(Bins bins) {
+            for (int i = 0; i < counts.length; i++) {
+                long c = bins.counts.get(i);
+                counts[i] += c;
+                count += c;
+            }
+            sum += bins.sum.get();
+            max = Math.max(max, bins.max.get());
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the approximate value at a percentile, never above the
+         * maximum.
+         *
+         * @param percentile 0-100
+         * @return value in milliseconds, or 0 if empty
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            if (percentile >= 100) {
+                return max;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(max, Bins.value(i));
+                }
+            }
+            return max;
+        }
+    }
+
+    /**
+     * Point-in-time view of one window.
+     */
+    public static final class Snapshot {
+        private final Window window;
+        private final long time;
+        private final long coveredMillis;
+        private final long requests;
+        private final long errors;
+        private final Distribution total;
+        private final Map<String, Distribution> events;
+
+        Snapshot(Window window, long time, long coveredMillis, long requests, long errors, Distribution total,
+                Map<String, Distribution> events) {
+            this.window = window;
+            this.time = time;
+            this.coveredMillis = coveredMillis;
+            this.requests = requests;
+            this.errors = errors;
+            this.total = total;
+            this.events = Collections.unmodifiableMap(events);
+        }
+
+        public Window getWindow() {
+            return window;
+        }
+
+        /**
+         * Returns when the window ends, in epoch milliseconds.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public double getRequestsPerSecond() {
+            return requests * 1000.0 / coveredMillis;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Returns the distribution of total trace durations.
+         */
+        public Distribution getTotalDuration() {
+            return total;
+        }
+
+        /**
+         * Returns per-event delta distributions, sorted by event name.
+         */
+        public Map<String, Distribution> getEvents() {
+            return events;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Snapshot{window=%s, requests=%d, rate=%.1f/s, errors=%d, p99=%dms}",
+                    window.getLabel(), requests, getRequestsPerSecond(), errors, total.getPercentile(99));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.core.TraceShape;
+import io.reqtracer.storage.TraceStore;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Groups traces by {@link TraceShape} and summarizes latency per group.
+ * <p>
+ * When a route regresses, the slow traces usually share a shape (an extra
+ * retry, a cache miss path), so comparing shapes side by side is the fastest
+ * way to triage. Aggregation runs in parallel like {@link TraceStats}.
+ */
+public final class ShapeStats {
+
+    private ShapeStats() {
+    }
+
+    /**
+     * Summarizes every trace in a store by shape.
+     *
+     * @param store source store
+     * @return summaries, most frequent shape first
+     */
+    public static List<ShapeSummary> compute(TraceStore store) {
+        return compute(store.listTraceIds().stream()
+                .map(store::get)
+                .flatMap(Optional::stream));
+    }
+
+    /**
+     * Summarizes a stream of traces by shape, processing it in parallel.
+     *
+     * @param traces source traces
+     * @return summaries, most frequent shape first
+     */
+    public static List<ShapeSummary> compute(Stream<Trace> traces) {
+        Map<TraceShape, ShapeSummary> groups = traces.parallel()
+                .collect(HashMap::new, ShapeStats::add, ShapeStats::merge);
+
+        List<ShapeSummary> result = new ArrayList<>(groups.values());
+        result.sort(Comparator.comparingLong(ShapeSummary::getTraceCount).reversed()
+                .thenComparing(summary -> summary.getShape().getId()));
+        return result;
+    }
+
+    private static void add(Map<TraceShape, ShapeSummary> groups, Trace trace) {
+        List<TraceEvent> events = trace.getEvents();
+        long[] deltas = new long[events.size()];
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = events.get(i).getDelta();
+        }
+        groups.computeIfAbsent(TraceShape.of(events), ShapeSummary::new)
+                .add(deltas, trace.isEnded(), trace.getTotalDuration());
+    }
+
+    private static void merge(Map<TraceShape, ShapeSummary> into, Map<TraceShape, ShapeSummary> from) {
+        from.forEach((shape, summary) -> into.merge(shape, summary, ShapeSummary::merge));
+    }
+}
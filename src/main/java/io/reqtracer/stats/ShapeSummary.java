@@ -0,0 +1,72 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.TraceShape;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Latency summary for all traces sharing one {@link TraceShape}.
+ * <p>
+ * Event delta histograms are kept per position in the shape, so a shape that
+ * repeats an event name (e.g. two DB_QUERY steps) reports each step
+ * separately.
+ */
+public class ShapeSummary {
+
+    private final TraceShape shape;
+    private long traceCount;
+    private final LatencyHistogram totalDuration = new LatencyHistogram();
+    private final List<LatencyHistogram> eventDeltas;
+
+    ShapeSummary(TraceShape shape) {
+        this.shape = shape;
+        this.eventDeltas = new ArrayList<>(shape.size());
+        for (int i = 0; i < shape.size(); i++) {
+            eventDeltas.add(new LatencyHistogram());
+        }
+    }
+
+    void add(long[] deltas, boolean ended, long duration) {
+        traceCount++;
+        if (ended) {
+            totalDuration.record(duration);
+        }
+        for (int i = 0; i < deltas.length; i++) {
+            eventDeltas.get(i).record(deltas[i]);
+        }
+    }
+
+    ShapeSummary merge(ShapeSummary other) {
+        traceCount += other.traceCount;
+        totalDuration.merge(other.totalDuration);
+        for (int i = 0; i < eventDeltas.size(); i++) {
+            eventDeltas.get(i).merge(other.eventDeltas.get(i));
+        }
+        return this;
+    }
+
+    public TraceShape getShape() {
+        return shape;
+    }
+
+    public long getTraceCount() {
+        return traceCount;
+    }
+
+    /**
+     * Returns the distribution of total durations of ended traces.
+     */
+    public LatencyHistogram getTotalDuration() {
+        return totalDuration;
+    }
+
+    /**
+     * Returns delta distributions in shape order; entry i belongs to
+     * {@code getShape().getName(i)}.
+     */
+    public List<LatencyHistogram> getEventDeltas() {
+        return Collections.unmodifiableList(eventDeltas);
+    }
+}
@@ -0,0 +1,205 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceSpan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One request's traces from several services, joined into a single timeline
+ * by {@link TraceStitcher}.
+ * <p>
+ * Each trace is a {@link Segment}, placed on the root trace's clock. End-to-end
+ * time is the root trace's duration and is attributed to each service's self
+ * time (its trace minus the calls it was waiting on) and to the network (a
+ * call's time minus the callee's trace). For sequential calls these add up to
+ * the end-to-end time; calls made in parallel overlap, so their network time
+ * is counted once per call.
+ */
+public class StitchedTrace {
+
+    private final Segment root;
+    private final List<Segment> segments;
+
+    StitchedTrace(Segment root, List<Segment> segments) {
+        this.root = root;
+        this.segments = Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Returns the segment of the trace that started the request.
+     */
+    public Segment getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns every segment, each followed by its callees (depth first, in
+     * corrected start order).
+     */
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Returns the end-to-end time, the root trace's duration.
+     */
+    public long getDuration() {
+        return root.getDuration();
+    }
+
+    /**
+     * Returns self time per service, in order of first appearance.
+     */
+    public Map<String, Long> getServiceTimes() {
+        Map<String, Long> times = new LinkedHashMap<>();
+        for (Segment segment : segments) {
+            times.merge(segment.service, segment.selfTime, Long::sum);
+        }
+        return times;
+    }
+
+    /**
+     * Returns the time spent between services, summed over all calls.
+     */
+    public long getNetworkTime() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.networkTime;
+        }
+        return total;
+    }
+
+    /**
+     * Returns how many services took part.
+     */
+    public int getServiceCount() {
+        return getServiceTimes().size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StitchedTrace{root='%s', traces=%d, services=%d, duration=%dms, network=%dms}",
+                root.trace.getTraceId(), segments.size(), getServiceCount(), getDuration(), getNetworkTime());
+    }
+
+    /**
+     * One service's trace within a stitched request.
+     */
+    public static final class Segment {
+        private final String service;
+        private final Trace trace;
+        private final Segment parent;
+        private final TraceSpan callSpan;
+        private final int depth;
+        private final long offset;
+        private final long networkTime;
+        final List<Segment> children = new ArrayList<>();
+        long selfTime;
+
+        Segment(String service, Trace trace, Segment parent, TraceSpan callSpan, long offset, long networkTime) {
+            this.service = service;
+            this.trace = trace;
+            this.parent = parent;
+            this.callSpan = callSpan;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+            this.offset = offset;
+            this.networkTime = networkTime;
+        }
+
+        public String getService() {
+            return service;
+        }
+
+        public Trace getTrace() {
+            return trace;
+        }
+
+        /**
+         * Returns the calling segment, or null for the root.
+         */
+        public Segment getParent() {
+            return parent;
+        }
+
+        /**
+         * Returns the caller's span the call was made in, or null if the
+         * caller propagated outside any span (or this is the root).
+         */
+        public TraceSpan getCallSpan() {
+            return callSpan;
+        }
+
+        /**
+         * Returns the segments this one called, in corrected start order.
+         */
+        public List<Segment> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        /**
+         * Returns the nesting depth; 0 for the root.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Returns the clock-skew correction added to this trace's times to put
+         * them on the root trace's clock, in milliseconds.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the corrected start time.
+         */
+        public long getStartTime() {
+            return trace.getStartTime() + offset;
+        }
+
+        /**
+         * Returns the trace's own duration; durations are not affected by skew.
+         */
+        public long getDuration() {
+            return trace.getTotalDuration();
+        }
+
+        /**
+         * Returns the time of the call into this segment not spent in its
+         * trace: both network legs plus any queuing before the trace started.
+         * 0 for the root, and when the caller propagated outside a span.
+         */
+        public long getNetworkTime() {
+            return networkTime;
+        }
+
+        /**
+         * Returns the time spent in this trace outside calls to other
+         * services.
+         */
+        public long getSelfTime() {
+            return selfTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s +%dms %dms (self %dms, network %dms)",
+                    service, trace.getTraceId(), getStartTime() - root().getStartTime(), getDuration(), selfTime,
+                    networkTime);
+        }
+
+        private Segment root() {
+            Segment segment = this;
+            while (segment.parent != null) {
+                segment = segment.parent;
+            }
+            return segment;
+        }
+    }
+}
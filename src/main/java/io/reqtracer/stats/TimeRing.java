@@ -0,0 +1,94 @@
+package io.reqtracer.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Fixed ring of time buckets for windowed aggregates: bucket {@code key}
+ * covers {@code [key * unit, (key + 1) * unit)} and lives at index
+ * {@code key mod size}.
+ * <p>
+ * Lock-free: a bucket whose time has passed is replaced with a fresh one by
+ * a single compare-and-set, so rotation never waits on readers or other
+ * recorders. A recorder that loses the race uses the winner's bucket.
+ *
+ * @param <B> bucket type
+ */
+final class TimeRing<B extends TimeRing.Bucket> {
+
+    /**
+     * Base of the buckets kept in a ring.
+     */
+    abstract static class Bucket {
+        final long key;
+
+        Bucket(long key) {
+            this.key = key;
+        }
+    }
+
+    private final long unit;
+    private final LongFunction<B> factory;
+    private final AtomicReferenceArray<B> buckets;
+
+    /**
+     * @param size    number of buckets
+     * @param unit    milliseconds each bucket covers
+     * @param factory creates an empty bucket for a key
+     */
+    TimeRing(int size, long unit, LongFunction<B> factory) {
+        this.unit = unit;
+        this.factory = factory;
+        this.buckets = new AtomicReferenceArray<>(size);
+    }
+
+    long getUnit() {
+        return unit;
+    }
+
+    /**
+     * Returns the key of the bucket covering the time.
+     */
+    long keyOf(long time) {
+        return Math.floorDiv(time, unit);
+    }
+
+    /**
+     * Returns the bucket for the time, replacing an expired one, or null if
+     * the time is older than the ring covers.
+     */
+    B bucket(long time) {
+        long key = keyOf(time);
+        int index = (int) Math.floorMod(key, (long) buckets.length());
+        while (true) {
+            B bucket = buckets.get(index);
+            if (bucket != null && bucket.key == key) {
+                return bucket;
+            }
+            if (bucket != null && bucket.key > key) {
+                return null; // arrived after its bucket was reused
+            }
+            B fresh = factory.apply(key);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    /**
+     * Returns the buckets with keys from oldest to newest, inclusive, in no
+     * particular order.
+     */
+    List<B> between(long oldestKey, long newestKey) {
+        List<B> result = new ArrayList<>(buckets.length());
+        for (int i = 0; i < buckets.length(); i++) {
+            B bucket = buckets.get(i);
+            if (bucket != null && bucket.key >= oldestKey && bucket.key <= newestKey) {
+                result.add(bucket);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,343 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.storage.InMemoryTraceStore;
+import io.reqtracer.storage.MetadataQuery;
+import io.reqtracer.storage.PartitionedTraceStore;
+import io.reqtracer.storage.TraceStore;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Compiled trace filter for searching stores and trace files.
+ * <p>
+ * A filter is a whitespace-separated list of clauses, all of which must
+ * match:
+ *
+ * <pre>
+ * event:DB_QUERY            trace has a DB_QUERY event
+ * event:DB_QUERY&gt;100        some DB_QUERY took more than 100ms (also &gt;=, &lt;, &lt;=)
+ * duration&gt;500             total duration above 500ms (also &gt;=, &lt;, &lt;=)
+ * duration:100..500         total duration between 100 and 500ms, inclusive
+ * user=john                 some event has metadata user=john
+ * time:&lt;from&gt;..&lt;to&gt;        started within the range (epoch millis or ISO-8601)
+ * </pre>
+ * <p>
+ * Range bounds may be left empty ({@code duration:100..}). Duration clauses
+ * never match a trace that has not ended.
+ * <p>
+ * Parsing happens once: time and duration clauses are folded into a pair of
+ * bounds each, and event and metadata clauses into flat arrays checked in a
+ * single pass over the trace's events, which stops as soon as every clause
+ * has matched. Evaluation takes no locks and allocates nothing beyond the
+ * event list, so {@link #search} runs it as a parallel stream.
+ */
+public final class TraceFilter implements Predicate<Trace> {
+
+    /** Event and metadata clauses are tracked in a long bitmask. */
+    private static final int MAX_CLAUSES = 64;
+
+    private final String expression;
+    private final long fromMillis;
+    private final long toMillis;
+    private final boolean hasDuration;
+    private final long minDuration;
+    private final long maxDuration;
+    private final String[] eventNames;
+    private final long[] minDeltas;
+    private final long[] maxDeltas;
+    private final String[] metadataKeys;
+    private final String[] metadataValues;
+    private final long allClauses;
+
+    private TraceFilter(String expression, long fromMillis, long toMillis, boolean hasDuration,
+            long minDuration, long maxDuration, List<EventClause> events, List<String[]> metadata) {
+        this.expression = expression;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.hasDuration = hasDuration;
+        this.minDuration = minDuration;
+        this.maxDuration = maxDuration;
+
+        this.eventNames = new String[events.size()];
+        this.minDeltas = new long[events.size()];
+        this.maxDeltas = new long[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            eventNames[i] = events.get(i).name;
+            minDeltas[i] = events.get(i).minDelta;
+            maxDeltas[i] = events.get(i).maxDelta;
+        }
+        this.metadataKeys = new String[metadata.size()];
+        this.metadataValues = new String[metadata.size()];
+        for (int i = 0; i < metadata.size(); i++) {
+            metadataKeys[i] = metadata.get(i)[0];
+            metadataValues[i] = metadata.get(i)[1];
+        }
+
+        int clauses = eventNames.length + metadataKeys.length;
+        this.allClauses = clauses == MAX_CLAUSES ? -1L : (1L << clauses) - 1;
+    }
+
+    /**
+     * Compiles a filter expression. An empty expression matches every trace.
+     *
+     * @param expression whitespace-separated clauses
+     * @return compiled filter
+     * @throws IllegalArgumentException if a clause is malformed
+     */
+    public static TraceFilter compile(String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("Filter expression cannot be null");
+        }
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        boolean hasDuration = false;
+        long minDuration = Long.MIN_VALUE;
+        long maxDuration = Long.MAX_VALUE;
+        List<EventClause> events = new ArrayList<>();
+        List<String[]> metadata = new ArrayList<>();
+
+        for (String clause : expression.trim().split("\\s+")) {
+            if (clause.isEmpty()) {
+                continue;
+            }
+            if (clause.startsWith("event:")) {
+                events.add(parseEventClause(clause, clause.substring("event:".length())));
+            } else if (clause.startsWith("time:")) {
+                long[] range = parseRange(clause, clause.substring("time:".length()), true);
+                from = Math.max(from, range[0]);
+                to = Math.min(to, range[1]);
+            } else if (clause.startsWith("duration") && clause.length() > "duration".length()
+                    && ":<>".indexOf(clause.charAt("duration".length())) >= 0) {
+                String rest = clause.substring("duration".length());
+                long[] range = rest.startsWith(":")
+                        ? parseRange(clause, rest.substring(1), false)
+                        : parseComparison(clause, rest);
+                hasDuration = true;
+                minDuration = Math.max(minDuration, range[0]);
+                maxDuration = Math.min(maxDuration, range[1]);
+            } else if (clause.indexOf('=') > 0 && clause.indexOf('=') < clause.length() - 1) {
+                int eq = clause.indexOf('=');
+                metadata.add(new String[] { clause.substring(0, eq), clause.substring(eq + 1) });
+            } else {
+                throw new IllegalArgumentException("Unknown filter clause: " + clause);
+            }
+        }
+
+        if (events.size() + metadata.size() > MAX_CLAUSES) {
+            throw new IllegalArgumentException("Too many event and metadata clauses (max " + MAX_CLAUSES + ")");
+        }
+        return new TraceFilter(expression.trim(), from, to, hasDuration, minDuration, maxDuration, events, metadata);
+    }
+
+    @Override
+    public boolean test(Trace trace) {
+        long start = trace.getStartTime();
+        if (start < fromMillis || start > toMillis) {
+            return false;
+        }
+        if (hasDuration) {
+            if (!trace.isEnded()) {
+                return false;
+            }
+            long duration = trace.getTotalDuration();
+            if (duration < minDuration || duration > maxDuration) {
+                return false;
+            }
+        }
+        if (allClauses == 0) {
+            return true;
+        }
+
+        long pending = allClauses;
+        int metadataBase = eventNames.length;
+        for (TraceEvent event : trace.getEvents()) {
+            String name = event.getName();
+            long delta = event.getDelta();
+            for (int i = 0; i < eventNames.length; i++) {
+                if ((pending & (1L << i)) != 0 && eventNames[i].equals(name)
+                        && delta >= minDeltas[i] && delta <= maxDeltas[i]) {
+                    pending &= ~(1L << i);
+                }
+            }
+            if (metadataKeys.length > 0 && event.hasMetadata()) {
+                Map<String, String> values = event.getMetadata();
+                for (int i = 0; i < metadataKeys.length; i++) {
+                    long bit = 1L << (metadataBase + i);
+                    if ((pending & bit) != 0 && metadataValues[i].equals(values.get(metadataKeys[i]))) {
+                        pending &= ~bit;
+                    }
+                }
+            }
+            if (pending == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Streams matching traces to the action, evaluating the filter in
+     * parallel and stopping once {@code limit} traces have matched. Matches
+     * arrive in no particular order and the action may be called from
+     * several threads at once.
+     *
+     * @param traces source traces
+     * @param limit  maximum number of matches
+     * @param action called for each match
+     * @return number of matches
+     */
+    public long search(Stream<Trace> traces, long limit, Consumer<Trace> action) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        AtomicLong matches = new AtomicLong();
+        traces.parallel()
+                .unordered()
+                .filter(this)
+                .limit(limit)
+                .forEach(trace -> {
+                    action.accept(trace);
+                    matches.incrementAndGet();
+                });
+        return matches.get();
+    }
+
+    /**
+     * Searches a store. A {@link PartitionedTraceStore} only reads the
+     * buckets overlapping the filter's time range; an
+     * {@link InMemoryTraceStore} only rebuilds traces matching every
+     * metadata clause, looked up in its metadata index if it has one, and
+     * only until {@code limit} traces have matched.
+     *
+     * @see #search(Stream, long, Consumer)
+     */
+    public long search(TraceStore store, long limit, Consumer<Trace> action) {
+        Stream<Trace> traces;
+        if (store instanceof PartitionedTraceStore) {
+            traces = ((PartitionedTraceStore) store).traces(fromMillis, toMillis);
+        } else if (store instanceof InMemoryTraceStore && metadataKeys.length > 0) {
+            MetadataQuery[] terms = new MetadataQuery[metadataKeys.length];
+            for (int i = 0; i < terms.length; i++) {
+                terms[i] = MetadataQuery.term(metadataKeys[i], metadataValues[i]);
+            }
+            traces = ((InMemoryTraceStore) store).traces(MetadataQuery.allOf(terms));
+        } else {
+            traces = store.listTraceIds().stream()
+                    .map(store::get)
+                    .flatMap(Optional::stream);
+        }
+        return search(traces, limit, action);
+    }
+
+    /**
+     * Returns the normalized expression this filter was compiled from.
+     */
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private static EventClause parseEventClause(String clause, String body) {
+        int op = indexOfOperator(body);
+        if (op < 0) {
+            if (body.isEmpty()) {
+                throw new IllegalArgumentException("Missing event name: " + clause);
+            }
+            return new EventClause(body, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        if (op == 0) {
+            throw new IllegalArgumentException("Missing event name: " + clause);
+        }
+        long[] range = parseComparison(clause, body.substring(op));
+        return new EventClause(body.substring(0, op), range[0], range[1]);
+    }
+
+    private static int indexOfOperator(String body) {
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '>' || c == '<') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses {@code >N}, {@code >=N}, {@code <N} or {@code <=N} into an
+     * inclusive range.
+     */
+    private static long[] parseComparison(String clause, String comparison) {
+        if (comparison.startsWith(">=")) {
+            return new long[] { parseMillis(clause, comparison.substring(2)), Long.MAX_VALUE };
+        }
+        if (comparison.startsWith("<=")) {
+            return new long[] { Long.MIN_VALUE, parseMillis(clause, comparison.substring(2)) };
+        }
+        if (comparison.startsWith(">")) {
+            return new long[] { parseMillis(clause, comparison.substring(1)) + 1, Long.MAX_VALUE };
+        }
+        if (comparison.startsWith("<")) {
+            return new long[] { Long.MIN_VALUE, parseMillis(clause, comparison.substring(1)) - 1 };
+        }
+        throw new IllegalArgumentException("Expected >, >=, < or <= in: " + clause);
+    }
+
+    /**
+     * Parses {@code A..B}; either bound may be empty.
+     */
+    private static long[] parseRange(String clause, String range, boolean time) {
+        int separator = range.indexOf("..");
+        if (separator < 0) {
+            throw new IllegalArgumentException("Expected <from>..<to> in: " + clause);
+        }
+        String from = range.substring(0, separator);
+        String to = range.substring(separator + 2);
+        return new long[] {
+                from.isEmpty() ? Long.MIN_VALUE : time ? parseTime(clause, from) : parseMillis(clause, from),
+                to.isEmpty() ? Long.MAX_VALUE : time ? parseTime(clause, to) : parseMillis(clause, to) };
+    }
+
+    private static long parseMillis(String clause, String value) {
+        String digits = value.endsWith("ms") ? value.substring(0, value.length() - 2) : value;
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid milliseconds in: " + clause);
+        }
+    }
+
+    private static long parseTime(String clause, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            try {
+                return Instant.parse(value).toEpochMilli();
+            } catch (DateTimeParseException e2) {
+                throw new IllegalArgumentException("Invalid time in: " + clause);
+            }
+        }
+    }
+
+    private static final class EventClause {
+        final String name;
+        final long minDelta;
+        final long maxDelta;
+
+        EventClause(String name, long minDelta, long maxDelta) {
+            this.name = name;
+            this.minDelta = minDelta;
+            this.maxDelta = maxDelta;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.storage.ColumnarTraceArchive;
+import io.reqtracer.storage.TraceStore;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Aggregate latency statistics over a population of traces.
+ * <p>
+ * Computes, per event name, the distribution of event deltas, plus the
+ * distribution of total trace durations. Aggregation runs as a parallel
+ * stream on the common fork-join pool: each worker fills its own
+ * {@link LatencyHistogram}s and the partial results are merged, so no locks
+ * are taken and memory does not grow with the number of traces.
+ */
+public class TraceStats {
+
+    private final long traceCount;
+    private final LatencyHistogram totalDuration;
+    private final Map<String, LatencyHistogram> events;
+
+    private TraceStats(long traceCount, LatencyHistogram totalDuration, Map<String, LatencyHistogram> events) {
+        this.traceCount = traceCount;
+        this.totalDuration = totalDuration;
+        this.events = Collections.unmodifiableMap(new TreeMap<>(events));
+    }
+
+    /**
+     * Computes statistics over every trace in a store.
+     *
+     * @param store source store
+     * @return aggregated statistics
+     */
+    public static TraceStats compute(TraceStore store) {
+        return compute(store.listTraceIds().stream()
+                .map(store::get)
+                .flatMap(Optional::stream));
+    }
+
+    /**
+     * Computes statistics over a stream of traces, processing it in parallel.
+     *
+     * @param traces source traces
+     * @return aggregated statistics
+     */
+    public static TraceStats compute(Stream<Trace> traces) {
+        Accumulator result = traces.parallel()
+                .collect(Accumulator::new, Accumulator::add, Accumulator::merge);
+        return new TraceStats(result.traceCount, result.totalDuration, result.events);
+    }
+
+    /**
+     * Computes statistics over archived traces that started within a window,
+     * decoding only the start-time, duration and event columns.
+     *
+     * @param archive    source archive
+     * @param fromMillis inclusive lower bound on start time
+     * @param toMillis   inclusive upper bound on start time
+     * @return aggregated statistics
+     */
+    public static TraceStats compute(ColumnarTraceArchive archive, long fromMillis, long toMillis) {
+        LatencyHistogram totalDuration = new LatencyHistogram();
+        archive.scanDurations(fromMillis, toMillis, Long.MIN_VALUE, Long.MAX_VALUE, totalDuration::record);
+
+        Map<String, LatencyHistogram> events = new HashMap<>();
+        archive.scanEvents(fromMillis, toMillis,
+                (name, delta) -> events.computeIfAbsent(name, n -> new LatencyHistogram()).record(delta));
+
+        return new TraceStats(archive.countTraces(fromMillis, toMillis), totalDuration, events);
+    }
+
+    public long getTraceCount() {
+        return traceCount;
+    }
+
+    /**
+     * Returns the distribution of total durations of ended traces.
+     */
+    public LatencyHistogram getTotalDuration() {
+        return totalDuration;
+    }
+
+    /**
+     * Returns delta distributions keyed by event name, sorted by name.
+     */
+    public Map<String, LatencyHistogram> getEvents() {
+        return events;
+    }
+
+    /**
+     * Per-worker partial result.
+     */
+    private static final class Accumulator {
+        private long traceCount;
+        private final LatencyHistogram totalDuration = new LatencyHistogram();
+        private final Map<String, LatencyHistogram> events = new HashMap<>();
+
+        void add(Trace trace) {
+            traceCount++;
+            if (trace.isEnded()) {
+                totalDuration.record(trace.getTotalDuration());
+            }
+            for (TraceEvent event : trace.getEvents()) {
+                events.computeIfAbsent(event.getName(), name -> new LatencyHistogram())
+                        .record(event.getDelta());
+            }
+        }
+
+        void merge(Accumulator other) {
+            traceCount += other.traceCount;
+            totalDuration.merge(other.totalDuration);
+            other.events.forEach((name, histogram) -> events.merge(name, histogram, LatencyHistogram::merge));
+        }
+    }
+}
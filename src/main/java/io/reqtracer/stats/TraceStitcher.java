@@ -0,0 +1,262 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceContext;
+import io.reqtracer.core.TraceSpan;
+import io.reqtracer.stats.StitchedTrace.Segment;
+import io.reqtracer.storage.TraceStore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Joins traces recorded by different services into end-to-end requests,
+ * following the parent {@link TraceContext} each callee's trace carries.
+ * <p>
+ * Usage, with one trace dump per node:
+ *
+ * <pre>
+ * TraceStitcher stitcher = new TraceStitcher()
+ *         .add("gateway", TraceFile.load(Paths.get("gateway.rtf")))
+ *         .add("orders", TraceFile.load(Paths.get("orders.rtf")));
+ * for (StitchedTrace request : stitcher.stitch()) {
+ *     ...
+ * }
+ * </pre>
+ * <p>
+ * Each node's clock may be off. A callee's trace is moved onto its caller's
+ * clock by centring it in the span the call was made in, which assumes the
+ * request and response legs take equally long; nested calls accumulate their
+ * callers' corrections, so every segment ends up on the root trace's clock.
+ * When the call was made outside a span there is nothing to centre in, so
+ * the callee is only moved as far as needed to fall within the caller's
+ * trace.
+ * <p>
+ * Trace IDs must be unique across nodes, which generated IDs are when each
+ * node has its own node ID. A trace whose parent is in none of the dumps is
+ * treated as a root. Not thread-safe.
+ */
+public class TraceStitcher {
+
+    private final Map<String, Entry> traces = new HashMap<>();
+    private final Map<String, List<Entry>> callees = new HashMap<>();
+
+    /**
+     * Adds every trace in a node's store.
+     *
+     * @param service name of the service the node runs
+     * @param store   the node's traces
+     * @return this stitcher
+     * @throws IllegalArgumentException if a trace ID was already added
+     */
+    public TraceStitcher add(String service, TraceStore store) {
+        Objects.requireNonNull(store, "Store cannot be null");
+        for (String traceId : store.listTraceIds()) {
+            store.get(traceId).ifPresent(trace -> add(service, trace));
+        }
+        return this;
+    }
+
+    /**
+     * Adds one trace.
+     *
+     * @param service name of the service that recorded it
+     * @param trace   the trace
+     * @return this stitcher
+     * @throws IllegalArgumentException if its trace ID was already added
+     */
+    public TraceStitcher add(String service, Trace trace) {
+        if (service == null || service.isEmpty()) {
+            throw new IllegalArgumentException("Service name cannot be empty");
+        }
+        Objects.requireNonNull(trace, "Trace cannot be null");
+        Entry entry = new Entry(service, trace);
+        Entry previous = traces.putIfAbsent(trace.getTraceId(), entry);
+        if (previous != null) {
+            throw new IllegalArgumentException("Trace " + trace.getTraceId() + " from " + service
+                    + " was already added from " + previous.service);
+        }
+        if (trace.getParent() != null) {
+            callees.computeIfAbsent(trace.getParent().getTraceId(), id -> new ArrayList<>()).add(entry);
+        }
+        return this;
+    }
+
+    /**
+     * Stitches every request, including ones that never left their first
+     * service.
+     *
+     * @return one stitched trace per root trace, in start order
+     */
+    public List<StitchedTrace> stitch() {
+        List<StitchedTrace> result = new ArrayList<>();
+        for (Entry entry : traces.values()) {
+            if (isRoot(entry)) {
+                result.add(build(entry));
+            }
+        }
+        result.sort(Comparator.comparingLong((StitchedTrace s) -> s.getRoot().getStartTime())
+                .thenComparing(s -> s.getRoot().getTrace().getTraceId()));
+        return result;
+    }
+
+    /**
+     * Stitches the request a trace belongs to.
+     *
+     * @param traceId ID of any trace of the request, not only the root
+     * @return the stitched request, or empty if the trace is unknown or its
+     *         parents form a loop
+     */
+    public Optional<StitchedTrace> stitch(String traceId) {
+        Entry entry = traces.get(traceId);
+        Set<String> seen = new HashSet<>();
+        while (entry != null && !isRoot(entry)) {
+            if (!seen.add(entry.trace.getTraceId())) {
+                return Optional.empty();
+            }
+            entry = traces.get(entry.trace.getParent().getTraceId());
+        }
+        return entry == null ? Optional.empty() : Optional.of(build(entry));
+    }
+
+    private boolean isRoot(Entry entry) {
+        TraceContext parent = entry.trace.getParent();
+        return parent == null || !traces.containsKey(parent.getTraceId());
+    }
+
+    private StitchedTrace build(Entry rootEntry) {
+        Segment root = new Segment(rootEntry.service, rootEntry.trace, null, null, 0, 0);
+        List<Segment> segments = new ArrayList<>();
+        Deque<Segment> pending = new ArrayDeque<>();
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+            Segment segment = pending.pop();
+            segments.add(segment);
+            List<TraceSpan> spans = flatten(segment.getTrace().getSpans());
+            List<long[]> waits = new ArrayList<>();
+
+            for (Entry callee : callees.getOrDefault(segment.getTrace().getTraceId(), List.of())) {
+                Segment child = place(segment, spans, callee, waits);
+                segment.children.add(child);
+            }
+            segment.children.sort(Comparator.comparingLong(Segment::getStartTime));
+            segment.selfTime = Math.max(0, segment.getDuration() - covered(waits, segment.getTrace()));
+            for (int i = segment.children.size() - 1; i >= 0; i--) {
+                pending.push(segment.children.get(i));
+            }
+        }
+        return new StitchedTrace(root, segments);
+    }
+
+    /**
+     * Puts a callee's trace on its caller's clock and records, in the
+     * caller's own clock, the interval the caller spent waiting on it.
+     */
+    private static Segment place(Segment caller, List<TraceSpan> spans, Entry callee, List<long[]> waits) {
+        Trace trace = callee.trace;
+        Trace callerTrace = caller.getTrace();
+        int index = trace.getParent().getSpanIndex();
+        TraceSpan span = index >= 0 && index < spans.size() && spans.get(index).isEnded() ? spans.get(index) : null;
+
+        long duration = trace.getTotalDuration();
+        long shift;
+        long network = 0;
+        if (span != null && span.getDuration() >= duration) {
+            // Centre the callee in the call: equal time on the way in and out
+            long slack = span.getDuration() - duration;
+            shift = span.getStartTime() + slack / 2 - trace.getStartTime();
+            network = slack;
+        } else {
+            long from = span != null ? span.getStartTime() : callerTrace.getStartTime();
+            long to = span != null ? span.getEndTime()
+                    : callerTrace.isEnded() ? callerTrace.getEndTime() : Long.MAX_VALUE;
+            long start = trace.getStartTime();
+            if (start < from) {
+                shift = from - start;
+            } else if (to != Long.MAX_VALUE && start + duration > to) {
+                shift = Math.max(from, to - duration) - start;
+            } else {
+                shift = 0;
+            }
+        }
+
+        if (span != null) {
+            waits.add(new long[] {span.getStartTime(), span.getEndTime()});
+        } else {
+            waits.add(new long[] {trace.getStartTime() + shift, trace.getStartTime() + shift + duration});
+        }
+        return new Segment(callee.service, trace, caller, span, caller.getOffset() + shift, network);
+    }
+
+    /**
+     * Returns the length of the union of the intervals, clipped to the trace.
+     */
+    private static long covered(List<long[]> intervals, Trace trace) {
+        if (intervals.isEmpty()) {
+            return 0;
+        }
+        long traceEnd = trace.getStartTime() + trace.getTotalDuration();
+        intervals.sort(Comparator.comparingLong(interval -> interval[0]));
+        long total = 0;
+        long from = Long.MIN_VALUE;
+        long to = Long.MIN_VALUE;
+        for (long[] interval : intervals) {
+            long start = Math.max(interval[0], trace.getStartTime());
+            long end = Math.min(interval[1], traceEnd);
+            if (end <= start) {
+                continue;
+            }
+            if (start > to) {
+                total += to - from;
+                from = start;
+                to = end;
+            } else {
+                to = Math.max(to, end);
+            }
+        }
+        return total + (to - from);
+    }
+
+    /**
+     * Lists spans in start order, the order {@link TraceContext} indexes them
+     * in.
+     */
+    private static List<TraceSpan> flatten(List<TraceSpan> roots) {
+        if (roots.isEmpty()) {
+            return roots;
+        }
+        List<TraceSpan> spans = new ArrayList<>();
+        Deque<TraceSpan> pending = new ArrayDeque<>();
+        for (int i = roots.size() - 1; i >= 0; i--) {
+            pending.push(roots.get(i));
+        }
+        while (!pending.isEmpty()) {
+            TraceSpan span = pending.pop();
+            spans.add(span);
+            for (int i = span.getChildren().size() - 1; i >= 0; i--) {
+                pending.push(span.getChildren().get(i));
+            }
+        }
+        return spans;
+    }
+
+    private static final class Entry {
+        final String service;
+        final Trace trace;
+
+        Entry(String service, Trace trace) {
+            this.service = service;
+            this.trace = trace;
+        }
+    }
+}
@@ -0,0 +1,744 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Column-oriented trace archive for analytical scans.
+ * <p>
+ * Traces are grouped into blocks, and each block stores every field as a
+ * separately encoded column: trace IDs, start times, durations, threads,
+ * per-trace event counts, event-name ids, event deltas and metadata, with
+ * block-local dictionaries for metadata keys and values. The footer records
+ * per-block minimum and maximum start time and duration plus the set of
+ * event names present, so queries skip blocks that cannot match.
+ * <p>
+ * {@link #open(Path)} memory-maps the file and reads only the footer. Each
+ * query then decodes just the columns it needs: the p99 of DB_QUERY over a
+ * week reads event counts, names and deltas, and start times only for blocks
+ * that straddle the window edge; trace IDs and metadata are never touched.
+ * <p>
+ * File layout:
+ *
+ * <pre>
+ * header:  magic "RTCA" (int), version (int)
+ * blocks:  per block, each column's bytes back to back
+ * footer:  event-name dictionary, then per block: trace count, start and
+ *          duration min/max, event-name ids present, column offsets/lengths
+ * trailer: footer offset (long), magic (int)
+ * </pre>
+ * <p>
+ * Integers inside columns are varints (zigzag where they may be negative);
+ * start times are delta-encoded against the previous trace in the block.
+ * Archives are limited to 2GB, the maximum size of a single mapping.
+ */
+public class ColumnarTraceArchive implements Closeable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private static final int MAGIC = 0x52544341; // "RTCA"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 12;
+
+    /**
+     * Columns stored for each block, in file order.
+     */
+    enum Column {
+        TRACE_IDS,
+        START_TIMES,
+        DURATIONS,
+        THREADS,
+        EVENT_COUNTS,
+        FIRST_EVENT_OFFSETS,
+        EVENT_NAMES,
+        EVENT_DELTAS,
+        METADATA_KEYS,
+        METADATA_VALUES,
+        METADATA
+    }
+
+    private static final Column[] COLUMNS = Column.values();
+
+    /**
+     * Receives each event's name and delta during {@link #scanEvents}.
+     */
+    @FunctionalInterface
+    public interface EventConsumer {
+        void accept(String name, long delta);
+    }
+
+    private final MappedByteBuffer data;
+    private final String[] names;
+    private final Map<String, Integer> nameIds;
+    private final Block[] blocks;
+    private final AtomicLongArray decoded = new AtomicLongArray(COLUMNS.length);
+
+    private ColumnarTraceArchive(MappedByteBuffer data, String[] names, Block[] blocks) {
+        this.data = data;
+        this.names = names;
+        this.blocks = blocks;
+        this.nameIds = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            nameIds.put(names[i], i);
+        }
+    }
+
+    /**
+     * Writes every trace in a store to an archive with the default block size.
+     *
+     * @param path  destination file
+     * @param store source store
+     * @return number of traces written
+     * @throws IOException if writing fails or the archive exceeds 2GB
+     */
+    public static int write(Path path, TraceStore store) throws IOException {
+        return write(path, store, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Writes every trace in a store to an archive.
+     * <p>
+     * Traces are written in start-time order, so each block covers a narrow
+     * time range and window queries skip most blocks. Larger blocks compress
+     * better; smaller blocks skip more precisely. The file is written to a
+     * temporary sibling and moved into place.
+     *
+     * @param path      destination file
+     * @param store     source store
+     * @param blockSize maximum traces per block
+     * @return number of traces written
+     * @throws IOException if writing fails or the archive exceeds 2GB
+     */
+    public static int write(Path path, TraceStore store, int blockSize) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<String, Integer> nameIds = new LinkedHashMap<>();
+        List<Block> written = new ArrayList<>();
+        int count = 0;
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            BlockBuilder block = new BlockBuilder(nameIds);
+            for (String traceId : idsByStartTime(store)) {
+                Optional<Trace> trace = store.get(traceId);
+                if (trace.isEmpty()) {
+                    continue;
+                }
+                block.add(trace.get());
+                count++;
+                if (block.traceCount == blockSize) {
+                    written.add(block.writeTo(out));
+                    block = new BlockBuilder(nameIds);
+                }
+            }
+            if (block.traceCount > 0) {
+                written.add(block.writeTo(out));
+            }
+
+            long footerOffset = out.size();
+            out.writeInt(nameIds.size());
+            for (String name : nameIds.keySet()) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(written.size());
+            for (Block b : written) {
+                b.write(out);
+            }
+            out.writeLong(footerOffset);
+            out.writeInt(MAGIC);
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("Archive exceeds 2GB: " + path);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Maps an archive file. Only the footer is read.
+     *
+     * @param path archive file
+     * @return archive ready for queries
+     * @throws IOException if the file cannot be mapped or is not an archive
+     */
+    public static ColumnarTraceArchive open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Archive exceeds 2GB: " + path);
+            }
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Not a trace archive: " + path);
+            }
+
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (data.getInt(0) != MAGIC || data.getInt((int) size - 4) != MAGIC) {
+                throw new IOException("Not a trace archive: " + path);
+            }
+            int version = data.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported archive version " + version + ": " + path);
+            }
+
+            long footerOffset = data.getLong((int) size - TRAILER_SIZE);
+            if (footerOffset < HEADER_SIZE || footerOffset > size - TRAILER_SIZE) {
+                throw new IOException("Corrupt archive footer: " + path);
+            }
+            try {
+                ByteBuffer footer = data.duplicate();
+                footer.position((int) footerOffset).limit((int) size - TRAILER_SIZE);
+                String[] names = new String[footer.getInt()];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = readString(footer);
+                }
+                Block[] blocks = new Block[footer.getInt()];
+                for (int i = 0; i < blocks.length; i++) {
+                    blocks[i] = Block.read(footer, (int) footerOffset);
+                }
+                return new ColumnarTraceArchive(data, names, blocks);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt archive footer: " + path, e);
+            }
+        }
+    }
+
+    private static List<String> idsByStartTime(TraceStore store) {
+        Map<String, Long> starts = new HashMap<>();
+        for (String traceId : store.listTraceIds()) {
+            store.get(traceId).ifPresent(trace -> starts.put(traceId, trace.getStartTime()));
+        }
+        List<String> ids = new ArrayList<>(starts.keySet());
+        ids.sort(Comparator.comparingLong(starts::get));
+        return ids;
+    }
+
+    public int getBlockCount() {
+        return blocks.length;
+    }
+
+    /**
+     * Returns the number of traces in the archive, from the footer alone.
+     */
+    public long getTraceCount() {
+        long count = 0;
+        for (Block block : blocks) {
+            count += block.traceCount;
+        }
+        return count;
+    }
+
+    /**
+     * Counts traces that started within a window. Blocks entirely inside the
+     * window are counted from the footer; only straddling blocks decode
+     * their start times.
+     *
+     * @param fromMillis inclusive lower bound on start time
+     * @param toMillis   inclusive upper bound on start time
+     * @return number of matching traces
+     */
+    public long countTraces(long fromMillis, long toMillis) {
+        long count = 0;
+        for (Block block : blocks) {
+            if (!block.overlaps(fromMillis, toMillis)) {
+                continue;
+            }
+            if (block.within(fromMillis, toMillis)) {
+                count += block.traceCount;
+                continue;
+            }
+            ColumnReader starts = startTimes(block);
+            for (int t = 0; t < block.traceCount; t++) {
+                long start = starts.nextStart();
+                if (start >= fromMillis && start <= toMillis) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Feeds the duration of every ended trace that started within the window
+     * and whose duration lies in the given range. Reads only the start-time
+     * and duration columns, and skips blocks whose statistics rule out a
+     * match.
+     *
+     * @param fromMillis  inclusive lower bound on start time
+     * @param toMillis    inclusive upper bound on start time
+     * @param minDuration inclusive lower bound on duration
+     * @param maxDuration inclusive upper bound on duration
+     * @param consumer    receives matching durations in milliseconds
+     */
+    public void scanDurations(long fromMillis, long toMillis, long minDuration, long maxDuration,
+            LongConsumer consumer) {
+        for (Block block : blocks) {
+            if (!block.overlaps(fromMillis, toMillis) || block.maxDuration < minDuration
+                    || block.minDuration > maxDuration) {
+                continue;
+            }
+            ColumnReader starts = block.within(fromMillis, toMillis) ? null : startTimes(block);
+            ColumnReader durations = column(block, Column.DURATIONS);
+            for (int t = 0; t < block.traceCount; t++) {
+                long encoded = durations.readVarint();
+                if (starts != null) {
+                    long start = starts.nextStart();
+                    if (start < fromMillis || start > toMillis) {
+                        continue;
+                    }
+                }
+                if (encoded != 0) {
+                    long duration = zigzagDecode(encoded - 1);
+                    if (duration >= minDuration && duration <= maxDuration) {
+                        consumer.accept(duration);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Feeds the delta of every event with the given name in traces that
+     * started within the window. Blocks without that event are skipped
+     * without decoding anything.
+     *
+     * @param name       event name
+     * @param fromMillis inclusive lower bound on start time
+     * @param toMillis   inclusive upper bound on start time
+     * @param consumer   receives each matching delta in milliseconds
+     */
+    public void scanEventDeltas(String name, long fromMillis, long toMillis, LongConsumer consumer) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            return;
+        }
+        int target = id;
+        scan(fromMillis, toMillis, target, (nameId, delta) -> {
+            if (nameId == target) {
+                consumer.accept(delta);
+            }
+        });
+    }
+
+    /**
+     * Feeds the name and delta of every event in traces that started within
+     * the window.
+     *
+     * @param fromMillis inclusive lower bound on start time
+     * @param toMillis   inclusive upper bound on start time
+     * @param consumer   receives each event's name and delta
+     */
+    public void scanEvents(long fromMillis, long toMillis, EventConsumer consumer) {
+        scan(fromMillis, toMillis, -1, (nameId, delta) -> consumer.accept(names[nameId], delta));
+    }
+
+    /**
+     * Decodes full traces that started within the window, one block at a
+     * time. Reads every column of each matching block.
+     *
+     * @param fromMillis inclusive lower bound on start time
+     * @param toMillis   inclusive upper bound on start time
+     * @return lazily decoded traces
+     */
+    public Stream<Trace> traces(long fromMillis, long toMillis) {
+        return Arrays.stream(blocks)
+                .filter(block -> block.overlaps(fromMillis, toMillis))
+                .flatMap(block -> decodeBlock(block).stream())
+                .filter(trace -> trace.getStartTime() >= fromMillis && trace.getStartTime() <= toMillis);
+    }
+
+    /**
+     * Releases this archive's reference to the mapping. The OS unmaps the
+     * file once the buffer is garbage collected.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Returns how many times a column has been decoded, for verifying that
+     * queries touch only the columns they need.
+     */
+    long getDecodedCount(Column column) {
+        return decoded.get(column.ordinal());
+    }
+
+    @FunctionalInterface
+    private interface NameIdConsumer {
+        void accept(int nameId, long delta);
+    }
+
+    private void scan(long fromMillis, long toMillis, int requiredName, NameIdConsumer consumer) {
+        for (Block block : blocks) {
+            if (!block.overlaps(fromMillis, toMillis)
+                    || (requiredName >= 0 && Arrays.binarySearch(block.nameIds, requiredName) < 0)) {
+                continue;
+            }
+            ColumnReader starts = block.within(fromMillis, toMillis) ? null : startTimes(block);
+            ColumnReader counts = column(block, Column.EVENT_COUNTS);
+            ColumnReader eventNames = column(block, Column.EVENT_NAMES);
+            ColumnReader deltas = column(block, Column.EVENT_DELTAS);
+            for (int t = 0; t < block.traceCount; t++) {
+                int eventCount = (int) counts.readVarint();
+                boolean include = true;
+                if (starts != null) {
+                    long start = starts.nextStart();
+                    include = start >= fromMillis && start <= toMillis;
+                }
+                for (int e = 0; e < eventCount; e++) {
+                    int nameId = (int) eventNames.readVarint();
+                    long delta = zigzagDecode(deltas.readVarint());
+                    if (include) {
+                        consumer.accept(nameId, delta);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<Trace> decodeBlock(Block block) {
+        ColumnReader ids = column(block, Column.TRACE_IDS);
+        ColumnReader starts = startTimes(block);
+        ColumnReader durations = column(block, Column.DURATIONS);
+        ColumnReader threads = column(block, Column.THREADS);
+        ColumnReader counts = column(block, Column.EVENT_COUNTS);
+        ColumnReader offsets = column(block, Column.FIRST_EVENT_OFFSETS);
+        ColumnReader eventNames = column(block, Column.EVENT_NAMES);
+        ColumnReader deltas = column(block, Column.EVENT_DELTAS);
+        String[] keys = column(block, Column.METADATA_KEYS).readDictionary();
+        String[] values = column(block, Column.METADATA_VALUES).readDictionary();
+        ColumnReader metadata = column(block, Column.METADATA);
+        String[] threadNames = threads.readDictionary();
+
+        List<Trace> traces = new ArrayList<>(block.traceCount);
+        for (int t = 0; t < block.traceCount; t++) {
+            String traceId = ids.readString();
+            long start = starts.nextStart();
+            long encodedDuration = durations.readVarint();
+            Long end = encodedDuration == 0 ? null : start + zigzagDecode(encodedDuration - 1);
+            long threadId = zigzagDecode(threads.readVarint());
+            String threadName = threadNames[(int) threads.readVarint()];
+
+            int eventCount = (int) counts.readVarint();
+            List<TraceEvent> events = new ArrayList<>(eventCount);
+            long elapsed = eventCount > 0 ? zigzagDecode(offsets.readVarint()) : 0;
+            for (int e = 0; e < eventCount; e++) {
+                String name = names[(int) eventNames.readVarint()];
+                long delta = zigzagDecode(deltas.readVarint());
+                elapsed += delta;
+                int metaCount = (int) metadata.readVarint();
+                Map<String, String> meta = new HashMap<>();
+                for (int m = 0; m < metaCount; m++) {
+                    meta.put(keys[(int) metadata.readVarint()], values[(int) metadata.readVarint()]);
+                }
+                events.add(new TraceEvent(name, start + elapsed, elapsed, delta, meta));
+            }
+            traces.add(Trace.restore(traceId, start, end, threadId, threadName, events));
+        }
+        return traces;
+    }
+
+    private ColumnReader startTimes(Block block) {
+        return column(block, Column.START_TIMES);
+    }
+
+    private ColumnReader column(Block block, Column column) {
+        decoded.incrementAndGet(column.ordinal());
+        ByteBuffer view = data.duplicate();
+        int offset = block.columnOffsets[column.ordinal()];
+        view.position(offset).limit(offset + block.columnLengths[column.ordinal()]);
+        return new ColumnReader(view);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Footer entry for one block: statistics for skipping and where each
+     * column lives in the file.
+     */
+    private static final class Block {
+        int traceCount;
+        long minStart;
+        long maxStart;
+        long minDuration;
+        long maxDuration;
+        int[] nameIds;
+        final int[] columnOffsets = new int[COLUMNS.length];
+        final int[] columnLengths = new int[COLUMNS.length];
+
+        static Block read(ByteBuffer footer, int limit) {
+            Block block = new Block();
+            block.traceCount = footer.getInt();
+            block.minStart = footer.getLong();
+            block.maxStart = footer.getLong();
+            block.minDuration = footer.getLong();
+            block.maxDuration = footer.getLong();
+            block.nameIds = new int[footer.getInt()];
+            for (int i = 0; i < block.nameIds.length; i++) {
+                block.nameIds[i] = footer.getInt();
+            }
+            for (int c = 0; c < COLUMNS.length; c++) {
+                block.columnOffsets[c] = footer.getInt();
+                block.columnLengths[c] = footer.getInt();
+                if (block.columnOffsets[c] < HEADER_SIZE || block.columnLengths[c] < 0
+                        || (long) block.columnOffsets[c] + block.columnLengths[c] > limit) {
+                    throw new IllegalStateException("Column out of bounds");
+                }
+            }
+            return block;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(traceCount);
+            out.writeLong(minStart);
+            out.writeLong(maxStart);
+            out.writeLong(minDuration);
+            out.writeLong(maxDuration);
+            out.writeInt(nameIds.length);
+            for (int nameId : nameIds) {
+                out.writeInt(nameId);
+            }
+            for (int c = 0; c < COLUMNS.length; c++) {
+                out.writeInt(columnOffsets[c]);
+                out.writeInt(columnLengths[c]);
+            }
+        }
+
+        boolean overlaps(long from, long to) {
+            return maxStart >= from && minStart <= to;
+        }
+
+        boolean within(long from, long to) {
+            return minStart >= from && maxStart <= to;
+        }
+    }
+
+    /**
+     * Accumulates one block's columns in memory before they are written.
+     */
+    private static final class BlockBuilder {
+        private final Map<String, Integer> nameIds;
+        private final ColumnWriter[] columns = new ColumnWriter[COLUMNS.length];
+        private final Map<String, Integer> threadNames = new LinkedHashMap<>();
+        private final Map<String, Integer> keys = new LinkedHashMap<>();
+        private final Map<String, Integer> values = new LinkedHashMap<>();
+        private final ColumnWriter threads = new ColumnWriter();
+        private final BitSet presentNames = new BitSet();
+
+        int traceCount;
+        private long previousStart;
+        private long minStart = Long.MAX_VALUE;
+        private long maxStart = Long.MIN_VALUE;
+        private long minDuration = Long.MAX_VALUE;
+        private long maxDuration = Long.MIN_VALUE;
+
+        BlockBuilder(Map<String, Integer> nameIds) {
+            this.nameIds = nameIds;
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = new ColumnWriter();
+            }
+        }
+
+        void add(Trace trace) {
+            long start = trace.getStartTime();
+            column(Column.TRACE_IDS).writeString(trace.getTraceId());
+            column(Column.START_TIMES).writeVarint(zigzagEncode(start - previousStart));
+            previousStart = start;
+            minStart = Math.min(minStart, start);
+            maxStart = Math.max(maxStart, start);
+
+            if (trace.isEnded()) {
+                long duration = trace.getTotalDuration();
+                column(Column.DURATIONS).writeVarint(zigzagEncode(duration) + 1);
+                minDuration = Math.min(minDuration, duration);
+                maxDuration = Math.max(maxDuration, duration);
+            } else {
+                column(Column.DURATIONS).writeVarint(0);
+            }
+
+            threads.writeVarint(zigzagEncode(trace.getThreadId()));
+            threads.writeVarint(id(threadNames, trace.getThreadName()));
+
+            List<TraceEvent> events = trace.getEvents();
+            column(Column.EVENT_COUNTS).writeVarint(events.size());
+            if (!events.isEmpty()) {
+                // The first event's delta is always zero; its offset from start is kept separately
+                column(Column.FIRST_EVENT_OFFSETS).writeVarint(zigzagEncode(events.get(0).getElapsedSinceStart()));
+            }
+            for (TraceEvent event : events) {
+                int nameId = id(nameIds, event.getName());
+                presentNames.set(nameId);
+                column(Column.EVENT_NAMES).writeVarint(nameId);
+                column(Column.EVENT_DELTAS).writeVarint(zigzagEncode(event.getDelta()));
+                ColumnWriter metadata = column(Column.METADATA);
+                metadata.writeVarint(event.getMetadata().size());
+                for (Map.Entry<String, String> entry : event.getMetadata().entrySet()) {
+                    metadata.writeVarint(id(keys, entry.getKey()));
+                    metadata.writeVarint(id(values, entry.getValue()));
+                }
+            }
+            traceCount++;
+        }
+
+        /**
+         * Writes the block's columns and returns its footer entry.
+         */
+        Block writeTo(DataOutputStream out) throws IOException {
+            column(Column.THREADS).writeDictionary(threadNames);
+            column(Column.THREADS).writeBytes(threads.toByteArray());
+            column(Column.METADATA_KEYS).writeDictionary(keys);
+            column(Column.METADATA_VALUES).writeDictionary(values);
+
+            Block block = new Block();
+            block.traceCount = traceCount;
+            block.minStart = minStart;
+            block.maxStart = maxStart;
+            block.minDuration = minDuration;
+            block.maxDuration = maxDuration;
+            block.nameIds = presentNames.stream().toArray();
+            for (int c = 0; c < columns.length; c++) {
+                block.columnOffsets[c] = out.size();
+                block.columnLengths[c] = columns[c].size();
+                columns[c].writeTo(out);
+                if (out.size() == Integer.MAX_VALUE) {
+                    throw new IOException("Archive exceeds 2GB");
+                }
+            }
+            return block;
+        }
+
+        private ColumnWriter column(Column column) {
+            return columns[column.ordinal()];
+        }
+
+        private static int id(Map<String, Integer> dictionary, String value) {
+            return dictionary.computeIfAbsent(value, v -> dictionary.size());
+        }
+    }
+
+    private static final class ColumnWriter extends ByteArrayOutputStream {
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeDictionary(Map<String, Integer> dictionary) {
+            writeVarint(dictionary.size());
+            for (String value : dictionary.keySet()) {
+                writeString(value);
+            }
+        }
+    }
+
+    /**
+     * Sequential decoder over a private view of one column.
+     */
+    private static final class ColumnReader {
+        private final ByteBuffer buffer;
+        private long previousStart;
+
+        ColumnReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        long readVarint() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+                shift += 7;
+                if (shift > 63) {
+                    throw new UncheckedIOException(new IOException("Malformed varint in archive column"));
+                }
+            }
+        }
+
+        /**
+         * Reads the next start time from a delta-encoded start-time column.
+         */
+        long nextStart() {
+            previousStart += zigzagDecode(readVarint());
+            return previousStart;
+        }
+
+        String readString() {
+            int length = (int) readVarint();
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String[] readDictionary() {
+            String[] dictionary = new String[(int) readVarint()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString();
+            }
+            return dictionary;
+        }
+    }
+}
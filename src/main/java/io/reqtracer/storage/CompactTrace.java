@@ -0,0 +1,151 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceContext;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.core.TraceId;
+import io.reqtracer.core.TraceShape;
+import io.reqtracer.core.TraceSpan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stored form of a trace: a reference to its shared {@link TraceShape} plus
+ * only the per-trace data.
+ * <p>
+ * Event names come from the shape and event timing is kept as a single array
+ * of timestamps; elapsed time and delta are derived from it exactly as
+ * {@link Trace#mark(String, Map)} computes them. Metadata is kept only for
+ * events that have any, with keys and values interned. Traces with a numeric
+ * ID do not retain the String rendering. Spans, which are immutable once the
+ * trace has ended, are kept as their tree only when the trace has any, as are
+ * the parent context and tenant.
+ */
+final class CompactTrace {
+
+    private static final long NOT_ENDED = Long.MIN_VALUE;
+    /** Estimated size of a span with its name shared and its child list. */
+    private static final long SPAN_SIZE = 72;
+
+    final long id;
+    final String traceId; // null when id is numeric
+    final TraceShape shape;
+    final long startTime;
+    final long endTime;
+    final long threadId;
+    final String threadName;
+    final long[] timestamps;
+    final Map<String, String>[] metadata; // null when no event has metadata
+    final List<TraceSpan> spans; // null when the trace has no spans
+    final TraceContext parent; // null when the trace has no parent
+    final String tenant; // null when the trace names no tenant
+
+    private CompactTrace(long id, String traceId, TraceShape shape, long startTime, long endTime, long threadId,
+            String threadName, long[] timestamps, Map<String, String>[] metadata, List<TraceSpan> spans,
+            TraceContext parent, String tenant) {
+        this.id = id;
+        this.traceId = traceId;
+        this.shape = shape;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.threadId = threadId;
+        this.threadName = threadName;
+        this.timestamps = timestamps;
+        this.metadata = metadata;
+        this.spans = spans;
+        this.parent = parent;
+        this.tenant = tenant;
+    }
+
+    /**
+     * Captures a trace against an (ideally shared) shape matching its events,
+     * interning metadata Strings.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static CompactTrace of(Trace trace, List<TraceEvent> events, TraceShape shape, MetadataInterner interner) {
+        long[] timestamps = new long[events.size()];
+        Map<String, String>[] metadata = null;
+
+        for (int i = 0; i < timestamps.length; i++) {
+            TraceEvent event = events.get(i);
+            timestamps[i] = event.getTimestamp();
+            if (event.hasMetadata()) {
+                if (metadata == null) {
+                    metadata = new Map[timestamps.length];
+                }
+                metadata[i] = interner.intern(event.getMetadata());
+            }
+        }
+
+        long endTime = trace.isEnded() ? trace.getEndTime() : NOT_ENDED;
+        long id = trace.getId();
+        return new CompactTrace(id, id == TraceId.NONE ? trace.getTraceId() : null, shape,
+                trace.getStartTime(), endTime, trace.getThreadId(), trace.getThreadName(), timestamps,
+                metadata, trace.hasSpans() ? trace.getSpans() : null, trace.getParent(), trace.getTenant());
+    }
+
+    /**
+     * Rebuilds a full trace.
+     */
+    Trace toTrace() {
+        List<TraceEvent> events = new ArrayList<>(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++) {
+            long delta = i == 0 ? 0 : timestamps[i] - timestamps[i - 1];
+            Map<String, String> meta = metadata != null && metadata[i] != null
+                    ? metadata[i]
+                    : Collections.emptyMap();
+            events.add(new TraceEvent(shape.getName(i), timestamps[i], timestamps[i] - startTime, delta, meta));
+        }
+        Long end = endTime == NOT_ENDED ? null : endTime;
+        Trace trace = traceId == null
+                ? Trace.restore(id, startTime, end, threadId, threadName, events, spans)
+                : Trace.restore(traceId, startTime, end, threadId, threadName, events, spans);
+        if (parent != null) {
+            trace.setParent(parent);
+        }
+        if (tenant != null) {
+            trace.setTenant(tenant);
+        }
+        return trace;
+    }
+
+    /**
+     * Estimates the heap this trace retains on its own, on a 64-bit JVM with
+     * compressed oops. Shapes, thread names and interned metadata Strings are
+     * shared between traces and not counted.
+     */
+    long estimateSize() {
+        long size = 80 + arraySize(8, timestamps.length);
+        if (traceId != null) {
+            size += MetadataInterner.estimateSize(traceId);
+        }
+        if (metadata != null) {
+            size += arraySize(4, metadata.length);
+            for (Map<String, String> map : metadata) {
+                if (map != null) {
+                    // Immutable map object plus its key/value table
+                    size += 16 + arraySize(4, 2 * map.size());
+                }
+            }
+        }
+        if (spans != null) {
+            size += SPAN_SIZE * countSpans(spans);
+        }
+        return size;
+    }
+
+    private static long arraySize(int elementSize, int length) {
+        return (16 + (long) elementSize * length + 7) & ~7L;
+    }
+
+    private static int countSpans(List<TraceSpan> spans) {
+        int count = spans.size();
+        for (TraceSpan span : spans) {
+            count += countSpans(span.getChildren());
+        }
+        return count;
+    }
+}
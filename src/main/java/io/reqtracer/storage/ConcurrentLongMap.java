@@ -0,0 +1,387 @@
+package io.reqtracer.storage;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent hash map from primitive {@code long} keys to values, using open
+ * addressing so that no key is boxed and no entry object is allocated.
+ * <p>
+ * Keys are spread over segments (64 by default), each a linear-probing
+ * table guarded by a {@link StampedLock}. Writes lock one segment. Reads are
+ * optimistic: they probe without locking and only fall back to a read lock if
+ * a write to the same segment raced with them. Removal uses backward-shift
+ * deletion, so there are no tombstones and probe chains stay short.
+ * <p>
+ * Null values are not allowed; a null slot marks an empty slot.
+ */
+final class ConcurrentLongMap<V> {
+
+    private static final int DEFAULT_SEGMENT_BITS = 6;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    ConcurrentLongMap() {
+        this(DEFAULT_SEGMENT_BITS);
+    }
+
+    /**
+     * Creates a map with {@code 2^segmentBits} segments. Fewer segments
+     * suit many small maps; more suit one heavily written map.
+     */
+    ConcurrentLongMap(int segmentBits) {
+        if (segmentBits < 0 || segmentBits > 16) {
+            throw new IllegalArgumentException("Segment bits must be between 0 and 16");
+        }
+        segments = new Segment[1 << segmentBits];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+        segmentShift = 64 - segmentBits;
+    }
+
+    /**
+     * Returns the value for a key, or null if absent.
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        long hash = mix(key);
+        return (V) segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @return the previous value, or null
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        long hash = mix(key);
+        return (V) segmentFor(hash).put(key, hash, value);
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @return the removed value, or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        long hash = mix(key);
+        return (V) segmentFor(hash).remove(key, hash);
+    }
+
+    /**
+     * Removes a key only if it is mapped to the given value (by identity).
+     *
+     * @return true if removed
+     */
+    boolean remove(long key, V expected) {
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, hash, expected);
+    }
+
+    /**
+     * Removes every entry whose value matches, one segment at a time.
+     *
+     * @return number of entries removed
+     */
+    @SuppressWarnings("unchecked")
+    int removeValues(Predicate<? super V> filter) {
+        int removed = 0;
+        for (Segment segment : segments) {
+            removed += segment.removeValues(value -> filter.test((V) value));
+        }
+        return removed;
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Calls the action for every key. Each segment is read under its lock,
+     * so the result is consistent per segment but not across segments.
+     */
+    void forEachKey(LongConsumer action) {
+        for (Segment segment : segments) {
+            segment.forEachKey(action);
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        // Shifting a long by 64 is a no-op, so a single segment is special-cased
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    /**
+     * MurmurHash3 finalizer; generated IDs differ mostly in their low bits.
+     */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Keys and values replaced together on resize, so an optimistic reader
+     * always sees arrays of the same length.
+     */
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private Table table = new Table(INITIAL_CAPACITY);
+        private int size;
+
+        Object get(long key, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Object value = find(table, key, hash);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return find(table, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        Object put(long key, long hash, Object value) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int slot = (int) hash & t.mask;
+                while (t.values[slot] != null) {
+                    if (t.keys[slot] == key) {
+                        Object previous = t.values[slot];
+                        t.values[slot] = value;
+                        return previous;
+                    }
+                    slot = (slot + 1) & t.mask;
+                }
+                t.keys[slot] = key;
+                t.values[slot] = value;
+                size++;
+                if (size * 4 > t.keys.length * 3) {
+                    table = resize(t);
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        Object remove(long key, long hash) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int slot = (int) hash & t.mask;
+                while (t.values[slot] != null) {
+                    if (t.keys[slot] == key) {
+                        Object previous = t.values[slot];
+                        shiftBack(t, slot);
+                        size--;
+                        return previous;
+                    }
+                    slot = (slot + 1) & t.mask;
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(long key, long hash, Object expected) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int slot = (int) hash & t.mask;
+                while (t.values[slot] != null) {
+                    if (t.keys[slot] == key) {
+                        if (t.values[slot] != expected) {
+                            return false;
+                        }
+                        shiftBack(t, slot);
+                        size--;
+                        return true;
+                    }
+                    slot = (slot + 1) & t.mask;
+                }
+                return false;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Rebuilds the table without matching entries; cheaper than removing
+         * them one by one when many go at once.
+         */
+        int removeValues(Predicate<Object> filter) {
+            long stamp = lock.writeLock();
+            try {
+                Table old = table;
+                int removed = 0;
+                for (Object value : old.values) {
+                    if (value != null && filter.test(value)) {
+                        removed++;
+                    }
+                }
+                if (removed == 0) {
+                    return 0;
+                }
+                int capacity = INITIAL_CAPACITY;
+                while ((size - removed) * 4 > capacity * 3) {
+                    capacity *= 2;
+                }
+                Table t = new Table(capacity);
+                for (int i = 0; i < old.values.length; i++) {
+                    if (old.values[i] != null && !filter.test(old.values[i])) {
+                        insert(t, old.keys[i], old.values[i]);
+                    }
+                }
+                table = t;
+                size -= removed;
+                return removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                table = new Table(INITIAL_CAPACITY);
+                size = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void forEachKey(LongConsumer action) {
+            long[] keys;
+            long stamp = lock.readLock();
+            try {
+                Table t = table;
+                keys = new long[size];
+                int n = 0;
+                for (int i = 0; i < t.values.length; i++) {
+                    if (t.values[i] != null) {
+                        keys[n++] = t.keys[i];
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            // Run the action outside the lock so it may call back into the map
+            for (long key : keys) {
+                action.accept(key);
+            }
+        }
+
+        /**
+         * Probes for a key. May run against a table being modified, so the
+         * probe is bounded by the table length.
+         */
+        private static Object find(Table t, long key, long hash) {
+            int slot = (int) hash & t.mask;
+            for (int probes = 0; probes <= t.mask; probes++) {
+                Object value = t.values[slot];
+                if (value == null) {
+                    return null;
+                }
+                if (t.keys[slot] == key) {
+                    return value;
+                }
+                slot = (slot + 1) & t.mask;
+            }
+            return null;
+        }
+
+        /**
+         * Empties a slot and moves later entries of the same probe chain back
+         * so that every entry stays reachable from its home slot.
+         */
+        private static void shiftBack(Table t, int slot) {
+            int gap = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & t.mask;
+                if (t.values[next] == null) {
+                    break;
+                }
+                int home = (int) mix(t.keys[next]) & t.mask;
+                boolean stays = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+                if (!stays) {
+                    t.keys[gap] = t.keys[next];
+                    t.values[gap] = t.values[next];
+                    gap = next;
+                }
+            }
+            t.keys[gap] = 0;
+            t.values[gap] = null;
+        }
+
+        private static Table resize(Table old) {
+            Table t = new Table(old.keys.length * 2);
+            for (int i = 0; i < old.values.length; i++) {
+                if (old.values[i] != null) {
+                    insert(t, old.keys[i], old.values[i]);
+                }
+            }
+            return t;
+        }
+
+        private static void insert(Table t, long key, Object value) {
+            int slot = (int) mix(key) & t.mask;
+            while (t.values[slot] != null) {
+                slot = (slot + 1) & t.mask;
+            }
+            t.keys[slot] = key;
+            t.values[slot] = value;
+        }
+    }
+}
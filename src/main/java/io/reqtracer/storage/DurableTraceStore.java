@@ -0,0 +1,783 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.Trace;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Trace store that survives crashes by appending every change to a
+ * write-ahead log before acknowledging it.
+ * <p>
+ * Reads and writes go to a delegate store (in-memory by default); the log is
+ * only read at startup, when it is replayed into the delegate. Writes use
+ * group commit: callers encode their trace and enqueue it, and a single
+ * writer thread drains everything queued into one gathering write followed by
+ * at most one {@link FileChannel#force(boolean)}. Under load, many concurrent
+ * {@link #store(Trace)} calls share each fsync.
+ * <p>
+ * Record layout: length (int, of type + payload), CRC32C (int, of type +
+ * payload), type (byte), payload. A STORE payload is a {@link TraceCodec}
+ * encoding; a REMOVE payload is the trace ID. A torn record at the end of the
+ * log (from a crash mid-write) is detected by its length or checksum and
+ * truncated on replay.
+ * <p>
+ * Writes to the same trace ID are serialized, from logging through applying
+ * to the delegate, so the delegate and a replay see them in the same order.
+ * Traces an {@link InMemoryTraceStore} delegate evicts for its quotas are
+ * logged as removals by the next write.
+ * <p>
+ * The log is compacted once it has grown to twice its size after the last
+ * compaction (and past {@link #setCompactionThreshold(long) a threshold}):
+ * it is rewritten as one STORE record per trace the delegate holds and
+ * atomically renamed over the old log. Writes wait in the queue while the
+ * rewrite runs.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * DurableTraceStore store = DurableTraceStore.open(Paths.get("traces.wal"), Durability.BATCH);
+ * Tracer.setStore(store);
+ * ...
+ * store.close();
+ * </pre>
+ */
+public class DurableTraceStore implements TraceStore, Closeable {
+
+    /**
+     * How long a write may sit in the OS page cache before it is forced to
+     * disk.
+     */
+    public enum Durability {
+        /** Never force; the OS flushes when it chooses. Fastest, may lose recent traces on power loss. */
+        NONE,
+        /** Force at most once per configured interval. {@code store()} does not wait. */
+        INTERVAL,
+        /** Force every batch; {@code store()} returns only once its record is on disk. */
+        BATCH
+    }
+
+    private static final byte TYPE_STORE = 1;
+    private static final byte TYPE_REMOVE = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final int MAX_BATCH = 4096;
+    private static final int STRIPES = 64;
+    static final long DEFAULT_INTERVAL_MILLIS = 100;
+    static final long DEFAULT_COMPACTION_THRESHOLD = 64L << 20;
+
+    private final TraceStore delegate;
+    private final Path path; // null when opened on a bare channel
+    private final Durability durability;
+    private final long intervalMillis;
+    private final int replayedCount;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Queue<String> evicted = new ConcurrentLinkedQueue<>();
+
+    /** Written by the writer thread only, once it has started. */
+    private FileChannel channel;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong forceCount = new AtomicLong();
+    private final AtomicLong recordCount = new AtomicLong();
+    private final AtomicLong compactionCount = new AtomicLong();
+
+    private final AtomicLong logSize;
+    private volatile long compactedSize;
+    private volatile long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private final AtomicReference<Pending> compaction = new AtomicReference<>(); // marker queued or running
+
+    private DurableTraceStore(TraceStore delegate, Path path, FileChannel channel, Durability durability,
+            long intervalMillis, int replayedCount) throws IOException {
+        this.delegate = delegate;
+        this.path = path;
+        this.channel = channel;
+        this.durability = durability;
+        this.intervalMillis = intervalMillis;
+        this.replayedCount = replayedCount;
+        this.logSize = new AtomicLong(channel.position());
+        this.compactedSize = logSize.get();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        if (delegate instanceof InMemoryTraceStore) {
+            ((InMemoryTraceStore) delegate).setEvictionListener(evicted::add);
+        }
+        this.writer = new Thread(this::runWriter, "trace-wal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens (or creates) a log backed by a new in-memory store.
+     *
+     * @param log        log file
+     * @param durability when writes are forced to disk
+     * @return store with the log's contents replayed
+     * @throws IOException if the log cannot be opened or read
+     */
+    public static DurableTraceStore open(Path log, Durability durability) throws IOException {
+        return open(log, new InMemoryTraceStore(), durability, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens (or creates) a log, replaying its contents into the delegate.
+     *
+     * @param log            log file
+     * @param delegate       store that serves reads
+     * @param durability     when writes are forced to disk
+     * @param intervalMillis force interval for {@link Durability#INTERVAL}
+     * @return store with the log's contents replayed
+     * @throws IOException if the log cannot be opened or read
+     */
+    public static DurableTraceStore open(Path log, TraceStore delegate, Durability durability, long intervalMillis)
+            throws IOException {
+        Objects.requireNonNull(delegate, "Delegate store cannot be null");
+        Objects.requireNonNull(durability, "Durability cannot be null");
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+
+        FileChannel channel = FileChannel.open(log,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return open(log, channel, delegate, durability, intervalMillis);
+    }
+
+    /**
+     * Same as {@link #open(Path, TraceStore, Durability, long)} on an open
+     * channel, which is closed if replay fails. The log cannot be compacted.
+     */
+    static DurableTraceStore open(FileChannel channel, TraceStore delegate, Durability durability,
+            long intervalMillis) throws IOException {
+        return open(null, channel, delegate, durability, intervalMillis);
+    }
+
+    /**
+     * Same as {@link #open(Path, TraceStore, Durability, long)} on an open
+     * channel for the log, which is closed if replay fails.
+     *
+     * @param log log file, or null if the log cannot be compacted
+     */
+    static DurableTraceStore open(Path log, FileChannel channel, TraceStore delegate, Durability durability,
+            long intervalMillis) throws IOException {
+        try {
+            int replayed = replay(channel, delegate);
+            return new DurableTraceStore(delegate, log, channel, durability, intervalMillis, replayed);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void store(Trace trace) {
+        if (trace == null) {
+            throw new IllegalArgumentException("Trace cannot be null");
+        }
+        byte[] payload = encode(trace);
+        ReentrantLock lock = stripe(trace.getTraceId());
+        lock.lock();
+        try {
+            append(TYPE_STORE, payload);
+            delegate.store(trace);
+        } finally {
+            lock.unlock();
+        }
+        afterWrite();
+    }
+
+    @Override
+    public Optional<Trace> get(String traceId) {
+        return delegate.get(traceId);
+    }
+
+    @Override
+    public void remove(String traceId) {
+        if (traceId == null) {
+            return;
+        }
+        ReentrantLock lock = stripe(traceId);
+        lock.lock();
+        try {
+            append(TYPE_REMOVE, encode(traceId));
+            delegate.remove(traceId);
+        } finally {
+            lock.unlock();
+        }
+        afterWrite();
+    }
+
+    @Override
+    public Collection<String> listTraceIds() {
+        return delegate.listTraceIds();
+    }
+
+    /**
+     * Pins the trace in the delegate. Pins are not logged, so they do not
+     * survive a restart.
+     */
+    @Override
+    public boolean pin(String traceId) {
+        return delegate.pin(traceId);
+    }
+
+    @Override
+    public void unpin(String traceId) {
+        delegate.unpin(traceId);
+    }
+
+    @Override
+    public Collection<String> listPinnedTraceIds() {
+        return delegate.listPinnedTraceIds();
+    }
+
+    /**
+     * Returns the store that serves reads.
+     */
+    public TraceStore getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the number of log records applied to the delegate at startup.
+     */
+    public int getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * Returns the number of records written since opening.
+     */
+    public long getRecordCount() {
+        return recordCount.get();
+    }
+
+    /**
+     * Returns the number of write batches since opening. Lower than the
+     * record count when group commit is coalescing writes.
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Returns the number of fsyncs since opening.
+     */
+    public long getForceCount() {
+        return forceCount.get();
+    }
+
+    /**
+     * Returns the number of times the log has been compacted since opening.
+     */
+    public long getCompactionCount() {
+        return compactionCount.get();
+    }
+
+    /**
+     * Returns the size of the log in bytes, as far as it has been written.
+     */
+    public long getLogSize() {
+        return logSize.get();
+    }
+
+    /**
+     * Sets the size below which the log is never compacted automatically.
+     *
+     * @param bytes minimum log size, or 0 to only compact on {@link #compact()}
+     */
+    public void setCompactionThreshold(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Compaction threshold cannot be negative");
+        }
+        compactionThreshold = bytes;
+    }
+
+    /**
+     * Rewrites the log as one STORE record per trace the delegate holds,
+     * dropping replaced and removed traces, and waits until the new log has
+     * replaced the old one. Writes wait while the rewrite runs.
+     *
+     * @throws IOException if the rewrite failed; the old log is kept
+     */
+    public void compact() throws IOException {
+        if (path == null) {
+            throw new IllegalStateException("Log opened without a path cannot be compacted");
+        }
+        Pending marker = new Pending(null, true);
+        while (!compaction.compareAndSet(null, marker)) {
+            if (closed) {
+                throw new IllegalStateException("Store is closed");
+            }
+            checkFailure();
+            Pending running = compaction.get();
+            if (running != null) {
+                // Wait out an automatic compaction; it may predate our writes
+                running.done.exceptionally(e -> null).join();
+            }
+        }
+        requestCompaction(marker);
+        try {
+            marker.done.join();
+        } catch (CompletionException e) {
+            throw (IOException) e.getCause();
+        }
+    }
+
+    /**
+     * Flushes all queued records, forces them to disk and closes the log.
+     * The delegate is left open. Writes racing with close may be rejected.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (failure == null) {
+            logEvictions();
+        }
+        // The writer is not interrupted: an interrupt during a channel write
+        // would close the channel. It notices the flag within one interval.
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failQueued(new IOException("Store is closed"));
+        try {
+            if (failure == null) {
+                channel.force(false);
+            }
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private ReentrantLock stripe(String traceId) {
+        int hash = traceId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Logs evictions made by the write that just finished, and compacts if
+     * the log has grown enough.
+     */
+    private void afterWrite() {
+        if (!evicted.isEmpty()) {
+            logEvictions();
+        }
+        long size = logSize.get();
+        long threshold = compactionThreshold;
+        if (path != null && threshold > 0 && size >= threshold && size >= 2 * compactedSize) {
+            Pending marker = new Pending(null, true);
+            if (compaction.compareAndSet(null, marker)) {
+                requestCompaction(marker);
+            }
+        }
+    }
+
+    /**
+     * Logs a removal for each trace the delegate has evicted, unless it has
+     * been stored again since.
+     */
+    private void logEvictions() {
+        String traceId;
+        while ((traceId = evicted.poll()) != null) {
+            ReentrantLock lock = stripe(traceId);
+            lock.lock();
+            try {
+                if (delegate.get(traceId).isEmpty()) {
+                    append(TYPE_REMOVE, encode(traceId));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Queues a compaction behind every write already applied to the delegate.
+     * Holding every stripe means no write is between logging and applying,
+     * so the delegate reflects all records before the marker; records after
+     * it are written to the new log. The caller has set the marker as the
+     * current compaction.
+     */
+    private void requestCompaction(Pending marker) {
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+        try {
+            enqueue(marker);
+        } catch (RuntimeException e) {
+            compaction.set(null);
+            throw e;
+        } finally {
+            for (ReentrantLock lock : stripes) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static byte[] encode(Trace trace) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            TraceCodec.encode(trace, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // cannot happen for in-memory streams
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encode(String traceId) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            new DataOutputStream(bytes).writeUTF(traceId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ByteBuffer record(byte type, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + 1 + payload.length);
+        record.putInt(1 + payload.length);
+        record.putInt((int) crc.getValue());
+        record.put(type);
+        record.put(payload);
+        record.flip();
+        return record;
+    }
+
+    private void append(byte type, byte[] payload) {
+        Pending pending = new Pending(record(type, payload), durability == Durability.BATCH);
+        enqueue(pending);
+        if (pending.done != null) {
+            try {
+                pending.done.join();
+            } catch (CompletionException e) {
+                throw new UncheckedIOException((IOException) e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Queues a record or compaction marker for the writer. A caller that
+     * does not wait on it is told here if the writer can no longer take it.
+     */
+    private void enqueue(Pending pending) {
+        if (closed) {
+            throw new IllegalStateException("Store is closed");
+        }
+        checkFailure();
+
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing trace", e);
+        }
+        // The writer may have failed or stopped after the checks above and
+        // drained the queue for the last time; nobody else will take this record
+        IOException lost = failure;
+        if (lost == null && closed && !writer.isAlive()) {
+            lost = new IOException("Store is closed");
+        }
+        if (lost != null) {
+            failQueued(lost);
+            if (pending.done == null) {
+                throw new UncheckedIOException("Write-ahead log failed", lost);
+            }
+        }
+    }
+
+    private void checkFailure() {
+        IOException error = failure;
+        if (error != null) {
+            throw new UncheckedIOException("Write-ahead log failed", error);
+        }
+    }
+
+    private void failQueued(IOException error) {
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(pending -> pending.complete(error));
+    }
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>();
+        long lastForce = System.currentTimeMillis();
+        boolean dirty = false;
+
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(intervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+            } catch (InterruptedException e) {
+                continue; // not used for shutdown; see close()
+            }
+
+            try {
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                    dirty = true;
+                }
+
+                long now = System.currentTimeMillis();
+                boolean force = durability == Durability.BATCH
+                        || (durability == Durability.INTERVAL && now - lastForce >= intervalMillis);
+                if (dirty && force) {
+                    channel.force(false);
+                    forceCount.incrementAndGet();
+                    lastForce = now;
+                    dirty = false;
+                }
+
+                for (Pending pending : batch) {
+                    pending.complete(null);
+                }
+            } catch (IOException e) {
+                failure = e;
+                for (Pending pending : batch) {
+                    pending.complete(e);
+                }
+                // Fail everything still queued; later callers see the failure directly
+                failQueued(e);
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes the batch, compacting at each marker in it: records before a
+     * marker go to the old log, records after it to the new one.
+     */
+    private void writeBatch(List<Pending> batch) throws IOException {
+        int from = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i).record == null) {
+                writeRecords(batch.subList(from, i));
+                rewrite(batch.get(i));
+                from = i + 1;
+            }
+        }
+        writeRecords(batch.subList(from, batch.size()));
+    }
+
+    private void writeRecords(List<Pending> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[records.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = records.get(i).record;
+        }
+        logSize.addAndGet(writeFully(channel, buffers));
+        batchCount.incrementAndGet();
+        recordCount.addAndGet(records.size());
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer[] buffers) throws IOException {
+        long total = 0;
+        for (ByteBuffer buffer : buffers) {
+            total += buffer.remaining();
+        }
+        long remaining = total;
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        return total;
+    }
+
+    /**
+     * Writes the delegate's traces to a new log and renames it over the old
+     * one. The new channel is opened before the rename, so once the rename
+     * succeeds nothing can fail; before it, a failure leaves the old log in
+     * use and is reported to the compaction's caller only.
+     */
+    private void rewrite(Pending marker) {
+        IOException error = null;
+        try {
+            rewriteLog();
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new IOException("Compaction failed", e);
+        }
+        compaction.set(null);
+        marker.complete(error);
+    }
+
+    private void rewriteLog() throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        FileChannel next = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size;
+        try {
+            size = writeSnapshot(next);
+            next.force(false);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            next.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        FileChannel old = channel;
+        channel = next;
+        try {
+            old.close();
+        } catch (IOException e) {
+            // Already replaced; nothing more is written to it
+        }
+        logSize.set(size);
+        compactedSize = size;
+        compactionCount.incrementAndGet();
+    }
+
+    private long writeSnapshot(FileChannel target) throws IOException {
+        long size = 0;
+        List<ByteBuffer> chunk = new ArrayList<>();
+        for (String traceId : delegate.listTraceIds()) {
+            Optional<Trace> trace = delegate.get(traceId);
+            if (trace.isPresent()) {
+                chunk.add(record(TYPE_STORE, encode(trace.get())));
+            }
+            if (chunk.size() == MAX_BATCH) {
+                size += writeFully(target, chunk.toArray(new ByteBuffer[0]));
+                chunk.clear();
+            }
+        }
+        return size + writeFully(target, chunk.toArray(new ByteBuffer[0]));
+    }
+
+    /**
+     * Applies every complete record to the store and truncates anything after
+     * the last complete record. Leaves the channel positioned at the end.
+     */
+    private static int replay(FileChannel channel, TraceStore store) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        int applied = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || position + HEADER_SIZE + length > size) {
+                break; // torn write
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(channel, body, position + HEADER_SIZE);
+            CRC32C crc = new CRC32C();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break; // torn write
+            }
+
+            apply(body.array(), store);
+            applied++;
+            position += HEADER_SIZE + length;
+        }
+
+        if (position < size) {
+            channel.truncate(position);
+        }
+        channel.position(position);
+        return applied;
+    }
+
+    private static void apply(byte[] record, TraceStore store) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1));
+        switch (record[0]) {
+            case TYPE_STORE:
+                store.store(TraceCodec.decode(in));
+                break;
+            case TYPE_REMOVE:
+                store.remove(in.readUTF());
+                break;
+            default:
+                throw new IOException("Unknown log record type: " + record[0]);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of log");
+            }
+        }
+    }
+
+    /**
+     * A queued record, or a compaction marker when the record is null, and
+     * for {@link Durability#BATCH} or a marker the future its caller waits on.
+     */
+    private static final class Pending {
+        final ByteBuffer record;
+        final CompletableFuture<Void> done;
+
+        Pending(ByteBuffer record, boolean awaited) {
+            this.record = record;
+            this.done = awaited ? new CompletableFuture<>() : null;
+        }
+
+        void complete(IOException error) {
+            if (done == null) {
+                return;
+            }
+            if (error == null) {
+                done.complete(null);
+            } else {
+                done.completeExceptionally(error);
+            }
+        }
+    }
+}
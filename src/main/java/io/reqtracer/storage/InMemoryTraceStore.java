@@ -1,47 +1,278 @@
 package io.reqtracer.storage;
 
 import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.core.TraceId;
+import io.reqtracer.core.TraceShape;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Thread-safe in-memory trace storage using ConcurrentHashMap.
  * <p>
  * Suitable for development, testing, and single-instance production use.
  * Traces are lost on application restart.
+ * <p>
+ * Traces are not retained as-is. Each trace's event-name sequence is
+ * fingerprinted and interned as a {@link TraceShape} shared by every trace
+ * with the same sequence; the store keeps only the per-trace timestamps and
+ * metadata and rebuilds the {@link Trace} on {@link #get(String)}. At most
+ * {@value #MAX_SHAPES} shapes are interned, so traces with unbounded
+ * event-name variety cannot grow the shape table without limit.
+ * <p>
+ * Metadata keys and low-cardinality values are interned across traces (see
+ * {@link #getMetrics()} for the memory saved).
+ * <p>
+ * Traces with a numeric ID ({@link Trace#getId()}) are keyed by the primitive
+ * ID in an open-addressing map, with no String or boxed key retained; other
+ * traces are keyed by their String ID.
+ * <p>
+ * Without {@link TenantQuotas} the store has no retention of its own, so
+ * pinning only marks traces (e.g. outliers) for {@link #listPinnedTraceIds()}.
+ * With quotas, each trace is accounted to its tenant and a tenant over its
+ * trace or byte quota has its oldest unpinned traces evicted (see
+ * {@link #getMetrics()} for usage per tenant).
+ * <p>
+ * A store created with an index size limit also keeps an inverted index
+ * from (event name, metadata key, value) to its traces, updated on every
+ * store and remove, so that {@link #query(MetadataQuery)} reads only the
+ * matching traces instead of scanning them all.
  */
 public class InMemoryTraceStore implements TraceStore {
 
-    private final ConcurrentHashMap<String, Trace> traces = new ConcurrentHashMap<>();
+    static final int MAX_SHAPES = ShapeTable.MAX_SHAPES;
+
+    private final ConcurrentLongMap<CompactTrace> byId = new ConcurrentLongMap<>();
+    private final ConcurrentHashMap<String, CompactTrace> traces = new ConcurrentHashMap<>();
+    private final ShapeTable shapes = new ShapeTable();
+    private final MetadataInterner metadata = new MetadataInterner();
+    private final ConcurrentHashMap<String, Integer> pinned = new ConcurrentHashMap<>();
+    private final MetadataIndex index; // null when not indexing
+    private final TenantLedger tenants; // null without quotas
+    private volatile Consumer<String> evictionListener; // null unless set
+
+    /**
+     * Creates a store without a metadata index or quotas.
+     */
+    public InMemoryTraceStore() {
+        this(0, null);
+    }
+
+    /**
+     * Creates a store that indexes event metadata for
+     * {@link #query(MetadataQuery)}.
+     *
+     * @param maxIndexBytes estimated heap the index may use; beyond it the
+     *                      metadata keys taking the most are dropped from
+     *                      the index and queried by scanning
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public InMemoryTraceStore(long maxIndexBytes) {
+        this(requirePositive(maxIndexBytes), null);
+    }
+
+    /**
+     * Creates a store that enforces per-tenant quotas.
+     *
+     * @param quotas tenant limits
+     */
+    public InMemoryTraceStore(TenantQuotas quotas) {
+        this(0, Objects.requireNonNull(quotas, "Quotas cannot be null"));
+    }
+
+    /**
+     * @param maxIndexBytes estimated heap the metadata index may use, or 0
+     *                      for no index
+     * @param quotas        tenant limits, or null for none
+     */
+    public InMemoryTraceStore(long maxIndexBytes, TenantQuotas quotas) {
+        if (maxIndexBytes < 0) {
+            throw new IllegalArgumentException("Index size limit cannot be negative");
+        }
+        this.index = maxIndexBytes == 0 ? null : new MetadataIndex(maxIndexBytes, this::isStored);
+        this.tenants = quotas == null ? null : new TenantLedger(quotas, this::isStored, this::evict);
+    }
+
+    private static long requirePositive(long maxIndexBytes) {
+        if (maxIndexBytes <= 0) {
+            throw new IllegalArgumentException("Index size limit must be positive");
+        }
+        return maxIndexBytes;
+    }
 
     @Override
     public void store(Trace trace) {
         if (trace == null) {
             throw new IllegalArgumentException("Trace cannot be null");
         }
-        traces.put(trace.getTraceId(), trace);
+        List<TraceEvent> events = trace.getEvents();
+        CompactTrace compact = CompactTrace.of(trace, events, shapes.intern(events), metadata);
+        CompactTrace previous = compact.id != TraceId.NONE
+                ? byId.put(compact.id, compact)
+                : traces.put(compact.traceId, compact);
+        if (index != null) {
+            if (previous != null) {
+                index.remove(previous);
+            }
+            index.add(compact);
+        }
+        if (tenants != null) {
+            if (previous != null) {
+                tenants.removed(previous);
+            }
+            tenants.stored(compact);
+        }
     }
 
     @Override
     public Optional<Trace> get(String traceId) {
-        if (traceId == null) {
-            return Optional.empty();
-        }
-        return Optional.ofNullable(traces.get(traceId));
+        CompactTrace compact = find(traceId);
+        return compact == null ? Optional.empty() : Optional.of(compact.toTrace());
+    }
+
+    @Override
+    public Optional<Trace> get(long id) {
+        CompactTrace compact = id == TraceId.NONE ? null : byId.get(id);
+        return compact == null ? Optional.empty() : Optional.of(compact.toTrace());
     }
 
     @Override
     public void remove(String traceId) {
+        long id = TraceId.parse(traceId);
+        CompactTrace removed = null;
+        if (id != TraceId.NONE) {
+            removed = byId.remove(id);
+        } else if (traceId != null) {
+            removed = traces.remove(traceId);
+        }
+        if (removed != null) {
+            released(removed);
+        }
+        if (traceId != null && !pinned.isEmpty()) {
+            pinned.remove(traceId);
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        if (id != TraceId.NONE) {
+            CompactTrace removed = byId.remove(id);
+            if (removed != null) {
+                released(removed);
+            }
+            if (!pinned.isEmpty()) {
+                pinned.remove(TraceId.toString(id));
+            }
+        }
+    }
+
+    @Override
+    public boolean pin(String traceId) {
+        if (find(traceId) == null) {
+            return false;
+        }
+        pinned.merge(traceId, 1, Integer::sum);
+        return true;
+    }
+
+    @Override
+    public void unpin(String traceId) {
         if (traceId != null) {
-            traces.remove(traceId);
+            pinned.computeIfPresent(traceId, (id, count) -> count == 1 ? null : count - 1);
         }
     }
 
+    @Override
+    public Collection<String> listPinnedTraceIds() {
+        return new ArrayList<>(pinned.keySet());
+    }
+
+    /**
+     * Returns a snapshot of the stored IDs; numeric IDs are rendered.
+     */
     @Override
     public Collection<String> listTraceIds() {
-        return traces.keySet();
+        List<String> ids = new ArrayList<>(size());
+        byId.forEachKey(id -> ids.add(TraceId.toString(id)));
+        ids.addAll(traces.keySet());
+        return ids;
+    }
+
+    /**
+     * Returns the stored traces matching a metadata query, in no particular
+     * order. Only the traces listed by the metadata index are read; without
+     * an index, or for keys dropped from it, the stored form of every trace
+     * is checked, still without rebuilding traces that do not match.
+     *
+     * @param query metadata query
+     * @return matching traces
+     * @see #traces(MetadataQuery)
+     */
+    public List<Trace> query(MetadataQuery query) {
+        return traces(query).collect(Collectors.toList());
+    }
+
+    /**
+     * Streams the stored traces matching a metadata query, in no particular
+     * order, like {@link #query(MetadataQuery)} but rebuilding each trace
+     * only when the stream reaches it, so a stream cut short by
+     * {@link Stream#limit(long)} rebuilds only the traces it returns. A trace
+     * removed or replaced before the stream reaches it is skipped.
+     *
+     * @param query metadata query
+     * @return matching traces
+     */
+    public Stream<Trace> traces(MetadataQuery query) {
+        Objects.requireNonNull(query, "Query cannot be null");
+        Collection<CompactTrace> candidates = index == null ? null : index.candidates(query);
+        if (candidates == null) {
+            List<CompactTrace> all = new ArrayList<>(size());
+            byId.forEachKey(id -> {
+                CompactTrace compact = byId.get(id);
+                if (compact != null) {
+                    all.add(compact);
+                }
+            });
+            all.addAll(traces.values());
+            candidates = all;
+        }
+        return candidates.stream()
+                .filter(compact -> isStored(compact) && query.matches(compact))
+                .map(CompactTrace::toTrace);
+    }
+
+    /**
+     * Returns the shape of a stored trace without rebuilding it.
+     *
+     * @param traceId trace identifier
+     * @return optional containing the trace's shape if found
+     */
+    public Optional<TraceShape> getShape(String traceId) {
+        CompactTrace compact = find(traceId);
+        return compact == null ? Optional.empty() : Optional.of(compact.shape);
+    }
+
+    /**
+     * Returns the interned shapes. Shapes are kept after their last trace is
+     * removed so that a recurring shape is not re-created.
+     */
+    public Collection<TraceShape> getShapes() {
+        return shapes.values();
+    }
+
+    /**
+     * Returns trace, shape and metadata interning counters.
+     */
+    public StoreMetrics getMetrics() {
+        return new StoreMetrics(size(), shapes.values().size(), metadata, index, tenants);
     }
 
     /**
@@ -49,13 +280,74 @@ public class InMemoryTraceStore implements TraceStore {
      * Useful for testing.
      */
     public void clear() {
+        byId.clear();
         traces.clear();
+        shapes.clear();
+        metadata.clear();
+        pinned.clear();
+        if (index != null) {
+            index.clear();
+        }
+        if (tenants != null) {
+            tenants.clear();
+        }
+    }
+
+    /**
+     * Sets a callback told the ID of each trace evicted for a quota, on the
+     * thread that evicts it. Explicit removals are not reported.
+     */
+    void setEvictionListener(Consumer<String> listener) {
+        evictionListener = listener;
     }
 
     /**
      * Returns the number of traces currently stored.
      */
     public int size() {
-        return traces.size();
+        return byId.size() + traces.size();
+    }
+
+    /**
+     * Evicts a trace for its tenant's quota unless it is pinned or already
+     * gone.
+     */
+    private boolean evict(CompactTrace compact) {
+        if (!pinned.isEmpty()
+                && pinned.containsKey(compact.traceId != null ? compact.traceId : TraceId.toString(compact.id))) {
+            return false;
+        }
+        boolean removed = compact.id != TraceId.NONE
+                ? byId.remove(compact.id, compact)
+                : traces.remove(compact.traceId, compact);
+        if (removed) {
+            released(compact);
+            Consumer<String> listener = evictionListener;
+            if (listener != null) {
+                listener.accept(compact.traceId != null ? compact.traceId : TraceId.toString(compact.id));
+            }
+        }
+        return removed;
+    }
+
+    private void released(CompactTrace compact) {
+        if (index != null) {
+            index.remove(compact);
+        }
+        if (tenants != null) {
+            tenants.removed(compact);
+        }
+    }
+
+    private boolean isStored(CompactTrace compact) {
+        return (compact.id != TraceId.NONE ? byId.get(compact.id) : traces.get(compact.traceId)) == compact;
+    }
+
+    private CompactTrace find(String traceId) {
+        if (traceId == null) {
+            return null;
+        }
+        long id = TraceId.parse(traceId);
+        return id != TraceId.NONE ? byId.get(id) : traces.get(traceId);
     }
 }
@@ -0,0 +1,409 @@
+package io.reqtracer.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Inverted index from (event name, metadata key, value) to the stored traces
+ * carrying it, for {@link InMemoryTraceStore}.
+ * <p>
+ * Postings are arrays of {@link CompactTrace} references, one per trace,
+ * in the order traces were stored. Removal is lazy: a removed or replaced
+ * trace stays in its lists and is counted as dead, and a list is compacted
+ * once half of it is dead (or it has to grow), so removal costs no array
+ * scan. Queries skip dead references by asking the store whether a
+ * reference is still the stored trace.
+ * <p>
+ * Each metadata key has its own lock and table. A key with more than
+ * {@value #MAX_VALUES_PER_KEY} distinct values is dropped from the index,
+ * as is the largest key whenever the estimated size exceeds the byte limit;
+ * queries on a dropped key report that they cannot be answered so the store
+ * scans instead. At most {@value #MAX_KEYS} keys are indexed.
+ */
+final class MetadataIndex {
+
+    static final int MAX_KEYS = MetadataInterner.MAX_KEYS;
+    static final int MAX_VALUES_PER_KEY = 10_000;
+
+    /** Estimated heap per posting list: map entries, list object, array header. */
+    static final long LIST_BYTES = 96;
+    /** Heap per posting: one compressed reference. */
+    static final long POSTING_BYTES = 4;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final long maxBytes;
+    private final Predicate<CompactTrace> live;
+    private final ConcurrentHashMap<String, KeyPostings> keys = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile boolean keysFull;
+
+    /**
+     * @param maxBytes estimated heap the index may use
+     * @param live     tells whether a reference is still the stored trace
+     */
+    MetadataIndex(long maxBytes, Predicate<CompactTrace> live) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Index size limit must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.live = live;
+    }
+
+    /**
+     * Indexes a trace that has just been stored.
+     */
+    void add(CompactTrace trace) {
+        if (trace.metadata == null) {
+            return;
+        }
+        for (int i = 0; i < trace.metadata.length; i++) {
+            Map<String, String> metadata = trace.metadata[i];
+            if (metadata == null) {
+                continue;
+            }
+            String eventName = trace.shape.getName(i);
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                if (isFirst(trace, i, eventName, entry.getKey(), entry.getValue())) {
+                    KeyPostings postings = postingsFor(entry.getKey());
+                    if (postings != null) {
+                        bytes.addAndGet(postings.add(eventName, entry.getValue(), trace, live));
+                    }
+                }
+            }
+        }
+        if (bytes.get() > maxBytes) {
+            shrink();
+        }
+    }
+
+    /**
+     * Marks a trace that was removed or replaced as dead in its lists.
+     */
+    void remove(CompactTrace trace) {
+        if (trace.metadata == null) {
+            return;
+        }
+        for (int i = 0; i < trace.metadata.length; i++) {
+            Map<String, String> metadata = trace.metadata[i];
+            if (metadata == null) {
+                continue;
+            }
+            String eventName = trace.shape.getName(i);
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                KeyPostings postings = keys.get(entry.getKey());
+                if (postings != null && isFirst(trace, i, eventName, entry.getKey(), entry.getValue())) {
+                    bytes.addAndGet(postings.remove(eventName, entry.getValue(), live));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the traces that may match the query: exactly the matches for a
+     * fully indexed query, a superset when an AND has unindexed terms.
+     *
+     * @return candidates, or null if the index cannot narrow the query down
+     */
+    Set<CompactTrace> candidates(MetadataQuery query) {
+        if (query.isTerm()) {
+            KeyPostings postings = keys.get(query.getKey());
+            if (postings == null) {
+                // Never seen, unless it came after the key table filled up
+                return keysFull ? null : newSet();
+            }
+            Set<CompactTrace> result = newSet();
+            return postings.collect(query.getEventName(), query.getValue(), result) ? result : null;
+        }
+
+        List<Set<CompactTrace>> sets = new ArrayList<>();
+        for (MetadataQuery child : query.getChildren()) {
+            Set<CompactTrace> set = candidates(child);
+            if (set == null && !query.isAnd()) {
+                return null;
+            }
+            if (set != null) {
+                sets.add(set);
+            }
+        }
+        if (sets.isEmpty()) {
+            return null;
+        }
+        sets.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        Set<CompactTrace> result = sets.get(0);
+        for (int i = 1; i < sets.size(); i++) {
+            if (query.isAnd()) {
+                result.retainAll(sets.get(i));
+            } else {
+                result.addAll(sets.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the estimated heap used by the index.
+     */
+    long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Returns the number of postings held, dead ones included.
+     */
+    long getPostingCount() {
+        long count = 0;
+        for (KeyPostings postings : keys.values()) {
+            count += postings.postingCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns keys dropped from the index, sorted.
+     */
+    List<String> getDroppedKeys() {
+        List<String> result = new ArrayList<>();
+        for (KeyPostings postings : keys.values()) {
+            if (postings.isDropped()) {
+                result.add(postings.key);
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    void clear() {
+        keys.clear();
+        bytes.set(0);
+        keysFull = false;
+    }
+
+    private KeyPostings postingsFor(String key) {
+        KeyPostings postings = keys.get(key);
+        if (postings == null) {
+            if (keys.size() >= MAX_KEYS) {
+                keysFull = true;
+                return null;
+            }
+            postings = keys.computeIfAbsent(key, KeyPostings::new);
+        }
+        return postings;
+    }
+
+    /**
+     * Drops the largest keys until the index fits its limit again.
+     */
+    private synchronized void shrink() {
+        while (bytes.get() > maxBytes) {
+            KeyPostings largest = null;
+            long largestBytes = 0;
+            for (KeyPostings postings : keys.values()) {
+                long size = postings.bytes();
+                if (size > largestBytes) {
+                    largest = postings;
+                    largestBytes = size;
+                }
+            }
+            if (largest == null) {
+                return;
+            }
+            bytes.addAndGet(largest.drop());
+        }
+    }
+
+    /**
+     * Returns true unless an earlier event of the same name has the same
+     * value, so a trace is listed once per posting list.
+     */
+    private static boolean isFirst(CompactTrace trace, int index, String eventName, String key, String value) {
+        for (int j = 0; j < index; j++) {
+            Map<String, String> earlier = trace.metadata[j];
+            if (earlier != null && value.equals(earlier.get(key)) && eventName.equals(trace.shape.getName(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<CompactTrace> newSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Value → event name → postings for one metadata key. All methods return
+     * the change in estimated bytes.
+     */
+    private static final class KeyPostings {
+        final String key;
+        private HashMap<String, HashMap<String, Postings>> values = new HashMap<>();
+        private long bytes;
+        private long count;
+
+        KeyPostings(String key) {
+            this.key = key;
+        }
+
+        synchronized long add(String eventName, String value, CompactTrace trace, Predicate<CompactTrace> live) {
+            if (values == null) {
+                return 0;
+            }
+            HashMap<String, Postings> byEvent = values.get(value);
+            if (byEvent == null) {
+                if (values.size() >= MAX_VALUES_PER_KEY) {
+                    // Too many distinct values to be worth indexing
+                    return drop();
+                }
+                byEvent = new HashMap<>(4);
+                values.put(value, byEvent);
+            }
+            long delta = 0;
+            Postings postings = byEvent.get(eventName);
+            if (postings == null) {
+                postings = new Postings();
+                byEvent.put(eventName, postings);
+                delta += LIST_BYTES + INITIAL_CAPACITY * POSTING_BYTES;
+            }
+            int before = postings.size;
+            delta += postings.add(trace, live);
+            count += postings.size - before;
+            bytes += delta;
+            return delta;
+        }
+
+        synchronized long remove(String eventName, String value, Predicate<CompactTrace> live) {
+            HashMap<String, Postings> byEvent = values == null ? null : values.get(value);
+            Postings postings = byEvent == null ? null : byEvent.get(eventName);
+            if (postings == null) {
+                return 0;
+            }
+            int before = postings.size;
+            long delta = postings.markDead(live);
+            count += postings.size - before;
+            if (postings.size == 0) {
+                byEvent.remove(eventName);
+                if (byEvent.isEmpty()) {
+                    values.remove(value);
+                }
+                delta -= LIST_BYTES + postings.capacity() * POSTING_BYTES;
+            }
+            bytes += delta;
+            return delta;
+        }
+
+        /**
+         * Adds the live traces for a value, from one event or all events.
+         *
+         * @return false if the key is no longer indexed
+         */
+        synchronized boolean collect(String eventName, String value, Set<CompactTrace> into) {
+            if (values == null) {
+                return false;
+            }
+            HashMap<String, Postings> byEvent = values.get(value);
+            if (byEvent == null) {
+                return true;
+            }
+            if (eventName != null) {
+                Postings postings = byEvent.get(eventName);
+                if (postings != null) {
+                    postings.collect(into);
+                }
+            } else {
+                for (Postings postings : byEvent.values()) {
+                    postings.collect(into);
+                }
+            }
+            return true;
+        }
+
+        synchronized long drop() {
+            long delta = -bytes;
+            values = null;
+            bytes = 0;
+            count = 0;
+            return delta;
+        }
+
+        synchronized boolean isDropped() {
+            return values == null;
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        synchronized long postingCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Growable array of trace references with a count of dead ones.
+     */
+    private static final class Postings {
+        private CompactTrace[] refs = new CompactTrace[INITIAL_CAPACITY];
+        private int size;
+        private int dead;
+
+        long add(CompactTrace trace, Predicate<CompactTrace> live) {
+            long delta = 0;
+            if (size == refs.length) {
+                delta = dead * 2 >= size ? compact(live) : 0;
+                if (size == refs.length) {
+                    int capacity = refs.length + (refs.length >> 1);
+                    delta += (capacity - refs.length) * POSTING_BYTES;
+                    refs = Arrays.copyOf(refs, capacity);
+                }
+            }
+            refs[size++] = trace;
+            return delta;
+        }
+
+        long markDead(Predicate<CompactTrace> live) {
+            dead++;
+            return dead * 2 > size ? compact(live) : 0;
+        }
+
+        void collect(Set<CompactTrace> into) {
+            for (int i = 0; i < size; i++) {
+                into.add(refs[i]);
+            }
+        }
+
+        int capacity() {
+            return refs.length;
+        }
+
+        /**
+         * Drops dead references, shrinking the array if it is mostly empty.
+         */
+        private long compact(Predicate<CompactTrace> live) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (live.test(refs[i])) {
+                    refs[kept++] = refs[i];
+                }
+            }
+            Arrays.fill(refs, kept, size, null);
+            size = kept;
+            dead = 0;
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            if (capacity < refs.length / 2) {
+                long delta = (capacity - refs.length) * POSTING_BYTES;
+                refs = Arrays.copyOf(refs, capacity);
+                return delta;
+            }
+            return 0;
+        }
+    }
+}
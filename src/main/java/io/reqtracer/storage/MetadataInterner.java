@@ -0,0 +1,211 @@
+package io.reqtracer.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded intern table for metadata keys and low-cardinality values, so that
+ * stored traces share one String per distinct "table", "users", "200" and so
+ * on instead of retaining a copy per event.
+ * <p>
+ * Keys are interned up to {@value #MAX_KEYS}. Each key interns at most
+ * {@value #MAX_VALUES_PER_KEY} distinct values; a key that exceeds this is
+ * marked high-cardinality (user IDs, request paths), its value table is
+ * dropped, and its values are stored as given from then on. Values longer
+ * than {@value #MAX_VALUE_LENGTH} characters are never interned. Thread-safe
+ * and lock-free on the lookup path.
+ */
+final class MetadataInterner {
+
+    static final int MAX_KEYS = 1_000;
+    static final int MAX_VALUES_PER_KEY = 256;
+    static final int MAX_VALUE_LENGTH = 64;
+
+    private final ConcurrentHashMap<String, KeyTable> keys = new ConcurrentHashMap<>();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder stringsShared = new LongAdder();
+
+    /**
+     * Returns the metadata with interned keys and values. Returns the same
+     * map, allocating nothing, if every String in it is already the interned
+     * instance, which is the common case for literal keys and values.
+     */
+    Map<String, String> intern(Map<String, String> metadata) {
+        AlreadyInterned check = new AlreadyInterned();
+        metadata.forEach(check);
+        if (check.result) {
+            return metadata;
+        }
+
+        // Generic arrays cannot be created; this one only ever holds String entries
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Map.Entry<String, String>[] entries = new Map.Entry[metadata.size()];
+        boolean changed = false;
+        int i = 0;
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            String key = entry.getKey();
+            String value = entry.getValue();
+            KeyTable table = tableFor(key);
+            String sharedKey = table == null ? key : shared(key, table.key);
+            String sharedValue = table == null ? value : shared(value, table.intern(value));
+            changed |= sharedKey != key || sharedValue != value;
+            entries[i++] = Map.entry(sharedKey, sharedValue);
+        }
+        // First sight of new Strings: they become the interned instances
+        return changed ? Map.ofEntries(entries) : metadata;
+    }
+
+    /**
+     * Returns the estimated heap no longer retained because duplicate
+     * Strings were replaced with interned ones.
+     */
+    long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Returns how many String references were replaced by interned ones.
+     */
+    long getStringsShared() {
+        return stringsShared.sum();
+    }
+
+    /**
+     * Returns the number of distinct Strings held by the table.
+     */
+    int getInternedCount() {
+        int count = 0;
+        for (KeyTable table : keys.values()) {
+            count += 1 + table.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns keys whose values are no longer interned, sorted.
+     */
+    List<String> getHighCardinalityKeys() {
+        List<String> result = new ArrayList<>();
+        for (KeyTable table : keys.values()) {
+            if (table.values == null) {
+                result.add(table.key);
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    void clear() {
+        keys.clear();
+        bytesSaved.reset();
+        stringsShared.reset();
+    }
+
+    private KeyTable tableFor(String key) {
+        KeyTable table = keys.get(key);
+        if (table == null && keys.size() < MAX_KEYS) {
+            table = keys.computeIfAbsent(key, KeyTable::new);
+        }
+        return table;
+    }
+
+    /**
+     * Returns the interned instance, counting the saving if it replaces a
+     * distinct copy.
+     */
+    private String shared(String original, String interned) {
+        if (interned == null || interned == original) {
+            return original;
+        }
+        bytesSaved.add(estimateSize(original));
+        stringsShared.increment();
+        return interned;
+    }
+
+    /**
+     * Shallow size of a String with its byte array on a 64-bit JVM with
+     * compressed oops: 24-byte object plus a 16-byte array header and one
+     * byte per Latin-1 char (two otherwise), rounded to 8.
+     */
+    static long estimateSize(String s) {
+        long chars = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 255) {
+                chars = 2L * s.length();
+                break;
+            }
+        }
+        return 24 + ((16 + chars + 7) & ~7L);
+    }
+
+    /**
+     * Checks without side effects that every key and value is the interned
+     * instance (or not internable). Iterates with forEach so that no entry
+     * wrappers are allocated.
+     */
+    private final class AlreadyInterned implements BiConsumer<String, String> {
+        boolean result = true;
+
+        @Override
+        public void accept(String key, String value) {
+            if (!result) {
+                return;
+            }
+            KeyTable table = keys.get(key);
+            if (table == null) {
+                // Not interned yet: fine only if the table is full
+                result = keys.size() >= MAX_KEYS;
+                return;
+            }
+            result = table.key == key && table.isInterned(value);
+        }
+    }
+
+    private static final class KeyTable {
+        final String key;
+        volatile ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+
+        KeyTable(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Returns the interned value, or null if the value is not interned.
+         */
+        String intern(String value) {
+            ConcurrentHashMap<String, String> table = values;
+            if (table == null || value.length() > MAX_VALUE_LENGTH) {
+                return null;
+            }
+            String existing = table.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            if (table.size() >= MAX_VALUES_PER_KEY) {
+                // Too many distinct values to be worth sharing
+                values = null;
+                return null;
+            }
+            existing = table.putIfAbsent(value, value);
+            return existing != null ? existing : value;
+        }
+
+        /**
+         * Returns true if the value is the interned instance or would not be
+         * interned.
+         */
+        boolean isInterned(String value) {
+            ConcurrentHashMap<String, String> table = values;
+            return table == null || value.length() > MAX_VALUE_LENGTH || table.get(value) == value;
+        }
+
+        int size() {
+            ConcurrentHashMap<String, String> table = values;
+            return table == null ? 0 : table.size();
+        }
+    }
+}
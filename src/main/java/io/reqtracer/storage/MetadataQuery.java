@@ -0,0 +1,214 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Query on event metadata, answered from the metadata index of an
+ * {@link InMemoryTraceStore} when it has one.
+ * <p>
+ * A term matches a trace with an event of the given name carrying the given
+ * metadata value; terms combine with AND and OR:
+ *
+ * <pre>
+ * MetadataQuery query = MetadataQuery.term("DB_QUERY", "table", "orders")
+ *         .and(MetadataQuery.term("user", "john").or(MetadataQuery.term("user", "jane")));
+ * List&lt;Trace&gt; traces = store.query(query);
+ * </pre>
+ * <p>
+ * Immutable.
+ */
+public final class MetadataQuery implements Predicate<Trace> {
+
+    private enum Kind { TERM, AND, OR }
+
+    private final Kind kind;
+    private final String eventName; // null matches any event
+    private final String key;
+    private final String value;
+    private final List<MetadataQuery> children;
+
+    private MetadataQuery(Kind kind, String eventName, String key, String value, List<MetadataQuery> children) {
+        this.kind = kind;
+        this.eventName = eventName;
+        this.key = key;
+        this.value = value;
+        this.children = children;
+    }
+
+    /**
+     * Matches traces with an event of the given name whose metadata maps the
+     * key to the value.
+     *
+     * @param eventName event name, or null for any event
+     * @param key       metadata key
+     * @param value     metadata value
+     */
+    public static MetadataQuery term(String eventName, String key, String value) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Metadata key cannot be empty");
+        }
+        Objects.requireNonNull(value, "Metadata value cannot be null");
+        return new MetadataQuery(Kind.TERM, eventName, key, value, null);
+    }
+
+    /**
+     * Matches traces with any event whose metadata maps the key to the value.
+     */
+    public static MetadataQuery term(String key, String value) {
+        return term(null, key, value);
+    }
+
+    /**
+     * Matches traces matched by every query.
+     */
+    public static MetadataQuery allOf(MetadataQuery... queries) {
+        return combine(Kind.AND, queries);
+    }
+
+    /**
+     * Matches traces matched by at least one query.
+     */
+    public static MetadataQuery anyOf(MetadataQuery... queries) {
+        return combine(Kind.OR, queries);
+    }
+
+    public MetadataQuery and(MetadataQuery other) {
+        return allOf(this, other);
+    }
+
+    public MetadataQuery or(MetadataQuery other) {
+        return anyOf(this, other);
+    }
+
+    private static MetadataQuery combine(Kind kind, MetadataQuery[] queries) {
+        if (queries.length == 0) {
+            throw new IllegalArgumentException("At least one query is required");
+        }
+        List<MetadataQuery> children = new ArrayList<>(queries.length);
+        for (MetadataQuery query : queries) {
+            Objects.requireNonNull(query, "Query cannot be null");
+            // Flatten (a AND b) AND c into one node
+            if (query.kind == kind) {
+                children.addAll(query.children);
+            } else {
+                children.add(query);
+            }
+        }
+        return children.size() == 1 ? children.get(0)
+                : new MetadataQuery(kind, null, null, null, Collections.unmodifiableList(children));
+    }
+
+    @Override
+    public boolean test(Trace trace) {
+        switch (kind) {
+            case AND:
+                for (MetadataQuery child : children) {
+                    if (!child.test(trace)) {
+                        return false;
+                    }
+                }
+                return true;
+            case OR:
+                for (MetadataQuery child : children) {
+                    if (child.test(trace)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                for (TraceEvent event : trace.getEvents()) {
+                    if (event.hasMetadata() && matches(event.getName(), event.getMetadata())) {
+                        return true;
+                    }
+                }
+                return false;
+        }
+    }
+
+    /**
+     * Same as {@link #test(Trace)} on the stored form, without rebuilding the
+     * trace.
+     */
+    boolean matches(CompactTrace trace) {
+        switch (kind) {
+            case AND:
+                for (MetadataQuery child : children) {
+                    if (!child.matches(trace)) {
+                        return false;
+                    }
+                }
+                return true;
+            case OR:
+                for (MetadataQuery child : children) {
+                    if (child.matches(trace)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                if (trace.metadata == null) {
+                    return false;
+                }
+                for (int i = 0; i < trace.metadata.length; i++) {
+                    if (trace.metadata[i] != null && matches(trace.shape.getName(i), trace.metadata[i])) {
+                        return true;
+                    }
+                }
+                return false;
+        }
+    }
+
+    private boolean matches(String name, Map<String, String> metadata) {
+        return (eventName == null || eventName.equals(name)) && value.equals(metadata.get(key));
+    }
+
+    boolean isTerm() {
+        return kind == Kind.TERM;
+    }
+
+    boolean isAnd() {
+        return kind == Kind.AND;
+    }
+
+    String getEventName() {
+        return eventName;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    List<MetadataQuery> getChildren() {
+        return children;
+    }
+
+    /**
+     * Returns the query as text, e.g. {@code DB_QUERY.table=orders AND (user=john OR user=jane)}.
+     */
+    @Override
+    public String toString() {
+        if (kind == Kind.TERM) {
+            return (eventName == null ? "" : eventName + ".") + key + "=" + value;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (MetadataQuery child : children) {
+            if (sb.length() > 0) {
+                sb.append(kind == Kind.AND ? " AND " : " OR ");
+            }
+            sb.append(child.kind == Kind.TERM ? child.toString() : "(" + child + ")");
+        }
+        return sb.toString();
+    }
+}
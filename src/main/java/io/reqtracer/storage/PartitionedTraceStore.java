@@ -0,0 +1,494 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.Clock;
+import io.reqtracer.core.SystemClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.core.TraceId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Trace store partitioned into fixed time buckets by start time, with
+ * retention that drops whole buckets.
+ * <p>
+ * Each bucket (one minute by default) holds its traces in its own small
+ * maps. Expiring a bucket unlinks it in O(1): nothing is removed entry by
+ * entry, and its traces become garbage together. Time-range reads
+ * ({@link #traces(long, long)}) visit only the buckets overlapping the
+ * range.
+ * <p>
+ * A global index maps each trace ID to its bucket, so {@link #get(String)}
+ * stays O(1). Index entries of expired buckets are recognized as stale on
+ * lookup and purged in bulk once they make up half of the index, which keeps
+ * cleanup amortized O(1) per trace.
+ * <p>
+ * Traces are stored compactly with interned shapes and metadata, as in
+ * {@link InMemoryTraceStore}.
+ * <p>
+ * Pinning a trace moves it out of its bucket into a small side map that
+ * expiry never touches; releasing the last pin moves it back. Pins are expected to be
+ * few (outliers, exemplars), so lookups only consult the side map when it is
+ * not empty.
+ */
+public class PartitionedTraceStore implements TraceStore {
+
+    public static final long DEFAULT_BUCKET_MILLIS = 60_000;
+
+    private final long bucketMillis;
+    private final long retentionMillis;
+    private final Clock clock;
+
+    private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+    private final ConcurrentLongMap<Bucket> idIndex = new ConcurrentLongMap<>();
+    private final ConcurrentHashMap<String, Bucket> stringIndex = new ConcurrentHashMap<>();
+    private final ShapeTable shapes = new ShapeTable();
+    private final MetadataInterner metadata = new MetadataInterner();
+    private final ConcurrentHashMap<String, Pin> pinned = new ConcurrentHashMap<>();
+    private final AtomicLong staleIndexEntries = new AtomicLong();
+    private final AtomicLong expiredBuckets = new AtomicLong();
+
+    /**
+     * Creates a store with per-minute buckets and no automatic retention.
+     */
+    public PartitionedTraceStore() {
+        this(DEFAULT_BUCKET_MILLIS, Long.MAX_VALUE, SystemClock.getInstance());
+    }
+
+    /**
+     * Creates a store that keeps traces started within the last
+     * {@code retentionMillis}, measured by the given clock. Retention is
+     * enforced at bucket granularity as traces are stored.
+     *
+     * @param bucketMillis    width of each time bucket
+     * @param retentionMillis how long to keep traces, or Long.MAX_VALUE
+     * @param clock           time source for retention
+     */
+    public PartitionedTraceStore(long bucketMillis, long retentionMillis, Clock clock) {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("Bucket width must be positive");
+        }
+        if (retentionMillis <= 0) {
+            throw new IllegalArgumentException("Retention must be positive");
+        }
+        this.bucketMillis = bucketMillis;
+        this.retentionMillis = retentionMillis;
+        this.clock = Objects.requireNonNull(clock, "Clock cannot be null");
+    }
+
+    @Override
+    public void store(Trace trace) {
+        if (trace == null) {
+            throw new IllegalArgumentException("Trace cannot be null");
+        }
+        enforceRetention();
+
+        List<TraceEvent> events = trace.getEvents();
+        CompactTrace compact = CompactTrace.of(trace, events, shapes.intern(events), metadata);
+        if (!pinned.isEmpty() && pinned.computeIfPresent(pinKey(compact), (key, pin) -> pin.replace(compact)) != null) {
+            return; // stays pinned
+        }
+        insert(compact);
+    }
+
+    private void insert(CompactTrace compact) {
+        long key = Math.floorDiv(compact.startTime, bucketMillis) * bucketMillis;
+
+        Bucket bucket;
+        Partition partition;
+        do {
+            bucket = buckets.computeIfAbsent(key, Bucket::new);
+            partition = bucket.partition;
+        } while (partition == null); // raced with expiry of this bucket; a fresh one is created
+
+        Bucket previous;
+        if (compact.id != TraceId.NONE) {
+            partition.byId.put(compact.id, compact);
+            previous = idIndex.put(compact.id, bucket);
+        } else {
+            partition.byString.put(compact.traceId, compact);
+            previous = stringIndex.put(compact.traceId, bucket);
+        }
+        if (previous != null && previous != bucket) {
+            // Same ID stored again with a different start time
+            Partition old = previous.partition;
+            if (old != null) {
+                old.remove(compact);
+            }
+        }
+    }
+
+    @Override
+    public Optional<Trace> get(String traceId) {
+        if (traceId == null) {
+            return Optional.empty();
+        }
+        long id = TraceId.parse(traceId);
+        if (id != TraceId.NONE) {
+            return get(id);
+        }
+        Bucket bucket = stringIndex.get(traceId);
+        Partition partition = bucket == null ? null : bucket.partition;
+        CompactTrace compact = partition == null ? null : partition.byString.get(traceId);
+        if (compact == null && !pinned.isEmpty()) {
+            compact = pinnedTrace(traceId);
+        }
+        return compact == null ? Optional.empty() : Optional.of(compact.toTrace());
+    }
+
+    @Override
+    public Optional<Trace> get(long id) {
+        if (id == TraceId.NONE) {
+            return Optional.empty();
+        }
+        Bucket bucket = idIndex.get(id);
+        Partition partition = bucket == null ? null : bucket.partition;
+        CompactTrace compact = partition == null ? null : partition.byId.get(id);
+        if (compact == null && !pinned.isEmpty()) {
+            compact = pinnedTrace(TraceId.toString(id));
+        }
+        return compact == null ? Optional.empty() : Optional.of(compact.toTrace());
+    }
+
+    @Override
+    public void remove(String traceId) {
+        if (traceId == null) {
+            return;
+        }
+        long id = TraceId.parse(traceId);
+        if (id != TraceId.NONE) {
+            remove(id);
+            return;
+        }
+        Bucket bucket = stringIndex.remove(traceId);
+        Partition partition = bucket == null ? null : bucket.partition;
+        if (partition != null) {
+            partition.byString.remove(traceId);
+        }
+        if (!pinned.isEmpty()) {
+            pinned.remove(traceId);
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        Bucket bucket = id == TraceId.NONE ? null : idIndex.remove(id);
+        Partition partition = bucket == null ? null : bucket.partition;
+        if (partition != null) {
+            partition.byId.remove(id);
+        }
+        if (id != TraceId.NONE && !pinned.isEmpty()) {
+            pinned.remove(TraceId.toString(id));
+        }
+    }
+
+    /**
+     * Pins a trace: it moves out of its time bucket and is kept regardless of
+     * retention until unpinned as many times or removed.
+     */
+    @Override
+    public boolean pin(String traceId) {
+        if (traceId == null) {
+            return false;
+        }
+        if (pinned.computeIfPresent(traceId, (key, pin) -> pin.retain()) != null) {
+            return true;
+        }
+        long id = TraceId.parse(traceId);
+        Bucket bucket = id != TraceId.NONE ? idIndex.get(id) : stringIndex.get(traceId);
+        Partition partition = bucket == null ? null : bucket.partition;
+        CompactTrace compact = partition == null ? null
+                : id != TraceId.NONE ? partition.byId.get(id) : partition.byString.get(traceId);
+        if (compact == null) {
+            return false;
+        }
+        // Visible as pinned before it leaves the bucket, so reads never miss it
+        CompactTrace found = compact;
+        pinned.compute(traceId, (key, pin) -> pin == null ? new Pin(found) : pin.retain());
+        partition.remove(compact);
+        if (id != TraceId.NONE) {
+            idIndex.remove(id, bucket);
+        } else {
+            stringIndex.remove(traceId, bucket);
+        }
+        return true;
+    }
+
+    /**
+     * Releases one pin. The last release returns the trace to the bucket of
+     * its start time; if that bucket is already past retention, the trace is
+     * dropped with it on the next store.
+     */
+    @Override
+    public void unpin(String traceId) {
+        if (traceId == null) {
+            return;
+        }
+        CompactTrace[] released = new CompactTrace[1];
+        pinned.computeIfPresent(traceId, (key, pin) -> {
+            if (--pin.count > 0) {
+                return pin;
+            }
+            released[0] = pin.compact;
+            return null;
+        });
+        if (released[0] != null) {
+            insert(released[0]);
+        }
+    }
+
+    @Override
+    public Collection<String> listPinnedTraceIds() {
+        return new ArrayList<>(pinned.keySet());
+    }
+
+    /**
+     * Returns a snapshot of the stored IDs, oldest bucket first.
+     */
+    @Override
+    public Collection<String> listTraceIds() {
+        List<String> ids = new ArrayList<>();
+        for (Bucket bucket : buckets.values()) {
+            Partition partition = bucket.partition;
+            if (partition != null) {
+                partition.byId.forEachKey(id -> ids.add(TraceId.toString(id)));
+                ids.addAll(partition.byString.keySet());
+            }
+        }
+        ids.addAll(pinned.keySet());
+        return ids;
+    }
+
+    /**
+     * Streams traces that started within a range, visiting only the buckets
+     * that overlap it, plus pinned traces in the range.
+     *
+     * @param fromMillis inclusive lower bound on start time
+     * @param toMillis   inclusive upper bound on start time
+     * @return matching traces, oldest bucket first
+     */
+    public Stream<Trace> traces(long fromMillis, long toMillis) {
+        if (fromMillis > toMillis) {
+            return Stream.empty();
+        }
+        // The bucket holding fromMillis starts at or before it
+        Long floor = buckets.floorKey(fromMillis);
+        long firstKey = floor == null ? fromMillis : floor;
+        ConcurrentNavigableMap<Long, Bucket> range = buckets.subMap(firstKey, true, toMillis, true);
+        Stream<CompactTrace> bucketed = range.values().stream()
+                .map(bucket -> bucket.partition)
+                .filter(Objects::nonNull)
+                .flatMap(Partition::compactTraces);
+        return (pinned.isEmpty() ? bucketed
+                : Stream.concat(bucketed, new ArrayList<>(pinned.values()).stream().map(pin -> pin.compact)))
+                .filter(compact -> compact.startTime >= fromMillis && compact.startTime <= toMillis)
+                .map(CompactTrace::toTrace);
+    }
+
+    /**
+     * Drops every bucket that ends at or before the cutoff. Each bucket is
+     * unlinked in O(1) regardless of how many traces it holds.
+     *
+     * @param cutoffMillis start time before which traces may be dropped
+     * @return number of buckets dropped
+     */
+    public int expireBefore(long cutoffMillis) {
+        int dropped = 0;
+        while (true) {
+            Map.Entry<Long, Bucket> oldest = buckets.firstEntry();
+            if (oldest == null || oldest.getKey() > cutoffMillis - bucketMillis) {
+                break;
+            }
+            if (buckets.remove(oldest.getKey(), oldest.getValue())) {
+                Partition partition = oldest.getValue().partition;
+                oldest.getValue().partition = null;
+                if (partition != null) {
+                    staleIndexEntries.addAndGet(partition.size());
+                }
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            expiredBuckets.addAndGet(dropped);
+            purgeIndexIfStale();
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns the number of live buckets.
+     */
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Returns the number of buckets dropped by retention so far.
+     */
+    public long getExpiredBucketCount() {
+        return expiredBuckets.get();
+    }
+
+    /**
+     * Returns the number of traces currently stored, pinned ones included.
+     */
+    public int size() {
+        int size = pinned.size();
+        for (Bucket bucket : buckets.values()) {
+            Partition partition = bucket.partition;
+            if (partition != null) {
+                size += partition.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns trace, shape and metadata interning counters.
+     */
+    public StoreMetrics getMetrics() {
+        return new StoreMetrics(size(), shapes.values().size(), metadata);
+    }
+
+    /**
+     * Removes all traces and index entries.
+     */
+    public void clear() {
+        for (Bucket bucket : buckets.values()) {
+            bucket.partition = null;
+        }
+        buckets.clear();
+        idIndex.clear();
+        stringIndex.clear();
+        pinned.clear();
+        shapes.clear();
+        metadata.clear();
+        staleIndexEntries.set(0);
+    }
+
+    /**
+     * Returns the number of index entries, including stale ones not yet
+     * purged. Exposed for tests.
+     */
+    int getIndexSize() {
+        return idIndex.size() + stringIndex.size();
+    }
+
+    private CompactTrace pinnedTrace(String traceId) {
+        Pin pin = pinned.get(traceId);
+        return pin == null ? null : pin.compact;
+    }
+
+    private static String pinKey(CompactTrace compact) {
+        return compact.traceId != null ? compact.traceId : TraceId.toString(compact.id);
+    }
+
+    private void enforceRetention() {
+        if (retentionMillis == Long.MAX_VALUE) {
+            return;
+        }
+        long cutoff = clock.nowMillis() - retentionMillis;
+        Map.Entry<Long, Bucket> oldest = buckets.firstEntry();
+        if (oldest != null && oldest.getKey() <= cutoff - bucketMillis) {
+            expireBefore(cutoff);
+        }
+    }
+
+    /**
+     * Purges index entries pointing at dropped buckets once they are at least
+     * half of the index, like a hash table resize: O(index) work after
+     * O(index) expiries.
+     */
+    private void purgeIndexIfStale() {
+        long stale = staleIndexEntries.get();
+        if (stale * 2 < getIndexSize()) {
+            return;
+        }
+        if (staleIndexEntries.compareAndSet(stale, 0)) {
+            idIndex.removeValues(Bucket::isDropped);
+            stringIndex.values().removeIf(Bucket::isDropped);
+        }
+    }
+
+    /**
+     * A pinned trace and how many times it is pinned. Changed only inside
+     * {@code pinned.compute*}, which serializes updates per trace.
+     */
+    private static final class Pin {
+        volatile CompactTrace compact;
+        int count = 1;
+
+        Pin(CompactTrace compact) {
+            this.compact = compact;
+        }
+
+        Pin retain() {
+            count++;
+            return this;
+        }
+
+        Pin replace(CompactTrace newer) {
+            compact = newer;
+            return this;
+        }
+    }
+
+    /**
+     * Stable handle for a time bucket. The index points at handles, so
+     * dropping a bucket only needs to null out its partition.
+     */
+    private static final class Bucket {
+        final long startMillis;
+        volatile Partition partition = new Partition();
+
+        Bucket(long startMillis) {
+            this.startMillis = startMillis;
+        }
+
+        boolean isDropped() {
+            return partition == null;
+        }
+    }
+
+    /**
+     * Traces of one bucket.
+     */
+    private static final class Partition {
+        final ConcurrentLongMap<CompactTrace> byId = new ConcurrentLongMap<>(2);
+        final ConcurrentHashMap<String, CompactTrace> byString = new ConcurrentHashMap<>();
+
+        int size() {
+            return byId.size() + byString.size();
+        }
+
+        void remove(CompactTrace compact) {
+            if (compact.id != TraceId.NONE) {
+                byId.remove(compact.id);
+            } else {
+                byString.remove(compact.traceId);
+            }
+        }
+
+        Stream<CompactTrace> compactTraces() {
+            List<CompactTrace> all = new ArrayList<>(size());
+            byId.forEachKey(id -> {
+                CompactTrace compact = byId.get(id);
+                if (compact != null) {
+                    all.add(compact);
+                }
+            });
+            all.addAll(byString.values());
+            return all.stream();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.core.TraceShape;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded intern table of {@link TraceShape}s, keyed by fingerprint.
+ * <p>
+ * At most {@value #MAX_SHAPES} shapes are interned, so traces with unbounded
+ * event-name variety cannot grow the table without limit. Thread-safe.
+ */
+final class ShapeTable {
+
+    static final int MAX_SHAPES = 10_000;
+
+    private final ConcurrentHashMap<Long, TraceShape> shapes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the shared shape for the events, creating it on first sight.
+     * On a fingerprint collision, or once the table is full, the trace gets a
+     * private shape instead.
+     */
+    TraceShape intern(List<TraceEvent> events) {
+        long fingerprint = TraceShape.fingerprint(events);
+        TraceShape shape = shapes.get(fingerprint);
+        if (shape != null && shape.matches(events)) {
+            return shape;
+        }
+
+        TraceShape created = TraceShape.of(events);
+        if (shape == null && shapes.size() < MAX_SHAPES) {
+            TraceShape existing = shapes.putIfAbsent(fingerprint, created);
+            if (existing != null && existing.matches(events)) {
+                return existing;
+            }
+        }
+        return created;
+    }
+
+    Collection<TraceShape> values() {
+        return Collections.unmodifiableCollection(shapes.values());
+    }
+
+    void clear() {
+        shapes.clear();
+    }
+}
@@ -0,0 +1,355 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.Trace;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trace store that starts from a memory-mapped point-in-time snapshot.
+ * <p>
+ * {@link #write(Path, TraceStore)} saves any store to a snapshot file;
+ * {@link #open(Path)} maps it and is ready immediately, without decoding any
+ * trace. Each {@link #get(String)} binary-searches the index footer and
+ * decodes just that one record, so startup cost does not depend on how many
+ * traces the snapshot holds.
+ * <p>
+ * The snapshot itself is read-only. Traces stored after opening go to an
+ * in-memory overlay, and removals of snapshot traces are remembered as
+ * tombstones; {@link #snapshot(Path)} writes the merged view back out.
+ * <p>
+ * File layout:
+ *
+ * <pre>
+ * header:  magic "RTSN" (int), version (int)
+ * records: {@link TraceCodec} encodings, back to back
+ * index:   count x (traceId hash (long), record offset (long)), sorted by hash
+ * trailer: index offset (long), count (int), magic (int)
+ * </pre>
+ * <p>
+ * Snapshots are limited to 2GB, the maximum size of a single mapping.
+ */
+public class SnapshotTraceStore implements TraceStore, Closeable {
+
+    private static final int MAGIC = 0x5254534E; // "RTSN"
+    private static final int VERSION = 2; // 2 adds trace parents and spans; 1 is still read
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 16;
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final MappedByteBuffer data;
+    private final int indexOffset;
+    private final int count;
+
+    private final InMemoryTraceStore overlay = new InMemoryTraceStore();
+    private final Set<String> removed = ConcurrentHashMap.newKeySet();
+
+    private SnapshotTraceStore(MappedByteBuffer data, int indexOffset, int count) {
+        this.data = data;
+        this.indexOffset = indexOffset;
+        this.count = count;
+    }
+
+    /**
+     * Writes a point-in-time snapshot of a store.
+     * <p>
+     * The file is written to a temporary sibling and moved into place, so a
+     * crash mid-write leaves any previous snapshot intact.
+     *
+     * @param path  destination file
+     * @param store source store
+     * @return number of traces written
+     * @throws IOException if writing fails or the snapshot exceeds 2GB
+     */
+    public static int write(Path path, TraceStore store) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        List<IndexEntry> index = new ArrayList<>();
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            for (String traceId : store.listTraceIds()) {
+                Optional<Trace> trace = store.get(traceId);
+                if (trace.isPresent()) {
+                    index.add(new IndexEntry(hash(traceId), out.size()));
+                    TraceCodec.encode(trace.get(), out);
+                }
+            }
+
+            long indexOffset = out.size();
+            long projected = indexOffset + (long) index.size() * INDEX_ENTRY_SIZE + TRAILER_SIZE;
+            if (out.size() == Integer.MAX_VALUE || projected > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot exceeds 2GB: " + path);
+            }
+
+            IndexEntry[] sorted = index.toArray(new IndexEntry[0]);
+            Arrays.sort(sorted, (a, b) -> Long.compare(a.hash, b.hash));
+            for (IndexEntry entry : sorted) {
+                out.writeLong(entry.hash);
+                out.writeLong(entry.offset);
+            }
+
+            out.writeLong(indexOffset);
+            out.writeInt(sorted.length);
+            out.writeInt(MAGIC);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return index.size();
+    }
+
+    /**
+     * Registers a JVM shutdown hook that snapshots the store on exit.
+     *
+     * @param path  destination file
+     * @param store store to snapshot
+     */
+    public static void writeOnShutdown(Path path, TraceStore store) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                write(path, store);
+            } catch (IOException e) {
+                System.err.println("Failed to write trace snapshot " + path + ": " + e.getMessage());
+            }
+        }, "trace-snapshot"));
+    }
+
+    /**
+     * Maps a snapshot file. Only the header and trailer are read.
+     *
+     * @param path snapshot file
+     * @return store serving the snapshot's traces
+     * @throws IOException if the file cannot be mapped or is not a snapshot
+     */
+    public static SnapshotTraceStore open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot exceeds 2GB: " + path);
+            }
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Not a trace snapshot: " + path);
+            }
+
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (data.getInt(0) != MAGIC || data.getInt((int) size - 4) != MAGIC) {
+                throw new IOException("Not a trace snapshot: " + path);
+            }
+            int version = data.getInt(4);
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            }
+
+            long indexOffset = data.getLong((int) size - TRAILER_SIZE);
+            int count = data.getInt((int) size - 8);
+            if (count < 0 || indexOffset < HEADER_SIZE
+                    || indexOffset + (long) count * INDEX_ENTRY_SIZE != size - TRAILER_SIZE) {
+                throw new IOException("Corrupt snapshot index: " + path);
+            }
+            return new SnapshotTraceStore(data, (int) indexOffset, count);
+        }
+    }
+
+    @Override
+    public void store(Trace trace) {
+        overlay.store(trace);
+        removed.remove(trace.getTraceId());
+    }
+
+    @Override
+    public Optional<Trace> get(String traceId) {
+        if (traceId == null) {
+            return Optional.empty();
+        }
+        Optional<Trace> recent = overlay.get(traceId);
+        if (recent.isPresent() || removed.contains(traceId)) {
+            return recent;
+        }
+        int offset = findRecord(traceId);
+        return offset < 0 ? Optional.empty() : Optional.of(decodeAt(offset));
+    }
+
+    @Override
+    public void remove(String traceId) {
+        if (traceId == null) {
+            return;
+        }
+        overlay.remove(traceId);
+        if (findRecord(traceId) >= 0) {
+            removed.add(traceId);
+        }
+    }
+
+    /**
+     * Returns overlay IDs plus snapshot IDs that have not been removed or
+     * replaced. Reads every snapshot record's ID, so this is proportional to
+     * the snapshot size.
+     */
+    @Override
+    public Collection<String> listTraceIds() {
+        List<String> ids = new ArrayList<>(overlay.listTraceIds());
+        for (int i = 0; i < count; i++) {
+            String traceId = readTraceId((int) data.getLong(indexOffset + i * INDEX_ENTRY_SIZE + 8));
+            if (!removed.contains(traceId) && overlay.get(traceId).isEmpty()) {
+                ids.add(traceId);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Writes the merged view (snapshot plus overlay, minus removals) to a new
+     * snapshot file.
+     *
+     * @param path destination file; must not be the file this store maps
+     * @return number of traces written
+     * @throws IOException if writing fails
+     */
+    public int snapshot(Path path) throws IOException {
+        return write(path, this);
+    }
+
+    /**
+     * Returns the number of traces in the mapped snapshot, ignoring the
+     * overlay.
+     */
+    public int getSnapshotSize() {
+        return count;
+    }
+
+    /**
+     * Releases this store's reference to the mapping. The OS unmaps the file
+     * once the buffer is garbage collected.
+     */
+    @Override
+    public void close() {
+        overlay.clear();
+        removed.clear();
+    }
+
+    /**
+     * Returns the record offset for a trace ID, or -1 if absent.
+     */
+    private int findRecord(String traceId) {
+        long target = hash(traceId);
+
+        // Lowest index whose hash is >= target
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (data.getLong(indexOffset + mid * INDEX_ENTRY_SIZE) < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        // Hash collisions: check every entry with the same hash
+        for (int i = low; i < count; i++) {
+            int entry = indexOffset + i * INDEX_ENTRY_SIZE;
+            if (data.getLong(entry) != target) {
+                break;
+            }
+            int offset = (int) data.getLong(entry + 8);
+            if (traceId.equals(readTraceId(offset))) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private String readTraceId(int offset) {
+        try {
+            return input(offset).readUTF();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt snapshot record at " + offset, e);
+        }
+    }
+
+    private Trace decodeAt(int offset) {
+        try {
+            return TraceCodec.decode(input(offset));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt snapshot record at " + offset, e);
+        }
+    }
+
+    private DataInputStream input(int offset) {
+        ByteBuffer view = data.duplicate();
+        view.position(offset).limit(indexOffset);
+        return new DataInputStream(new ByteBufferInputStream(view));
+    }
+
+    private static long hash(String traceId) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < traceId.length(); i++) {
+            hash = (hash ^ traceId.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static final class IndexEntry {
+        final long hash;
+        final long offset;
+
+        IndexEntry(long hash, long offset) {
+            this.hash = hash;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Reads from a private view of the mapping, so concurrent gets do not
+     * share a position.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+    }
+}
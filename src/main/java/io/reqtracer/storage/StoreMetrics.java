@@ -0,0 +1,117 @@
+package io.reqtracer.storage;
+
+import java.util.List;
+
+/**
+ * Point-in-time counters for an in-memory trace store.
+ */
+public class StoreMetrics {
+
+    private final int traceCount;
+    private final int shapeCount;
+    private final int internedStrings;
+    private final long stringsShared;
+    private final long metadataBytesSaved;
+    private final List<String> highCardinalityKeys;
+    private final long indexBytes;
+    private final long indexPostings;
+    private final List<String> unindexedKeys;
+    private final List<TenantUsage> tenants;
+
+    StoreMetrics(int traceCount, int shapeCount, MetadataInterner interner) {
+        this(traceCount, shapeCount, interner, null, null);
+    }
+
+    StoreMetrics(int traceCount, int shapeCount, MetadataInterner interner, MetadataIndex index,
+            TenantLedger ledger) {
+        this.traceCount = traceCount;
+        this.shapeCount = shapeCount;
+        this.internedStrings = interner.getInternedCount();
+        this.stringsShared = interner.getStringsShared();
+        this.metadataBytesSaved = interner.getBytesSaved();
+        this.highCardinalityKeys = List.copyOf(interner.getHighCardinalityKeys());
+        this.indexBytes = index == null ? 0 : index.getBytes();
+        this.indexPostings = index == null ? 0 : index.getPostingCount();
+        this.unindexedKeys = index == null ? List.of() : List.copyOf(index.getDroppedKeys());
+        this.tenants = ledger == null ? List.of() : List.copyOf(ledger.getUsage());
+    }
+
+    public int getTraceCount() {
+        return traceCount;
+    }
+
+    /**
+     * Returns the number of interned trace shapes.
+     */
+    public int getShapeCount() {
+        return shapeCount;
+    }
+
+    /**
+     * Returns the number of distinct metadata keys and values interned.
+     */
+    public int getInternedStrings() {
+        return internedStrings;
+    }
+
+    /**
+     * Returns how many metadata Strings were replaced by an interned copy.
+     */
+    public long getStringsShared() {
+        return stringsShared;
+    }
+
+    /**
+     * Returns the estimated bytes of duplicate metadata Strings not retained
+     * thanks to interning. Removing traces does not lower this figure.
+     */
+    public long getMetadataBytesSaved() {
+        return metadataBytesSaved;
+    }
+
+    /**
+     * Returns metadata keys with too many distinct values to intern, sorted.
+     */
+    public List<String> getHighCardinalityKeys() {
+        return highCardinalityKeys;
+    }
+
+    /**
+     * Returns the estimated heap used by the metadata index, 0 without one.
+     */
+    public long getIndexBytes() {
+        return indexBytes;
+    }
+
+    /**
+     * Returns the number of trace references in the metadata index,
+     * including ones to removed traces not yet compacted away.
+     */
+    public long getIndexPostings() {
+        return indexPostings;
+    }
+
+    /**
+     * Returns metadata keys dropped from the index for having too many
+     * values or taking the most memory, sorted. Queries on them scan.
+     */
+    public List<String> getUnindexedKeys() {
+        return unindexedKeys;
+    }
+
+    /**
+     * Returns each tenant's usage against its quota, most quota used first;
+     * empty without quotas.
+     */
+    public List<TenantUsage> getTenantUsage() {
+        return tenants;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StoreMetrics{traces=%d, shapes=%d, internedStrings=%d, stringsShared=%d, "
+                + "metadataBytesSaved=%d, highCardinalityKeys=%s, indexBytes=%d, indexPostings=%d, "
+                + "unindexedKeys=%s, tenants=%d}", traceCount, shapeCount, internedStrings, stringsShared,
+                metadataBytesSaved, highCardinalityKeys, indexBytes, indexPostings, unindexedKeys, tenants.size());
+    }
+}
@@ -0,0 +1,201 @@
+package io.reqtracer.storage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Per-tenant trace accounting and eviction for {@link InMemoryTraceStore}.
+ * <p>
+ * Each tenant has its own account: trace and byte counters are
+ * {@link LongAdder}s, striped across threads, and its traces are queued
+ * oldest first in a lock-free queue. A store that takes a tenant over its
+ * quota flags the account; eviction then serves the flagged tenant furthest
+ * over its quota first, removing its oldest unpinned traces until it is
+ * back within quota, so tenants within their quota are never evicted. One
+ * thread at a time evicts from an account; others carry on storing, so a
+ * tenant may briefly exceed its quota under contention.
+ * <p>
+ * Removal, explicit or by eviction, leaves a dead reference in the queue
+ * that eviction skips; a queue holding more dead references than live ones
+ * is purged. At most {@value #MAX_TENANTS} tenants get an account; the
+ * rest share {@link #OTHER_TENANT}.
+ */
+final class TenantLedger {
+
+    static final int MAX_TENANTS = 1_000;
+    static final String OTHER_TENANT = "(other)";
+
+    private final TenantQuotas quotas;
+    private final Predicate<CompactTrace> live;
+    private final Predicate<CompactTrace> evictor;
+    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Set<Account> overQuota = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param quotas  tenant limits
+     * @param live    tells whether a reference is still the stored trace
+     * @param evictor removes a trace unless it is pinned, returning whether
+     *                it did; must call {@link #removed(CompactTrace)}
+     */
+    TenantLedger(TenantQuotas quotas, Predicate<CompactTrace> live, Predicate<CompactTrace> evictor) {
+        this.quotas = quotas;
+        this.live = live;
+        this.evictor = evictor;
+    }
+
+    /**
+     * Accounts a trace that has just been stored, evicting if its tenant,
+     * or any other, is over quota.
+     */
+    void stored(CompactTrace trace) {
+        Account account = accountFor(quotas.tenantOf(trace));
+        account.traces.increment();
+        account.bytes.add(trace.estimateSize());
+        account.queue.add(trace);
+        if (account.queued.incrementAndGet() > 2 * account.traces.sum() + 64) {
+            account.purge(live);
+        }
+        if (account.quotaUsed() > 1) {
+            overQuota.add(account);
+        }
+        if (!overQuota.isEmpty()) {
+            enforce();
+        }
+    }
+
+    /**
+     * Releases a trace that was removed or replaced.
+     */
+    void removed(CompactTrace trace) {
+        Account account = accounts.get(quotas.tenantOf(trace));
+        if (account == null) {
+            account = accounts.get(OTHER_TENANT);
+        }
+        if (account != null) {
+            account.traces.decrement();
+            account.bytes.add(-trace.estimateSize());
+        }
+    }
+
+    /**
+     * Returns usage per tenant, most quota used first.
+     */
+    List<TenantUsage> getUsage() {
+        List<TenantUsage> usage = new ArrayList<>();
+        for (Account account : accounts.values()) {
+            usage.add(new TenantUsage(account.tenant, account.traces.sum(), account.bytes.sum(),
+                    account.maxTraces, account.maxBytes, account.evicted.sum()));
+        }
+        usage.sort(Comparator.comparingDouble(TenantUsage::getQuotaUsed).reversed()
+                .thenComparing(TenantUsage::getTenant));
+        return usage;
+    }
+
+    void clear() {
+        accounts.clear();
+        overQuota.clear();
+    }
+
+    private Account accountFor(String tenant) {
+        Account account = accounts.get(tenant);
+        if (account == null) {
+            String name = accounts.size() < MAX_TENANTS ? tenant : OTHER_TENANT;
+            account = accounts.computeIfAbsent(name, n -> new Account(n, quotas));
+        }
+        return account;
+    }
+
+    /**
+     * Evicts from over-quota tenants, furthest over first, until none is
+     * over or the rest are being evicted by other threads.
+     */
+    private void enforce() {
+        while (true) {
+            Account worst = null;
+            double worstUsed = 1;
+            for (Account account : overQuota) {
+                double used = account.quotaUsed();
+                if (used <= 1) {
+                    overQuota.remove(account);
+                } else if (used > worstUsed && !account.evicting.get()) {
+                    worst = account;
+                    worstUsed = used;
+                }
+            }
+            if (worst == null || !worst.evicting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                evict(worst);
+                if (worst.quotaUsed() > 1) {
+                    // Only pinned traces left: stop trying until it stores again
+                    overQuota.remove(worst);
+                    return;
+                }
+            } finally {
+                worst.evicting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Evicts an account's oldest traces in one pass over its queue, skipping
+     * pinned ones, which keep their place.
+     */
+    private void evict(Account account) {
+        Iterator<CompactTrace> oldestFirst = account.queue.iterator();
+        while (account.quotaUsed() > 1 && oldestFirst.hasNext()) {
+            CompactTrace trace = oldestFirst.next();
+            if (!live.test(trace)) {
+                oldestFirst.remove();
+                account.queued.decrementAndGet();
+            } else if (evictor.test(trace)) {
+                oldestFirst.remove();
+                account.queued.decrementAndGet();
+                account.evicted.increment();
+            }
+        }
+    }
+
+    private static final class Account {
+        final String tenant;
+        final long maxTraces;
+        final long maxBytes;
+        final LongAdder traces = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder evicted = new LongAdder();
+        final ConcurrentLinkedQueue<CompactTrace> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicBoolean evicting = new AtomicBoolean();
+
+        Account(String tenant, TenantQuotas quotas) {
+            this.tenant = tenant;
+            this.maxTraces = quotas.getMaxTraces(tenant);
+            this.maxBytes = quotas.getMaxBytes(tenant);
+        }
+
+        double quotaUsed() {
+            return Math.max((double) traces.sum() / maxTraces, (double) bytes.sum() / maxBytes);
+        }
+
+        void purge(Predicate<CompactTrace> live) {
+            if (evicting.compareAndSet(false, true)) {
+                try {
+                    queue.removeIf(trace -> !live.test(trace));
+                    queued.set(queue.size());
+                } finally {
+                    evicting.set(false);
+                }
+            }
+        }
+    }
+}
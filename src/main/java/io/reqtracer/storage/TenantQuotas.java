@@ -0,0 +1,142 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Per-tenant limits for an {@link InMemoryTraceStore}, so one noisy tenant
+ * cannot push out everyone else's traces.
+ * <p>
+ * A trace belongs to the tenant it was started for
+ * ({@link io.reqtracer.Tracer#startForTenant(String)}), otherwise to the
+ * value of a metadata key on its first event carrying one, otherwise to
+ * {@link #DEFAULT_TENANT}:
+ *
+ * <pre>
+ * TenantQuotas quotas = TenantQuotas.of(10_000, 16L &lt;&lt; 20)   // per tenant
+ *         .withMetadataKey("tenant")
+ *         .withQuota("acme", 50_000, 64L &lt;&lt; 20);
+ * Tracer.setStore(new InMemoryTraceStore(quotas));
+ * </pre>
+ * <p>
+ * Immutable.
+ */
+public final class TenantQuotas {
+
+    /** Tenant of traces that name none. */
+    public static final String DEFAULT_TENANT = "default";
+
+    private final long maxTraces;
+    private final long maxBytes;
+    private final String metadataKey;
+    private final Map<String, long[]> overrides;
+
+    private TenantQuotas(long maxTraces, long maxBytes, String metadataKey, Map<String, long[]> overrides) {
+        this.maxTraces = maxTraces;
+        this.maxBytes = maxBytes;
+        this.metadataKey = metadataKey;
+        this.overrides = overrides;
+    }
+
+    /**
+     * Creates quotas applying to every tenant.
+     *
+     * @param maxTraces traces each tenant may keep
+     * @param maxBytes  estimated heap each tenant's traces may use
+     */
+    public static TenantQuotas of(long maxTraces, long maxBytes) {
+        checkLimits(maxTraces, maxBytes);
+        return new TenantQuotas(maxTraces, maxBytes, null, Map.of());
+    }
+
+    /**
+     * Returns quotas that also take the tenant from a metadata key, for
+     * traces not started for a tenant.
+     */
+    public TenantQuotas withMetadataKey(String key) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Metadata key cannot be empty");
+        }
+        return new TenantQuotas(maxTraces, maxBytes, key, overrides);
+    }
+
+    /**
+     * Returns quotas with different limits for one tenant.
+     */
+    public TenantQuotas withQuota(String tenant, long maxTraces, long maxBytes) {
+        Objects.requireNonNull(tenant, "Tenant cannot be null");
+        checkLimits(maxTraces, maxBytes);
+        Map<String, long[]> copy = new HashMap<>(overrides);
+        copy.put(tenant, new long[] {maxTraces, maxBytes});
+        return new TenantQuotas(this.maxTraces, this.maxBytes, metadataKey, Map.copyOf(copy));
+    }
+
+    private static void checkLimits(long maxTraces, long maxBytes) {
+        if (maxTraces <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Quota limits must be positive");
+        }
+    }
+
+    /**
+     * Returns the number of traces a tenant may keep.
+     */
+    public long getMaxTraces(String tenant) {
+        long[] limits = overrides.get(tenant);
+        return limits == null ? maxTraces : limits[0];
+    }
+
+    /**
+     * Returns the estimated heap a tenant's traces may use.
+     */
+    public long getMaxBytes(String tenant) {
+        long[] limits = overrides.get(tenant);
+        return limits == null ? maxBytes : limits[1];
+    }
+
+    /**
+     * Returns the metadata key tenants are read from, or null.
+     */
+    public String getMetadataKey() {
+        return metadataKey;
+    }
+
+    /**
+     * Returns the tenant a trace belongs to.
+     */
+    public String tenantOf(Trace trace) {
+        if (trace.getTenant() != null) {
+            return trace.getTenant();
+        }
+        if (metadataKey != null) {
+            for (TraceEvent event : trace.getEvents()) {
+                String value = event.hasMetadata() ? event.getMetadata().get(metadataKey) : null;
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return DEFAULT_TENANT;
+    }
+
+    /**
+     * Same as {@link #tenantOf(Trace)} on the stored form.
+     */
+    String tenantOf(CompactTrace trace) {
+        if (trace.tenant != null) {
+            return trace.tenant;
+        }
+        if (metadataKey != null && trace.metadata != null) {
+            for (Map<String, String> metadata : trace.metadata) {
+                String value = metadata == null ? null : metadata.get(metadataKey);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return DEFAULT_TENANT;
+    }
+}
@@ -0,0 +1,68 @@
+package io.reqtracer.storage;
+
+/**
+ * One tenant's share of a store with {@link TenantQuotas}. Immutable.
+ */
+public final class TenantUsage {
+
+    private final String tenant;
+    private final long traces;
+    private final long bytes;
+    private final long maxTraces;
+    private final long maxBytes;
+    private final long evicted;
+
+    TenantUsage(String tenant, long traces, long bytes, long maxTraces, long maxBytes, long evicted) {
+        this.tenant = tenant;
+        this.traces = traces;
+        this.bytes = bytes;
+        this.maxTraces = maxTraces;
+        this.maxBytes = maxBytes;
+        this.evicted = evicted;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public long getTraces() {
+        return traces;
+    }
+
+    /**
+     * Returns the estimated heap used by the tenant's traces.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxTraces() {
+        return maxTraces;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns how many of the tenant's traces were evicted to keep it within
+     * its quota.
+     */
+    public long getEvicted() {
+        return evicted;
+    }
+
+    /**
+     * Returns usage as a fraction of the quota, the larger of the trace and
+     * byte fractions; above 1 while the tenant is over quota.
+     */
+    public double getQuotaUsed() {
+        return Math.max((double) traces / maxTraces, (double) bytes / maxBytes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d/%d traces, %d/%d bytes, %d evicted",
+                tenant, traces, maxTraces, bytes, maxBytes, evicted);
+    }
+}
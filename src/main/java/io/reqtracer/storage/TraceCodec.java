@@ -0,0 +1,171 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceContext;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.core.TraceSpan;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of a single trace.
+ * <p>
+ * Layout (all integers big-endian, strings modified UTF-8):
+ *
+ * <pre>
+ * traceId, startTime, flags (byte), [endTime], threadId, threadName, eventCount,
+ *   eventCount x (name, timestamp, elapsedSinceStart, delta, metaCount,
+ *                 metaCount x (key, value)),
+ *   [parentTraceId, parentSpanIndex (int)],
+ *   [rootCount, rootCount x span],
+ *   [tenant]
+ * span: name, startTime, hasEnd, [endTime], childCount, childCount x span
+ * </pre>
+ * <p>
+ * Flags: 1 = ended, 2 = has a parent, 4 = has spans, 8 = has a tenant.
+ * Encodings from before parents and spans were added wrote a boolean where
+ * the flags are, and decode unchanged.
+ * <p>
+ * Used by every persistent format in this package so traces round-trip
+ * identically between them.
+ */
+public final class TraceCodec {
+
+    private static final int ENDED = 1;
+    private static final int PARENT = 2;
+    private static final int SPANS = 4;
+    private static final int TENANT = 8;
+
+    private TraceCodec() {
+    }
+
+    /**
+     * Writes a trace.
+     *
+     * @param trace trace to encode
+     * @param out   destination
+     * @throws IOException if writing fails
+     */
+    public static void encode(Trace trace, DataOutput out) throws IOException {
+        out.writeUTF(trace.getTraceId());
+        out.writeLong(trace.getStartTime());
+        TraceContext parent = trace.getParent();
+        List<TraceSpan> spans = trace.getSpans();
+        String tenant = trace.getTenant();
+        out.writeByte((trace.isEnded() ? ENDED : 0) | (parent != null ? PARENT : 0)
+                | (!spans.isEmpty() ? SPANS : 0) | (tenant != null ? TENANT : 0));
+        if (trace.isEnded()) {
+            out.writeLong(trace.getEndTime());
+        }
+        out.writeLong(trace.getThreadId());
+        out.writeUTF(trace.getThreadName());
+
+        List<TraceEvent> events = trace.getEvents();
+        out.writeInt(events.size());
+        for (TraceEvent event : events) {
+            out.writeUTF(event.getName());
+            out.writeLong(event.getTimestamp());
+            out.writeLong(event.getElapsedSinceStart());
+            out.writeLong(event.getDelta());
+            out.writeByte(event.getMetadata().size());
+            for (Map.Entry<String, String> entry : event.getMetadata().entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        }
+
+        if (parent != null) {
+            out.writeUTF(parent.getTraceId());
+            out.writeInt(parent.getSpanIndex());
+        }
+        if (!spans.isEmpty()) {
+            encodeSpans(spans, out);
+        }
+        if (tenant != null) {
+            out.writeUTF(tenant);
+        }
+    }
+
+    private static void encodeSpans(List<TraceSpan> spans, DataOutput out) throws IOException {
+        out.writeInt(spans.size());
+        for (TraceSpan span : spans) {
+            out.writeUTF(span.getName());
+            out.writeLong(span.getStartTime());
+            out.writeBoolean(span.isEnded());
+            if (span.isEnded()) {
+                out.writeLong(span.getEndTime());
+            }
+            encodeSpans(span.getChildren(), out);
+        }
+    }
+
+    /**
+     * Reads a trace written by {@link #encode(Trace, DataOutput)}.
+     *
+     * @param in source
+     * @return decoded trace
+     * @throws IOException if reading fails or the data is truncated
+     */
+    public static Trace decode(DataInput in) throws IOException {
+        String traceId = in.readUTF();
+        long startTime = in.readLong();
+        int flags = in.readUnsignedByte();
+        Long endTime = (flags & ENDED) != 0 ? in.readLong() : null;
+        long threadId = in.readLong();
+        String threadName = in.readUTF();
+
+        int eventCount = in.readInt();
+        List<TraceEvent> events = new ArrayList<>(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            String name = in.readUTF();
+            long timestamp = in.readLong();
+            long elapsed = in.readLong();
+            long delta = in.readLong();
+            int metaCount = in.readUnsignedByte();
+            Map<String, String> metadata = new HashMap<>();
+            for (int m = 0; m < metaCount; m++) {
+                metadata.put(in.readUTF(), in.readUTF());
+            }
+            events.add(new TraceEvent(name, timestamp, elapsed, delta, metadata));
+        }
+
+        TraceContext parent = null;
+        if ((flags & PARENT) != 0) {
+            String parentId = in.readUTF();
+            int spanIndex = in.readInt();
+            try {
+                parent = new TraceContext(parentId, spanIndex);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid parent context: " + e.getMessage(), e);
+            }
+        }
+        List<TraceSpan> spans = (flags & SPANS) != 0 ? decodeSpans(in) : null;
+        String tenant = (flags & TENANT) != 0 ? in.readUTF() : null;
+
+        Trace trace = Trace.restore(traceId, startTime, endTime, threadId, threadName, events, spans);
+        trace.setParent(parent);
+        trace.setTenant(tenant);
+        return trace;
+    }
+
+    private static List<TraceSpan> decodeSpans(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid span count: " + count);
+        }
+        List<TraceSpan> spans = new ArrayList<>(Math.min(count, 64));
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            long start = in.readLong();
+            Long end = in.readBoolean() ? in.readLong() : null;
+            spans.add(new TraceSpan(name, start, end, decodeSpans(in)));
+        }
+        return spans;
+    }
+}
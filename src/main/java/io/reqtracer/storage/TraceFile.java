@@ -0,0 +1,153 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.Trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Flat file of encoded traces, used to move traces between the process that
+ * recorded them and the CLI.
+ * <p>
+ * Layout: a 4-byte magic ("RTTF"), a 4-byte version, then traces encoded with
+ * {@link TraceCodec} back to back until end of file.
+ */
+public final class TraceFile {
+
+    private static final int MAGIC = 0x52545446; // "RTTF"
+    private static final int VERSION = 2; // 2 adds trace parents and spans; 1 is still read
+
+    private TraceFile() {
+    }
+
+    /**
+     * Writes every trace in the store to a file, replacing it if it exists.
+     *
+     * @param path  destination file
+     * @param store source store
+     * @return number of traces written
+     * @throws IOException if writing fails
+     */
+    public static int write(Path path, TraceStore store) throws IOException {
+        int count = 0;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (String traceId : store.listTraceIds()) {
+                Optional<Trace> trace = store.get(traceId);
+                if (trace.isPresent()) {
+                    TraceCodec.encode(trace.get(), out);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Loads every trace in a file into a new in-memory store.
+     *
+     * @param path source file
+     * @return store containing the file's traces
+     * @throws IOException if the file cannot be read or is not a trace file
+     */
+    public static InMemoryTraceStore load(Path path) throws IOException {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        try (Stream<Trace> traces = stream(path)) {
+            traces.forEach(store::store);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return store;
+    }
+
+    /**
+     * Streams traces from a file without loading them all into memory.
+     * <p>
+     * Decoding is sequential, but the stream may be made parallel so that
+     * downstream work runs on multiple cores. The stream must be closed.
+     * Read errors surface as {@link UncheckedIOException}.
+     *
+     * @param path source file
+     * @return lazily decoded traces
+     * @throws IOException if the file cannot be opened or is not a trace file
+     */
+    public static Stream<Trace> stream(Path path) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a trace file: " + path);
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported trace file version " + version + ": " + path);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+
+        Iterator<Trace> iterator = new Iterator<>() {
+            private Trace next;
+            private boolean fetched;
+
+            private Trace readNext() {
+                try {
+                    in.mark(1);
+                    if (in.read() < 0) {
+                        return null;
+                    }
+                    in.reset();
+                    return TraceCodec.decode(in);
+                } catch (EOFException e) {
+                    throw new UncheckedIOException(new IOException("Truncated trace file: " + path, e));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (!fetched) {
+                    next = readNext();
+                    fetched = true;
+                }
+                return next != null;
+            }
+
+            @Override
+            public Trace next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                fetched = false;
+                return next;
+            }
+        };
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+}
@@ -1,13 +1,21 @@
 package io.reqtracer.storage;
 
 import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceId;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
 
 /**
  * Storage abstraction for traces.
  * <p>
+ * Stores may support pinning: a pinned trace is kept by any retention or
+ * eviction the store applies until it is unpinned or removed explicitly.
+ * Pins are counted, so independent components (say an outlier detector and
+ * exemplar sampling) can pin the same trace: it stays pinned until each has
+ * unpinned it.
+ * <p>
  * Implementations must be thread-safe for concurrent access.
  */
 public interface TraceStore {
@@ -28,6 +36,19 @@ public interface TraceStore {
      */
     Optional<Trace> get(String traceId);
 
+    /**
+     * Retrieves a trace by numeric ID.
+     * <p>
+     * The default looks up the ID's String rendering; stores keyed by
+     * numeric ID override it to avoid rendering.
+     * 
+     * @param id numeric trace identifier
+     * @return optional containing trace if found, empty otherwise
+     */
+    default Optional<Trace> get(long id) {
+        return id == TraceId.NONE ? Optional.empty() : get(TraceId.toString(id));
+    }
+
     /**
      * Removes a trace from storage.
      * 
@@ -35,10 +56,51 @@ public interface TraceStore {
      */
     void remove(String traceId);
 
+    /**
+     * Removes a trace by numeric ID.
+     * 
+     * @param id numeric trace identifier
+     */
+    default void remove(long id) {
+        if (id != TraceId.NONE) {
+            remove(TraceId.toString(id));
+        }
+    }
+
     /**
      * Returns all trace IDs currently in storage.
      * 
      * @return collection of trace IDs
      */
     Collection<String> listTraceIds();
+
+    /**
+     * Pins a stored trace so that retention never drops it.
+     * <p>
+     * The default does not support pinning and returns false.
+     *
+     * @param traceId trace identifier
+     * @return true if the trace is stored and now pinned
+     */
+    default boolean pin(String traceId) {
+        return false;
+    }
+
+    /**
+     * Releases one pin; once every pin is released the trace is subject to
+     * retention again. Does nothing if the trace is not pinned.
+     *
+     * @param traceId trace identifier
+     */
+    default void unpin(String traceId) {
+    }
+
+    /**
+     * Returns the IDs of pinned traces.
+     *
+     * @return pinned trace IDs, empty if none or pinning is unsupported
+     */
+    default Collection<String> listPinnedTraceIds() {
+        return Collections.emptyList();
+    }
 }
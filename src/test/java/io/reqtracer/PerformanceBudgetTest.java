@@ -0,0 +1,272 @@
+package io.reqtracer;
+
+import io.reqtracer.cli.TimelineFormatter;
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Span;
+import io.reqtracer.core.SystemClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.storage.InMemoryTraceStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Guards per-operation allocation and throughput of the hot paths.
+ * <p>
+ * Allocation is measured with {@code ThreadMXBean.getThreadAllocatedBytes}
+ * over many operations after a warm-up, so it is stable across machines.
+ * Budgets are the measured cost plus {@link #ALLOCATION_TOLERANCE}; if a
+ * change legitimately needs more, raise the budget in the same change.
+ * <p>
+ * Throughput floors are deliberately loose (roughly 20x below a laptop) so
+ * they only catch order-of-magnitude regressions, not noisy CI machines.
+ */
+class PerformanceBudgetTest {
+
+    private static final double ALLOCATION_TOLERANCE = 1.25;
+    private static final int WARMUP_OPS = 50_000;
+    private static final int MEASURED_OPS = 200_000;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private FixedClock clock;
+    private Trace sample;
+
+    @BeforeAll
+    static void checkAllocationCounting() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "JVM does not count allocations");
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "JVM does not count allocations");
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @BeforeEach
+    void setUp() {
+        clock = new FixedClock(1000);
+        Tracer.setClock(clock);
+        Tracer.setStore(new InMemoryTraceStore());
+        sample = sampleTrace("req-sample", clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Tracer.clear();
+        Tracer.setClock(SystemClock.getInstance());
+    }
+
+    /**
+     * A typical ten-event request with metadata on two events.
+     */
+    private static Trace sampleTrace(String traceId, FixedClock clock) {
+        Trace trace = new Trace(traceId, clock);
+        trace.mark("REQUEST_RECEIVED", Map.of("path", "/orders"));
+        for (int i = 0; i < 8; i++) {
+            clock.advance(3);
+            trace.mark(i == 4 ? "DB_QUERY" : "STEP_" + i, i == 4 ? Map.of("table", "orders") : Map.of());
+        }
+        clock.advance(2);
+        trace.mark("RESPONSE_SENT");
+        trace.end();
+        return trace;
+    }
+
+    @Test
+    void testMarkAllocation() {
+        Tracer.start("req-mark");
+        try {
+            // Event list growth is amortized across many marks
+            assertAllocationWithin("Tracer.mark", 72, i -> Tracer.mark("DB_QUERY"));
+        } finally {
+            Tracer.clear();
+        }
+    }
+
+    @Test
+    void testMarkThroughput() {
+        Tracer.start("req-mark");
+        try {
+            assertThroughputAtLeast("Tracer.mark", 200_000, i -> Tracer.mark("DB_QUERY"));
+        } finally {
+            Tracer.clear();
+        }
+    }
+
+    @Test
+    void testSpanAllocation() {
+        Tracer.start("req-span");
+        try {
+            // Handles are reused; only the recorder's arrays grow, amortized
+            assertAllocationWithin("Tracer.span", 48, i -> {
+                try (Span s = Tracer.span("DB_QUERY")) {
+                    consume(s);
+                }
+            });
+        } finally {
+            Tracer.clear();
+        }
+    }
+
+    @Test
+    void testUnsampledSpanAllocation() {
+        Tracer.setSampleRate(0);
+        Tracer.start("req-unsampled");
+        try {
+            assertAllocationWithin("Tracer.span (unsampled)", 0, i -> {
+                try (Span s = Tracer.span("DB_QUERY")) {
+                    consume(s);
+                }
+            });
+        } finally {
+            Tracer.clear();
+            Tracer.setSampleRate(1);
+        }
+    }
+
+    @Test
+    void testUnsampledSpansDoNotContend() throws Exception {
+        // Unsampled spans on separate tracers share the no-op handle; closing
+        // it must not make the threads block on a common monitor
+        int threadCount = 8;
+        AtomicLong blocked = new AtomicLong();
+        Thread[] workers = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            RequestTracer tracer = new RequestTracer().setSampleRate(0);
+            String traceId = "req-" + t;
+            workers[t] = new Thread(() -> {
+                long threadId = Thread.currentThread().getId();
+                tracer.start(traceId);
+                try {
+                    long before = threads.getThreadInfo(threadId).getBlockedCount();
+                    for (int i = 0; i < MEASURED_OPS; i++) {
+                        try (Span s = tracer.span("DB_QUERY")) {
+                            consume(s);
+                        }
+                    }
+                    blocked.addAndGet(threads.getThreadInfo(threadId).getBlockedCount() - before);
+                } finally {
+                    tracer.clear();
+                }
+            });
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(0, blocked.get(), "Unsampled spans blocked on a monitor");
+    }
+
+    @Test
+    void testGetEventsAllocation() {
+        // ArrayList copy (toArray plus its own array) and the unmodifiable wrapper
+        assertAllocationWithin("Trace.getEvents", 160, i -> consume(sample.getEvents()));
+    }
+
+    @Test
+    void testGetEventsThroughput() {
+        assertThroughputAtLeast("Trace.getEvents", 200_000, i -> consume(sample.getEvents()));
+    }
+
+    @Test
+    void testStoreAllocation() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        Trace[] traces = distinctTraces(WARMUP_OPS + MEASURED_OPS);
+        // Compact trace, its arrays and the ID map entry; shapes are interned
+        assertAllocationWithin("InMemoryTraceStore.store", 480, i -> store.store(traces[i]));
+    }
+
+    @Test
+    void testStoreThroughput() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        Trace[] traces = distinctTraces(WARMUP_OPS + MEASURED_OPS);
+        assertThroughputAtLeast("InMemoryTraceStore.store", 20_000, i -> store.store(traces[i]));
+    }
+
+    @Test
+    void testCompactFormatAllocation() {
+        assertAllocationWithin("TimelineFormatter.formatCompact", 2_000,
+                i -> consume(TimelineFormatter.formatCompact(sample)));
+    }
+
+    @Test
+    void testNormalFormatAllocation() {
+        assertAllocationWithin("TimelineFormatter.formatNormal", 12_100,
+                i -> consume(TimelineFormatter.formatNormal(sample)));
+    }
+
+    @Test
+    void testFormatterThroughput() {
+        assertThroughputAtLeast("TimelineFormatter.formatCompact", 20_000,
+                i -> consume(TimelineFormatter.formatCompact(sample)));
+        assertThroughputAtLeast("TimelineFormatter.formatNormal", 5_000,
+                i -> consume(TimelineFormatter.formatNormal(sample)));
+    }
+
+    private Trace[] distinctTraces(int count) {
+        Trace[] traces = new Trace[count];
+        FixedClock traceClock = new FixedClock(1000);
+        Trace template = sampleTrace("template", traceClock);
+        for (int i = 0; i < count; i++) {
+            traces[i] = Trace.restore("req-" + i, template.getStartTime(), template.getEndTime(),
+                    template.getThreadId(), template.getThreadName(), template.getEvents());
+        }
+        return traces;
+    }
+
+    /**
+     * Runs the operation for warm-up and measurement, passing a running
+     * index, and fails if the average allocation exceeds the budget.
+     */
+    private static void assertAllocationWithin(String operation, long budgetBytes, IntConsumer op) {
+        for (int i = 0; i < WARMUP_OPS; i++) {
+            op.accept(i);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_OPS; i++) {
+            op.accept(WARMUP_OPS + i);
+        }
+        long after = threads.getThreadAllocatedBytes(threadId);
+
+        double perOp = (after - before) / (double) MEASURED_OPS;
+        long limit = (long) (budgetBytes * ALLOCATION_TOLERANCE);
+        assertTrue(perOp <= limit, String.format(
+                "%s allocated %.0f bytes/op, budget %d (+%.0f%% tolerance)",
+                operation, perOp, budgetBytes, (ALLOCATION_TOLERANCE - 1) * 100));
+    }
+
+    private static void assertThroughputAtLeast(String operation, long minOpsPerSecond, IntConsumer op) {
+        for (int i = 0; i < WARMUP_OPS; i++) {
+            op.accept(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_OPS; i++) {
+            op.accept(WARMUP_OPS + i);
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+
+        double opsPerSecond = MEASURED_OPS * 1e9 / elapsed;
+        assertTrue(opsPerSecond >= minOpsPerSecond, String.format(
+                "%s ran at %.0f ops/s, minimum %d", operation, opsPerSecond, minOpsPerSecond));
+    }
+
+    private static int sink;
+
+    /**
+     * Keeps results observable so the JIT cannot drop the measured work.
+     */
+    private static void consume(Object result) {
+        sink += System.identityHashCode(result) & 1;
+    }
+}
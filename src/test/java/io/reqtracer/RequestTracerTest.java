@@ -0,0 +1,226 @@
+package io.reqtracer;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Span;
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceId;
+import io.reqtracer.storage.InMemoryTraceStore;
+import io.reqtracer.storage.TenantQuotas;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestTracerTest {
+
+    @Test
+    void testInstancesAreIsolated() {
+        FixedClock clock = new FixedClock(1000);
+        InMemoryTraceStore ordersStore = new InMemoryTraceStore();
+        InMemoryTraceStore paymentsStore = new InMemoryTraceStore();
+        RequestTracer orders = new RequestTracer(ordersStore).setClock(clock);
+        RequestTracer payments = new RequestTracer(paymentsStore).setClock(clock);
+
+        // One thread can have a trace open in each tracer
+        orders.start("order-1");
+        payments.start("payment-1");
+        orders.mark("VALIDATE");
+        payments.mark("CHARGE");
+        clock.advance(10);
+        payments.end();
+        orders.end();
+
+        assertEquals(1, ordersStore.size());
+        assertEquals(1, paymentsStore.size());
+        assertEquals("VALIDATE", ordersStore.get("order-1").get().getEvents().get(0).getName());
+        assertEquals("CHARGE", paymentsStore.get("payment-1").get().getEvents().get(0).getName());
+        assertThrows(IllegalStateException.class, () -> orders.mark("LATE"));
+    }
+
+    @Test
+    void testInstancesShareTheDefaultIdGenerator() {
+        RequestTracer first = new RequestTracer();
+        RequestTracer second = new RequestTracer();
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add(first.start());
+            first.end();
+            ids.add(second.start());
+            second.end();
+        }
+
+        assertEquals(2000, ids.size());
+    }
+
+    @Test
+    void testConfigurationAppliesToNextTrace() {
+        FixedClock first = new FixedClock(1000);
+        FixedClock second = new FixedClock(5000);
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        RequestTracer tracer = new RequestTracer(store).setClock(first);
+
+        tracer.start("req-1");
+        tracer.setClock(second);
+        first.advance(20);
+        tracer.end();
+        tracer.start("req-2");
+        tracer.end();
+
+        assertEquals(20, store.get("req-1").get().getTotalDuration());
+        assertEquals(5000, store.get("req-2").get().getStartTime());
+    }
+
+    @Test
+    void testConfigurationVisibleToOtherThreads() throws InterruptedException {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        RequestTracer tracer = new RequestTracer();
+        tracer.setStore(store);
+
+        CountDownLatch done = new CountDownLatch(1);
+        new Thread(() -> {
+            tracer.start("req-other");
+            tracer.end();
+            done.countDown();
+        }).start();
+        done.await();
+
+        assertTrue(store.get("req-other").isPresent());
+    }
+
+    @Test
+    void testUnsampledTracesAreNotRecorded() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        RequestTracer tracer = new RequestTracer(store).setSampleRate(0);
+        List<Trace> completed = new ArrayList<>();
+        tracer.addListener(completed::add);
+
+        long id = tracer.start();
+        tracer.mark("EVENT");
+        try (Span s = tracer.span("SPAN")) {
+            assertNull(tracer.getCurrentTrace());
+        }
+        tracer.end();
+
+        assertNotEquals(0, id);
+        assertEquals(0, store.size());
+        assertTrue(completed.isEmpty());
+        assertThrows(IllegalStateException.class, () -> tracer.mark("EVENT"));
+    }
+
+    @Test
+    void testSampleRateKeepsFraction() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        RequestTracer tracer = new RequestTracer(store).setSampleRate(0.25);
+
+        for (int i = 0; i < 4_000; i++) {
+            tracer.start();
+            tracer.end();
+        }
+
+        assertTrue(store.size() > 800 && store.size() < 1_200, "sampled " + store.size());
+    }
+
+    @Test
+    void testPropagationHeaderLinksCallee() {
+        RequestTracer caller = new RequestTracer(new InMemoryTraceStore());
+        InMemoryTraceStore calleeStore = new InMemoryTraceStore();
+        RequestTracer callee = new RequestTracer(calleeStore);
+
+        caller.start("req-1");
+        String header;
+        try (Span s = caller.span("CALL")) {
+            header = caller.getPropagationHeader();
+        }
+        caller.end();
+        long id = callee.startChild(header);
+        callee.end();
+        callee.start("req-2", "garbage");
+        callee.end();
+
+        assertEquals("req-1:0:1", header);
+        assertEquals("req-1", calleeStore.get(id).get().getParent().getTraceId());
+        assertNull(calleeStore.get("req-2").get().getParent());
+        assertThrows(IllegalStateException.class, caller::getPropagationHeader);
+    }
+
+    @Test
+    void testCalleeFollowsCallerSampling() {
+        RequestTracer caller = new RequestTracer(new InMemoryTraceStore()).setSampleRate(0);
+        InMemoryTraceStore calleeStore = new InMemoryTraceStore();
+        RequestTracer callee = new RequestTracer(calleeStore);
+
+        // An unsampled caller still propagates, and its callees don't record
+        long callerId = caller.start();
+        String unsampled = caller.getPropagationHeader();
+        caller.end();
+        callee.startChild(unsampled);
+        callee.end();
+        callee.start("req-2", unsampled);
+        callee.end();
+
+        assertEquals(TraceId.toString(callerId) + ":-1:0", unsampled);
+        assertEquals(0, calleeStore.size());
+
+        // A sampled caller is followed even by a callee that samples nothing
+        callee.setSampleRate(0);
+        long id = callee.startChild("req-1:0:1");
+        callee.end();
+        caller.start("req-3");
+        assertEquals("req-3:-1:0", caller.getPropagationHeader());
+        caller.end();
+
+        assertEquals(1, calleeStore.size());
+        assertEquals("req-1", calleeStore.get(id).get().getParent().getTraceId());
+    }
+
+    @Test
+    void testStartForTenantIsAccountedToTenant() {
+        InMemoryTraceStore store = new InMemoryTraceStore(TenantQuotas.of(1, 1 << 20));
+        RequestTracer tracer = new RequestTracer(store);
+
+        long first = tracer.startForTenant("acme");
+        tracer.end();
+        long second = tracer.startForTenant("acme");
+        tracer.end();
+        tracer.startForTenant("globex");
+        tracer.end();
+
+        assertEquals("acme", store.get(second).get().getTenant());
+        assertFalse(store.get(first).isPresent());
+        assertEquals(2, store.size());
+        assertThrows(IllegalArgumentException.class, () -> tracer.startForTenant(""));
+    }
+
+    @Test
+    void testRejectsInvalidConfiguration() {
+        RequestTracer tracer = new RequestTracer();
+        assertThrows(IllegalArgumentException.class, () -> tracer.setSampleRate(1.5));
+        assertThrows(IllegalArgumentException.class, () -> tracer.setSampleRate(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> tracer.setStore(null));
+        assertThrows(IllegalArgumentException.class, () -> tracer.setClock(null));
+        assertThrows(IllegalArgumentException.class, () -> new RequestTracer(null));
+    }
+
+    @Test
+    void testStaticApiDelegatesToDefault() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        Tracer.setStore(store);
+        try {
+            Tracer.start("req-default");
+            assertEquals("req-default", Tracer.getDefault().getCurrentTrace().getTraceId());
+            Tracer.getDefault().mark("EVENT");
+            Tracer.end();
+
+            assertSame(store, Tracer.getDefault().getStore());
+            assertEquals(1, store.get("req-default").get().getEventCount());
+        } finally {
+            Tracer.setStore(new InMemoryTraceStore());
+        }
+    }
+}
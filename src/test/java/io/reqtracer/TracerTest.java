@@ -1,12 +1,19 @@
 package io.reqtracer;
 
 import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Span;
 import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceId;
+import io.reqtracer.core.TraceIdGenerator;
+import io.reqtracer.core.TraceSpan;
+import io.reqtracer.listener.TraceListener;
 import io.reqtracer.storage.InMemoryTraceStore;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
@@ -55,6 +62,24 @@ class TracerTest {
         assertEquals(30, trace.get().getTotalDuration());
     }
 
+    @Test
+    void testStartWithGeneratedId() {
+        Tracer.setIdGenerator(new TraceIdGenerator(7, clock));
+
+        long first = Tracer.start();
+        Tracer.mark("EVENT_1");
+        Tracer.end();
+        long second = Tracer.start();
+        Tracer.end();
+
+        assertNotEquals(first, second);
+        assertEquals(7, TraceIdGenerator.nodeOf(first));
+        Trace trace = store.get(first).get();
+        assertEquals(first, trace.getId());
+        assertEquals(TraceId.toString(first), trace.getTraceId());
+        assertTrue(store.get(TraceId.toString(first)).isPresent());
+    }
+
     @Test
     void testMarkWithMetadata() {
         Tracer.start("req-123");
@@ -82,6 +107,24 @@ class TracerTest {
         });
     }
 
+    @Test
+    void testSpanStoredWithTrace() {
+        Tracer.start("req-123");
+        try (Span s = Tracer.span("DB_QUERY")) {
+            clock.advance(25);
+        }
+        Tracer.end();
+
+        TraceSpan span = store.get("req-123").get().getSpans().get(0);
+        assertEquals("DB_QUERY", span.getName());
+        assertEquals(25, span.getDuration());
+    }
+
+    @Test
+    void testSpanWithoutStart() {
+        assertThrows(IllegalStateException.class, () -> Tracer.span("DB_QUERY"));
+    }
+
     @Test
     void testThreadLocalIsolation() throws InterruptedException {
         int threadCount = 5;
@@ -180,4 +223,46 @@ class TracerTest {
         // Verify total duration
         assertEquals(143, trace.getTotalDuration());
     }
+
+    @Test
+    void testListenerNotifiedOnEnd() {
+        List<Trace> completed = new ArrayList<>();
+        TraceListener listener = completed::add;
+        Tracer.addListener(listener);
+        try {
+            Tracer.start("req-123");
+            Tracer.mark("EVENT");
+            assertTrue(completed.isEmpty());
+
+            Tracer.end();
+
+            assertEquals(1, completed.size());
+            assertEquals("req-123", completed.get(0).getTraceId());
+            assertTrue(completed.get(0).isEnded());
+        } finally {
+            Tracer.removeListener(listener);
+        }
+    }
+
+    @Test
+    void testFailingListenerDoesNotBreakEnd() {
+        List<Trace> completed = new ArrayList<>();
+        TraceListener failing = trace -> {
+            throw new RuntimeException("boom");
+        };
+        TraceListener recording = completed::add;
+        Tracer.addListener(failing);
+        Tracer.addListener(recording);
+        try {
+            Tracer.start("req-123");
+            Tracer.end();
+
+            assertTrue(store.get("req-123").isPresent());
+            assertEquals(1, completed.size());
+            assertNull(Tracer.getCurrentTrace());
+        } finally {
+            Tracer.removeListener(failing);
+            Tracer.removeListener(recording);
+        }
+    }
 }
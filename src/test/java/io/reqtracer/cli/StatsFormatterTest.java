@@ -0,0 +1,162 @@
+package io.reqtracer.cli;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.listener.ExemplarSampler;
+import io.reqtracer.stats.HeavyHitters;
+import io.reqtracer.stats.LatencyComparison;
+import io.reqtracer.stats.RollingMetrics;
+import io.reqtracer.stats.ShapeStats;
+import io.reqtracer.stats.TraceStats;
+import io.reqtracer.storage.InMemoryTraceStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatsFormatterTest {
+
+    private InMemoryTraceStore sampleStore() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        for (int i = 0; i < 10; i++) {
+            FixedClock clock = new FixedClock(1000);
+            Trace trace = new Trace("req-" + i, clock);
+            trace.mark("REQUEST_RECEIVED");
+            clock.advance(12);
+            trace.mark("AUTH_CHECK");
+            clock.advance(120);
+            trace.mark("DB_QUERY");
+            trace.end();
+            store.store(trace);
+        }
+        return store;
+    }
+
+    private TraceStats sampleStats() {
+        return TraceStats.compute(sampleStore());
+    }
+
+    @Test
+    void testFormatTable() {
+        String output = StatsFormatter.formatTable(sampleStats());
+
+        assertTrue(output.contains("TRACES: 10"));
+        assertTrue(output.contains("EVENT                    COUNT      MEAN     P50     P90     P99     MAX"));
+        assertTrue(output.contains("AUTH_CHECK                  10    12.0ms    12ms    12ms    12ms    12ms"));
+        assertTrue(output.contains("TOTAL                       10   132.0ms   132ms   132ms   132ms   132ms"));
+    }
+
+    @Test
+    void testFormatTop() {
+        RollingMetrics metrics = new RollingMetrics(new FixedClock(2000), RollingMetrics.DEFAULT_ERROR);
+        InMemoryTraceStore store = sampleStore();
+        store.listTraceIds().forEach(id -> metrics.onTraceCompleted(store.get(id).get()));
+
+        String output = StatsFormatter.formatTop(metrics);
+
+        assertTrue(output.startsWith("TOP: 1970-01-01T00:00:02Z"));
+        assertTrue(output.contains("1m              10     0.2/s        0   132ms   132ms   132ms"));
+        assertTrue(output.contains("15m             10"));
+        assertTrue(output.contains("EVENT (1m)               COUNT      MEAN     P50     P90     P99     MAX"));
+        assertTrue(output.contains("DB_QUERY                    10   120.0ms   120ms   120ms   120ms   120ms"));
+    }
+
+    @Test
+    void testFormatHeavyHitters() {
+        HeavyHitters hitters = new HeavyHitters(new FixedClock(2000), Duration.ofMinutes(1), 10);
+        for (int i = 0; i < 4; i++) {
+            FixedClock clock = new FixedClock(1000);
+            Trace trace = new Trace("req-" + i, clock);
+            trace.mark("REQUEST_RECEIVED");
+            clock.advance(i == 0 ? 300 : 100);
+            trace.mark("DB_QUERY", Map.of("table", i == 0 ? "orders" : "users"));
+            trace.end();
+            hitters.onTraceCompleted(trace);
+        }
+
+        String output = StatsFormatter.formatHeavyHitters("DB_QUERY", "table", hitters.top("DB_QUERY", "table", 10));
+
+        assertTrue(output.startsWith("TOP table BY DB_QUERY TIME"));
+        assertTrue(output.contains("VALUE                                TOTAL   SHARE     ERROR"));
+        assertTrue(output.contains("orders                               300ms   50.0%       0ms"));
+        assertTrue(output.contains("users                                300ms   50.0%       0ms"));
+        assertTrue(StatsFormatter.formatHeavyHitters("DB_QUERY", "table", List.of()).contains("(no values)"));
+    }
+
+    @Test
+    void testFormatExemplars() {
+        ExemplarSampler sampler = new ExemplarSampler(new InMemoryTraceStore());
+        for (int i = 0; i < 3; i++) {
+            FixedClock clock = new FixedClock(1000);
+            Trace trace = new Trace("req-" + i, clock);
+            trace.mark("REQUEST_RECEIVED");
+            clock.advance(i == 0 ? 700 : 12);
+            trace.mark("DB_QUERY");
+            trace.end();
+            sampler.onTraceCompleted(trace);
+        }
+
+        String output = StatsFormatter.formatExemplars("DB_QUERY", sampler.getBands("DB_QUERY"));
+
+        assertTrue(output.startsWith("EXEMPLARS: DB_QUERY"));
+        assertTrue(output.contains("BAND                  SEEN  EXEMPLARS"));
+        assertTrue(output.contains("8-15ms                   2  req-1 (12ms), req-2 (12ms)"));
+        assertTrue(output.indexOf("8-15ms") < output.indexOf("512-1023ms               1  req-0 (700ms)"));
+        assertTrue(StatsFormatter.formatExemplars("DB_QUERY", List.of()).contains("(no exemplars)"));
+    }
+
+    @Test
+    void testFormatJson() {
+        String output = StatsFormatter.formatJson(sampleStats());
+
+        assertTrue(output.startsWith("{\"traceCount\":10,"));
+        assertTrue(output.contains(
+                "\"DB_QUERY\":{\"count\":10,\"mean\":120.000,\"p50\":120,\"p90\":120,\"p99\":120,\"max\":120}"));
+        assertTrue(output.contains("\"totalDuration\":{\"count\":10,"));
+    }
+
+    @Test
+    void testFormatShapes() {
+        String output = StatsFormatter.formatShapes(ShapeStats.compute(sampleStore()));
+
+        assertTrue(output.startsWith("SHAPE "));
+        assertTrue(output.contains("(10 traces)"));
+        assertTrue(output.contains("REQUEST_RECEIVED → AUTH_CHECK → DB_QUERY"));
+        assertTrue(output.contains("DB_QUERY                    10   120.0ms   120ms   120ms   120ms   120ms"));
+    }
+
+    @Test
+    void testFormatShapesJson() {
+        String output = StatsFormatter.formatShapesJson(ShapeStats.compute(sampleStore()));
+
+        assertTrue(output.startsWith("[{\"shape\":\""));
+        assertTrue(output.contains("\"traceCount\":10,\"events\":[\"REQUEST_RECEIVED\",\"AUTH_CHECK\",\"DB_QUERY\"]"));
+    }
+
+    @Test
+    void testFormatComparison() {
+        LatencyComparison comparison = LatencyComparison.compare(sampleStats(), sampleStats(), 10.0, 0.05);
+
+        String output = StatsFormatter.formatComparison(comparison);
+
+        assertTrue(output.startsWith("COMPARISON: threshold 10.0%, alpha 0.05"));
+        assertTrue(output.contains("DB_QUERY"));
+        assertTrue(output.contains("120 → 120ms"));
+        assertTrue(output.contains("+0.0%"));
+        assertTrue(output.contains("UNCHANGED"));
+        assertFalse(output.contains("REGRESSION"));
+    }
+
+    @Test
+    void testFormatComparisonJson() {
+        LatencyComparison comparison = LatencyComparison.compare(sampleStats(), sampleStats(), 10.0, 0.05);
+
+        String output = StatsFormatter.formatComparisonJson(comparison);
+
+        assertTrue(output.startsWith("{\"thresholdPercent\":10.0,\"alpha\":0.05,\"regressions\":false,"));
+        assertTrue(output.contains("\"DB_QUERY\":{\"status\":\"UNCHANGED\",\"pValue\":1.000000,"));
+    }
+}
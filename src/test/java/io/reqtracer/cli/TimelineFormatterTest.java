@@ -1,7 +1,10 @@
 package io.reqtracer.cli;
 
 import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Span;
 import io.reqtracer.core.Trace;
+import io.reqtracer.stats.StitchedTrace;
+import io.reqtracer.stats.TraceStitcher;
 import org.junit.jupiter.api.Test;
 
 import java.util.Map;
@@ -94,4 +97,117 @@ class TimelineFormatterTest {
         String compactOutput = TimelineFormatter.formatCompact(null);
         assertEquals("No trace found", compactOutput);
     }
+
+    @Test
+    void testFormatDiff() {
+        FixedClock clockA = new FixedClock(1000);
+        Trace a = new Trace("req-a", clockA);
+        a.mark("REQUEST_RECEIVED");
+        clockA.advance(12);
+        a.mark("AUTH_CHECK");
+        clockA.advance(120);
+        a.mark("DB_QUERY");
+        a.end();
+
+        FixedClock clockB = new FixedClock(1000);
+        Trace b = new Trace("req-b", clockB);
+        b.mark("REQUEST_RECEIVED");
+        clockB.advance(14);
+        b.mark("AUTH_CHECK");
+        clockB.advance(310);
+        b.mark("DB_QUERY");
+        clockB.advance(4);
+        b.mark("CACHE_MISS");
+        b.end();
+
+        String output = TimelineFormatter.formatDiff(a, b);
+
+        assertTrue(output.startsWith("DIFF: req-a vs req-b"));
+        assertTrue(output.contains("AUTH_CHECK                12ms      14ms      +2ms"));
+        assertTrue(output.contains("DB_QUERY                 120ms     310ms    +190ms"));
+        assertTrue(output.contains("CACHE_MISS                   -       4ms         -"));
+        assertTrue(output.contains("TOTAL                    132ms     328ms    +196ms"));
+    }
+
+    @Test
+    void testFormatDiff_MatchesRepeatedEventsByOccurrence() {
+        FixedClock clock = new FixedClock(1000);
+        Trace a = new Trace("req-a", clock);
+        a.mark("DB_QUERY");
+        clock.advance(5);
+        a.mark("DB_QUERY");
+        a.end();
+
+        Trace b = new Trace("req-b", clock);
+        b.mark("DB_QUERY");
+        b.end();
+
+        String output = TimelineFormatter.formatDiff(a, b);
+
+        assertTrue(output.contains("DB_QUERY                   0ms       0ms       0ms"));
+        assertTrue(output.contains("DB_QUERY                   5ms         -         -"));
+        assertEquals("No trace found", TimelineFormatter.formatDiff(a, null));
+    }
+
+    @Test
+    void testFormatWaterfall() {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-123", clock);
+        try (Span handle = trace.span("HANDLE")) {
+            clock.advance(10);
+            try (Span db = trace.span("DB_QUERY")) {
+                clock.advance(15);
+            }
+            clock.advance(5);
+        }
+        trace.end();
+
+        String output = TimelineFormatter.formatWaterfall(trace);
+
+        assertTrue(output.startsWith("SPANS: req-123"));
+        assertTrue(output.contains("HANDLE                      +0ms  " + "█".repeat(30) + "    30ms    15ms"));
+        assertTrue(output.contains("  DB_QUERY                 +10ms  " + " ".repeat(10) + "█".repeat(15)
+                + "         15ms    15ms"));
+        assertTrue(output.contains("TOTAL: 30ms"));
+    }
+
+    @Test
+    void testFormatWaterfall_NoSpans() {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-123", clock);
+        trace.mark("EVENT");
+        trace.end();
+
+        assertTrue(TimelineFormatter.formatWaterfall(trace).contains("(no spans)"));
+        assertEquals("No trace found", TimelineFormatter.formatWaterfall(null));
+    }
+
+    @Test
+    void testFormatStitched() {
+        FixedClock clock = new FixedClock(1000);
+        FixedClock remoteClock = new FixedClock(9000); // another node, clock unrelated
+        Trace gateway = new Trace("req-1", clock);
+        Trace orders = new Trace("ord-1", remoteClock);
+        clock.advance(10);
+        try (Span call = gateway.span("CALL_ORDERS")) {
+            orders.setParent(gateway.getContext());
+            clock.advance(80);
+            remoteClock.advance(60);
+            orders.end();
+        }
+        clock.advance(10);
+        gateway.end();
+
+        StitchedTrace stitched = new TraceStitcher().add("gateway", gateway).add("orders", orders)
+                .stitch("req-1").get();
+        String output = TimelineFormatter.formatStitched(stitched);
+
+        assertTrue(output.startsWith("STITCHED: req-1 (2 traces, 2 services)"));
+        assertTrue(output.contains("gateway                     +0ms  " + "█".repeat(30)
+                + "   100ms    20ms     0ms  req-1"));
+        assertTrue(output.contains("  orders                   +20ms  " + " ".repeat(6) + "█".repeat(18)
+                + " ".repeat(6) + "    60ms    60ms    20ms  ord-1"));
+        assertTrue(output.contains("network                       20ms   20.0%"));
+        assertTrue(output.contains("TOTAL: 100ms"));
+    }
 }
@@ -0,0 +1,74 @@
+package io.reqtracer.core;
+
+import java.util.Map;
+
+/**
+ * Canned traces shared by the listener, stats and storage tests.
+ */
+public final class TestTraces {
+
+    public static final long MINUTE = 60_000;
+
+    private TestTraces() {
+    }
+
+    /**
+     * A request starting at the given time: REQUEST_RECEIVED, AUTH_CHECK 2ms
+     * later, then a DB_QUERY taking the given time.
+     */
+    public static Trace request(String traceId, long startTime, long dbMillis) {
+        FixedClock clock = new FixedClock(startTime);
+        Trace trace = new Trace(traceId, clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(2);
+        trace.mark("AUTH_CHECK");
+        clock.advance(dbMillis);
+        trace.mark("DB_QUERY");
+        trace.end();
+        return trace;
+    }
+
+    /**
+     * A request ending at the given time: REQUEST_RECEIVED, then a DB_QUERY
+     * with the metadata taking the given time.
+     */
+    public static Trace query(String traceId, long endTime, long dbMillis, Map<String, String> metadata) {
+        FixedClock clock = new FixedClock(endTime - dbMillis);
+        Trace trace = new Trace(traceId, clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(dbMillis);
+        trace.mark("DB_QUERY", metadata);
+        trace.end();
+        return trace;
+    }
+
+    /**
+     * A request whose REQUEST_RECEIVED carries the metadata, followed by a
+     * 10ms DB_QUERY on each table.
+     */
+    public static Trace tables(String traceId, Map<String, String> metadata, String... tables) {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace(traceId, clock);
+        trace.mark("REQUEST_RECEIVED", metadata);
+        for (String table : tables) {
+            clock.advance(10);
+            trace.mark("DB_QUERY", Map.of("table", table));
+        }
+        trace.end();
+        return trace;
+    }
+
+    /**
+     * A 5ms request whose REQUEST_RECEIVED carries the metadata, ending with
+     * RESPONSE_SENT.
+     */
+    public static Trace tagged(String traceId, long startTime, Map<String, String> metadata) {
+        FixedClock clock = new FixedClock(startTime);
+        Trace trace = new Trace(traceId, clock);
+        trace.mark("REQUEST_RECEIVED", metadata);
+        clock.advance(5);
+        trace.mark("RESPONSE_SENT");
+        trace.end();
+        return trace;
+    }
+}
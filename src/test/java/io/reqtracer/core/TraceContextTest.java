@@ -0,0 +1,48 @@
+package io.reqtracer.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceContextTest {
+
+    @Test
+    void testHeaderRoundTrip() {
+        TraceContext context = new TraceContext("00f067aa0ba902b7", 2);
+
+        assertEquals("00f067aa0ba902b7:2:1", context.toHeader());
+        assertEquals(context, TraceContext.parse(context.toHeader()).get());
+        assertEquals(context, TraceContext.parse(" 00f067aa0ba902b7:2:1 ").get());
+        assertEquals(TraceContext.NO_SPAN, TraceContext.parse("req:1:-1:1").get().getSpanIndex());
+        assertEquals("req:1", TraceContext.parse("req:1:-1:1").get().getTraceId());
+    }
+
+    @Test
+    void testSampledFlag() {
+        TraceContext unsampled = new TraceContext("req-1", TraceContext.NO_SPAN, false);
+
+        assertEquals("req-1:-1:0", unsampled.toHeader());
+        assertFalse(TraceContext.parse(unsampled.toHeader()).get().isSampled());
+        assertNotEquals(new TraceContext("req-1", TraceContext.NO_SPAN), unsampled);
+
+        // Headers without the flag come from callers that only sent sampled traces
+        TraceContext legacy = TraceContext.parse("00f067aa0ba902b7:2").get();
+        assertEquals(new TraceContext("00f067aa0ba902b7", 2), legacy);
+        assertTrue(legacy.isSampled());
+        assertEquals("req:1", TraceContext.parse("req:1:-1").get().getTraceId());
+        assertFalse(TraceContext.parse("req-1:3:x").isPresent());
+    }
+
+    @Test
+    void testMalformedHeadersIgnored() {
+        assertFalse(TraceContext.parse(null).isPresent());
+        assertFalse(TraceContext.parse("").isPresent());
+        assertFalse(TraceContext.parse("req-1").isPresent());
+        assertFalse(TraceContext.parse(":3").isPresent());
+        assertFalse(TraceContext.parse("req-1:").isPresent());
+        assertFalse(TraceContext.parse("req-1:x").isPresent());
+        assertFalse(TraceContext.parse("req-1:-2").isPresent());
+        assertFalse(TraceContext.parse("req 1:0").isPresent());
+        assertThrows(IllegalArgumentException.class, () -> new TraceContext("", 0));
+    }
+}
@@ -0,0 +1,139 @@
+package io.reqtracer.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceIdGeneratorTest {
+
+    @Test
+    void testIdsEmbedTimestampAndNode() {
+        FixedClock clock = new FixedClock(1_700_000_000_000L);
+        TraceIdGenerator generator = new TraceIdGenerator(42, clock);
+
+        long id = generator.next();
+
+        assertTrue(id > 0);
+        assertEquals(1_700_000_000_000L, TraceIdGenerator.timestampOf(id));
+        assertEquals(42, TraceIdGenerator.nodeOf(id));
+    }
+
+    @Test
+    void testIdsIncreaseWithinAndAcrossMillis() {
+        FixedClock clock = new FixedClock(1000);
+        TraceIdGenerator generator = new TraceIdGenerator(1, clock);
+
+        long previous = generator.next();
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 1000 == 0) {
+                clock.advance(1);
+            }
+            long id = generator.next();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void testCounterOverflowBorrowsNextMilli() {
+        FixedClock clock = new FixedClock(1000);
+        TraceIdGenerator generator = new TraceIdGenerator(1, clock);
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            ids.add(generator.next());
+        }
+
+        assertEquals(5000, ids.size());
+        // 2048 per millisecond: 5000 IDs span three milliseconds
+        assertEquals(1002, TraceIdGenerator.timestampOf(generator.next()));
+    }
+
+    @Test
+    void testClockSteppingBackDoesNotRepeat() {
+        FixedClock clock = new FixedClock(5000);
+        TraceIdGenerator generator = new TraceIdGenerator(1, clock);
+        long before = generator.next();
+
+        clock.setTime(4000);
+
+        assertTrue(generator.next() > before);
+    }
+
+    @Test
+    void testConcurrentGenerationIsUnique() throws Exception {
+        TraceIdGenerator generator = new TraceIdGenerator(3);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    ids.add(generator.next());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(400_000, ids.size());
+    }
+
+    @Test
+    void testInvalidNodeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TraceIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new TraceIdGenerator(TraceIdGenerator.MAX_NODE_ID + 1));
+    }
+
+    @Test
+    void testDefaultNodeIdFromProperty() {
+        String previous = System.getProperty(TraceIdGenerator.NODE_PROPERTY);
+        try {
+            System.setProperty(TraceIdGenerator.NODE_PROPERTY, "17");
+            assertEquals(17, TraceIdGenerator.defaultNodeId());
+
+            System.setProperty(TraceIdGenerator.NODE_PROPERTY, "1024");
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    TraceIdGenerator::defaultNodeId);
+            assertTrue(e.getMessage().contains("reqtracer.node"));
+            System.setProperty(TraceIdGenerator.NODE_PROPERTY, "node-1");
+            assertThrows(IllegalArgumentException.class, TraceIdGenerator::defaultNodeId);
+
+            System.clearProperty(TraceIdGenerator.NODE_PROPERTY);
+            int nodeId = TraceIdGenerator.defaultNodeId();
+            assertTrue(nodeId >= 0 && nodeId <= TraceIdGenerator.MAX_NODE_ID);
+        } finally {
+            if (previous != null) {
+                System.setProperty(TraceIdGenerator.NODE_PROPERTY, previous);
+            } else {
+                System.clearProperty(TraceIdGenerator.NODE_PROPERTY);
+            }
+        }
+    }
+
+    @Test
+    void testRenderingRoundTrip() {
+        long id = new TraceIdGenerator(9).next();
+
+        String rendered = TraceId.toString(id);
+
+        assertEquals(16, rendered.length());
+        assertEquals(id, TraceId.parse(rendered));
+        assertEquals(TraceId.NONE, TraceId.parse("req-123"));
+        assertEquals(TraceId.NONE, TraceId.parse("00000000000000FF")); // not canonical
+        assertEquals(TraceId.NONE, TraceId.parse(null));
+        assertEquals("ffffffffffffffff", TraceId.toString(-1L));
+        assertEquals(-1L, TraceId.parse("ffffffffffffffff"));
+    }
+}
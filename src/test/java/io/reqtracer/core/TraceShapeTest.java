@@ -0,0 +1,62 @@
+package io.reqtracer.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceShapeTest {
+
+    private List<TraceEvent> events(String... names) {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req", clock);
+        for (String name : names) {
+            clock.advance(5);
+            trace.mark(name);
+        }
+        return trace.getEvents();
+    }
+
+    @Test
+    void testSameNamesSameShape() {
+        TraceShape a = TraceShape.of(events("REQUEST_RECEIVED", "AUTH_CHECK", "DB_QUERY"));
+        TraceShape b = TraceShape.of(events("REQUEST_RECEIVED", "AUTH_CHECK", "DB_QUERY"));
+
+        assertEquals(a, b);
+        assertEquals(a.getFingerprint(), b.getFingerprint());
+        assertEquals(a.getId(), b.getId());
+        assertEquals(16, a.getId().length());
+        assertEquals("REQUEST_RECEIVED → AUTH_CHECK → DB_QUERY", a.toString());
+    }
+
+    @Test
+    void testOrderMatters() {
+        TraceShape a = TraceShape.of(events("AUTH_CHECK", "DB_QUERY"));
+        TraceShape b = TraceShape.of(events("DB_QUERY", "AUTH_CHECK"));
+
+        assertNotEquals(a, b);
+        assertNotEquals(a.getFingerprint(), b.getFingerprint());
+    }
+
+    @Test
+    void testNameBoundariesMatter() {
+        assertNotEquals(TraceShape.fingerprint(events("AB")), TraceShape.fingerprint(events("A", "B")));
+    }
+
+    @Test
+    void testMatches() {
+        TraceShape shape = TraceShape.of(events("A", "B"));
+
+        assertTrue(shape.matches(events("A", "B")));
+        assertFalse(shape.matches(events("A")));
+        assertFalse(shape.matches(events("A", "C")));
+    }
+
+    @Test
+    void testFingerprintMatchesShape() {
+        List<TraceEvent> events = events("A", "B", "C");
+
+        assertEquals(TraceShape.fingerprint(events), TraceShape.of(events).getFingerprint());
+    }
+}
@@ -128,4 +128,119 @@ class TraceTest {
 
         assertEquals(firstEndTime, trace.getEndTime());
     }
+
+    @Test
+    void testCapturesStartingThread() {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-123", clock);
+
+        assertEquals(Thread.currentThread().getId(), trace.getThreadId());
+        assertEquals(Thread.currentThread().getName(), trace.getThreadName());
+    }
+
+    @Test
+    void testNestedSpansSelfAndChildTime() {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-123", clock);
+
+        try (Span handle = trace.span("HANDLE")) {
+            clock.advance(5);
+            try (Span auth = trace.span("AUTH_CHECK")) {
+                clock.advance(10);
+            }
+            try (Span db = trace.span("DB_QUERY")) {
+                clock.advance(30);
+            }
+            clock.advance(5);
+        }
+        trace.end();
+
+        List<TraceSpan> roots = trace.getSpans();
+        assertEquals(1, roots.size());
+        TraceSpan handle = roots.get(0);
+        assertEquals("HANDLE", handle.getName());
+        assertEquals(50, handle.getDuration());
+        assertEquals(40, handle.getChildTime());
+        assertEquals(10, handle.getSelfTime());
+
+        List<TraceSpan> children = handle.getChildren();
+        assertEquals("AUTH_CHECK", children.get(0).getName());
+        assertEquals(1005, children.get(0).getStartTime());
+        assertEquals(10, children.get(0).getDuration());
+        assertEquals("DB_QUERY", children.get(1).getName());
+        assertEquals(30, children.get(1).getSelfTime());
+    }
+
+    @Test
+    void testClosingOuterSpanClosesInner() {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-123", clock);
+
+        Span outer = trace.span("OUTER");
+        trace.span("LEAKED");
+        clock.advance(20);
+        outer.close();
+        outer.close(); // second close is a no-op
+
+        TraceSpan span = trace.getSpans().get(0);
+        assertEquals(20, span.getDuration());
+        assertEquals(20, span.getChildren().get(0).getDuration());
+        assertEquals(0, span.getSelfTime());
+    }
+
+    @Test
+    void testEndClosesOpenSpans() {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-123", clock);
+
+        assertFalse(trace.hasSpans());
+        assertTrue(trace.getSpans().isEmpty());
+
+        trace.span("OPEN");
+        clock.advance(15);
+        assertFalse(trace.getSpans().get(0).isEnded());
+
+        trace.end();
+
+        assertTrue(trace.hasSpans());
+        assertEquals(Long.valueOf(1015), trace.getSpans().get(0).getEndTime());
+    }
+
+    @Test
+    void testRestoreKeepsSpans() {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-123", clock);
+        try (Span a = trace.span("A")) {
+            try (Span b = trace.span("B")) {
+                clock.advance(7);
+            }
+        }
+        trace.end();
+
+        Trace restored = Trace.restore("req-123", trace.getStartTime(), trace.getEndTime(), trace.getThreadId(),
+                trace.getThreadName(), trace.getEvents(), trace.getSpans());
+
+        TraceSpan a = restored.getSpans().get(0);
+        assertEquals("A", a.getName());
+        assertEquals("B", a.getChildren().get(0).getName());
+        assertEquals(7, a.getChildren().get(0).getDuration());
+    }
+
+    @Test
+    void testContextPointsAtInnermostOpenSpan() {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-123", clock);
+        assertEquals(new TraceContext("req-123", TraceContext.NO_SPAN), trace.getContext());
+
+        try (Span a = trace.span("A")) {
+            try (Span b = trace.span("B")) {
+                // B closes before C opens, so C is the third span in start order
+            }
+            try (Span c = trace.span("C")) {
+                assertEquals(2, trace.getContext().getSpanIndex());
+            }
+            assertEquals(0, trace.getContext().getSpanIndex());
+        }
+        assertNull(trace.getParent());
+    }
 }
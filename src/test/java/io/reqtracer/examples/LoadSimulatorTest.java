@@ -0,0 +1,96 @@
+package io.reqtracer.examples;
+
+import io.reqtracer.Tracer;
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.examples.LoadSimulator.RequestShape;
+import io.reqtracer.examples.LoadSimulator.Result;
+import io.reqtracer.examples.LoadSimulator.Work;
+import io.reqtracer.storage.InMemoryTraceStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadSimulatorTest {
+
+    @Test
+    void testRunsAtFixedRate() throws InterruptedException {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        Result result = new LoadSimulator(List.of(RequestShape.of("REQUEST_RECEIVED", 0, "DB_QUERY", 100)))
+                .withRate(2_000)
+                .withDuration(Duration.ofMillis(250))
+                .withThreads(4)
+                .withWork(Work.NONE)
+                .withStore(store)
+                .run();
+
+        assertEquals(500, result.getRequests());
+        assertEquals(500, store.listTraceIds().size());
+        assertEquals(500, result.getLatency().getCount());
+        assertTrue(result.getTracerOverhead().getPercentile(50) > 0);
+        assertTrue(result.format().contains("Throughput:"));
+    }
+
+    @Test
+    void testRestoresTracerStore() throws InterruptedException {
+        InMemoryTraceStore original = new InMemoryTraceStore();
+        Tracer.setStore(original);
+
+        new LoadSimulator(List.of(RequestShape.of("A", 0)))
+                .withRate(1_000)
+                .withDuration(Duration.ofMillis(20))
+                .withWork(Work.NONE)
+                .run();
+
+        assertSame(original, Tracer.getStore());
+    }
+
+    @Test
+    void testCoordinatedOmissionCorrection() throws InterruptedException {
+        // One worker, 2ms of work per request, a request every 1ms: the queue
+        // grows, which only the corrected latency shows
+        Result result = new LoadSimulator(List.of(RequestShape.of("WORK", 2_000)))
+                .withRate(1_000)
+                .withDuration(Duration.ofMillis(100))
+                .withThreads(1)
+                .withWork(Work.SPIN)
+                .run();
+
+        long corrected = result.getLatency().getPercentile(99);
+        long uncorrected = result.getUncorrectedLatency().getPercentile(99);
+        assertTrue(uncorrected < 10_000, "uncorrected p99 " + uncorrected + "us");
+        assertTrue(corrected > 5 * uncorrected, "corrected p99 " + corrected + "us");
+    }
+
+    @Test
+    void testReplayUsesRecordedDeltas() {
+        FixedClock clock = new FixedClock(0);
+        Trace trace = new Trace("req-1", clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(40);
+        trace.mark("DB_QUERY", Map.of("table", "users"));
+        trace.end();
+
+        RequestShape shape = RequestShape.replay(trace, 2.0);
+
+        assertEquals(2, shape.getEventCount());
+        assertEquals(0, shape.getWorkNanos(0));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), shape.getWorkNanos(1));
+        assertThrows(IllegalArgumentException.class, () -> RequestShape.replay(trace, 0));
+    }
+
+    @Test
+    void testRejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new LoadSimulator(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> RequestShape.of("A"));
+        LoadSimulator simulator = new LoadSimulator(List.of(RequestShape.of("A", 0)));
+        assertThrows(IllegalArgumentException.class, () -> simulator.withRate(0));
+        assertThrows(IllegalArgumentException.class, () -> simulator.withDuration(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> simulator.withThreads(0));
+    }
+}
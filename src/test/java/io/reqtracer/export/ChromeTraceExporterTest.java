@@ -0,0 +1,106 @@
+package io.reqtracer.export;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.storage.InMemoryTraceStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChromeTraceExporterTest {
+
+    private Trace sampleTrace(String traceId, FixedClock clock) {
+        Trace trace = new Trace(traceId, clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(12);
+        trace.mark("AUTH_CHECK", Map.of("user", "john"));
+        clock.advance(8);
+        trace.end();
+        return trace;
+    }
+
+    @Test
+    void testExportSingleTrace() throws IOException {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = sampleTrace("req-123", clock);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ChromeTraceExporter exporter = new ChromeTraceExporter(bytes)) {
+            exporter.write(trace);
+        }
+        String json = bytes.toString(StandardCharsets.UTF_8);
+
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(json.trim().endsWith("]}"));
+
+        // Thread metadata
+        assertTrue(json.contains("\"name\":\"thread_name\",\"ph\":\"M\""));
+
+        // Request slice: starts at 1000ms, lasts 20ms
+        assertTrue(json.contains("{\"name\":\"req-123\",\"cat\":\"request\",\"ph\":\"X\""));
+        assertTrue(json.contains("\"ts\":1000000,\"dur\":20000"));
+
+        // First event is an instant, second a 12ms slice ending at its timestamp
+        assertTrue(json.contains("{\"name\":\"REQUEST_RECEIVED\",\"cat\":\"event\",\"ph\":\"i\""));
+        assertTrue(json.contains("\"ts\":1000000,\"dur\":12000,\"args\":{\"user\":\"john\"}"));
+    }
+
+    @Test
+    void testThreadAnnouncedOnce() throws IOException {
+        FixedClock clock = new FixedClock(1000);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ChromeTraceExporter exporter = new ChromeTraceExporter(bytes)) {
+            exporter.write(sampleTrace("req-1", clock));
+            exporter.write(sampleTrace("req-2", clock));
+        }
+        String json = bytes.toString(StandardCharsets.UTF_8);
+
+        assertEquals(json.indexOf("thread_name"), json.lastIndexOf("thread_name"));
+    }
+
+    @Test
+    void testEscaping() throws IOException {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-\"quoted\"", clock);
+        trace.mark("EVENT", Map.of("path", "C:\\tmp\nnext"));
+        trace.end();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ChromeTraceExporter exporter = new ChromeTraceExporter(bytes)) {
+            exporter.write(trace);
+        }
+        String json = bytes.toString(StandardCharsets.UTF_8);
+
+        assertTrue(json.contains("\"req-\\\"quoted\\\"\""));
+        assertTrue(json.contains("\"C:\\\\tmp\\nnext\""));
+    }
+
+    @Test
+    void testWriteAllFiltersByTimeRange() throws IOException {
+        FixedClock clock = new FixedClock(1000);
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        store.store(sampleTrace("early", clock));
+        clock.setTime(5000);
+        store.store(sampleTrace("middle", clock));
+        clock.setTime(9000);
+        store.store(sampleTrace("late", clock));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int count;
+        try (ChromeTraceExporter exporter = new ChromeTraceExporter(bytes)) {
+            count = exporter.writeAll(store, 2000, 9000);
+        }
+        String json = bytes.toString(StandardCharsets.UTF_8);
+
+        assertEquals(1, count);
+        assertTrue(json.contains("\"middle\""));
+        assertFalse(json.contains("\"early\""));
+        assertFalse(json.contains("\"late\""));
+    }
+}
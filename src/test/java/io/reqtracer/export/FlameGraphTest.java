@@ -0,0 +1,99 @@
+package io.reqtracer.export;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.storage.InMemoryTraceStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlameGraphTest {
+
+    private Trace trace(String traceId, long authMillis, long dbMillis) {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace(traceId, clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(authMillis);
+        trace.mark("AUTH_CHECK");
+        clock.advance(dbMillis);
+        trace.mark("DB_QUERY");
+        trace.end();
+        return trace;
+    }
+
+    private InMemoryTraceStore store() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        for (int i = 0; i < 10; i++) {
+            store.store(trace("req-" + i, 10, 100));
+        }
+        return store;
+    }
+
+    @Test
+    void testFoldedOutput() throws IOException {
+        FlameGraph graph = FlameGraph.build(store());
+        StringWriter out = new StringWriter();
+        graph.writeFolded(out);
+
+        String folded = out.toString();
+        assertEquals(10, graph.getTraceCount());
+        assertTrue(folded.contains("REQUEST_RECEIVED → AUTH_CHECK → DB_QUERY;AUTH_CHECK 100\n"));
+        assertTrue(folded.contains("REQUEST_RECEIVED → AUTH_CHECK → DB_QUERY;DB_QUERY 1000\n"));
+        // Zero-time frames are omitted
+        assertFalse(folded.contains(";REQUEST_RECEIVED "));
+    }
+
+    @Test
+    void testFrameSeparatorEscaped() throws IOException {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req", clock);
+        trace.mark("START");
+        clock.advance(5);
+        trace.mark("A;B");
+        FlameGraph graph = new FlameGraph();
+        graph.add(trace);
+
+        StringWriter out = new StringWriter();
+        graph.writeFolded(out);
+
+        assertEquals("START → A:B;A:B 5\n", out.toString());
+    }
+
+    @Test
+    void testSvgOutput() throws IOException {
+        FlameGraph graph = FlameGraph.build(store());
+        StringWriter out = new StringWriter();
+        graph.writeSvg(out, 1000);
+
+        String svg = out.toString();
+        assertTrue(svg.startsWith("<?xml"));
+        assertTrue(svg.trim().endsWith("</svg>"));
+        assertTrue(svg.contains("<title>all (1100 ms, 100.00%)</title>"));
+        assertTrue(svg.contains("<title>DB_QUERY (1000 ms, 90.91%)</title>"));
+        assertTrue(svg.contains("(10 traces)"));
+        assertThrows(IllegalArgumentException.class, () -> graph.writeSvg(new StringWriter(), 0));
+    }
+
+    @Test
+    void testShapeCountBounded() throws IOException {
+        FlameGraph graph = new FlameGraph();
+        FixedClock clock = new FixedClock(1000);
+        for (int i = 0; i < FlameGraph.MAX_SHAPES + 5; i++) {
+            Trace trace = new Trace("req-" + i, clock);
+            trace.mark("START");
+            clock.advance(1);
+            trace.mark("EVENT_" + i);
+            graph.add(trace);
+        }
+
+        StringWriter out = new StringWriter();
+        graph.writeFolded(out);
+
+        assertEquals(FlameGraph.MAX_SHAPES + 5, graph.getTraceCount());
+        assertEquals(FlameGraph.MAX_SHAPES + 5, out.toString().split("\n").length);
+        assertTrue(out.toString().contains(FlameGraph.OTHER_SHAPES + ";EVENT_" + (FlameGraph.MAX_SHAPES + 4) + " 1"));
+    }
+}
@@ -0,0 +1,69 @@
+package io.reqtracer.export;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerfettoTraceExporterTest {
+
+    @Test
+    void testPacketsAreWellFormed() throws IOException {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-123", clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(12);
+        trace.mark("AUTH_CHECK", Map.of("user", "john"));
+        trace.end();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PerfettoTraceExporter exporter = new PerfettoTraceExporter(bytes)) {
+            exporter.write(trace);
+        }
+
+        List<byte[]> packets = readPackets(bytes.toByteArray());
+
+        // Track descriptor, request begin, instant, slice begin/end, request end
+        assertEquals(6, packets.size());
+
+        String all = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(all.contains("req-123"));
+        assertTrue(all.contains("AUTH_CHECK"));
+        assertTrue(all.contains("john"));
+        assertTrue(all.contains(Thread.currentThread().getName()));
+    }
+
+    /**
+     * Splits the stream into TracePacket payloads, verifying each top-level
+     * field is field 1, length-delimited, with an in-bounds length.
+     */
+    private List<byte[]> readPackets(byte[] data) {
+        List<byte[]> packets = new ArrayList<>();
+        int pos = 0;
+        while (pos < data.length) {
+            assertEquals((1 << 3) | 2, data[pos++]);
+            long length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                length |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            assertTrue(pos + length <= data.length);
+            byte[] packet = new byte[(int) length];
+            System.arraycopy(data, pos, packet, 0, (int) length);
+            packets.add(packet);
+            pos += (int) length;
+        }
+        return packets;
+    }
+}
@@ -0,0 +1,102 @@
+package io.reqtracer.jfr;
+
+import io.reqtracer.Tracer;
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.storage.InMemoryTraceStore;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecorderEventsTest {
+
+    private FixedClock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = new FixedClock(1000);
+        Tracer.setClock(clock);
+        Tracer.setStore(new InMemoryTraceStore());
+        Tracer.setFlightRecorderEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Tracer.setFlightRecorderEnabled(false);
+        Tracer.clear();
+    }
+
+    private void traceRequest(String traceId) {
+        Tracer.start(traceId);
+        Tracer.mark("REQUEST_RECEIVED");
+        clock.advance(12);
+        Tracer.mark("DB_QUERY", Map.of("table", "users"));
+        clock.advance(3);
+        Tracer.end();
+    }
+
+    private static List<RecordedEvent> record(Path dir, Runnable work) throws IOException {
+        Path file = dir.resolve("trace.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("io.reqtracer.TraceStart");
+            recording.enable("io.reqtracer.Mark");
+            recording.enable("io.reqtracer.TraceEnd");
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().startsWith("io.reqtracer."))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testEmitsStartMarkAndEnd(@TempDir Path dir) throws IOException {
+        List<RecordedEvent> events = record(dir, () -> traceRequest("req-jfr"));
+
+        List<String> types = events.stream().map(e -> e.getEventType().getName()).collect(Collectors.toList());
+        assertEquals(List.of("io.reqtracer.TraceStart", "io.reqtracer.Mark", "io.reqtracer.Mark",
+                "io.reqtracer.TraceEnd"), types);
+
+        RecordedEvent query = events.get(2);
+        assertEquals("req-jfr", query.getString("traceId"));
+        assertEquals("DB_QUERY", query.getString("name"));
+        assertEquals(Duration.ofMillis(12), query.getDuration("delta"));
+        assertEquals(Duration.ofMillis(12), query.getDuration("elapsed"));
+        assertEquals("table=users", query.getString("metadata"));
+        assertEquals(Thread.currentThread().getName(), query.getThread().getJavaName());
+
+        RecordedEvent end = events.get(3);
+        assertEquals(Duration.ofMillis(15), end.getDuration("traceDuration"));
+        assertEquals(2, end.getInt("eventCount"));
+    }
+
+    @Test
+    void testNothingEmittedWhenDisabled(@TempDir Path dir) throws IOException {
+        Tracer.setFlightRecorderEnabled(false);
+
+        List<RecordedEvent> events = record(dir, () -> traceRequest("req-off"));
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void testNotRecordingWithoutActiveRecording() {
+        assertFalse(FlightRecorderEvents.isRecording());
+        traceRequest("req-idle");
+        assertTrue(Tracer.getStore().get("req-idle").isPresent());
+    }
+}
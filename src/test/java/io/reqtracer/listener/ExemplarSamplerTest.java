@@ -0,0 +1,152 @@
+package io.reqtracer.listener;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.listener.ExemplarSampler.Band;
+import io.reqtracer.listener.ExemplarSampler.Exemplar;
+import io.reqtracer.storage.InMemoryTraceStore;
+import io.reqtracer.storage.PartitionedTraceStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static io.reqtracer.core.TestTraces.MINUTE;
+import static io.reqtracer.core.TestTraces.request;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExemplarSamplerTest {
+
+    /** IDs of every trace some reservoir holds. */
+    private static Set<String> held(ExemplarSampler sampler) {
+        Set<String> held = new HashSet<>();
+        for (String name : sampler.getEventNames()) {
+            for (Band band : sampler.getBands(name)) {
+                band.getExemplars().forEach(e -> held.add(e.getTraceId()));
+            }
+        }
+        return held;
+    }
+
+    @Test
+    void testBands() {
+        assertEquals(0, ExemplarSampler.band(0));
+        assertEquals(1, ExemplarSampler.band(1));
+        assertEquals(2, ExemplarSampler.band(2));
+        assertEquals(2, ExemplarSampler.band(3));
+        assertEquals(8, ExemplarSampler.band(128));
+        assertEquals(8, ExemplarSampler.band(255));
+        assertEquals(9, ExemplarSampler.band(256));
+        assertEquals(ExemplarSampler.BANDS - 1, ExemplarSampler.band(Long.MAX_VALUE));
+
+        assertEquals(128, ExemplarSampler.bandLowerBound(8));
+        assertEquals(255, ExemplarSampler.bandUpperBound(8));
+        assertEquals("0ms", ExemplarSampler.bandLabel(0));
+        assertEquals("1ms", ExemplarSampler.bandLabel(1));
+        assertEquals("128-255ms", ExemplarSampler.bandLabel(8));
+        for (int b = 1; b < ExemplarSampler.BANDS - 1; b++) {
+            assertEquals(b, ExemplarSampler.band(ExemplarSampler.bandLowerBound(b)));
+            assertEquals(b, ExemplarSampler.band(ExemplarSampler.bandUpperBound(b)));
+        }
+    }
+
+    @Test
+    void testKeepsBoundedSamplePerBandAndPinsIt() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        ExemplarSampler sampler = new ExemplarSampler(store, 2);
+        for (int i = 0; i < 1000; i++) {
+            Trace trace = request("fast-" + i, i, 10 + i % 5);
+            store.store(trace);
+            sampler.onTraceCompleted(trace);
+        }
+        Trace slow = request("slow", 1000, 700);
+        store.store(slow);
+        sampler.onTraceCompleted(slow);
+
+        List<Band> bands = sampler.getBands("DB_QUERY");
+        assertEquals(2, bands.size());
+        assertEquals("8-15ms", ExemplarSampler.bandLabel(bands.get(0).getIndex()));
+        assertEquals(1000, bands.get(0).getCount());
+        assertEquals(2, bands.get(0).getExemplars().size());
+        for (Exemplar exemplar : bands.get(0).getExemplars()) {
+            assertTrue(exemplar.getTraceId().startsWith("fast-"));
+            assertTrue(exemplar.getValue() >= 10 && exemplar.getValue() <= 14);
+        }
+
+        List<Exemplar> slowBand = sampler.getExemplars("DB_QUERY", 600);
+        assertEquals(1, slowBand.size());
+        assertEquals("slow", slowBand.get(0).getTraceId());
+        assertEquals(700, slowBand.get(0).getValue());
+        assertTrue(sampler.getExemplars("DB_QUERY", 100).isEmpty());
+        assertTrue(sampler.getExemplars("MISSING", 10).isEmpty());
+
+        // Exactly the traces held by a reservoir slot stay pinned
+        assertTrue(held(sampler).contains("slow"));
+        assertEquals(held(sampler), new HashSet<>(store.listPinnedTraceIds()));
+    }
+
+    @Test
+    void testSampleIsRoughlyUniform() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        int firstHalf = 0;
+        for (int run = 0; run < 200; run++) {
+            ExemplarSampler sampler = new ExemplarSampler(store, 1);
+            for (int i = 0; i < 100; i++) {
+                sampler.onTraceCompleted(request("req-" + i, i, 20));
+            }
+            String kept = sampler.getExemplars("DB_QUERY", 20).get(0).getTraceId();
+            if (Integer.parseInt(kept.substring(4)) < 50) {
+                firstHalf++;
+            }
+        }
+        assertTrue(firstHalf > 60 && firstHalf < 140, "first half kept " + firstHalf + "/200");
+    }
+
+    @Test
+    void testSharesPinsWithOutlierDetector() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        ExemplarSampler sampler = new ExemplarSampler(store, 1);
+        Trace slow = request("slow", 0, 700);
+        store.store(slow);
+        sampler.onTraceCompleted(slow);
+        assertTrue(store.pin("slow")); // e.g. an outlier detector
+
+        // Replacing the exemplar releases only the sampler's pin
+        Trace next = request("next", 1, 600);
+        store.store(next);
+        for (int i = 0; i < 100_000 && held(sampler).contains("slow"); i++) {
+            sampler.onTraceCompleted(next);
+        }
+        store.expireBefore(10 * MINUTE);
+        assertTrue(store.get("slow").isPresent());
+
+        store.unpin("slow");
+        store.expireBefore(10 * MINUTE);
+        assertFalse(store.get("slow").isPresent());
+    }
+
+    @Test
+    void testTotalAndEventNameCap() {
+        ExemplarSampler sampler = new ExemplarSampler(new InMemoryTraceStore());
+        for (int i = 0; i < ExemplarSampler.MAX_EVENT_NAMES * 2; i++) {
+            FixedClock clock = new FixedClock(i);
+            Trace trace = new Trace("req-" + i, clock);
+            clock.advance(5);
+            trace.mark("EVENT_" + i);
+            trace.end();
+            sampler.onTraceCompleted(trace);
+        }
+
+        assertEquals(ExemplarSampler.MAX_EVENT_NAMES, sampler.getEventNames().size());
+        assertTrue(sampler.getEventNames().contains(ExemplarSampler.TOTAL));
+        assertEquals(ExemplarSampler.MAX_EVENT_NAMES * 2,
+                sampler.getBands(ExemplarSampler.TOTAL).get(0).getCount());
+    }
+
+    @Test
+    void testRejectsInvalidArguments() {
+        assertThrows(NullPointerException.class, () -> new ExemplarSampler(null));
+        assertThrows(IllegalArgumentException.class, () -> new ExemplarSampler(new InMemoryTraceStore(), 0));
+    }
+}
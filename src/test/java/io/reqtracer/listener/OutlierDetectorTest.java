@@ -0,0 +1,160 @@
+package io.reqtracer.listener;
+
+import io.reqtracer.RequestTracer;
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.listener.OutlierDetector.Outlier;
+import io.reqtracer.storage.InMemoryTraceStore;
+import io.reqtracer.storage.PartitionedTraceStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static io.reqtracer.core.TestTraces.MINUTE;
+import static io.reqtracer.core.TestTraces.request;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutlierDetectorTest {
+
+    private static void feed(OutlierDetector detector, InMemoryTraceStore store, Trace trace) {
+        store.store(trace);
+        detector.onTraceCompleted(trace);
+    }
+
+    @Test
+    void testFlagsSlowEventAndPinsTrace() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        OutlierDetector detector = new OutlierDetector(store);
+        for (int i = 0; i < 100; i++) {
+            feed(detector, store, request("req-" + i, i, 18 + i % 5));
+        }
+        assertTrue(detector.getOutliers().isEmpty());
+        assertEquals(20, detector.getBaseline("DB_QUERY").getAsDouble(), 2);
+
+        feed(detector, store, request("req-slow", 100, 200));
+
+        List<Outlier> outliers = detector.getOutliers();
+        assertEquals(1, outliers.size());
+        Outlier outlier = outliers.get(0);
+        assertEquals("req-slow", outlier.getTraceId());
+        assertEquals("DB_QUERY", outlier.getEventName());
+        assertEquals(200, outlier.getValue());
+        assertTrue(outlier.getRatio() > 9);
+        assertEquals(List.of("req-slow"), List.copyOf(store.listPinnedTraceIds()));
+        assertEquals(101, detector.getTraceCount());
+    }
+
+    @Test
+    void testNoFlagsDuringWarmup() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        OutlierDetector detector = new OutlierDetector(store);
+        feed(detector, store, request("req-0", 0, 1));
+        feed(detector, store, request("req-1", 1, 500));
+
+        assertTrue(detector.getOutliers().isEmpty());
+        assertFalse(detector.getBaseline("DB_QUERY").isPresent());
+    }
+
+    @Test
+    void testSmallAbsoluteJumpsIgnored() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        OutlierDetector detector = new OutlierDetector(store);
+        for (int i = 0; i < 100; i++) {
+            feed(detector, store, request("req-" + i, i, 1));
+        }
+        // 4x the baseline, but only 3ms more
+        feed(detector, store, request("req-blip", 100, 4));
+
+        assertTrue(detector.getOutliers().isEmpty());
+    }
+
+    @Test
+    void testOutliersDoNotInflateBaseline() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        OutlierDetector detector = new OutlierDetector(store);
+        for (int i = 0; i < 100; i++) {
+            feed(detector, store, request("req-" + i, i, 20));
+        }
+        for (int i = 0; i < 20; i++) {
+            feed(detector, store, request("slow-" + i, 100 + i, 10_000));
+        }
+
+        assertEquals(20, detector.getOutlierCount());
+        assertTrue(detector.getBaseline("DB_QUERY").getAsDouble() < 30);
+    }
+
+    @Test
+    void testOldestUnpinnedBeyondLimit() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        OutlierDetector detector = new OutlierDetector(store, 3.0, 2);
+        for (int i = 0; i < 100; i++) {
+            feed(detector, store, request("req-" + i, i, 20));
+        }
+        for (int i = 0; i < 3; i++) {
+            feed(detector, store, request("slow-" + i, 100 + i, 200));
+        }
+
+        assertEquals(3, detector.getOutlierCount());
+        assertEquals(2, detector.getOutliers().size());
+        assertFalse(store.listPinnedTraceIds().contains("slow-0"));
+        assertTrue(store.listPinnedTraceIds().contains("slow-2"));
+    }
+
+    @Test
+    void testUnpinsOnlyWhatItPinned() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        OutlierDetector detector = new OutlierDetector(store, 3.0, 1);
+        for (int i = 0; i < 100; i++) {
+            feed(detector, store, request("req-" + i, i, 20));
+        }
+        // Flagged, but not in the store, so the pin fails
+        Trace gone = request("gone", 100, 200);
+        detector.onTraceCompleted(gone);
+        assertEquals(1, detector.getOutlierCount());
+        assertTrue(detector.getOutliers().isEmpty());
+
+        // Someone else pins it later; the detector must not release that pin
+        store.store(gone);
+        assertTrue(store.pin("gone"));
+        feed(detector, store, request("slow-1", 101, 200));
+        feed(detector, store, request("slow-2", 102, 200));
+
+        assertEquals(3, detector.getOutlierCount());
+        assertEquals("slow-2", detector.getOutliers().get(0).getTraceId());
+        assertEquals(List.of("gone", "slow-2"), store.listPinnedTraceIds().stream().sorted().toList());
+    }
+
+    @Test
+    void testPinnedOutlierOutlivesRetention() {
+        FixedClock clock = new FixedClock(0);
+        PartitionedTraceStore store = new PartitionedTraceStore(MINUTE, 5 * MINUTE, clock);
+        RequestTracer tracer = new RequestTracer(store).setClock(clock);
+        OutlierDetector detector = new OutlierDetector(store);
+        tracer.addListener(detector);
+
+        for (int i = 0; i < 100; i++) {
+            tracer.start("req-" + i);
+            clock.advance(10);
+            tracer.end();
+        }
+        tracer.start("req-slow");
+        clock.advance(500);
+        tracer.end();
+
+        clock.advance(60 * MINUTE);
+        tracer.start("req-later");
+        tracer.end();
+
+        assertEquals(OutlierDetector.TOTAL, detector.getOutliers().get(0).getEventName());
+        assertFalse(store.get("req-0").isPresent());
+        assertTrue(store.get("req-slow").isPresent());
+    }
+
+    @Test
+    void testRejectsInvalidConfiguration() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        assertThrows(IllegalArgumentException.class, () -> new OutlierDetector(store, 1.0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new OutlierDetector(store, 3.0, 0));
+        assertThrows(NullPointerException.class, () -> new OutlierDetector(null));
+    }
+}
@@ -0,0 +1,223 @@
+package io.reqtracer.listener;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.listener.TracePublisher.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TracePublisherTest {
+
+    /** Runs delivery on the calling thread so tests are deterministic. */
+    private static final Executor DIRECT = Runnable::run;
+
+    private Trace trace(String traceId) {
+        Trace trace = new Trace(traceId, new FixedClock(1000));
+        trace.end();
+        return trace;
+    }
+
+    /** Subscriber that records everything and requests on demand. */
+    private static class RecordingSubscriber implements Flow.Subscriber<Trace> {
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        volatile boolean completed;
+        Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Trace item) {
+            received.add(item.getTraceId());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    void testDeliversOnlyRequested() {
+        TracePublisher publisher = new TracePublisher(DIRECT);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        publisher.onTraceCompleted(trace("req-1"));
+        publisher.onTraceCompleted(trace("req-2"));
+        assertTrue(subscriber.received.isEmpty());
+        assertEquals(2, publisher.getSubscriberStats().get(0).getLag());
+
+        subscriber.subscription.request(1);
+        assertEquals(List.of("req-1"), subscriber.received);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        publisher.onTraceCompleted(trace("req-3"));
+        assertEquals(List.of("req-1", "req-2", "req-3"), subscriber.received);
+
+        SubscriberStats stats = publisher.getSubscriberStats().get(0);
+        assertEquals(0, stats.getLag());
+        assertEquals(3, stats.getDelivered());
+        assertEquals(0, stats.getDropped());
+    }
+
+    @Test
+    void testDropPolicyCountsDrops() {
+        TracePublisher publisher = new TracePublisher(DIRECT);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber, 2, OverflowPolicy.DROP);
+
+        for (int i = 0; i < 5; i++) {
+            publisher.onTraceCompleted(trace("req-" + i));
+        }
+
+        SubscriberStats stats = publisher.getSubscriberStats().get(0);
+        assertEquals(2, stats.getLag());
+        assertEquals(3, stats.getDropped());
+        assertEquals(3, publisher.getTotalDropped());
+
+        subscriber.subscription.request(10);
+        assertEquals(List.of("req-0", "req-1"), subscriber.received);
+    }
+
+    @Test
+    void testDisconnectPolicySignalsError() {
+        TracePublisher publisher = new TracePublisher(DIRECT);
+        RecordingSubscriber slow = new RecordingSubscriber();
+        RecordingSubscriber fast = new RecordingSubscriber();
+        publisher.subscribe(slow, 1, OverflowPolicy.DISCONNECT);
+        publisher.subscribe(fast);
+        fast.subscription.request(Long.MAX_VALUE);
+
+        publisher.onTraceCompleted(trace("req-1"));
+        publisher.onTraceCompleted(trace("req-2"));
+
+        assertInstanceOf(IllegalStateException.class, slow.error.get());
+        assertEquals(1, publisher.getSubscriberCount());
+        assertEquals(List.of("req-1", "req-2"), fast.received);
+    }
+
+    @Test
+    void testCancelStopsDelivery() {
+        TracePublisher publisher = new TracePublisher(DIRECT);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        publisher.onTraceCompleted(trace("req-1"));
+        subscriber.subscription.cancel();
+        publisher.onTraceCompleted(trace("req-2"));
+
+        assertEquals(List.of("req-1"), subscriber.received);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    void testInvalidRequestSignalsError() {
+        TracePublisher publisher = new TracePublisher(DIRECT);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertInstanceOf(IllegalArgumentException.class, subscriber.error.get());
+    }
+
+    @Test
+    void testCloseCompletesAfterBufferDrained() {
+        TracePublisher publisher = new TracePublisher(DIRECT);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        publisher.onTraceCompleted(trace("req-1"));
+        publisher.close();
+        assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(1);
+        assertEquals(List.of("req-1"), subscriber.received);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    void testSubscribeRacingCloseStillCompletes() throws InterruptedException {
+        for (int round = 0; round < 500; round++) {
+            TracePublisher publisher = new TracePublisher(DIRECT);
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+            CountDownLatch start = new CountDownLatch(1);
+            Thread closer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                publisher.close();
+            });
+            closer.start();
+            start.countDown();
+            publisher.subscribe(subscriber);
+            closer.join();
+
+            assertTrue(subscriber.completed, "round " + round);
+        }
+    }
+
+    @Test
+    void testCancelInOnSubscribeUnsubscribes() {
+        TracePublisher publisher = new TracePublisher(DIRECT);
+        publisher.subscribe(new RecordingSubscriber() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.cancel();
+            }
+        });
+
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    void testSlowSubscriberDoesNotBlockPublisher() throws InterruptedException {
+        TracePublisher publisher = new TracePublisher();
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSubscriber blocked = new RecordingSubscriber() {
+            @Override
+            public void onNext(Trace item) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onNext(item);
+            }
+        };
+        publisher.subscribe(blocked, 8, OverflowPolicy.DROP);
+        blocked.subscription.request(Long.MAX_VALUE);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            publisher.onTraceCompleted(trace("req-" + i));
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+
+        assertTrue(elapsedMillis < 5_000, "publishing took " + elapsedMillis + "ms");
+        assertTrue(publisher.getTotalDropped() > 0);
+        publisher.close();
+    }
+}
@@ -0,0 +1,116 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.stats.HeavyHitters.HeavyHitter;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.reqtracer.core.TestTraces.MINUTE;
+import static io.reqtracer.core.TestTraces.query;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHittersTest {
+
+    @Test
+    void testRanksValuesByTotalTime() {
+        FixedClock clock = new FixedClock(MINUTE);
+        HeavyHitters hitters = new HeavyHitters(clock, Duration.ofMinutes(5), 100);
+        for (int i = 0; i < 50; i++) {
+            hitters.onTraceCompleted(query("req", MINUTE, 10, Map.of("table", "orders", "user", "user-" + i)));
+        }
+        for (int i = 0; i < 10; i++) {
+            hitters.onTraceCompleted(query("req", MINUTE, 100, Map.of("table", "users", "user", "john")));
+        }
+
+        List<HeavyHitter> tables = hitters.top("DB_QUERY", "table", 10);
+        assertEquals(2, tables.size());
+        assertEquals("users", tables.get(0).getValue());
+        assertEquals(1000, tables.get(0).getTotal());
+        assertEquals(0, tables.get(0).getError());
+        assertEquals(66.7, tables.get(0).getShare(), 0.1);
+        assertEquals("orders", tables.get(1).getValue());
+
+        List<HeavyHitter> users = hitters.top("DB_QUERY", "user", 1);
+        assertEquals("john", users.get(0).getValue());
+        assertTrue(hitters.top("AUTH_CHECK", "table", 10).isEmpty());
+    }
+
+    @Test
+    void testHeavyValueSurvivesChurn() {
+        FixedClock clock = new FixedClock(MINUTE);
+        HeavyHitters hitters = new HeavyHitters(clock, Duration.ofMinutes(5), 10);
+        for (int i = 0; i < 1000; i++) {
+            hitters.onTraceCompleted(query("req", MINUTE, 1, Map.of("table", "table-" + i, "user", "u")));
+            if (i % 50 == 0) {
+                hitters.onTraceCompleted(query("req", MINUTE, 50, Map.of("table", "hot", "user", "u")));
+            }
+        }
+
+        List<HeavyHitter> top = hitters.top("DB_QUERY", "table", 100);
+        assertEquals(10, top.size());
+        HeavyHitter hot = top.get(0);
+        assertEquals("hot", hot.getValue());
+        // Upper bound, and the true 1000ms lies within the error
+        assertTrue(hot.getTotal() >= 1000);
+        assertTrue(hot.getTotal() - hot.getError() <= 1000);
+    }
+
+    @Test
+    void testWindowSlidesAndMerges() {
+        FixedClock clock = new FixedClock(0);
+        HeavyHitters hitters = new HeavyHitters(clock, Duration.ofMinutes(5), 100);
+        hitters.onTraceCompleted(query("req", MINUTE, 30, Map.of("table", "old", "user", "u")));
+        hitters.onTraceCompleted(query("req", 3 * MINUTE, 20, Map.of("table", "new", "user", "u")));
+        hitters.onTraceCompleted(query("req", 4 * MINUTE, 20, Map.of("table", "new", "user", "u")));
+
+        clock.setTime(4 * MINUTE);
+        assertEquals(List.of("new", "old"), hitters.top("DB_QUERY", "table", 10).stream()
+                .map(HeavyHitter::getValue).toList());
+        assertEquals(40, hitters.top("DB_QUERY", "table", 1).get(0).getTotal());
+
+        clock.setTime(7 * MINUTE);
+        assertEquals(List.of("new"), hitters.top("DB_QUERY", "table", 10).stream()
+                .map(HeavyHitter::getValue).toList());
+    }
+
+    @Test
+    void testSummaryMemoryIsBounded() {
+        HeavyHitters.Summary summary = new HeavyHitters.Summary(5);
+        for (int i = 0; i < 1000; i++) {
+            summary.add("value-" + i, 1 + i % 7);
+        }
+
+        Map<String, long[]> counters = new HashMap<>();
+        long floor = summary.snapshot(counters);
+        assertEquals(5, counters.size());
+        assertTrue(floor > 0);
+    }
+
+    @Test
+    void testEventTotalsAreBounded() {
+        HeavyHitters.Slot slot = new HeavyHitters.Slot(0);
+        for (int i = 0; i < 1000; i++) {
+            LongAdder total = slot.total("EVENT_" + i);
+            if (total != null) {
+                total.add(1);
+            }
+        }
+
+        assertEquals(HeavyHitters.MAX_SERIES, slot.totals.size());
+        assertNotNull(slot.total("EVENT_0"));
+        assertNull(slot.total("EVENT_999"));
+    }
+
+    @Test
+    void testRejectsInvalidConfiguration() {
+        FixedClock clock = new FixedClock(0);
+        assertThrows(IllegalArgumentException.class, () -> new HeavyHitters(clock, Duration.ofMillis(1), 10));
+        assertThrows(IllegalArgumentException.class, () -> new HeavyHitters(clock, Duration.ofMinutes(1), 0));
+        assertThrows(IllegalArgumentException.class, () -> new HeavyHitters().top("DB_QUERY", "table", 0));
+    }
+}
@@ -0,0 +1,131 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.storage.InMemoryTraceStore;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyComparisonTest {
+
+    private TraceStats population(int count, long dbBase, boolean cache) {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        for (int i = 0; i < count; i++) {
+            FixedClock clock = new FixedClock(1000);
+            Trace trace = new Trace("req-" + i, clock);
+            trace.mark("REQUEST_RECEIVED");
+            clock.advance(10 + i % 5);
+            trace.mark("AUTH_CHECK");
+            clock.advance(dbBase + i % 20);
+            trace.mark("DB_QUERY");
+            if (cache) {
+                clock.advance(2);
+                trace.mark("CACHE_WRITE");
+            }
+            trace.end();
+            store.store(trace);
+        }
+        return TraceStats.compute(store);
+    }
+
+    private LatencyComparison.EventComparison event(LatencyComparison comparison, String name) {
+        return comparison.getEvents().stream()
+                .filter(e -> e.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void testIdenticalPopulationsAreUnchanged() {
+        LatencyComparison comparison = LatencyComparison.compare(population(200, 100, false),
+                population(200, 100, false), 10.0, 0.05);
+
+        assertFalse(comparison.hasRegressions());
+        for (LatencyComparison.EventComparison event : comparison.getEvents()) {
+            assertEquals(LatencyComparison.Status.UNCHANGED, event.getStatus());
+        }
+        assertEquals(1.0, event(comparison, "DB_QUERY").getPValue(), 0.01);
+    }
+
+    @Test
+    void testSlowerEventIsFlaggedAsRegression() {
+        LatencyComparison comparison = LatencyComparison.compare(population(200, 100, false),
+                population(200, 150, false), 10.0, 0.05);
+
+        LatencyComparison.EventComparison db = event(comparison, "DB_QUERY");
+        assertEquals(LatencyComparison.Status.REGRESSION, db.getStatus());
+        assertTrue(db.getPValue() < 0.001);
+        assertTrue(db.getChangePercent(50) > 40);
+        assertEquals(LatencyComparison.Status.UNCHANGED, event(comparison, "AUTH_CHECK").getStatus());
+        assertEquals(LatencyComparison.Status.REGRESSION, comparison.getTotal().getStatus());
+        assertTrue(comparison.hasRegressions());
+    }
+
+    @Test
+    void testFasterEventIsFlaggedAsImprovement() {
+        LatencyComparison comparison = LatencyComparison.compare(population(200, 150, false),
+                population(200, 100, false), 10.0, 0.05);
+
+        assertEquals(LatencyComparison.Status.IMPROVEMENT, event(comparison, "DB_QUERY").getStatus());
+        assertFalse(comparison.hasRegressions());
+    }
+
+    @Test
+    void testShiftBelowThresholdIsNotFlagged() {
+        // 100 → 105ms is significant with 200 samples but under a 10% threshold
+        LatencyComparison comparison = LatencyComparison.compare(population(200, 100, false),
+                population(200, 105, false), 10.0, 0.05);
+
+        LatencyComparison.EventComparison db = event(comparison, "DB_QUERY");
+        assertTrue(db.getPValue() < 0.05);
+        assertEquals(LatencyComparison.Status.UNCHANGED, db.getStatus());
+    }
+
+    @Test
+    void testTinySamplesAreNotSignificant() {
+        LatencyComparison comparison = LatencyComparison.compare(population(2, 100, false),
+                population(2, 130, false), 10.0, 0.05);
+
+        LatencyComparison.EventComparison db = event(comparison, "DB_QUERY");
+        assertTrue(db.getPValue() > 0.05);
+        assertEquals(LatencyComparison.Status.UNCHANGED, db.getStatus());
+    }
+
+    @Test
+    void testAddedAndRemovedEvents() {
+        LatencyComparison added = LatencyComparison.compare(population(50, 100, false),
+                population(50, 100, true), 10.0, 0.05);
+        assertEquals(LatencyComparison.Status.ADDED, event(added, "CACHE_WRITE").getStatus());
+        assertTrue(Double.isNaN(event(added, "CACHE_WRITE").getPValue()));
+
+        LatencyComparison removed = LatencyComparison.compare(population(50, 100, true),
+                population(50, 100, false), 10.0, 0.05);
+        assertEquals(LatencyComparison.Status.REMOVED, event(removed, "CACHE_WRITE").getStatus());
+    }
+
+    @Test
+    void testMannWhitneyMatchesTextbookValue() {
+        // A = {1..10}, B = {6..15}: U = 12.5, five tied pairs, z ≈ 2.80 with continuity correction
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            a.record(i);
+            b.record(i + 5);
+        }
+
+        assertEquals(0.0051, LatencyComparison.mannWhitneyPValue(a, b), 0.0002);
+        assertEquals(LatencyComparison.mannWhitneyPValue(a, b), LatencyComparison.mannWhitneyPValue(b, a), 1e-12);
+    }
+
+    @Test
+    void testInvalidArgumentsRejected() {
+        TraceStats stats = population(10, 100, false);
+
+        assertThrows(IllegalArgumentException.class, () -> LatencyComparison.compare(stats, stats, -1, 0.05));
+        assertThrows(IllegalArgumentException.class, () -> LatencyComparison.compare(stats, stats, 10, 0));
+        assertThrows(IllegalArgumentException.class, () -> LatencyComparison.compare(stats, stats, 10, 1));
+        assertThrows(IllegalArgumentException.class, () -> LatencyComparison.compare(stats, stats, Double.NaN, 0.05));
+        assertThrows(IllegalArgumentException.class, () -> LatencyComparison.compare(stats, stats, 10, Double.NaN));
+    }
+}
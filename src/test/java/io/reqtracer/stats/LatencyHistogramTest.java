@@ -0,0 +1,83 @@
+package io.reqtracer.stats;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getMean());
+    }
+
+    @Test
+    void testExactPercentilesForSmallValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.getPercentile(50));
+        assertEquals(90, histogram.getPercentile(90));
+        assertEquals(99, histogram.getPercentile(99));
+        assertEquals(100, histogram.getPercentile(100));
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        assertEquals(1, histogram.getMin());
+        assertEquals(100, histogram.getMax());
+    }
+
+    @Test
+    void testLargeValuesWithinOnePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1000; v <= 100_000; v += 1000) {
+            histogram.record(v);
+        }
+
+        long p50 = histogram.getPercentile(50);
+        assertTrue(Math.abs(p50 - 50_000) <= 500, "p50 was " + p50);
+        assertEquals(100_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    void testBucketBoundsCoverValue() {
+        for (long v : new long[] { 0, 255, 256, 257, 1023, 1024, 123_456, Long.MAX_VALUE / 2 }) {
+            int index = LatencyHistogram.bucketIndex(v);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= v);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < v);
+            }
+        }
+    }
+
+    @Test
+    void testMerge() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        a.record(20);
+        b.record(5000);
+
+        a.merge(b);
+
+        assertEquals(3, a.getCount());
+        assertEquals(5030, a.getSum());
+        assertEquals(10, a.getMin());
+        assertEquals(5000, a.getMax());
+        assertEquals(20, a.getPercentile(66));
+    }
+
+    @Test
+    void testNegativeClampedToZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(0, histogram.getMax());
+    }
+}
@@ -0,0 +1,123 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.stats.RollingMetrics.Snapshot;
+import io.reqtracer.stats.RollingMetrics.Window;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static io.reqtracer.core.TestTraces.MINUTE;
+import static io.reqtracer.core.TestTraces.query;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingMetricsTest {
+
+    @Test
+    void testWindowsCountRequestsAndRate() {
+        FixedClock clock = new FixedClock(15 * MINUTE - 1);
+        RollingMetrics metrics = new RollingMetrics(clock, RollingMetrics.DEFAULT_ERROR);
+        // One request per second for the last 15 minutes
+        for (int i = 0; i < 900; i++) {
+            metrics.onTraceCompleted(query("req-" + i, i * 1000L, 10, Map.of("status", "200")));
+        }
+
+        Snapshot oneMinute = metrics.snapshot(Window.ONE_MINUTE);
+        assertEquals(60, oneMinute.getRequests());
+        assertEquals(1.0, oneMinute.getRequestsPerSecond(), 0.05);
+        assertEquals(300, metrics.snapshot(Window.FIVE_MINUTES).getRequests());
+        assertEquals(900, metrics.snapshot(Window.FIFTEEN_MINUTES).getRequests());
+        assertEquals(1.0, metrics.snapshot(Window.FIFTEEN_MINUTES).getRequestsPerSecond(), 0.05);
+    }
+
+    @Test
+    void testOldBucketsExpire() {
+        FixedClock clock = new FixedClock(0);
+        RollingMetrics metrics = new RollingMetrics(clock, RollingMetrics.DEFAULT_ERROR);
+        metrics.onTraceCompleted(query("req-old", 1000, 10, Map.of("status", "200")));
+
+        clock.setTime(2 * MINUTE);
+        metrics.onTraceCompleted(query("req-new", 2 * MINUTE, 10, Map.of("status", "200")));
+        assertEquals(1, metrics.snapshot(Window.ONE_MINUTE).getRequests());
+        assertEquals(2, metrics.snapshot(Window.FIVE_MINUTES).getRequests());
+
+        clock.setTime(20 * MINUTE);
+        assertEquals(0, metrics.snapshot(Window.FIFTEEN_MINUTES).getRequests());
+        assertTrue(metrics.snapshot(Window.ONE_MINUTE).getEvents().isEmpty());
+    }
+
+    @Test
+    void testLateTraceForReusedBucketIsDropped() {
+        FixedClock clock = new FixedClock(2 * MINUTE);
+        RollingMetrics metrics = new RollingMetrics(clock, RollingMetrics.DEFAULT_ERROR);
+        metrics.onTraceCompleted(query("req-new", 2 * MINUTE, 10, Map.of("status", "200")));
+        // Same one-second slot, a minute earlier
+        metrics.onTraceCompleted(query("req-late", MINUTE, 10, Map.of("status", "200")));
+
+        assertEquals(1, metrics.snapshot(Window.ONE_MINUTE).getRequests());
+    }
+
+    @Test
+    void testCountsErrors() {
+        FixedClock clock = new FixedClock(MINUTE);
+        RollingMetrics metrics = new RollingMetrics(clock, RollingMetrics.DEFAULT_ERROR);
+        metrics.onTraceCompleted(query("req-ok", MINUTE, 10, Map.of("status", "200")));
+        metrics.onTraceCompleted(query("req-fail", MINUTE, 10, Map.of("status", "503")));
+        metrics.onTraceCompleted(query("req-missing", MINUTE, 10, Map.of("status", "404")));
+
+        assertEquals(3, metrics.snapshot(Window.ONE_MINUTE).getRequests());
+        assertEquals(1, metrics.snapshot(Window.ONE_MINUTE).getErrors());
+    }
+
+    @Test
+    void testPercentilesPerEvent() {
+        FixedClock clock = new FixedClock(MINUTE);
+        RollingMetrics metrics = new RollingMetrics(clock, RollingMetrics.DEFAULT_ERROR);
+        for (int i = 1; i <= 1000; i++) {
+            metrics.onTraceCompleted(query("req-" + i, MINUTE, i, Map.of("status", "200")));
+        }
+
+        RollingMetrics.Distribution db = metrics.snapshot(Window.ONE_MINUTE).getEvents().get("DB_QUERY");
+        assertEquals(1000, db.getCount());
+        assertEquals(500.5, db.getMean(), 0.01);
+        assertEquals(500, db.getPercentile(50), 500 * 0.13);
+        assertEquals(990, db.getPercentile(99), 990 * 0.13);
+        assertEquals(1000, db.getMax());
+        assertEquals(1000, db.getPercentile(100));
+    }
+
+    @Test
+    void testBinsRoundTrip() {
+        for (long value = 0; value < 100_000; value += 1 + value / 50) {
+            long estimate = RollingMetrics.Bins.value(RollingMetrics.Bins.index(value));
+            assertEquals(value, estimate, Math.max(0.5, value * 0.13), "value " + value);
+        }
+        assertEquals(RollingMetrics.Bins.COUNT - 1, RollingMetrics.Bins.index(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testConcurrentRecording() throws InterruptedException {
+        FixedClock clock = new FixedClock(MINUTE);
+        RollingMetrics metrics = new RollingMetrics(clock, RollingMetrics.DEFAULT_ERROR);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    // Spread over several seconds so threads race on rotation
+                    metrics.onTraceCompleted(query(thread + "-" + i, MINUTE - (i % 10) * 1000L, 5,
+                            Map.of("status", "200")));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(20_000, metrics.snapshot(Window.ONE_MINUTE).getRequests());
+        assertEquals(20_000, metrics.snapshot(Window.FIVE_MINUTES).getTotalDuration().getCount());
+    }
+}
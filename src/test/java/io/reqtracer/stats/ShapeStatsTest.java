@@ -0,0 +1,73 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.storage.InMemoryTraceStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShapeStatsTest {
+
+    private Trace trace(String traceId, long dbMillis, boolean cacheMiss) {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace(traceId, clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(10);
+        trace.mark("AUTH_CHECK");
+        if (cacheMiss) {
+            clock.advance(50);
+            trace.mark("CACHE_MISS");
+        }
+        clock.advance(dbMillis);
+        trace.mark("DB_QUERY");
+        trace.end();
+        return trace;
+    }
+
+    @Test
+    void testGroupsByShape() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        for (int i = 0; i < 90; i++) {
+            store.store(trace("fast-" + i, 20, false));
+        }
+        for (int i = 0; i < 10; i++) {
+            store.store(trace("slow-" + i, 200, true));
+        }
+
+        List<ShapeSummary> shapes = ShapeStats.compute(store);
+
+        assertEquals(2, shapes.size());
+
+        ShapeSummary common = shapes.get(0);
+        assertEquals(90, common.getTraceCount());
+        assertEquals(List.of("REQUEST_RECEIVED", "AUTH_CHECK", "DB_QUERY"), common.getShape().getNames());
+        assertEquals(30, common.getTotalDuration().getPercentile(50));
+        assertEquals(20, common.getEventDeltas().get(2).getPercentile(99));
+
+        ShapeSummary rare = shapes.get(1);
+        assertEquals(10, rare.getTraceCount());
+        assertEquals("CACHE_MISS", rare.getShape().getName(2));
+        assertEquals(50, rare.getEventDeltas().get(2).getMax());
+        assertEquals(260, rare.getTotalDuration().getMax());
+    }
+
+    @Test
+    void testRepeatedEventNamesKeptPerPosition() {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req", clock);
+        trace.mark("DB_QUERY");
+        clock.advance(5);
+        trace.mark("DB_QUERY");
+        trace.end();
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        store.store(trace);
+
+        ShapeSummary summary = ShapeStats.compute(store).get(0);
+
+        assertEquals(0, summary.getEventDeltas().get(0).getMax());
+        assertEquals(5, summary.getEventDeltas().get(1).getMax());
+    }
+}
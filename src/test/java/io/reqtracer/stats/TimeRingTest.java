@@ -0,0 +1,75 @@
+package io.reqtracer.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeRingTest {
+
+    private static final class Counter extends TimeRing.Bucket {
+        final LongAdder count = new LongAdder();
+
+        Counter(long key) {
+            super(key);
+        }
+    }
+
+    @Test
+    void testBucketsRotate() {
+        TimeRing<Counter> ring = new TimeRing<>(4, 1_000, Counter::new);
+        Counter first = ring.bucket(500);
+        assertSame(first, ring.bucket(999));
+        assertEquals(0, first.key);
+
+        // Key 4 reuses key 0's index and replaces it
+        Counter later = ring.bucket(4_000);
+        assertNotSame(first, later);
+        assertEquals(4, later.key);
+        // Too old for the ring now
+        assertNull(ring.bucket(0));
+        assertEquals(-1, ring.keyOf(-1));
+    }
+
+    @Test
+    void testBetweenSkipsExpiredBuckets() {
+        TimeRing<Counter> ring = new TimeRing<>(4, 1_000, Counter::new);
+        for (long time = 0; time < 6_000; time += 1_000) {
+            ring.bucket(time).count.increment();
+        }
+
+        List<Counter> window = ring.between(3, 5);
+        window.sort(Comparator.comparingLong(c -> c.key));
+        assertEquals(List.of(3L, 4L, 5L), window.stream().map(c -> c.key).toList());
+        assertTrue(ring.between(0, 1).isEmpty());
+    }
+
+    @Test
+    void testConcurrentRecordersShareOneBucket() throws InterruptedException {
+        TimeRing<Counter> ring = new TimeRing<>(4, 1_000, Counter::new);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 1_000; i++) {
+                    ring.bucket(1_500).count.increment();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(threads * 1_000, ring.bucket(1_500).count.sum());
+    }
+}
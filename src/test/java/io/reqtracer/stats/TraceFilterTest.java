@@ -0,0 +1,196 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.storage.InMemoryTraceStore;
+import io.reqtracer.storage.PartitionedTraceStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceFilterTest {
+
+    /**
+     * AUTH_CHECK +authMs, DB_QUERY +dbMs (table=orders), RESPONSE_SENT +5ms.
+     */
+    private static Trace trace(String id, long startTime, long authMs, long dbMs, String user) {
+        FixedClock clock = new FixedClock(startTime);
+        Trace trace = new Trace(id, clock);
+        trace.mark("REQUEST_RECEIVED", Map.of("user", user));
+        clock.advance(authMs);
+        trace.mark("AUTH_CHECK");
+        clock.advance(dbMs);
+        trace.mark("DB_QUERY", Map.of("table", "orders"));
+        clock.advance(5);
+        trace.mark("RESPONSE_SENT");
+        trace.end();
+        return trace;
+    }
+
+    private static boolean matches(String expression, Trace trace) {
+        return TraceFilter.compile(expression).test(trace);
+    }
+
+    @Test
+    void testEventPresence() {
+        Trace trace = trace("req-1", 0, 10, 100, "john");
+
+        assertTrue(matches("event:DB_QUERY", trace));
+        assertFalse(matches("event:CACHE_MISS", trace));
+        assertTrue(matches("", trace));
+    }
+
+    @Test
+    void testEventDeltaComparisons() {
+        Trace trace = trace("req-1", 0, 10, 100, "john");
+
+        assertTrue(matches("event:DB_QUERY>99", trace));
+        assertFalse(matches("event:DB_QUERY>100", trace));
+        assertTrue(matches("event:DB_QUERY>=100ms", trace));
+        assertTrue(matches("event:DB_QUERY<101", trace));
+        assertFalse(matches("event:DB_QUERY<100", trace));
+        assertTrue(matches("event:DB_QUERY<=100", trace));
+        assertFalse(matches("event:AUTH_CHECK>50", trace));
+    }
+
+    @Test
+    void testDurationRange() {
+        Trace trace = trace("req-1", 0, 10, 100, "john");
+
+        assertTrue(matches("duration:115..115", trace));
+        assertTrue(matches("duration:100..", trace));
+        assertFalse(matches("duration:..114", trace));
+        assertTrue(matches("duration>114", trace));
+        assertFalse(matches("duration>=116", trace));
+        assertFalse(matches("duration:100..200 duration<50", trace));
+    }
+
+    @Test
+    void testDurationNeverMatchesOpenTrace() {
+        Trace open = new Trace("open", new FixedClock(0));
+        open.mark("REQUEST_RECEIVED");
+
+        assertFalse(matches("duration<=1000", open));
+        assertTrue(matches("event:REQUEST_RECEIVED", open));
+    }
+
+    @Test
+    void testMetadata() {
+        Trace trace = trace("req-1", 0, 10, 100, "john");
+
+        assertTrue(matches("user=john", trace));
+        assertTrue(matches("user=john table=orders", trace));
+        assertFalse(matches("user=jane", trace));
+        assertFalse(matches("region=eu", trace));
+    }
+
+    @Test
+    void testTimeRange() {
+        Trace trace = trace("req-1", 1_705_312_800_000L, 10, 100, "john");
+
+        assertTrue(matches("time:2024-01-15T10:00:00Z..2024-01-15T11:00:00Z", trace));
+        assertTrue(matches("time:1705312800000..", trace));
+        assertFalse(matches("time:..1705312799999", trace));
+    }
+
+    @Test
+    void testAllClausesMustMatch() {
+        Trace trace = trace("req-1", 0, 10, 100, "john");
+
+        assertTrue(matches("event:DB_QUERY>50 user=john duration<200", trace));
+        assertFalse(matches("event:DB_QUERY>50 user=jane", trace));
+        assertFalse(matches("event:DB_QUERY>50 event:CACHE_MISS", trace));
+    }
+
+    @Test
+    void testMalformedClauses() {
+        for (String bad : List.of("bogus", "event:", "event:>5", "duration:100", "duration>abc",
+                "time:yesterday..", "=x", "key=")) {
+            assertThrows(IllegalArgumentException.class, () -> TraceFilter.compile(bad), bad);
+        }
+        assertThrows(IllegalArgumentException.class, () -> TraceFilter.compile(null));
+    }
+
+    @Test
+    void testMetadataKeyStartingWithDuration() {
+        FixedClock clock = new FixedClock(0);
+        Trace trace = new Trace("req-1", clock);
+        trace.mark("JOB", Map.of("durationClass", "long"));
+
+        assertTrue(matches("durationClass=long", trace));
+    }
+
+    @Test
+    void testSearchStopsAtLimit() {
+        List<Trace> traces = IntStream.range(0, 10_000)
+                .mapToObj(i -> trace("req-" + i, i, 10, i % 2 == 0 ? 200 : 20, "john"))
+                .collect(Collectors.toList());
+        List<Trace> found = Collections.synchronizedList(new ArrayList<>());
+
+        long count = TraceFilter.compile("event:DB_QUERY>100").search(traces.stream(), 25, found::add);
+
+        assertEquals(25, count);
+        assertEquals(25, found.size());
+        assertTrue(found.stream().allMatch(t -> t.getEvents().get(2).getDelta() == 200));
+    }
+
+    @Test
+    void testSearchStore() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        store.store(trace("slow", 0, 10, 300, "john"));
+        store.store(trace("fast", 0, 10, 5, "john"));
+        store.store(trace("other", 0, 10, 300, "jane"));
+        List<String> ids = Collections.synchronizedList(new ArrayList<>());
+
+        long count = TraceFilter.compile("event:DB_QUERY>100 user=john").search(store, 100,
+                t -> ids.add(t.getTraceId()));
+
+        assertEquals(1, count);
+        assertEquals(List.of("slow"), ids);
+    }
+
+    @Test
+    void testSearchIndexedStore() {
+        InMemoryTraceStore store = new InMemoryTraceStore(1 << 20);
+        store.store(trace("slow", 0, 10, 300, "john"));
+        store.store(trace("fast", 0, 10, 5, "john"));
+        store.store(trace("other", 0, 10, 300, "jane"));
+        List<String> ids = Collections.synchronizedList(new ArrayList<>());
+
+        long count = TraceFilter.compile("event:DB_QUERY>100 user=john table=orders").search(store, 100,
+                t -> ids.add(t.getTraceId()));
+
+        assertEquals(1, count);
+        assertEquals(List.of("slow"), ids);
+        assertEquals(0, TraceFilter.compile("user=nobody").search(store, 100, t -> fail()));
+    }
+
+    @Test
+    void testSearchPartitionedStoreByTime() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        for (int minute = 0; minute < 10; minute++) {
+            store.store(trace("req-" + minute, minute * 60_000L, 10, 100, "john"));
+        }
+        AtomicInteger matches = new AtomicInteger();
+
+        TraceFilter.compile("time:120000..240000 event:DB_QUERY").search(store, 100,
+                t -> matches.incrementAndGet());
+
+        assertEquals(3, matches.get());
+    }
+
+    @Test
+    void testSearchEmptyStream() {
+        assertEquals(0, TraceFilter.compile("event:X").search(Stream.empty(), 10, t -> fail()));
+        assertEquals(0, TraceFilter.compile("").search(Stream.of(trace("a", 0, 1, 1, "x")), 0, t -> fail()));
+    }
+}
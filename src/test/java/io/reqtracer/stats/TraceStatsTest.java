@@ -0,0 +1,115 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.storage.ColumnarTraceArchive;
+import io.reqtracer.storage.InMemoryTraceStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceStatsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Trace trace(String traceId, long authMillis, long dbMillis) {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace(traceId, clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(authMillis);
+        trace.mark("AUTH_CHECK");
+        clock.advance(dbMillis);
+        trace.mark("DB_QUERY");
+        trace.end();
+        return trace;
+    }
+
+    @Test
+    void testComputeFromStore() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        for (int i = 1; i <= 100; i++) {
+            store.store(trace("req-" + i, i, 100));
+        }
+
+        TraceStats stats = TraceStats.compute(store);
+
+        assertEquals(100, stats.getTraceCount());
+        assertEquals(List.of("AUTH_CHECK", "DB_QUERY", "REQUEST_RECEIVED"),
+                new ArrayList<>(stats.getEvents().keySet()));
+
+        LatencyHistogram auth = stats.getEvents().get("AUTH_CHECK");
+        assertEquals(100, auth.getCount());
+        assertEquals(50, auth.getPercentile(50));
+        assertEquals(99, auth.getPercentile(99));
+        assertEquals(100, auth.getMax());
+
+        assertEquals(100, stats.getEvents().get("DB_QUERY").getPercentile(50));
+        assertEquals(0, stats.getEvents().get("REQUEST_RECEIVED").getMax());
+
+        assertEquals(150, stats.getTotalDuration().getPercentile(50));
+        assertEquals(200, stats.getTotalDuration().getMax());
+    }
+
+    @Test
+    void testParallelMatchesSequentialTotals() {
+        List<Trace> traces = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            traces.add(trace("req-" + i, i % 50, i % 300));
+        }
+
+        TraceStats stats = TraceStats.compute(traces.stream());
+
+        assertEquals(20_000, stats.getTraceCount());
+        long expectedSum = 0;
+        for (int i = 0; i < 20_000; i++) {
+            expectedSum += i % 300;
+        }
+        assertEquals(expectedSum, stats.getEvents().get("DB_QUERY").getSum());
+    }
+
+    @Test
+    void testUnendedTracesExcludedFromDuration() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        Trace open = new Trace("open", new FixedClock(1000));
+        open.mark("EVENT");
+        store.store(open);
+
+        TraceStats stats = TraceStats.compute(store);
+
+        assertEquals(1, stats.getTraceCount());
+        assertEquals(0, stats.getTotalDuration().getCount());
+        assertEquals(1, stats.getEvents().get("EVENT").getCount());
+    }
+
+    @Test
+    void testComputeFromArchiveMatchesStore() throws IOException {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        for (int i = 1; i <= 100; i++) {
+            store.store(trace("req-" + i, i, 100));
+        }
+        Trace open = new Trace("open", new FixedClock(1000));
+        open.mark("REQUEST_RECEIVED");
+        store.store(open);
+        Path path = tempDir.resolve("traces.archive");
+        ColumnarTraceArchive.write(path, store, 16);
+
+        TraceStats expected = TraceStats.compute(store);
+        try (ColumnarTraceArchive archive = ColumnarTraceArchive.open(path)) {
+            TraceStats actual = TraceStats.compute(archive, Long.MIN_VALUE, Long.MAX_VALUE);
+
+            assertEquals(expected.getTraceCount(), actual.getTraceCount());
+            assertEquals(expected.getEvents().keySet(), actual.getEvents().keySet());
+            assertEquals(expected.getEvents().get("AUTH_CHECK").getSum(), actual.getEvents().get("AUTH_CHECK").getSum());
+            assertEquals(expected.getTotalDuration().getCount(), actual.getTotalDuration().getCount());
+            assertEquals(expected.getTotalDuration().getPercentile(99), actual.getTotalDuration().getPercentile(99));
+        }
+    }
+}
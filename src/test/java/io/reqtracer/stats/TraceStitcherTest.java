@@ -0,0 +1,177 @@
+package io.reqtracer.stats;
+
+import io.reqtracer.RequestTracer;
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Span;
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceContext;
+import io.reqtracer.stats.StitchedTrace.Segment;
+import io.reqtracer.storage.InMemoryTraceStore;
+import io.reqtracer.storage.TraceFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceStitcherTest {
+
+    private static final long T0 = 1_000_000;
+
+    @TempDir
+    Path tempDir;
+
+    /** A simulated node: its own tracer, store and clock, off by a fixed skew. */
+    private static final class Node {
+        final InMemoryTraceStore store = new InMemoryTraceStore();
+        final FixedClock clock;
+        final RequestTracer tracer;
+
+        Node(long skew) {
+            clock = new FixedClock(T0 + skew);
+            tracer = new RequestTracer(store).setClock(clock);
+        }
+    }
+
+    private static void advance(long millis, Node... nodes) {
+        for (Node node : nodes) {
+            node.clock.advance(millis);
+        }
+    }
+
+    /**
+     * gateway → orders → payments, with orders' clock 5s ahead and payments'
+     * 3s behind. Network legs: 5ms each way to orders, 3ms to payments.
+     */
+    private Node[] simulateRequest() {
+        Node gateway = new Node(0);
+        Node orders = new Node(5_000);
+        Node payments = new Node(-3_000);
+        Node[] all = {gateway, orders, payments};
+
+        gateway.tracer.start("req-1");
+        advance(10, all);
+        try (Span call = gateway.tracer.span("CALL_ORDERS")) {
+            String header = gateway.tracer.getPropagationHeader();
+            advance(5, all);
+            orders.tracer.start("ord-1", header);
+            advance(20, all);
+            try (Span pay = orders.tracer.span("CALL_PAYMENTS")) {
+                String paymentsHeader = orders.tracer.getPropagationHeader();
+                advance(3, all);
+                payments.tracer.start("pay-1", paymentsHeader);
+                advance(40, all);
+                payments.tracer.end();
+                advance(3, all);
+            }
+            advance(10, all);
+            orders.tracer.end();
+            advance(5, all);
+        }
+        advance(10, all);
+        gateway.tracer.end();
+        return all;
+    }
+
+    @Test
+    void testStitchesNodeDumpsWithSkewCorrection() throws IOException {
+        Node[] nodes = simulateRequest();
+        String[] services = {"gateway", "orders", "payments"};
+        TraceStitcher stitcher = new TraceStitcher();
+        for (int i = 0; i < nodes.length; i++) {
+            Path dump = tempDir.resolve(services[i] + ".rtf");
+            TraceFile.write(dump, nodes[i].store);
+            stitcher.add(services[i], TraceFile.load(dump));
+        }
+
+        List<StitchedTrace> requests = stitcher.stitch();
+        assertEquals(1, requests.size());
+        StitchedTrace request = requests.get(0);
+        assertEquals(106, request.getDuration());
+
+        List<Segment> segments = request.getSegments();
+        assertEquals(List.of("gateway", "orders", "payments"),
+                segments.stream().map(Segment::getService).toList());
+        Segment orders = segments.get(1);
+        Segment payments = segments.get(2);
+        assertEquals(-5_000, orders.getOffset());
+        assertEquals(T0 + 15, orders.getStartTime());
+        assertEquals(3_000, payments.getOffset());
+        assertEquals(T0 + 38, payments.getStartTime());
+        assertEquals("CALL_PAYMENTS", payments.getCallSpan().getName());
+        assertEquals(2, payments.getDepth());
+
+        assertEquals(Map.of("gateway", 20L, "orders", 30L, "payments", 40L), request.getServiceTimes());
+        assertEquals(10, orders.getNetworkTime());
+        assertEquals(6, payments.getNetworkTime());
+        assertEquals(request.getDuration(), request.getServiceTimes().values().stream().mapToLong(Long::longValue).sum()
+                + request.getNetworkTime());
+    }
+
+    @Test
+    void testStitchFromAnyTrace() {
+        Node[] nodes = simulateRequest();
+        TraceStitcher stitcher = new TraceStitcher()
+                .add("gateway", nodes[0].store)
+                .add("orders", nodes[1].store)
+                .add("payments", nodes[2].store);
+
+        StitchedTrace request = stitcher.stitch("pay-1").get();
+        assertEquals("req-1", request.getRoot().getTrace().getTraceId());
+        assertEquals(3, request.getServiceCount());
+        assertFalse(stitcher.stitch("unknown").isPresent());
+    }
+
+    @Test
+    void testMissingCallerMakesCalleeARoot() {
+        Node[] nodes = simulateRequest();
+        TraceStitcher stitcher = new TraceStitcher()
+                .add("orders", nodes[1].store)
+                .add("payments", nodes[2].store);
+
+        StitchedTrace request = stitcher.stitch().get(0);
+        assertEquals("ord-1", request.getRoot().getTrace().getTraceId());
+        assertEquals(0, request.getRoot().getOffset());
+        assertEquals(2, request.getSegments().size());
+    }
+
+    @Test
+    void testCallOutsideSpanIsMovedInsideCaller() {
+        FixedClock gatewayClock = new FixedClock(T0);
+        Trace gateway = new Trace("req-1", gatewayClock);
+        TraceContext context = gateway.getContext();
+        gatewayClock.advance(100);
+        gateway.end();
+
+        // Callee's clock is 1s behind, so as recorded it starts before its caller
+        FixedClock workerClock = new FixedClock(T0 - 1_000 + 20);
+        Trace worker = new Trace("job-1", workerClock);
+        worker.setParent(context);
+        workerClock.advance(30);
+        worker.end();
+
+        StitchedTrace request = new TraceStitcher()
+                .add("gateway", gateway)
+                .add("worker", worker)
+                .stitch("job-1").get();
+
+        Segment segment = request.getSegments().get(1);
+        assertEquals(T0, segment.getStartTime());
+        assertNull(segment.getCallSpan());
+        assertEquals(0, request.getNetworkTime());
+        assertEquals(70, request.getRoot().getSelfTime());
+    }
+
+    @Test
+    void testRejectsDuplicateTraceIds() {
+        FixedClock clock = new FixedClock(T0);
+        TraceStitcher stitcher = new TraceStitcher().add("a", new Trace("req-1", clock));
+
+        assertThrows(IllegalArgumentException.class, () -> stitcher.add("b", new Trace("req-1", clock)));
+        assertThrows(IllegalArgumentException.class, () -> stitcher.add("", new Trace("req-2", clock)));
+    }
+}
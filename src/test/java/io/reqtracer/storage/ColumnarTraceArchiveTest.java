@@ -0,0 +1,186 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarTraceArchiveTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Trace trace(String traceId, long startTime, long dbMillis, boolean cacheHit) {
+        FixedClock clock = new FixedClock(startTime);
+        Trace trace = new Trace(traceId, clock);
+        clock.advance(1);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(12);
+        trace.mark("AUTH_CHECK", Map.of("user", "user-" + (startTime % 3)));
+        if (cacheHit) {
+            trace.mark("CACHE_HIT");
+        } else {
+            clock.advance(dbMillis);
+            trace.mark("DB_QUERY", Map.of("table", "orders", "rows", String.valueOf(dbMillis)));
+        }
+        trace.end();
+        return trace;
+    }
+
+    /** 1000 traces one second apart; every tenth is a cache hit. */
+    private InMemoryTraceStore populated() {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        for (int i = 0; i < 1000; i++) {
+            store.store(trace("req-" + i, 1_000_000 + i * 1000L, 100 + i % 50, i % 10 == 0));
+        }
+        return store;
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        InMemoryTraceStore source = populated();
+        Trace open = new Trace("req-open", new FixedClock(5_000_000));
+        open.mark("REQUEST_RECEIVED");
+        source.store(open);
+        Path path = tempDir.resolve("traces.archive");
+
+        assertEquals(1001, ColumnarTraceArchive.write(path, source, 100));
+
+        try (ColumnarTraceArchive archive = ColumnarTraceArchive.open(path)) {
+            assertEquals(11, archive.getBlockCount());
+            assertEquals(1001, archive.getTraceCount());
+
+            List<Trace> traces = archive.traces(Long.MIN_VALUE, Long.MAX_VALUE).collect(Collectors.toList());
+            assertEquals(1001, traces.size());
+            for (Trace decoded : traces) {
+                Trace original = source.get(decoded.getTraceId()).get();
+                assertEquals(original.getStartTime(), decoded.getStartTime());
+                assertEquals(original.getEndTime(), decoded.getEndTime());
+                assertEquals(original.getThreadId(), decoded.getThreadId());
+                assertEquals(original.getThreadName(), decoded.getThreadName());
+                assertEquals(original.getEventCount(), decoded.getEventCount());
+                for (int i = 0; i < original.getEventCount(); i++) {
+                    TraceEvent expected = original.getEvents().get(i);
+                    TraceEvent actual = decoded.getEvents().get(i);
+                    assertEquals(expected.getName(), actual.getName());
+                    assertEquals(expected.getTimestamp(), actual.getTimestamp());
+                    assertEquals(expected.getElapsedSinceStart(), actual.getElapsedSinceStart());
+                    assertEquals(expected.getDelta(), actual.getDelta());
+                    assertEquals(expected.getMetadata(), actual.getMetadata());
+                }
+            }
+            assertFalse(traces.stream().filter(t -> t.getTraceId().equals("req-open")).findFirst().get().isEnded());
+        }
+    }
+
+    @Test
+    void testBlocksAreWrittenInStartTimeOrder() throws IOException {
+        Path path = tempDir.resolve("traces.archive");
+        ColumnarTraceArchive.write(path, populated(), 100);
+
+        try (ColumnarTraceArchive archive = ColumnarTraceArchive.open(path)) {
+            List<Trace> traces = archive.traces(Long.MIN_VALUE, Long.MAX_VALUE).collect(Collectors.toList());
+            List<Trace> sorted = new ArrayList<>(traces);
+            sorted.sort(Comparator.comparingLong(Trace::getStartTime));
+            assertEquals(sorted, traces);
+        }
+    }
+
+    @Test
+    void testEventScanTouchesOnlyEventColumns() throws IOException {
+        InMemoryTraceStore source = populated();
+        Path path = tempDir.resolve("traces.archive");
+        ColumnarTraceArchive.write(path, source, 100);
+
+        try (ColumnarTraceArchive archive = ColumnarTraceArchive.open(path)) {
+            List<Long> deltas = new ArrayList<>();
+            archive.scanEventDeltas("DB_QUERY", Long.MIN_VALUE, Long.MAX_VALUE, deltas::add);
+
+            assertEquals(900, deltas.size());
+            assertEquals(101, deltas.stream().mapToLong(Long::longValue).min().getAsLong());
+            assertEquals(149, deltas.stream().mapToLong(Long::longValue).max().getAsLong());
+
+            assertEquals(10, archive.getDecodedCount(ColumnarTraceArchive.Column.EVENT_DELTAS));
+            assertEquals(0, archive.getDecodedCount(ColumnarTraceArchive.Column.TRACE_IDS));
+            assertEquals(0, archive.getDecodedCount(ColumnarTraceArchive.Column.METADATA));
+            assertEquals(0, archive.getDecodedCount(ColumnarTraceArchive.Column.METADATA_VALUES));
+            // Every block lies inside an unbounded window, so start times are not needed
+            assertEquals(0, archive.getDecodedCount(ColumnarTraceArchive.Column.START_TIMES));
+        }
+    }
+
+    @Test
+    void testWindowSkipsBlocks() throws IOException {
+        Path path = tempDir.resolve("traces.archive");
+        ColumnarTraceArchive.write(path, populated(), 100);
+
+        try (ColumnarTraceArchive archive = ColumnarTraceArchive.open(path)) {
+            // Traces 250..349 straddle blocks 2 and 3
+            long from = 1_000_000 + 250 * 1000L;
+            long to = 1_000_000 + 349 * 1000L;
+
+            assertEquals(100, archive.countTraces(from, to));
+
+            Map<String, Integer> counts = new HashMap<>();
+            archive.scanEvents(from, to, (name, delta) -> counts.merge(name, 1, Integer::sum));
+            assertEquals(100, counts.get("REQUEST_RECEIVED"));
+            assertEquals(10, counts.get("CACHE_HIT"));
+            assertEquals(90, counts.get("DB_QUERY"));
+
+            assertEquals(2, archive.getDecodedCount(ColumnarTraceArchive.Column.EVENT_DELTAS));
+            assertEquals(100, archive.traces(from, to).count());
+        }
+    }
+
+    @Test
+    void testDurationStatisticsSkipBlocks() throws IOException {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        for (int i = 0; i < 300; i++) {
+            // Only the last block has slow requests
+            store.store(trace("req-" + i, 1_000_000 + i * 1000L, i >= 200 ? 900 : 100, false));
+        }
+        Path path = tempDir.resolve("traces.archive");
+        ColumnarTraceArchive.write(path, store, 100);
+
+        try (ColumnarTraceArchive archive = ColumnarTraceArchive.open(path)) {
+            List<Long> slow = new ArrayList<>();
+            archive.scanDurations(Long.MIN_VALUE, Long.MAX_VALUE, 500, Long.MAX_VALUE, slow::add);
+
+            assertEquals(100, slow.size());
+            assertEquals(1, archive.getDecodedCount(ColumnarTraceArchive.Column.DURATIONS));
+        }
+    }
+
+    @Test
+    void testUnknownEventAndEmptyArchive() throws IOException {
+        Path path = tempDir.resolve("empty.archive");
+        assertEquals(0, ColumnarTraceArchive.write(path, new InMemoryTraceStore()));
+
+        try (ColumnarTraceArchive archive = ColumnarTraceArchive.open(path)) {
+            assertEquals(0, archive.getBlockCount());
+            assertEquals(0, archive.countTraces(Long.MIN_VALUE, Long.MAX_VALUE));
+            archive.scanEventDeltas("DB_QUERY", Long.MIN_VALUE, Long.MAX_VALUE, d -> fail());
+        }
+    }
+
+    @Test
+    void testRejectsForeignFile() throws IOException {
+        Path path = tempDir.resolve("junk.archive");
+        Files.write(path, new byte[64]);
+
+        assertThrows(IOException.class, () -> ColumnarTraceArchive.open(path));
+    }
+}
@@ -0,0 +1,126 @@
+package io.reqtracer.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLongMapTest {
+
+    @Test
+    void testPutGetRemove() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+
+        assertNull(map.put(1L, "a"));
+        assertEquals("a", map.put(1L, "b"));
+        map.put(-5L, "negative");
+
+        assertEquals("b", map.get(1L));
+        assertEquals("negative", map.get(-5L));
+        assertNull(map.get(2L));
+        assertEquals(2, map.size());
+
+        assertEquals("b", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertNull(map.get(1L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void testMatchesHashMapUnderRandomOperations() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // Small key range forces long probe chains, resizes and backward shifts
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 5000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        List<Long> keys = new ArrayList<>();
+        map.forEachKey(keys::add);
+        assertEquals(expected.size(), keys.size());
+        assertTrue(expected.keySet().containsAll(keys));
+    }
+
+    @Test
+    void testConcurrentReadersSeeStableEntries() throws Exception {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        for (long key = 1; key <= 10_000; key++) {
+            map.put(key, key);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        // Writer churns other keys while readers check the stable ones
+        futures.add(executor.submit(() -> {
+            for (long key = 100_000; key < 300_000; key++) {
+                map.put(key, key);
+                map.remove(key - 50);
+            }
+        }));
+        for (int r = 0; r < 3; r++) {
+            futures.add(executor.submit(() -> {
+                for (int pass = 0; pass < 20; pass++) {
+                    for (long key = 1; key <= 10_000; key++) {
+                        assertEquals(key, map.get(key));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void testConditionalAndBulkRemove() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>(0);
+        String even = "even";
+        for (long key = 0; key < 1000; key++) {
+            map.put(key, key % 2 == 0 ? even : "odd-" + key);
+        }
+
+        assertFalse(map.remove(1L, "odd-1-copy"));
+        assertTrue(map.remove(2L, even));
+        assertNull(map.get(2L));
+
+        assertEquals(499, map.removeValues(value -> value == even));
+        assertEquals(500, map.size());
+        for (long key = 1; key < 1000; key += 2) {
+            assertEquals("odd-" + key, map.get(key));
+        }
+        assertNull(map.get(0L));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentLongMap<String>(17));
+    }
+
+    @Test
+    void testClearAndNullValue() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        map.put(1L, "a");
+
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertNull(map.get(1L));
+        assertThrows(IllegalArgumentException.class, () -> map.put(1L, null));
+    }
+}
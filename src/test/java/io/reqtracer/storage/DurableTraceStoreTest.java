@@ -0,0 +1,450 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.storage.DurableTraceStore.Durability;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurableTraceStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Trace trace(String traceId) {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace(traceId, clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(12);
+        trace.mark("AUTH_CHECK", Map.of("user", "john"));
+        trace.end();
+        return trace;
+    }
+
+    @Test
+    void testReplayAfterReopen() throws IOException {
+        Path log = tempDir.resolve("traces.wal");
+
+        try (DurableTraceStore store = DurableTraceStore.open(log, Durability.BATCH)) {
+            assertEquals(0, store.getReplayedCount());
+            store.store(trace("req-1"));
+            store.store(trace("req-2"));
+            assertTrue(store.get("req-1").isPresent());
+        }
+
+        try (DurableTraceStore reopened = DurableTraceStore.open(log, Durability.BATCH)) {
+            assertEquals(2, reopened.getReplayedCount());
+            Trace restored = reopened.get("req-1").get();
+            assertEquals(12, restored.getTotalDuration());
+            assertEquals("john", restored.getEvents().get(1).getMetadata().get("user"));
+            assertTrue(reopened.get("req-2").isPresent());
+        }
+    }
+
+    @Test
+    void testRemoveIsDurable() throws IOException {
+        Path log = tempDir.resolve("traces.wal");
+
+        try (DurableTraceStore store = DurableTraceStore.open(log, Durability.BATCH)) {
+            store.store(trace("req-1"));
+            store.store(trace("req-2"));
+            store.remove("req-1");
+        }
+
+        try (DurableTraceStore reopened = DurableTraceStore.open(log, Durability.NONE)) {
+            assertFalse(reopened.get("req-1").isPresent());
+            assertTrue(reopened.get("req-2").isPresent());
+            assertEquals(1, reopened.listTraceIds().size());
+        }
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws IOException {
+        Path log = tempDir.resolve("traces.wal");
+
+        try (DurableTraceStore store = DurableTraceStore.open(log, Durability.BATCH)) {
+            store.store(trace("req-1"));
+            store.store(trace("req-2"));
+        }
+
+        // Simulate a crash in the middle of the last record
+        byte[] bytes = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(bytes, bytes.length - 5));
+
+        try (DurableTraceStore reopened = DurableTraceStore.open(log, Durability.BATCH)) {
+            assertEquals(1, reopened.getReplayedCount());
+            assertTrue(reopened.get("req-1").isPresent());
+            assertFalse(reopened.get("req-2").isPresent());
+
+            // New records append cleanly after the truncation point
+            reopened.store(trace("req-3"));
+        }
+
+        try (DurableTraceStore reopened = DurableTraceStore.open(log, Durability.BATCH)) {
+            assertEquals(2, reopened.getReplayedCount());
+            assertTrue(reopened.get("req-3").isPresent());
+        }
+    }
+
+    @Test
+    void testCorruptRecordStopsReplay() throws IOException {
+        Path log = tempDir.resolve("traces.wal");
+
+        try (DurableTraceStore store = DurableTraceStore.open(log, Durability.BATCH)) {
+            store.store(trace("req-1"));
+        }
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[bytes.length - 1] ^= 0x55;
+        Files.write(log, bytes);
+
+        try (DurableTraceStore reopened = DurableTraceStore.open(log, Durability.BATCH)) {
+            assertEquals(0, reopened.getReplayedCount());
+            assertEquals(0, Files.size(log));
+        }
+    }
+
+    @Test
+    void testConcurrentStoreAndRemoveReplayInLogOrder() throws Exception {
+        Path log = tempDir.resolve("traces.wal");
+        Set<String> live;
+
+        try (DurableTraceStore store = DurableTraceStore.open(log, Durability.NONE)) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                boolean storing = t % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 2000; i++) {
+                        String traceId = "req-" + (i % 8);
+                        if (storing) {
+                            store.store(trace(traceId));
+                        } else {
+                            store.remove(traceId);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            live = new HashSet<>(store.listTraceIds());
+        }
+
+        try (DurableTraceStore reopened = DurableTraceStore.open(log, Durability.NONE)) {
+            assertEquals(live, new HashSet<>(reopened.listTraceIds()));
+        }
+    }
+
+    @Test
+    void testQuotaEvictionsAreLogged() throws IOException {
+        Path log = tempDir.resolve("traces.wal");
+        InMemoryTraceStore delegate = new InMemoryTraceStore(TenantQuotas.of(2, 1 << 20));
+
+        try (DurableTraceStore store = DurableTraceStore.open(log, delegate, Durability.BATCH, 10)) {
+            store.store(trace("req-1"));
+            store.store(trace("req-2"));
+            assertTrue(store.pin("req-1"));
+            store.store(trace("req-3"));
+            assertEquals(Set.of("req-1", "req-3"), new HashSet<>(store.listTraceIds()));
+        }
+
+        // Replayed without quotas, the log alone must say req-2 is gone
+        try (DurableTraceStore reopened = DurableTraceStore.open(log, new InMemoryTraceStore(), Durability.NONE,
+                10)) {
+            assertEquals(Set.of("req-1", "req-3"), new HashSet<>(reopened.listTraceIds()));
+        }
+    }
+
+    @Test
+    void testCompactionDropsReplacedAndRemovedTraces() throws IOException {
+        Path log = tempDir.resolve("traces.wal");
+
+        try (DurableTraceStore store = DurableTraceStore.open(log, Durability.BATCH)) {
+            for (int i = 0; i < 10; i++) {
+                store.store(trace("req-" + (i % 3)));
+            }
+            store.remove("req-2");
+            long before = store.getLogSize();
+
+            store.compact();
+
+            assertEquals(1, store.getCompactionCount());
+            assertTrue(store.getLogSize() < before);
+            assertEquals(Files.size(log), store.getLogSize());
+            store.store(trace("req-4"));
+        }
+
+        try (DurableTraceStore reopened = DurableTraceStore.open(log, Durability.BATCH)) {
+            assertEquals(3, reopened.getReplayedCount());
+            assertEquals(Set.of("req-0", "req-1", "req-4"), new HashSet<>(reopened.listTraceIds()));
+            assertEquals("john", reopened.get("req-0").get().getEvents().get(1).getMetadata().get("user"));
+        }
+        assertFalse(Files.exists(tempDir.resolve("traces.wal.compact")));
+    }
+
+    @Test
+    void testLogCompactsOnceItDoubles() throws IOException {
+        Path log = tempDir.resolve("traces.wal");
+
+        try (DurableTraceStore store = DurableTraceStore.open(log, Durability.BATCH)) {
+            store.setCompactionThreshold(1);
+            for (int i = 0; i < 200; i++) {
+                store.store(trace("req-" + (i % 2)));
+            }
+            assertTrue(store.getCompactionCount() > 0);
+        }
+
+        try (DurableTraceStore reopened = DurableTraceStore.open(log, Durability.NONE)) {
+            // Two live traces, plus whatever was written since the last compaction
+            assertTrue(reopened.getReplayedCount() < 10, "replayed " + reopened.getReplayedCount());
+            assertEquals(Set.of("req-0", "req-1"), new HashSet<>(reopened.listTraceIds()));
+        }
+    }
+
+    @Test
+    void testGroupCommitCoalescesConcurrentWrites() throws Exception {
+        Path log = tempDir.resolve("traces.wal");
+        int threadCount = 16;
+        int tracesPerThread = 200;
+
+        try (DurableTraceStore store = DurableTraceStore.open(log, Durability.BATCH)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            CountDownLatch latch = new CountDownLatch(threadCount);
+            for (int t = 0; t < threadCount; t++) {
+                final int threadId = t;
+                executor.submit(() -> {
+                    try {
+                        for (int i = 0; i < tracesPerThread; i++) {
+                            store.store(trace("t" + threadId + "-" + i));
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                });
+            }
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+            executor.shutdown();
+
+            assertEquals(threadCount * tracesPerThread, store.getRecordCount());
+            assertTrue(store.getForceCount() <= store.getBatchCount());
+            assertTrue(store.getBatchCount() < store.getRecordCount(),
+                    "expected batching, got " + store.getBatchCount() + " batches");
+        }
+
+        try (DurableTraceStore reopened = DurableTraceStore.open(log, Durability.NONE)) {
+            assertEquals(threadCount * tracesPerThread, reopened.getReplayedCount());
+        }
+    }
+
+    @Test
+    void testNoneNeverForcesWhileOpen() throws IOException {
+        Path log = tempDir.resolve("traces.wal");
+
+        try (DurableTraceStore store = DurableTraceStore.open(log, Durability.NONE)) {
+            for (int i = 0; i < 10; i++) {
+                store.store(trace("req-" + i));
+            }
+            assertEquals(0, store.getForceCount());
+        }
+    }
+
+    @Test
+    void testStoreAfterCloseRejected() throws IOException {
+        DurableTraceStore store = DurableTraceStore.open(tempDir.resolve("traces.wal"), Durability.BATCH);
+        store.close();
+
+        assertThrows(IllegalStateException.class, () -> store.store(trace("req-1")));
+    }
+
+    @Test
+    void testWriteFailureFailsEveryCaller() throws Exception {
+        FailingChannel channel = new FailingChannel(tempDir.resolve("traces.wal"));
+        DurableTraceStore store = DurableTraceStore.open(channel, new InMemoryTraceStore(), Durability.BATCH, 10);
+        store.store(trace("req-0"));
+
+        channel.failing = true;
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger failed = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    try {
+                        store.store(trace("req-" + thread + "-" + i));
+                    } catch (UncheckedIOException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        // Before the fix a caller racing with the failure could wait forever
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(threads * 200, failed.get());
+        assertThrows(IOException.class, store::close);
+    }
+
+    @Test
+    void testWriteFailureIsReportedWithoutBatchDurability() throws Exception {
+        FailingChannel channel = new FailingChannel(tempDir.resolve("traces.wal"));
+        DurableTraceStore store = DurableTraceStore.open(channel, new InMemoryTraceStore(), Durability.NONE, 10);
+
+        channel.failing = true;
+        // The first write may be queued before the writer fails; a later one
+        // must report the failure rather than be dropped silently
+        long deadline = System.currentTimeMillis() + 10_000;
+        boolean reported = false;
+        for (int i = 0; !reported && System.currentTimeMillis() < deadline; i++) {
+            try {
+                store.store(trace("req-" + i));
+            } catch (UncheckedIOException e) {
+                reported = true;
+            }
+        }
+        assertTrue(reported);
+        assertThrows(IOException.class, store::close);
+    }
+
+    /**
+     * File channel that fails every write once {@link #failing} is set.
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel file;
+        volatile boolean failing;
+
+        FailingChannel(Path path) throws IOException {
+            file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+
+        private void check() throws IOException {
+            if (failing) {
+                throw new IOException("Disk full");
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return file.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return file.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return file.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            check();
+            return file.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            check();
+            return file.write(srcs, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            check();
+            return file.write(src, position);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return file.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            file.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return file.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            file.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            check();
+            file.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return file.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            check();
+            return file.transferFrom(src, position, count);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return file.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return file.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return file.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            file.close();
+        }
+    }
+}
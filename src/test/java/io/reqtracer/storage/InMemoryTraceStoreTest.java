@@ -1,11 +1,17 @@
 package io.reqtracer.storage;
 
 import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Span;
 import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.core.TraceId;
+import io.reqtracer.core.TraceShape;
+import io.reqtracer.core.TraceSpan;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -167,4 +173,166 @@ class InMemoryTraceStoreTest {
         // Each thread should successfully read all 100 traces
         assertEquals(threadCount * 100, successCount.get());
     }
+
+    @Test
+    void testRoundTripPreservesEvents() {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-123", clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(12);
+        trace.mark("AUTH_CHECK", Map.of("user", "john"));
+        clock.advance(120);
+        trace.mark("DB_QUERY");
+        clock.advance(8);
+        trace.end();
+
+        store.store(trace);
+        Trace retrieved = store.get("req-123").get();
+
+        assertEquals(trace.getStartTime(), retrieved.getStartTime());
+        assertEquals(trace.getEndTime(), retrieved.getEndTime());
+        assertEquals(140, retrieved.getTotalDuration());
+        assertEquals(trace.getThreadName(), retrieved.getThreadName());
+
+        TraceEvent auth = retrieved.getEvents().get(1);
+        assertEquals("AUTH_CHECK", auth.getName());
+        assertEquals(1012, auth.getTimestamp());
+        assertEquals(12, auth.getElapsedSinceStart());
+        assertEquals(12, auth.getDelta());
+        assertEquals("john", auth.getMetadata().get("user"));
+        assertEquals(120, retrieved.getEvents().get(2).getDelta());
+        assertFalse(retrieved.getEvents().get(2).hasMetadata());
+    }
+
+    @Test
+    void testShapesInternedAcrossTraces() {
+        FixedClock clock = new FixedClock(1000);
+        for (int i = 0; i < 50; i++) {
+            Trace trace = new Trace("req-" + i, clock);
+            trace.mark("REQUEST_RECEIVED");
+            trace.mark(i % 2 == 0 ? "CACHE_HIT" : "DB_QUERY");
+            store.store(trace);
+        }
+
+        assertEquals(2, store.getShapes().size());
+
+        TraceShape first = store.getShape("req-0").get();
+        assertSame(first, store.getShape("req-2").get());
+        assertNotSame(first, store.getShape("req-1").get());
+        assertEquals("REQUEST_RECEIVED → CACHE_HIT", first.toString());
+    }
+
+    @Test
+    void testShapeTableBounded() {
+        FixedClock clock = new FixedClock(1000);
+        for (int i = 0; i < InMemoryTraceStore.MAX_SHAPES + 100; i++) {
+            Trace trace = new Trace("req-" + i, clock);
+            trace.mark("EVENT_" + i);
+            store.store(trace);
+        }
+
+        assertEquals(InMemoryTraceStore.MAX_SHAPES, store.getShapes().size());
+
+        // Traces beyond the cap still round-trip with a private shape
+        String last = "req-" + (InMemoryTraceStore.MAX_SHAPES + 99);
+        assertEquals("EVENT_" + (InMemoryTraceStore.MAX_SHAPES + 99),
+                store.get(last).get().getEvents().get(0).getName());
+    }
+
+    @Test
+    void testNumericIdsKeyedByLong() {
+        FixedClock clock = new FixedClock(1000);
+        Trace numeric = new Trace(0x1234L, clock);
+        numeric.mark("EVENT");
+        Trace named = new Trace("req-1", clock);
+        store.store(numeric);
+        store.store(named);
+
+        assertEquals(2, store.size());
+        Trace byLong = store.get(0x1234L).get();
+        assertEquals(0x1234L, byLong.getId());
+        assertEquals("0000000000001234", byLong.getTraceId());
+        assertTrue(store.get("0000000000001234").isPresent());
+        assertFalse(store.get(0x9999L).isPresent());
+        assertFalse(store.get(TraceId.NONE).isPresent());
+
+        Collection<String> ids = store.listTraceIds();
+        assertEquals(2, ids.size());
+        assertTrue(ids.contains("0000000000001234"));
+        assertTrue(ids.contains("req-1"));
+
+        store.remove("0000000000001234");
+        assertFalse(store.get(0x1234L).isPresent());
+        assertTrue(store.get("req-1").isPresent());
+    }
+
+    @Test
+    void testRenderedIdFromStringApiIsNumeric() {
+        // A caller-supplied rendering lands in the same slot as the numeric ID
+        Trace trace = new Trace("00000000000000ff", new FixedClock(1000));
+        store.store(trace);
+
+        assertEquals(0xffL, trace.getId());
+        assertTrue(store.get(0xffL).isPresent());
+        store.remove(0xffL);
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testMetadataInternedAcrossTraces() {
+        for (int i = 0; i < 3; i++) {
+            FixedClock clock = new FixedClock(1000);
+            Trace trace = new Trace("req-" + i, clock);
+            // Built at runtime, like values parsed from a request
+            trace.mark("DB_QUERY", Map.of(new String("table"), String.valueOf(new StringBuilder("users"))));
+            store.store(trace);
+        }
+
+        String first = store.get("req-0").get().getEvents().get(0).getMetadata().get("table");
+        String last = store.get("req-2").get().getEvents().get(0).getMetadata().get("table");
+        assertSame(first, last);
+
+        StoreMetrics metrics = store.getMetrics();
+        assertEquals(3, metrics.getTraceCount());
+        assertEquals(1, metrics.getShapeCount());
+        assertEquals(2, metrics.getInternedStrings());
+        assertEquals(4, metrics.getStringsShared());
+        assertTrue(metrics.getMetadataBytesSaved() > 0);
+        assertTrue(metrics.getHighCardinalityKeys().isEmpty());
+    }
+
+    @Test
+    void testSpansSurviveStore() {
+        FixedClock clock = new FixedClock(1000);
+        Trace trace = new Trace("req-spans", clock);
+        try (Span handle = trace.span("HANDLE")) {
+            try (Span db = trace.span("DB_QUERY")) {
+                clock.advance(12);
+            }
+        }
+        trace.end();
+        store.store(trace);
+
+        TraceSpan handle = store.get("req-spans").get().getSpans().get(0);
+        assertEquals("HANDLE", handle.getName());
+        assertEquals(12, handle.getChildren().get(0).getDuration());
+        assertTrue(store.get("req-spans").get().hasSpans());
+    }
+
+    @Test
+    void testPinning() {
+        FixedClock clock = new FixedClock(1000);
+        store.store(new Trace("req-1", clock));
+        long id = 0x42L;
+        store.store(new Trace(id, clock));
+
+        assertTrue(store.pin("req-1"));
+        assertTrue(store.pin(TraceId.toString(id)));
+        assertFalse(store.pin("missing"));
+        assertEquals(2, store.listPinnedTraceIds().size());
+
+        store.unpin("req-1");
+        store.remove(id);
+        assertTrue(store.listPinnedTraceIds().isEmpty());
+    }
 }
@@ -0,0 +1,150 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.reqtracer.core.TestTraces.tables;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetadataIndexTest {
+
+    private static Set<String> ids(List<Trace> traces) {
+        return traces.stream().map(Trace::getTraceId).collect(Collectors.toSet());
+    }
+
+    private static InMemoryTraceStore sample(InMemoryTraceStore store) {
+        store.store(tables("req-1", Map.of("user", "john"), "orders"));
+        store.store(tables("req-2", Map.of("user", "jane"), "orders", "users"));
+        store.store(tables("req-3", Map.of("user", "john"), "users"));
+        store.store(tables("req-4", Map.of("user", "bob"), "orders", "orders"));
+        return store;
+    }
+
+    @Test
+    void testTermAndOrQueries() {
+        InMemoryTraceStore store = sample(new InMemoryTraceStore(1 << 20));
+        MetadataQuery orders = MetadataQuery.term("DB_QUERY", "table", "orders");
+        MetadataQuery john = MetadataQuery.term("user", "john");
+
+        assertEquals(Set.of("req-1", "req-2", "req-4"), ids(store.query(orders)));
+        assertEquals(Set.of("req-1"), ids(store.query(orders.and(john))));
+        assertEquals(Set.of("req-1", "req-2", "req-3", "req-4"), ids(store.query(orders.or(john))));
+        assertEquals(Set.of("req-2"), ids(store.query(
+                MetadataQuery.allOf(orders, MetadataQuery.term("DB_QUERY", "table", "users")))));
+        assertTrue(store.query(MetadataQuery.term("REQUEST_RECEIVED", "table", "orders")).isEmpty());
+        assertTrue(store.query(MetadataQuery.term("missing", "x")).isEmpty());
+
+        // Repeated values in one trace are one posting
+        assertEquals(1, store.query(MetadataQuery.term("table", "orders").and(
+                MetadataQuery.term("user", "bob"))).size());
+        assertEquals(9, store.getMetrics().getIndexPostings());
+    }
+
+    @Test
+    void testTracesAreRebuiltLazily() {
+        for (InMemoryTraceStore store : List.of(sample(new InMemoryTraceStore(1 << 20)),
+                sample(new InMemoryTraceStore()))) {
+            MetadataQuery orders = MetadataQuery.term("DB_QUERY", "table", "orders");
+
+            assertEquals(ids(store.query(orders)), ids(store.traces(orders).collect(Collectors.toList())));
+            assertEquals(2, store.traces(orders).limit(2).count());
+
+            // Nothing is read until the stream reaches it
+            Stream<Trace> pending = store.traces(orders);
+            store.remove("req-2");
+            assertEquals(Set.of("req-1", "req-4"), ids(pending.collect(Collectors.toList())));
+        }
+    }
+
+    @Test
+    void testMatchesUnindexedStore() {
+        InMemoryTraceStore indexed = sample(new InMemoryTraceStore(1 << 20));
+        InMemoryTraceStore plain = sample(new InMemoryTraceStore());
+        List<MetadataQuery> queries = List.of(
+                MetadataQuery.term("table", "users"),
+                MetadataQuery.term("DB_QUERY", "table", "orders").or(MetadataQuery.term("user", "john")),
+                MetadataQuery.anyOf(MetadataQuery.term("user", "bob"),
+                        MetadataQuery.term("user", "jane").and(MetadataQuery.term("table", "users"))));
+
+        for (MetadataQuery query : queries) {
+            assertEquals(ids(plain.query(query)), ids(indexed.query(query)), query.toString());
+        }
+        assertEquals(0, plain.getMetrics().getIndexBytes());
+    }
+
+    @Test
+    void testRemoveAndReplace() {
+        InMemoryTraceStore store = sample(new InMemoryTraceStore(1 << 20));
+        MetadataQuery orders = MetadataQuery.term("table", "orders");
+
+        store.remove("req-1");
+        store.store(tables("req-2", Map.of("user", "jane"), "users"));
+        assertEquals(Set.of("req-4"), ids(store.query(orders)));
+        assertEquals(Set.of("req-2", "req-3"), ids(store.query(MetadataQuery.term("table", "users"))));
+
+        // Dead postings are compacted away as lists churn
+        for (int i = 0; i < 1000; i++) {
+            store.store(tables("churn-" + i, Map.of("user", "eve"), "orders"));
+            store.remove("churn-" + i);
+        }
+        assertEquals(Set.of("req-4"), ids(store.query(orders)));
+        assertTrue(store.getMetrics().getIndexPostings() < 50, store.getMetrics().toString());
+
+        store.clear();
+        assertEquals(0, store.getMetrics().getIndexBytes());
+        assertTrue(store.query(orders).isEmpty());
+    }
+
+    @Test
+    void testHighCardinalityKeyIsDroppedAndScanned() {
+        InMemoryTraceStore store = new InMemoryTraceStore(1 << 24);
+        for (int i = 0; i <= MetadataIndex.MAX_VALUES_PER_KEY; i++) {
+            store.store(tables("req-" + i, Map.of("user", "user-" + i), "orders"));
+        }
+
+        StoreMetrics metrics = store.getMetrics();
+        assertEquals(List.of("user"), metrics.getUnindexedKeys());
+        assertEquals(Set.of("req-42"), ids(store.query(MetadataQuery.term("user", "user-42"))));
+        assertEquals(Set.of("req-7"), ids(store.query(
+                MetadataQuery.term("user", "user-7").and(MetadataQuery.term("table", "orders")))));
+    }
+
+    @Test
+    void testMemoryIsCapped() {
+        long limit = 256 * 1024;
+        InMemoryTraceStore store = new InMemoryTraceStore(limit);
+        for (int i = 0; i < 20_000; i++) {
+            FixedClock clock = new FixedClock(i);
+            Trace trace = new Trace("req-" + i, clock);
+            trace.mark("DB_QUERY", Map.of("table", "orders", "shard", String.valueOf(i % 2000)));
+            store.store(trace);
+        }
+
+        StoreMetrics metrics = store.getMetrics();
+        assertTrue(metrics.getIndexBytes() <= limit, metrics.toString());
+        assertEquals(List.of("shard"), metrics.getUnindexedKeys());
+        assertEquals(10, store.query(MetadataQuery.term("shard", "5")).size());
+        assertEquals(20_000, store.query(MetadataQuery.term("table", "orders")).size());
+    }
+
+    @Test
+    void testQueryToString() {
+        MetadataQuery query = MetadataQuery.term("DB_QUERY", "table", "orders")
+                .and(MetadataQuery.term("user", "john").or(MetadataQuery.term("user", "jane")))
+                .and(MetadataQuery.term("status", "500"));
+
+        assertEquals("DB_QUERY.table=orders AND (user=john OR user=jane) AND status=500", query.toString());
+        assertFalse(query.test(tables("x", Map.of("user", "jane"), "orders")));
+        assertTrue(query.and(MetadataQuery.term("status", "500")).or(MetadataQuery.term("user", "jane"))
+                .test(tables("x", Map.of("user", "jane"), "orders")));
+        assertThrows(IllegalArgumentException.class, () -> MetadataQuery.term("", "x"));
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryTraceStore(0));
+    }
+}
@@ -0,0 +1,73 @@
+package io.reqtracer.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetadataInternerTest {
+
+    /** A String equal to the argument but not the same instance. */
+    private static String copy(String s) {
+        return new String(s.toCharArray());
+    }
+
+    @Test
+    void testSharesEqualStrings() {
+        MetadataInterner interner = new MetadataInterner();
+        Map<String, String> first = interner.intern(Map.of(copy("table"), copy("users")));
+        Map<String, String> second = interner.intern(Map.of(copy("table"), copy("users")));
+
+        String firstKey = first.keySet().iterator().next();
+        String secondKey = second.keySet().iterator().next();
+        assertSame(firstKey, secondKey);
+        assertSame(first.get("table"), second.get("table"));
+        assertEquals(Map.of("table", "users"), second);
+        assertEquals(2, interner.getStringsShared());
+        assertEquals(2 * MetadataInterner.estimateSize("users"), interner.getBytesSaved(), 8);
+    }
+
+    @Test
+    void testReturnsSameMapWhenAlreadyInterned() {
+        MetadataInterner interner = new MetadataInterner();
+        Map<String, String> metadata = Map.of("status", "200");
+
+        assertSame(metadata, interner.intern(metadata));
+        assertSame(metadata, interner.intern(metadata));
+        assertEquals(0, interner.getBytesSaved());
+    }
+
+    @Test
+    void testCardinalityGuardStopsInterningValues() {
+        MetadataInterner interner = new MetadataInterner();
+        for (int i = 0; i <= MetadataInterner.MAX_VALUES_PER_KEY; i++) {
+            interner.intern(Map.of("userId", "user-" + i, "method", copy("GET")));
+        }
+
+        assertEquals(List.of("userId"), interner.getHighCardinalityKeys());
+
+        String value = copy("user-1");
+        Map<String, String> result = interner.intern(Map.of("userId", value));
+        assertSame(value, result.get("userId"));
+        // Low-cardinality keys keep interning
+        assertEquals(1 + 1 + 1, interner.getInternedCount());
+    }
+
+    @Test
+    void testLongValuesNotInterned() {
+        MetadataInterner interner = new MetadataInterner();
+        String longValue = "x".repeat(MetadataInterner.MAX_VALUE_LENGTH + 1);
+        interner.intern(Map.of("sql", longValue));
+
+        String again = copy(longValue);
+        assertSame(again, interner.intern(Map.of("sql", again)).get("sql"));
+    }
+
+    @Test
+    void testEstimateSize() {
+        assertEquals(24 + 24, MetadataInterner.estimateSize("users"));
+        assertEquals(24 + 32, MetadataInterner.estimateSize("ä€€€€"));
+    }
+}
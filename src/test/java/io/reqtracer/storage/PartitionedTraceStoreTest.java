@@ -0,0 +1,246 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceId;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedTraceStoreTest {
+
+    private static final long MINUTE = 60_000;
+
+    private static Trace trace(String id, long startTime) {
+        FixedClock clock = new FixedClock(startTime);
+        Trace trace = new Trace(id, clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(10);
+        trace.mark("RESPONSE_SENT");
+        trace.end();
+        return trace;
+    }
+
+    @Test
+    void testStoreAndRetrieve() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        store.store(trace("req-1", 1000));
+
+        Trace retrieved = store.get("req-1").orElseThrow();
+        assertEquals("req-1", retrieved.getTraceId());
+        assertEquals(1000, retrieved.getStartTime());
+        assertEquals(2, retrieved.getEventCount());
+        assertFalse(store.get("missing").isPresent());
+        assertFalse(store.get(null).isPresent());
+    }
+
+    @Test
+    void testNumericIds() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        long id = 0x1234_5678_9abcL;
+        store.store(new Trace(id, new FixedClock(5000)));
+
+        assertTrue(store.get(id).isPresent());
+        assertTrue(store.get(TraceId.toString(id)).isPresent());
+        assertEquals(List.of(TraceId.toString(id)), List.copyOf(store.listTraceIds()));
+
+        store.remove(TraceId.toString(id));
+        assertFalse(store.get(id).isPresent());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testTracesGroupedIntoBuckets() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        store.store(trace("a", 0));
+        store.store(trace("b", MINUTE - 1));
+        store.store(trace("c", MINUTE));
+        store.store(trace("d", 5 * MINUTE + 7));
+
+        assertEquals(3, store.getBucketCount());
+        assertEquals(4, store.size());
+        assertEquals(List.of("a", "b", "c", "d"), List.copyOf(store.listTraceIds()).stream().sorted()
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void testRestoreWithNewStartTimeMovesBucket() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        store.store(trace("a", 0));
+        store.store(trace("a", 3 * MINUTE));
+
+        assertEquals(1, store.size());
+        assertEquals(3 * MINUTE, store.get("a").orElseThrow().getStartTime());
+        assertEquals(0, store.traces(0, MINUTE - 1).count());
+    }
+
+    @Test
+    void testTimeRangeReads() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        for (int i = 0; i < 10; i++) {
+            store.store(trace("req-" + i, i * 30_000L));
+        }
+
+        List<String> ids = store.traces(60_000, 120_000)
+                .map(Trace::getTraceId)
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(List.of("req-2", "req-3", "req-4"), ids);
+
+        assertEquals(10, store.traces(Long.MIN_VALUE, Long.MAX_VALUE).count());
+        assertEquals(0, store.traces(10, 5).count());
+        assertEquals(0, store.traces(1, 29_999).count());
+    }
+
+    @Test
+    void testExpireDropsWholeBuckets() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        store.store(trace("a", 0));
+        store.store(trace("b", 30_000));
+        store.store(trace("c", MINUTE));
+        store.store(trace("d", 2 * MINUTE));
+
+        // Bucket [1m, 2m) still holds traces newer than the cutoff
+        assertEquals(1, store.expireBefore(MINUTE + 1));
+        assertFalse(store.get("a").isPresent());
+        assertFalse(store.get("b").isPresent());
+        assertTrue(store.get("c").isPresent());
+
+        assertEquals(1, store.expireBefore(2 * MINUTE));
+        assertFalse(store.get("c").isPresent());
+        assertTrue(store.get("d").isPresent());
+        assertEquals(1, store.size());
+        assertEquals(2, store.getExpiredBucketCount());
+        assertEquals(0, store.expireBefore(2 * MINUTE));
+    }
+
+    @Test
+    void testRetentionEnforcedOnStore() {
+        FixedClock clock = new FixedClock(0);
+        PartitionedTraceStore store = new PartitionedTraceStore(MINUTE, 5 * MINUTE, clock);
+
+        for (int minute = 0; minute < 20; minute++) {
+            clock.setTime(minute * MINUTE);
+            store.store(trace("req-" + minute, minute * MINUTE));
+        }
+
+        assertEquals(6, store.getBucketCount());
+        assertFalse(store.get("req-13").isPresent());
+        assertTrue(store.get("req-14").isPresent());
+        assertTrue(store.get("req-19").isPresent());
+    }
+
+    @Test
+    void testStaleIndexEntriesPurged() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        for (int i = 0; i < 1000; i++) {
+            store.store(new Trace(i + 1, new FixedClock(i * 1000L)));
+        }
+        assertEquals(1000, store.getIndexSize());
+
+        store.expireBefore(15 * MINUTE);
+
+        assertEquals(100, store.size());
+        assertEquals(100, store.getIndexSize());
+        assertFalse(store.get(1).isPresent());
+        assertTrue(store.get(1000).isPresent());
+    }
+
+    @Test
+    void testStoreAfterExpiryRecreatesBucket() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        store.store(trace("a", 0));
+        store.expireBefore(MINUTE);
+
+        store.store(trace("b", 10));
+        assertTrue(store.get("b").isPresent());
+        assertEquals(1, store.getBucketCount());
+    }
+
+    @Test
+    void testPinnedTraceSurvivesExpiry() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        store.store(trace("slow", 0));
+        store.store(trace("fast", 10));
+        long numeric = 0xabcdL;
+        store.store(new Trace(numeric, new FixedClock(20)));
+
+        assertTrue(store.pin("slow"));
+        assertTrue(store.pin(TraceId.toString(numeric)));
+        assertFalse(store.pin("missing"));
+        store.expireBefore(MINUTE);
+
+        assertTrue(store.get("slow").isPresent());
+        assertTrue(store.get(numeric).isPresent());
+        assertFalse(store.get("fast").isPresent());
+        assertEquals(2, store.size());
+        assertEquals(1, store.traces(0, 0).count());
+        assertEquals(List.of("slow"), store.listPinnedTraceIds().stream()
+                .filter(id -> !id.equals(TraceId.toString(numeric))).collect(Collectors.toList()));
+
+        // Storing a pinned ID again replaces the pinned copy
+        store.store(trace("slow", 5));
+        assertEquals(5, store.get("slow").get().getStartTime());
+        assertEquals(0, store.getBucketCount());
+
+        store.remove(numeric);
+        assertFalse(store.get(numeric).isPresent());
+        assertEquals(List.of("slow"), List.copyOf(store.listPinnedTraceIds()));
+    }
+
+    @Test
+    void testUnpinReturnsTraceToBucket() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        store.store(trace("a", 3 * MINUTE));
+        store.pin("a");
+        assertEquals(List.of("a"), List.copyOf(store.listTraceIds()));
+
+        store.unpin("a");
+
+        assertTrue(store.listPinnedTraceIds().isEmpty());
+        assertEquals(1, store.size());
+        store.expireBefore(5 * MINUTE);
+        assertFalse(store.get("a").isPresent());
+    }
+
+    @Test
+    void testPinsAreCounted() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        store.store(trace("a", 0));
+        assertTrue(store.pin("a"));
+        assertTrue(store.pin("a"));
+
+        store.unpin("a");
+        store.expireBefore(5 * MINUTE);
+        assertTrue(store.get("a").isPresent());
+
+        store.unpin("a");
+        assertTrue(store.listPinnedTraceIds().isEmpty());
+        store.expireBefore(5 * MINUTE);
+        assertFalse(store.get("a").isPresent());
+    }
+
+    @Test
+    void testClear() {
+        PartitionedTraceStore store = new PartitionedTraceStore();
+        store.store(trace("a", 0));
+        store.store(trace("b", 3 * MINUTE));
+
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertEquals(0, store.getBucketCount());
+        assertFalse(store.get("a").isPresent());
+    }
+
+    @Test
+    void testRejectsInvalidArguments() {
+        FixedClock clock = new FixedClock(0);
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedTraceStore(0, MINUTE, clock));
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedTraceStore(MINUTE, 0, clock));
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedTraceStore().store(null));
+    }
+}
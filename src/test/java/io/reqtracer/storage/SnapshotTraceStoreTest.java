@@ -0,0 +1,121 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Trace;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotTraceStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Trace trace(String traceId, long startTime) {
+        FixedClock clock = new FixedClock(startTime);
+        Trace trace = new Trace(traceId, clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(12);
+        trace.mark("AUTH_CHECK", Map.of("user", "john"));
+        trace.end();
+        return trace;
+    }
+
+    private InMemoryTraceStore populated(int count) {
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        for (int i = 0; i < count; i++) {
+            store.store(trace("req-" + i, 1000 + i));
+        }
+        return store;
+    }
+
+    @Test
+    void testWriteAndOpen() throws IOException {
+        Path path = tempDir.resolve("traces.snapshot");
+        assertEquals(500, SnapshotTraceStore.write(path, populated(500)));
+
+        try (SnapshotTraceStore store = SnapshotTraceStore.open(path)) {
+            assertEquals(500, store.getSnapshotSize());
+
+            Trace trace = store.get("req-123").get();
+            assertEquals("req-123", trace.getTraceId());
+            assertEquals(1123, trace.getStartTime());
+            assertEquals(12, trace.getTotalDuration());
+            assertEquals("john", trace.getEvents().get(1).getMetadata().get("user"));
+
+            assertTrue(store.get("req-0").isPresent());
+            assertTrue(store.get("req-499").isPresent());
+            assertFalse(store.get("req-500").isPresent());
+            assertFalse(store.get(null).isPresent());
+        }
+    }
+
+    @Test
+    void testEmptySnapshot() throws IOException {
+        Path path = tempDir.resolve("empty.snapshot");
+        SnapshotTraceStore.write(path, new InMemoryTraceStore());
+
+        try (SnapshotTraceStore store = SnapshotTraceStore.open(path)) {
+            assertFalse(store.get("anything").isPresent());
+            assertTrue(store.listTraceIds().isEmpty());
+        }
+    }
+
+    @Test
+    void testOverlayAndRemovals() throws IOException {
+        Path path = tempDir.resolve("traces.snapshot");
+        SnapshotTraceStore.write(path, populated(10));
+
+        try (SnapshotTraceStore store = SnapshotTraceStore.open(path)) {
+            store.store(trace("req-new", 5000));
+            store.store(trace("req-3", 9000)); // replaces snapshot copy
+            store.remove("req-5");
+
+            assertTrue(store.get("req-new").isPresent());
+            assertEquals(9000, store.get("req-3").get().getStartTime());
+            assertFalse(store.get("req-5").isPresent());
+
+            Collection<String> ids = store.listTraceIds();
+            assertEquals(10, ids.size());
+            assertTrue(ids.contains("req-new"));
+            assertFalse(ids.contains("req-5"));
+
+            // Re-storing a removed trace brings it back
+            store.store(trace("req-5", 7000));
+            assertEquals(7000, store.get("req-5").get().getStartTime());
+
+            // Merged view can be snapshotted again
+            Path next = tempDir.resolve("next.snapshot");
+            assertEquals(11, store.snapshot(next));
+            try (SnapshotTraceStore reopened = SnapshotTraceStore.open(next)) {
+                assertEquals(9000, reopened.get("req-3").get().getStartTime());
+                assertTrue(reopened.get("req-new").isPresent());
+            }
+        }
+    }
+
+    @Test
+    void testRejectsForeignFile() throws IOException {
+        Path path = tempDir.resolve("junk.snapshot");
+        Files.write(path, new byte[64]);
+
+        assertThrows(IOException.class, () -> SnapshotTraceStore.open(path));
+    }
+
+    @Test
+    void testWriteLeavesNoTempFile() throws IOException {
+        Path path = tempDir.resolve("traces.snapshot");
+        SnapshotTraceStore.write(path, populated(3));
+
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
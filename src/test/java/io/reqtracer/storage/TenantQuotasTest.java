@@ -0,0 +1,201 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.Trace;
+import io.reqtracer.storage.DurableTraceStore.Durability;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static io.reqtracer.core.TestTraces.tagged;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TenantQuotasTest {
+
+    private static TenantUsage usage(InMemoryTraceStore store, String tenant) {
+        return store.getMetrics().getTenantUsage().stream()
+                .filter(u -> u.getTenant().equals(tenant))
+                .findFirst().orElseThrow();
+    }
+
+    @Test
+    void testNoisyTenantOnlyEvictsItsOwnTraces() {
+        InMemoryTraceStore store = new InMemoryTraceStore(TenantQuotas.of(10, 1 << 20).withMetadataKey("tenant"));
+        for (int i = 0; i < 5; i++) {
+            store.store(tagged("quiet-" + i, i, Map.of("tenant", "quiet")));
+        }
+        for (int i = 0; i < 100; i++) {
+            store.store(tagged("noisy-" + i, i, Map.of("tenant", "noisy")));
+        }
+
+        assertEquals(15, store.size());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(store.get("quiet-" + i).isPresent());
+        }
+        // Oldest first
+        assertFalse(store.get("noisy-89").isPresent());
+        assertTrue(store.get("noisy-90").isPresent());
+
+        TenantUsage noisy = usage(store, "noisy");
+        assertEquals(10, noisy.getTraces());
+        assertEquals(90, noisy.getEvicted());
+        assertEquals(1.0, noisy.getQuotaUsed(), 1e-9);
+        assertEquals(5, usage(store, "quiet").getTraces());
+        assertEquals("noisy", store.getMetrics().getTenantUsage().get(0).getTenant());
+    }
+
+    @Test
+    void testByteQuotaAndOverrides() {
+        Trace sample = tagged("x-0", 0, Map.of("tenant", "a"));
+        long size = CompactTrace.of(sample, sample.getEvents(), new ShapeTable().intern(sample.getEvents()),
+                new MetadataInterner()).estimateSize();
+        TenantQuotas quotas = TenantQuotas.of(1000, 3 * size).withMetadataKey("tenant").withQuota("big", 1000, 1 << 20);
+        InMemoryTraceStore store = new InMemoryTraceStore(quotas);
+        for (int i = 0; i < 10; i++) {
+            store.store(tagged("a-" + i, i, Map.of("tenant", "a")));
+            store.store(tagged("b-" + i, i, Map.of("tenant", "big")));
+        }
+
+        assertEquals(3, usage(store, "a").getTraces());
+        assertEquals(3 * size, usage(store, "a").getBytes());
+        assertEquals(10, usage(store, "big").getTraces());
+        assertEquals(1 << 20, usage(store, "big").getMaxBytes());
+    }
+
+    @Test
+    void testTenantFallsBackToDefault() {
+        InMemoryTraceStore store = new InMemoryTraceStore(TenantQuotas.of(2, 1 << 20));
+        Trace started = tagged("started", 0, Map.of("tenant", "ignored"));
+        started.setTenant("acme");
+        store.store(started);
+        store.store(tagged("a", 1, Map.of("tenant", "ignored")));
+        store.store(tagged("b", 2, Map.of("tenant", "ignored")));
+        store.store(tagged("c", 3, Map.of("tenant", "ignored")));
+
+        assertEquals(1, usage(store, "acme").getTraces());
+        assertEquals(2, usage(store, TenantQuotas.DEFAULT_TENANT).getTraces());
+        assertEquals("acme", store.get("started").get().getTenant());
+        assertFalse(store.get("a").isPresent());
+    }
+
+    @Test
+    void testRemoveAndReplaceReleaseQuota() {
+        InMemoryTraceStore store = new InMemoryTraceStore(TenantQuotas.of(2, 1 << 20).withMetadataKey("tenant"));
+        store.store(tagged("a", 0, Map.of("tenant", "t")));
+        store.store(tagged("b", 1, Map.of("tenant", "t")));
+        store.store(tagged("b", 2, Map.of("tenant", "t")));
+        store.remove("a");
+        store.store(tagged("c", 3, Map.of("tenant", "t")));
+
+        assertTrue(store.get("b").isPresent());
+        assertTrue(store.get("c").isPresent());
+        assertEquals(2, usage(store, "t").getTraces());
+        assertEquals(0, usage(store, "t").getEvicted());
+
+        store.clear();
+        assertTrue(store.getMetrics().getTenantUsage().isEmpty());
+    }
+
+    @Test
+    void testPinnedTracesAreNotEvicted() {
+        InMemoryTraceStore store = new InMemoryTraceStore(TenantQuotas.of(2, 1 << 20).withMetadataKey("tenant"));
+        store.store(tagged("slow", 0, Map.of("tenant", "t")));
+        store.pin("slow");
+        for (int i = 0; i < 10; i++) {
+            store.store(tagged("req-" + i, i + 1, Map.of("tenant", "t")));
+        }
+
+        assertTrue(store.get("slow").isPresent());
+        assertTrue(store.get("req-9").isPresent());
+        assertEquals(2, store.size());
+
+        store.unpin("slow");
+        store.store(tagged("req-10", 11, Map.of("tenant", "t")));
+        assertFalse(store.get("slow").isPresent());
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void testConcurrentTenantsStayWithinQuota() throws InterruptedException {
+        InMemoryTraceStore store = new InMemoryTraceStore(TenantQuotas.of(100, 1 << 24).withMetadataKey("tenant"));
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < 5_000; i++) {
+                        String tenant = thread == 0 ? "small" : "tenant-" + (i % 4);
+                        if (thread != 0 || i < 50) {
+                            store.store(tagged(thread + "-" + i, i, Map.of("tenant", tenant)));
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        // Settle any eviction another thread skipped while one was running
+        for (int i = 0; i < 4; i++) {
+            store.store(tagged("settle-" + i, 0, Map.of("tenant", "tenant-" + i)));
+        }
+
+        List<TenantUsage> usage = store.getMetrics().getTenantUsage();
+        long total = 0;
+        for (TenantUsage tenant : usage) {
+            assertTrue(tenant.getTraces() <= 100, tenant.toString());
+            total += tenant.getTraces();
+        }
+        assertEquals(store.size(), total);
+        assertEquals(50, usage(store, "small").getTraces());
+    }
+
+    @Test
+    void testTenantSurvivesLogReplayAndSnapshot(@TempDir Path dir) throws IOException {
+        TenantQuotas quotas = TenantQuotas.of(5, 1 << 20);
+        Path log = dir.resolve("traces.wal");
+        try (DurableTraceStore store = DurableTraceStore.open(log, new InMemoryTraceStore(quotas),
+                Durability.BATCH, DurableTraceStore.DEFAULT_INTERVAL_MILLIS)) {
+            for (int i = 0; i < 5; i++) {
+                Trace trace = tagged("acme-" + i, i, Map.of("tenant", "ignored"));
+                trace.setTenant("acme");
+                store.store(trace);
+                store.store(tagged("other-" + i, i, Map.of("tenant", "ignored")));
+            }
+        }
+
+        InMemoryTraceStore replayed = new InMemoryTraceStore(quotas);
+        DurableTraceStore.open(log, replayed, Durability.NONE, DurableTraceStore.DEFAULT_INTERVAL_MILLIS).close();
+        // Without the tenant all ten would land in "default" and half be evicted
+        assertEquals(10, replayed.size());
+        assertEquals(5, usage(replayed, "acme").getTraces());
+        assertEquals(5, usage(replayed, TenantQuotas.DEFAULT_TENANT).getTraces());
+        assertEquals("acme", replayed.get("acme-0").orElseThrow().getTenant());
+        assertNull(replayed.get("other-0").orElseThrow().getTenant());
+
+        Path snapshot = dir.resolve("traces.snap");
+        SnapshotTraceStore.write(snapshot, replayed);
+        try (SnapshotTraceStore opened = SnapshotTraceStore.open(snapshot)) {
+            assertEquals("acme", opened.get("acme-4").orElseThrow().getTenant());
+            assertNull(opened.get("other-4").orElseThrow().getTenant());
+        }
+    }
+
+    @Test
+    void testRejectsInvalidQuotas() {
+        assertThrows(IllegalArgumentException.class, () -> TenantQuotas.of(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> TenantQuotas.of(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> TenantQuotas.of(1, 1).withMetadataKey(""));
+        assertThrows(NullPointerException.class, () -> new InMemoryTraceStore((TenantQuotas) null));
+    }
+}
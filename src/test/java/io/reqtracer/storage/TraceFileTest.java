@@ -0,0 +1,130 @@
+package io.reqtracer.storage;
+
+import io.reqtracer.core.FixedClock;
+import io.reqtracer.core.Span;
+import io.reqtracer.core.Trace;
+import io.reqtracer.core.TraceContext;
+import io.reqtracer.core.TraceEvent;
+import io.reqtracer.core.TraceSpan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRoundTrip() throws IOException {
+        FixedClock clock = new FixedClock(1000);
+        InMemoryTraceStore store = new InMemoryTraceStore();
+
+        Trace trace = new Trace("req-123", clock);
+        trace.mark("REQUEST_RECEIVED");
+        clock.advance(12);
+        trace.mark("AUTH_CHECK", Map.of("user", "john", "method", "JWT"));
+        clock.advance(8);
+        trace.end();
+        store.store(trace);
+
+        Trace open = new Trace("req-open", clock);
+        open.mark("STARTED");
+        store.store(open);
+
+        Path file = tempDir.resolve("traces.rtf");
+        assertEquals(2, TraceFile.write(file, store));
+
+        InMemoryTraceStore loaded = TraceFile.load(file);
+        assertEquals(2, loaded.size());
+
+        Trace restored = loaded.get("req-123").get();
+        assertEquals(1000, restored.getStartTime());
+        assertEquals(20, restored.getTotalDuration());
+        assertEquals(trace.getThreadName(), restored.getThreadName());
+        assertEquals(trace.getThreadId(), restored.getThreadId());
+        assertEquals(2, restored.getEventCount());
+
+        TraceEvent auth = restored.getEvents().get(1);
+        assertEquals("AUTH_CHECK", auth.getName());
+        assertEquals(12, auth.getDelta());
+        assertEquals(12, auth.getElapsedSinceStart());
+        assertEquals(1012, auth.getTimestamp());
+        assertEquals(Map.of("user", "john", "method", "JWT"), auth.getMetadata());
+
+        assertFalse(loaded.get("req-open").get().isEnded());
+    }
+
+    @Test
+    void testRoundTripParentAndSpans() throws IOException {
+        FixedClock clock = new FixedClock(1000);
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        Trace trace = new Trace("ord-1", clock);
+        trace.setParent(new TraceContext("req-1", 3));
+        try (Span outer = trace.span("HANDLE")) {
+            clock.advance(5);
+            try (Span inner = trace.span("CALL_PAYMENTS")) {
+                clock.advance(10);
+            }
+        }
+        trace.end();
+        store.store(trace);
+
+        Path file = tempDir.resolve("traces.rtf");
+        TraceFile.write(file, store);
+        Trace restored = TraceFile.load(file).get("ord-1").get();
+
+        assertEquals(new TraceContext("req-1", 3), restored.getParent());
+        TraceSpan handle = restored.getSpans().get(0);
+        assertEquals(15, handle.getDuration());
+        assertEquals("CALL_PAYMENTS", handle.getChildren().get(0).getName());
+        assertEquals(10, handle.getChildren().get(0).getDuration());
+    }
+
+    @Test
+    void testStreamIsLazy() throws IOException {
+        FixedClock clock = new FixedClock(1000);
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        for (int i = 0; i < 10; i++) {
+            store.store(new Trace("req-" + i, clock));
+        }
+        Path file = tempDir.resolve("traces.rtf");
+        TraceFile.write(file, store);
+
+        try (Stream<Trace> traces = TraceFile.stream(file)) {
+            assertEquals(3, traces.limit(3).count());
+        }
+    }
+
+    @Test
+    void testRejectsForeignFile() throws IOException {
+        Path file = tempDir.resolve("not-a-trace.txt");
+        Files.writeString(file, "hello world");
+
+        assertThrows(IOException.class, () -> TraceFile.load(file));
+    }
+
+    @Test
+    void testTruncatedFile() throws IOException {
+        FixedClock clock = new FixedClock(1000);
+        InMemoryTraceStore store = new InMemoryTraceStore();
+        Trace trace = new Trace("req-123", clock);
+        trace.mark("EVENT", Map.of("key", "value"));
+        store.store(trace);
+
+        Path file = tempDir.resolve("traces.rtf");
+        TraceFile.write(file, store);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertThrows(IOException.class, () -> TraceFile.load(file));
+    }
+}